@@ -43,6 +43,7 @@ import org.eclipse.wst.server.core.IServer;
 import org.eclipse.wst.server.core.ServerPort;
 import org.eclipse.wst.server.core.model.ServerBehaviourDelegate;
 import org.eclipse.wst.server.core.model.ServerDelegate;
+import org.eclipse.wst.server.core.util.ServerStartupProber;
 import org.eclipse.wst.server.core.util.SocketUtil;
 
 /**
@@ -56,7 +57,7 @@ public class GenericServerBehaviour extends ServerBehaviourDelegate {
 	public static final String ATTR_SERVER_ID = "server-id"; //$NON-NLS-1$
 	
 	// the thread used to ping the server to check for startup
-	protected transient PingThread ping;
+	protected transient ServerStartupProber ping;
     protected transient IDebugEventSetListener processListener;
     protected transient IProcess process;
     
@@ -433,12 +434,32 @@ public class GenericServerBehaviour extends ServerBehaviourDelegate {
         	int port = sp.getPort();
     		if (port != 80)
     			url += ":" + port; //$NON-NLS-1$
-    		ping = new PingThread(getServer(), url, this);
+    		// remote servers are not stopped if they don't start in time
+    		int timeout = getServer().getStartTimeout() * 1000;
+    		if (timeout <= 0 || isRemote())
+    			timeout = -1;
+    		ping = new ServerStartupProber(url, timeout, new ServerStartupProber.IProbeListener() {
+    			public void serverStarted() {
+    				setServerStarted();
+    			}
+
+    			public void probeTimedOut() {
+    				try {
+    					getServer().stop(false);
+    				} catch (Exception e) {
+    					Trace.trace(Trace.FINEST, "Ping: could not stop server"); //$NON-NLS-1$
+    				}
+    			}
+    		});
     	} catch (Exception e) {
     		Trace.trace(Trace.SEVERE, "Can't ping for server startup."); //$NON-NLS-1$
     	}  	
     }
    
+    private boolean isRemote() {
+    	return getServer().getServerType().supportsRemoteHosts() && !SocketUtil.isLocalhost(getServer().getHost());
+    }
+
     protected void setProcess(final IProcess newProcess) {
     	if (process != null)
     		return;
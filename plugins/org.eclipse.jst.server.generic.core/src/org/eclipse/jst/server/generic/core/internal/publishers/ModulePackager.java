@@ -9,33 +9,30 @@
 **************************************************************************************************/
 package org.eclipse.jst.server.generic.core.internal.publishers;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.jar.JarOutputStream;
-import java.util.zip.CRC32;
-import java.util.zip.ZipEntry;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.wst.server.core.internal.zip.ParallelZipArchiveWriter;
 
 /**
- * Packages resources to a .zip file
+ * Packages resources to a .zip file. Entries are compressed on multiple
+ * threads, but are written to the file in the order they are added.
  */
 public class ModulePackager {
 	private static final int BUFFER_SIZE = 65536;
 	private byte[] readBuffers;
 	
 	private static final String JAR_FILE_SEPERATOR = "/"; //$NON-NLS-1$
-	private JarOutputStream outputStream;
+	private ParallelZipArchiveWriter outputStream;
 
-	private boolean useCompression = true;
-
-	
 
 	/**
 	 * Create an instance of this class.
@@ -49,8 +46,7 @@ public class ModulePackager {
 		directoryPath = (Path) directoryPath.removeLastSegments(1);
 		File newZipFile = new File(directoryPath.toString());
 		newZipFile.mkdirs();
-		outputStream = new JarOutputStream(new FileOutputStream(filename)); 
-		useCompression = compress;
+		outputStream = new ParallelZipArchiveWriter(new BufferedOutputStream(new FileOutputStream(filename)), compress, 0);
 	}
 
 	/**
@@ -59,7 +55,13 @@ public class ModulePackager {
 	 * @exception java.io.IOException
 	 */
 	public void finished() throws IOException {
-		outputStream.close();
+		try {
+			outputStream.close();
+		} catch (CoreException e) {
+			throw toIOException(e);
+		} finally {
+			outputStream.dispose();
+		}
 	}
 
 	/**
@@ -73,20 +75,11 @@ public class ModulePackager {
 	 * @exception java.io.IOException
 	 */
 	protected void write(String pathname, byte[] contents) throws IOException {
-		ZipEntry newEntry = new ZipEntry(pathname);
-
-		// if the contents are being compressed then we get the below for free.
-		if (!useCompression) {
-			newEntry.setMethod(ZipEntry.STORED);
-			newEntry.setSize(contents.length);
-			CRC32 checksumCalculator = new CRC32();
-			checksumCalculator.update(contents);
-			newEntry.setCrc(checksumCalculator.getValue());
+		try {
+			outputStream.putEntry(pathname, 0, contents);
+		} catch (CoreException e) {
+			throw toIOException(e);
 		}
-
-		outputStream.putNextEntry(newEntry);
-		outputStream.write(contents);
-		outputStream.closeEntry();
 	}
 
 	/**
@@ -96,9 +89,11 @@ public class ModulePackager {
 	public void writeFolder(String destinationPath) throws IOException {
 		if (!destinationPath.endsWith(JAR_FILE_SEPERATOR )) 
 			destinationPath = destinationPath + JAR_FILE_SEPERATOR;
-		ZipEntry newEntry = new ZipEntry(destinationPath);
-		outputStream.putNextEntry(newEntry);
-		outputStream.closeEntry();
+		try {
+			outputStream.putDirectory(destinationPath, 0);
+		} catch (CoreException e) {
+			throw toIOException(e);
+		}
 	}
 
 	/**
@@ -111,15 +106,15 @@ public class ModulePackager {
 	 * @exception java.io.IOException
 	 * @exception org.eclipse.core.runtime.CoreException
 	 */
-	public void write(IFile resource, String destinationPath) throws IOException, CoreException {
-		InputStream contentStream = null;
-		try {
-			contentStream = resource.getContents(false);
-			write(contentStream, destinationPath);
-		} finally {
-			if (contentStream != null)
-				contentStream.close();
-		}
+	public void write(final IFile resource, String destinationPath) throws IOException, CoreException {
+		long length = -1;
+		if (resource.getLocation() != null)
+			length = resource.getLocation().toFile().length();
+		outputStream.putEntry(destinationPath, 0, length, new ParallelZipArchiveWriter.EntrySource() {
+			public InputStream getContents() throws CoreException {
+				return resource.getContents(false);
+			}
+		});
 	}
 
 	/**
@@ -132,15 +127,12 @@ public class ModulePackager {
 	 * @exception java.io.IOException
 	 * @exception org.eclipse.core.runtime.CoreException
 	 */
-	public void write(File resource, String destinationPath) throws IOException, CoreException {
-		InputStream contentStream = null;
-		try {
-			contentStream = new FileInputStream(resource);
-			write(contentStream, destinationPath);
-		} finally {
-			if (contentStream != null)
-				contentStream.close();
-		}
+	public void write(final File resource, String destinationPath) throws IOException, CoreException {
+		outputStream.putEntry(destinationPath, 0, resource.length(), new ParallelZipArchiveWriter.EntrySource() {
+			public InputStream getContents() throws IOException {
+				return new FileInputStream(resource);
+			}
+		});
 	}
 
 	/**
@@ -203,6 +195,12 @@ public class ModulePackager {
         }
 
     }
+	private static IOException toIOException(CoreException e) {
+		IOException ioe = new IOException(e.getMessage());
+		ioe.initCause(e);
+		return ioe;
+	}
+
 	/**
 	 * Make directoryname relative to root
 	 * @param fileName
@@ -41,13 +41,14 @@ import org.eclipse.wst.server.core.model.ServerBehaviourDelegate;
 import org.eclipse.wst.server.core.util.IStaticWeb;
 import org.eclipse.wst.server.core.util.ProjectModule;
 import org.eclipse.wst.server.core.util.PublishUtil;
+import org.eclipse.wst.server.core.util.ServerStartupProber;
 import org.eclipse.wst.server.core.util.SocketUtil;
 /**
  * Generic Http server.
  */
 public class PreviewServerBehaviour extends ServerBehaviourDelegate {
 	// the thread used to ping the server to check for startup
-	protected transient PingThread ping = null;
+	protected transient ServerStartupProber ping = null;
 	protected transient IDebugEventSetListener processListener;
 
 	/**
@@ -136,7 +137,20 @@ public class PreviewServerBehaviour extends ServerBehaviourDelegate {
 			String url = "http://localhost";
 			if (port != 80)
 				url += ":" + port;
-			ping = new PingThread(getServer(), url, this);
+			int timeout = getServer().getStartTimeout() * 1000;
+			ping = new ServerStartupProber(url, timeout > 0 ? timeout : -1, new ServerStartupProber.IProbeListener() {
+				public void serverStarted() {
+					setServerStarted();
+				}
+
+				public void probeTimedOut() {
+					try {
+						getServer().stop(false);
+					} catch (Exception e) {
+						Trace.trace(Trace.FINEST, "Ping: could not stop server");
+					}
+				}
+			});
 		} catch (Exception e) {
 			Trace.trace(Trace.SEVERE, "Can't ping for Tomcat startup.");
 		}
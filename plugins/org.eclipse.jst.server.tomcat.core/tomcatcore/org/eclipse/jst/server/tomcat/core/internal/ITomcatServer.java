@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2012 IBM Corporation and others.
+ * Copyright (c) 2005, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -51,6 +51,18 @@ public interface ITomcatServer extends IURLProvider {
 	 */
 	public static final String PROPERTY_MODULES_RELOADABLE_BY_DEFAULT = "modulesReloadableByDefault";
 
+	/**
+	 * Property which specifies class changes should be applied to the
+	 * server by hot code replace when it is running in debug mode.
+	 */
+	public static final String PROPERTY_HOT_CLASS_REPLACE = "hotClassReplace";
+
+	/**
+	 * Property which specifies the entries of jars published to the
+	 * server should be compressed.
+	 */
+	public static final String PROPERTY_COMPRESS_PUBLISHED_JARS = "compressPublishedJars";
+
 	/**
 	 * Returns true if this is a test (publish and run code out of the
 	 * workbench) environment server.
@@ -92,4 +104,24 @@ public interface ITomcatServer extends IURLProvider {
 	 * @return true if contexts should be saved to separate files
 	 */
 	public boolean isSaveSeparateContextFiles();
+
+	/**
+	 * Returns true if changes to class files should be applied to the
+	 * server by hot code replace when it is running in debug mode,
+	 * instead of requiring the server to be restarted. The server is
+	 * only left running once the debugger has replaced the changed
+	 * classes, and published contexts are not reloadable.
+	 * 
+	 * @return true if class changes should be hot replaced
+	 */
+	public boolean isHotClassReplace();
+
+	/**
+	 * Returns true if the entries of jars published to the server are
+	 * compressed. Storing the entries without compression makes publishing
+	 * faster at the cost of larger jars.
+	 * 
+	 * @return true if published jars are compressed
+	 */
+	public boolean isCompressPublishedJars();
 }
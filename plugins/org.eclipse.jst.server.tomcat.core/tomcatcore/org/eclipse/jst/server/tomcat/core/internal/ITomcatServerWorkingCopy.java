@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2012 IBM Corporation and others.
+ * Copyright (c) 2005, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -68,4 +68,17 @@ public interface ITomcatServerWorkingCopy extends ITomcatServer {
 	 * @param b true if contexts should be made reloadable by default.
 	 */
 	public void setModulesReloadableByDefault(boolean b);
+
+	/**
+	 * Set this server to apply class changes by hot code replace when
+	 * it is running in debug mode.
+	 * @param b true if class changes should be hot replaced
+	 */
+	public void setHotClassReplace(boolean b);
+
+	/**
+	 * Set whether the entries of jars published to the server are compressed.
+	 * @param b true if published jars should be compressed
+	 */
+	public void setCompressPublishedJars(boolean b);
 }
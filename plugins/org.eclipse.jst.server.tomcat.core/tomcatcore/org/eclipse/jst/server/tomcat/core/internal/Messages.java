@@ -100,6 +100,10 @@ public class Messages extends NLS {
 	public static String errorPublishPathDup;
 	public static String errorPublishPathConflict;
 	public static String errorPublishPathMissing;
+	public static String errorReloadContextFileNotFound;
+	public static String errorReloadContextAutoDeploy;
+	public static String errorReloadContext;
+	public static String errorRestartModuleTimeout;
 
 	public static String configurationEditorActionModifyPort;
 	public static String configurationEditorActionModifyMimeMapping;
@@ -116,6 +120,8 @@ public class Messages extends NLS {
 	public static String serverEditorActionSetServeWithoutPublish;
 	public static String serverEidtorActionSetSeparateContextFiles;
 	public static String serverEditorActionSetModulesReloadableByDefault;
+	public static String serverEditorActionSetHotClassReplace;
+	public static String serverEditorActionSetCompressPublishedJars;
 
 	static {
 		NLS.initializeMessages(TomcatPlugin.PLUGIN_ID + ".internal.Messages", Messages.class);
@@ -92,6 +92,17 @@ public class Tomcat55Configuration extends TomcatConfiguration {
 		}
 		return null;
 	}
+
+	/**
+	 * Returns the command written to the shutdown port to stop the server.
+	 * @return java.lang.String
+	 */
+	public String getShutdownCommand() {
+		String command = server.getShutdown();
+		if (command == null || command.length() == 0)
+			return "SHUTDOWN";
+		return command;
+	}
 	
 	/**
 	 * Returns the mime mappings.
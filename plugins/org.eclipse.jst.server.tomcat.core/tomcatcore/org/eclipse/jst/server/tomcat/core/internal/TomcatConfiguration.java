@@ -14,10 +14,16 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Properties;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
@@ -43,6 +49,11 @@ public abstract class TomcatConfiguration implements ITomcatConfiguration, ITomc
 	public static final String ADD_WEB_MODULE_PROPERTY = "addWebModule";
 	public static final String REMOVE_WEB_MODULE_PROPERTY = "removeWebModule";
 	
+	// file in the server's state directory that records what was last published
+	private static final String PUBLISH_FINGERPRINT_FILE = "publishConfiguration.properties";
+
+	private static final int BUFFER_SIZE = 8192;
+
 	protected IFolder configPath;
 
 	// property change listeners
@@ -79,6 +90,23 @@ public abstract class TomcatConfiguration implements ITomcatConfiguration, ITomc
 	 * @return result of operation
 	 */
 	protected IStatus backupAndPublish(IPath tomcatDir, boolean doBackup, IProgressMonitor monitor) {
+		return backupAndPublish(tomcatDir, doBackup, null, monitor);
+	}
+
+	/**
+	 * Copies all files from the given directory in the workbench
+	 * to the given location, skipping files that have not changed since
+	 * they were last published.
+	 * 
+	 * @param tomcatDir Destination tomcat directory.  Equivalent to catalina.base
+	 *                  for Tomcat 4.x and up.
+	 * @param doBackup Backup existing configuration files (true if not test mode).
+	 * @param stateDir Directory in which to record what was published, or
+	 *                 <code>null</code> to compare all files
+	 * @param monitor Progress monitor to use
+	 * @return result of operation
+	 */
+	protected IStatus backupAndPublish(IPath tomcatDir, boolean doBackup, IPath stateDir, IProgressMonitor monitor) {
 		MultiStatus ms = new MultiStatus(TomcatPlugin.PLUGIN_ID, 0, Messages.publishConfigurationTask, null);
 		if (Trace.isTraceEnabled())
 			Trace.trace(Trace.FINER, "Backup and publish");
@@ -92,7 +120,7 @@ public abstract class TomcatConfiguration implements ITomcatConfiguration, ITomc
 				if (!backup.toFile().exists())
 					backup.toFile().mkdir();
 			}
-			backupFolder(getFolder(), tomcatDir.append("conf"), backup, ms, monitor);
+			backupFolder(getFolder(), tomcatDir.append("conf"), backup, stateDir, ms, monitor);
 		} catch (Exception e) {
 			Trace.trace(Trace.SEVERE, "backupAndPublish() error", e);
 			IStatus s = new Status(IStatus.ERROR, TomcatPlugin.PLUGIN_ID, 0, NLS.bind(Messages.errorPublishConfiguration, new String[] {e.getLocalizedMessage()}), e);
@@ -103,11 +131,50 @@ public abstract class TomcatConfiguration implements ITomcatConfiguration, ITomc
 		return ms;
 	}
 	
+	/**
+	 * Copies the files in the given workspace folder to the configuration
+	 * directory, backing up the existing files first if requested.
+	 * 
+	 * @param folder workspace folder containing the configuration files
+	 * @param confDir destination configuration directory
+	 * @param backup backup directory, or <code>null</code> for no backup
+	 * @param ms status to add the results to
+	 * @param monitor progress monitor
+	 * @throws CoreException if the folder cannot be read
+	 */
 	protected void backupFolder(IFolder folder, IPath confDir, IPath backup, MultiStatus ms, IProgressMonitor monitor) throws CoreException {
+		backupFolder(folder, confDir, backup, null, ms, monitor);
+	}
+
+	/**
+	 * Copies the files in the given workspace folder to the configuration
+	 * directory, backing up the existing files first if requested.
+	 * <p>
+	 * A fingerprint of each published file (the workspace file's stamps,
+	 * and the size, timestamp and checksum of the copy) is kept in the
+	 * given state directory, so that files which have not changed on
+	 * either side since the last publish are skipped without being read.
+	 * Nothing is written to the configuration directory other than the
+	 * published files.
+	 * </p>
+	 * 
+	 * @param folder workspace folder containing the configuration files
+	 * @param confDir destination configuration directory
+	 * @param backup backup directory, or <code>null</code> for no backup
+	 * @param stateDir directory in which to record what was published, or
+	 *    <code>null</code> to compare all files
+	 * @param ms status to add the results to
+	 * @param monitor progress monitor
+	 * @throws CoreException if the folder cannot be read
+	 */
+	protected void backupFolder(IFolder folder, IPath confDir, IPath backup, IPath stateDir, MultiStatus ms, IProgressMonitor monitor) throws CoreException {
 		IResource[] children = folder.members();
 		if (children == null)
 			return;
 		
+		Properties fingerprints = loadPublishFingerprints(stateDir);
+		Properties newFingerprints = new Properties();
+		
 		int size = children.length;
 		monitor.beginTask(Messages.publishConfigurationTask, size * 100);
 		for (int i = 0; i < size; i++) {
@@ -130,21 +197,28 @@ public abstract class TomcatConfiguration implements ITomcatConfiguration, ITomc
 					
 					if (copy) {
 						String destPath = confDir.append(name).toOSString();
-						String destContents = null;
-						String srcContents = null;
 						File dest = new File(destPath);
-						if (dest.exists()) {
-							InputStream fis = new FileInputStream(destPath);
-							destContents = TomcatVersionHelper.getFileContents(fis);
-							if (destContents != null) {
-								fis = file.getContents();
-								srcContents = TomcatVersionHelper.getFileContents(fis);
+						String fingerprint = checkPublishFingerprint(fingerprints.getProperty(name), file, dest);
+						if (fingerprint != null) {
+							if (Trace.isTraceEnabled())
+								Trace.trace(Trace.FINEST, "Skipping unchanged " + name);
+						} else {
+							long crc = -1;
+							if (dest.exists() && dest.length() == getLength(file))
+								crc = compareContents(file, dest);
+							if (crc == -1) {
+								CheckedInputStream in = new CheckedInputStream(file.getContents(), new CRC32());
+								IStatus status = FileUtil.copyFile(in, destPath);
+								ms.add(status);
+								TomcatVersionHelper.discardServerXml(dest);
+								if (status.isOK())
+									crc = in.getChecksum().getValue();
 							}
+							if (crc != -1)
+								fingerprint = createPublishFingerprint(file, dest, crc);
 						}
-						if (destContents == null || srcContents == null || !srcContents.equals(destContents)) {
-							InputStream in = file.getContents();
-							ms.add(FileUtil.copyFile(in, destPath));
-						}
+						if (fingerprint != null)
+							newFingerprints.setProperty(name, fingerprint);
 					}
 				} catch (Exception e) {
 					Trace.trace(Trace.SEVERE, "backupAndPublish() error", e);
@@ -153,6 +227,161 @@ public abstract class TomcatConfiguration implements ITomcatConfiguration, ITomc
 			}
 			monitor.worked(100);
 		}
+		
+		if (stateDir != null && !newFingerprints.equals(fingerprints))
+			savePublishFingerprints(stateDir, newFingerprints);
+	}
+	
+	private static Properties loadPublishFingerprints(IPath stateDir) {
+		Properties p = new Properties();
+		if (stateDir == null)
+			return p;
+		File file = stateDir.append(PUBLISH_FINGERPRINT_FILE).toFile();
+		if (!file.exists())
+			return p;
+		
+		InputStream in = null;
+		try {
+			in = new FileInputStream(file);
+			p.load(in);
+		} catch (Exception e) {
+			// ignore, all files will be compared
+			if (Trace.isTraceEnabled())
+				Trace.trace(Trace.WARNING, "Could not load configuration publish data", e);
+			p.clear();
+		} finally {
+			try {
+				if (in != null)
+					in.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+		return p;
+	}
+	
+	private static void savePublishFingerprints(IPath stateDir, Properties p) {
+		File file = stateDir.append(PUBLISH_FINGERPRINT_FILE).toFile();
+		OutputStream out = null;
+		try {
+			file.getParentFile().mkdirs();
+			out = new FileOutputStream(file);
+			p.store(out, "Tomcat configuration publish data");
+		} catch (Exception e) {
+			// not fatal, all files will be compared on the next publish
+			Trace.trace(Trace.WARNING, "Could not save configuration publish data", e);
+			file.delete();
+		} finally {
+			try {
+				if (out != null)
+					out.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+	
+	/**
+	 * Returns the fingerprint of a published file. The workspace path is last
+	 * since it may contain the separator.
+	 */
+	private static String createPublishFingerprint(IFile file, File dest, long crc) {
+		return file.getModificationStamp() + "|" + file.getLocalTimeStamp() + "|" + dest.length() + "|"
+			+ dest.lastModified() + "|" + Long.toHexString(crc) + "|" + file.getFullPath();
+	}
+	
+	/**
+	 * Checks whether neither the workspace file nor its published copy have
+	 * changed since the given fingerprint was recorded. Returns the current
+	 * fingerprint if they have not, or <code>null</code> if the file must be
+	 * published. If only the timestamp of the copy has changed, its checksum
+	 * is checked instead.
+	 */
+	private static String checkPublishFingerprint(String fingerprint, IFile file, File dest) {
+		if (fingerprint == null || file.getModificationStamp() == IResource.NULL_STAMP || !dest.exists())
+			return null;
+		
+		String[] s = fingerprint.split("\\|", 6);
+		if (s.length != 6)
+			return null;
+		
+		try {
+			if (Long.parseLong(s[0]) != file.getModificationStamp() || Long.parseLong(s[1]) != file.getLocalTimeStamp()
+					|| !s[5].equals(file.getFullPath().toString()))
+				return null;
+			if (Long.parseLong(s[2]) != dest.length())
+				return null;
+			if (Long.parseLong(s[3]) == dest.lastModified())
+				return fingerprint;
+			
+			long crc = Long.parseLong(s[4], 16);
+			if (getChecksum(dest) != crc)
+				return null;
+			return createPublishFingerprint(file, dest, crc);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+	
+	private static long getLength(IFile file) {
+		IPath path = file.getLocation();
+		if (path == null)
+			return -1;
+		return path.toFile().length();
+	}
+	
+	private static long getChecksum(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buf = new byte[BUFFER_SIZE];
+			int n = in.read(buf);
+			while (n >= 0) {
+				crc.update(buf, 0, n);
+				n = in.read(buf);
+			}
+		} finally {
+			in.close();
+		}
+		return crc.getValue();
+	}
+	
+	/**
+	 * Compares the contents of a workspace file and a file on disk. Returns the
+	 * checksum of the contents if they are the same, or -1 if they differ.
+	 */
+	private static long compareContents(IFile file, File dest) throws CoreException, IOException {
+		CRC32 crc = new CRC32();
+		InputStream in = file.getContents();
+		InputStream in2 = null;
+		try {
+			in2 = new FileInputStream(dest);
+			byte[] buf = new byte[BUFFER_SIZE];
+			byte[] buf2 = new byte[BUFFER_SIZE];
+			int n = in.read(buf);
+			while (n >= 0) {
+				int m = 0;
+				while (m < n) {
+					int r = in2.read(buf2, m, n - m);
+					if (r < 0)
+						return -1;
+					m += r;
+				}
+				for (int i = 0; i < n; i++) {
+					if (buf[i] != buf2[i])
+						return -1;
+				}
+				crc.update(buf, 0, n);
+				n = in.read(buf);
+			}
+			if (in2.read() >= 0)
+				return -1;
+		} finally {
+			in.close();
+			if (in2 != null)
+				in2.close();
+		}
+		return crc.getValue();
 	}
 	
 	protected void backupPath(IPath path, IPath confDir, IPath backup, MultiStatus ms, IProgressMonitor monitor) {
@@ -223,6 +452,30 @@ public abstract class TomcatConfiguration implements ITomcatConfiguration, ITomc
 	 */
 	public abstract ServerPort getMainPort();
 
+	/**
+	 * Returns the port the server listens on for the shutdown command.
+	 * @return the port, or -1 if the server has no shutdown port
+	 */
+	public int getShutdownPort() {
+		Iterator iterator = getServerPorts().iterator();
+		while (iterator.hasNext()) {
+			ServerPort port = (ServerPort) iterator.next();
+			if ("server".equals(port.getId()))
+				return port.getPort();
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the command that shuts down the server when it is written
+	 * to the shutdown port.
+	 * @return the command, or <code>null</code> if the server can't be
+	 *    shut down this way
+	 */
+	public String getShutdownCommand() {
+		return null;
+	}
+
 	/**
 	 * Returns the prefix that is used in front of the
 	 * web module path property. (e.g. "webapps")
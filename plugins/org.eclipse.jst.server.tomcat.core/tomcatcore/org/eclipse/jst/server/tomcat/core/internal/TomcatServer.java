@@ -262,6 +262,13 @@ public class TomcatServer extends ServerDelegate implements ITomcatServer, ITomc
 	public boolean isSecure() {
 		return getAttribute(PROPERTY_SECURE, false);
 	}
+
+	/**
+	 * @see ITomcatServer#isCompressPublishedJars()
+	 */
+	public boolean isCompressPublishedJars() {
+		return getAttribute(PROPERTY_COMPRESS_PUBLISHED_JARS, true);
+	}
 	
 	/**
 	 * @see ITomcatServer#getInstanceDirectory()
@@ -318,6 +325,13 @@ public class TomcatServer extends ServerDelegate implements ITomcatServer, ITomc
 		return true;
 	}
 
+	/**
+	 * @see ITomcatServer#isHotClassReplace()
+	 */
+	public boolean isHotClassReplace() {
+		return getAttribute(PROPERTY_HOT_CLASS_REPLACE, false);
+	}
+
 	
 	/**
 	 * Gets the base directory where the server instance runs.  This
@@ -475,6 +489,13 @@ public class TomcatServer extends ServerDelegate implements ITomcatServer, ITomc
 		setAttribute(PROPERTY_SECURE, b);
 	}
 
+	/**
+	 * @see ITomcatServerWorkingCopy#setCompressPublishedJars(boolean)
+	 */
+	public void setCompressPublishedJars(boolean b) {
+		setAttribute(PROPERTY_COMPRESS_PUBLISHED_JARS, b);
+	}
+
 	/**
 	 * Sets this server to test environment mode.
 	 * 
@@ -524,6 +545,13 @@ public class TomcatServer extends ServerDelegate implements ITomcatServer, ITomc
 		setAttribute(PROPERTY_MODULES_RELOADABLE_BY_DEFAULT, b);
 	}
 
+	/**
+	 * @see ITomcatServerWorkingCopy#setHotClassReplace(boolean)
+	 */
+	public void setHotClassReplace(boolean b) {
+		setAttribute(PROPERTY_HOT_CLASS_REPLACE, b);
+	}
+
 	/**
 	 * @see ServerDelegate#modifyModules(IModule[], IModule[], IProgressMonitor)
 	 */
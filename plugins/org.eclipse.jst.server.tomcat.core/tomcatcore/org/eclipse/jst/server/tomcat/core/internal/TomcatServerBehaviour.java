@@ -14,15 +14,26 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.*;
 import org.eclipse.debug.core.*;
 import org.eclipse.debug.core.model.IProcess;
+import org.eclipse.jdt.debug.core.IJavaDebugTarget;
+import org.eclipse.jdt.debug.core.IJavaHotCodeReplaceListener;
+import org.eclipse.jdt.debug.core.JDIDebugModel;
 import org.eclipse.jdt.launching.IJavaLaunchConfigurationConstants;
 import org.eclipse.jdt.launching.IRuntimeClasspathEntry;
 import org.eclipse.jdt.launching.IVMInstall;
@@ -36,12 +47,28 @@ import org.eclipse.wst.server.core.internal.IModulePublishHelper;
 import org.eclipse.wst.server.core.internal.Server;
 import org.eclipse.wst.server.core.model.*;
 import org.eclipse.wst.server.core.util.PublishHelper;
+import org.eclipse.wst.server.core.util.ServerStartupProber;
 import org.eclipse.wst.server.core.util.SocketUtil;
 /**
  * Generic Tomcat server.
  */
 public class TomcatServerBehaviour extends ServerBehaviourDelegate implements ITomcatServerBehaviour, IModulePublishHelper {
 	private static final String ATTR_STOP = "stop-server";
+
+	// timeout for connecting to and writing to the shutdown port
+	private static final int SHUTDOWN_TIMEOUT = 2000;
+
+	// Tomcat checks for changed context files every 10 seconds by default
+	private static final int REDEPLOY_DELAY = 10000;
+
+	// responses from a context that is being redeployed
+	private static final int[] REDEPLOY_STATUS = new int[] { HttpURLConnection.HTTP_NOT_FOUND, HttpURLConnection.HTTP_UNAVAILABLE };
+
+	// time allowed for each request while waiting for a context to be redeployed
+	private static final int REDEPLOY_POLL_TIMEOUT = 1000;
+
+	// time to wait for a restarted module if the server has no start timeout
+	private static final int RESTART_MODULE_TIMEOUT = 120000;
 	
 	private static final String[] JMX_EXCLUDE_ARGS = new String [] {
 		"-Dcom.sun.management.jmxremote",
@@ -51,8 +78,18 @@ public class TomcatServerBehaviour extends ServerBehaviourDelegate implements IT
 	};
 
 	// the thread used to ping the server to check for startup
-	protected transient PingThread ping = null;
+	protected transient ServerStartupProber ping = null;
 	protected transient IDebugEventSetListener processListener;
+	// listens to hot code replace in the server's debug launch, using
+	// org.eclipse.jdt.debug, which is only needed for hot class replace
+	protected transient IJavaHotCodeReplaceListener hotCodeReplaceListener;
+
+	// time of the last successful hot code replace, or 0 if there has been none
+	private transient volatile long hotCodeReplaceTime;
+
+	// module id to publish path, shared by all module publishes
+	private Properties publishLocations;
+	private volatile boolean publishLocationsChanged;
 
 	/**
 	 * TomcatServerBehaviour.
@@ -192,6 +229,32 @@ public class TomcatServerBehaviour extends ServerBehaviourDelegate implements IT
 			}
 		};
 		DebugPlugin.getDefault().addDebugEventListener(processListener);
+		
+		// track hot code replace, so class changes are only skipped once they have been
+		// replaced, and the server is restarted if hot code replace fails
+		if (ILaunchManager.DEBUG_MODE.equals(getServer().getMode()) && hotCodeReplaceListener == null) {
+			final ILaunch launch = newProcess.getLaunch();
+			hotCodeReplaceTime = 0;
+			hotCodeReplaceListener = new IJavaHotCodeReplaceListener() {
+				public void hotCodeReplaceSucceeded(IJavaDebugTarget target) {
+					if (launch != null && launch.equals(target.getLaunch()))
+						hotCodeReplaceTime = System.currentTimeMillis();
+				}
+
+				public void hotCodeReplaceFailed(IJavaDebugTarget target, DebugException exception) {
+					if (launch != null && launch.equals(target.getLaunch()) && getTomcatServer().isHotClassReplace()) {
+						if (Trace.isTraceEnabled())
+							Trace.trace(Trace.FINER, "Hot code replace failed, server needs to be restarted");
+						setServerRestartState(true);
+					}
+				}
+
+				public void obsoleteMethods(IJavaDebugTarget target) {
+					// do nothing
+				}
+			};
+			JDIDebugModel.addHotCodeReplaceListener(hotCodeReplaceListener);
+		}
 	}
 
 	protected void setServerStarted() {
@@ -207,6 +270,15 @@ public class TomcatServerBehaviour extends ServerBehaviourDelegate implements IT
 			DebugPlugin.getDefault().removeDebugEventListener(processListener);
 			processListener = null;
 		}
+		if (hotCodeReplaceListener != null) {
+			JDIDebugModel.removeHotCodeReplaceListener(hotCodeReplaceListener);
+			hotCodeReplaceListener = null;
+		}
+		hotCodeReplaceTime = 0;
+		// all modules are started fresh with the server
+		IModule[] modules = getServer().getModules();
+		for (int i = 0; i < modules.length; i++)
+			setModuleRestartState(new IModule[] { modules[i] }, false);
 		setServerState(IServer.STATE_STOPPED);
 	}
 
@@ -235,7 +307,8 @@ public class TomcatServerBehaviour extends ServerBehaviourDelegate implements IT
 		if (status != null && !status.isOK())
 			throw new CoreException(status);
 		
-		status = getTomcatConfiguration().backupAndPublish(confDir, !getTomcatServer().isTestEnvironment(), ProgressUtil.getSubMonitorFor(monitor, 400));
+		status = getTomcatConfiguration().backupAndPublish(confDir, !getTomcatServer().isTestEnvironment(), getTempDirectory(),
+				ProgressUtil.getSubMonitorFor(monitor, 400));
 		if (status != null && !status.isOK())
 			throw new CoreException(status);
 		
@@ -380,20 +453,22 @@ public class TomcatServerBehaviour extends ServerBehaviourDelegate implements IT
 			}
 			IPath jarPath = path.append(jarURI);
 			path = jarPath.removeLastSegments(1);
+			IModuleResourceDelta[] delta = null;
 			if (!path.toFile().exists()) {
 				path.toFile().mkdirs();
 			} else {
 				// If file still exists and we are not forcing a new one to be built
 				if (jarPath.toFile().exists() && kind != IServer.PUBLISH_CLEAN && kind != IServer.PUBLISH_FULL) {
 					// avoid changes if no changes to module since last publish
-					IModuleResourceDelta[] delta = getPublishedResourceDelta(module);
+					delta = getPublishedResourceDelta(module);
 					if (delta == null || delta.length == 0)
 						return;
 				}
 			}
 			
+			// update the existing jar with the delta if there is one, otherwise build a new jar
 			IModuleResource[] mr = getResources(module);
-			IStatus[] stat = helper.publishZip(mr, jarPath, monitor);
+			IStatus[] stat = helper.publishZip(mr, delta, jarPath, getTomcatServer().isCompressPublishedJars(), monitor);
 			List<IStatus> status = new ArrayList<IStatus>();
 			PublishOperation2.addArrayToList(status, stat);
 			PublishOperation2.throwException(status);
@@ -441,9 +516,29 @@ public class TomcatServerBehaviour extends ServerBehaviourDelegate implements IT
 		}
 	}
 
+	protected void publishStart(IProgressMonitor monitor) throws CoreException {
+		// share one parsed copy of server.xml for the rest of the publish
+		TomcatVersionHelper.beginPublish(getRuntimeBaseDirectory());
+	}
+
 	protected void publishFinish(IProgressMonitor monitor) throws CoreException {
-		IStatus status;
 		IPath baseDir = getRuntimeBaseDirectory();
+		IStatus status = null;
+		try {
+			status = publishContexts(baseDir, monitor);
+		} finally {
+			flushModulePublishLocations();
+			IStatus saveStatus = TomcatVersionHelper.endPublish(baseDir);
+			// don't hide an exception or error from publishing the contexts
+			if (status != null && status.isOK())
+				status = saveStatus;
+		}
+		if (!status.isOK())
+			throw new CoreException(status);
+	}
+
+	private IStatus publishContexts(IPath baseDir, IProgressMonitor monitor) {
+		IStatus status;
 		TomcatServer ts = getTomcatServer();
 		ITomcatVersionHandler tvh = getTomcatVersionHandler();
 		String serverTypeID = getServer().getServerType().getId();
@@ -470,8 +565,7 @@ public class TomcatServerBehaviour extends ServerBehaviourDelegate implements IT
 				TomcatVersionHelper.moveContextsToSeparateFiles(baseDir, noPath, serverStopped, null);
 			}
 		}
-		if (!status.isOK())
-			throw new CoreException(status);
+		return status;
 	}
 
 	/**
@@ -495,15 +589,22 @@ public class TomcatServerBehaviour extends ServerBehaviourDelegate implements IT
 		//setRestartNeeded(false);
 		TomcatConfiguration configuration = getTomcatConfiguration();
 		
-		// check that ports are free
-		Iterator iterator = configuration.getServerPorts().iterator();
-		List<ServerPort> usedPorts = new ArrayList<ServerPort>();
-		while (iterator.hasNext()) {
-			ServerPort sp = (ServerPort) iterator.next();
-			if (sp.getPort() < 0)
+		// check that ports are free, checking all ports at once
+		List serverPorts = configuration.getServerPorts();
+		int[] ports = new int[serverPorts.size()];
+		for (int i = 0; i < ports.length; i++) {
+			ports[i] = ((ServerPort) serverPorts.get(i)).getPort();
+			if (ports[i] < 0)
 				throw new CoreException(new Status(IStatus.ERROR, TomcatPlugin.PLUGIN_ID, 0, Messages.errorPortInvalid, null));
-			if (SocketUtil.isPortInUse(sp.getPort(), 5)) {
-				usedPorts.add(sp);
+		}
+		int[] portsInUse = SocketUtil.getPortsInUse(ports, 2500);
+		List<ServerPort> usedPorts = new ArrayList<ServerPort>();
+		for (int i = 0; i < ports.length; i++) {
+			for (int j = 0; j < portsInUse.length; j++) {
+				if (ports[i] == portsInUse[j]) {
+					usedPorts.add((ServerPort) serverPorts.get(i));
+					break;
+				}
 			}
 		}
 		if (usedPorts.size() == 1) {
@@ -511,20 +612,18 @@ public class TomcatServerBehaviour extends ServerBehaviourDelegate implements IT
 			throw new CoreException(new Status(IStatus.ERROR, TomcatPlugin.PLUGIN_ID, 0, NLS.bind(Messages.errorPortInUse, new String[] {port.getPort() + "", getServer().getName()}), null));
 		} else if (usedPorts.size() > 1) {
 			String portStr = "";
-			iterator = usedPorts.iterator();
 			boolean first = true;
-			while (iterator.hasNext()) {
+			for (ServerPort sp : usedPorts) {
 				if (!first)
 					portStr += ", ";
 				first = false;
-				ServerPort sp = (ServerPort) iterator.next();
 				portStr += "" + sp.getPort();
 			}
 			throw new CoreException(new Status(IStatus.ERROR, TomcatPlugin.PLUGIN_ID, 0, NLS.bind(Messages.errorPortsInUse, new String[] {portStr, getServer().getName()}), null));
 		}
 		
 		// check that there is only one app for each context root
-		iterator = configuration.getWebModules().iterator();
+		Iterator iterator = configuration.getWebModules().iterator();
 		List<String> contextRoots = new ArrayList<String>();
 		while (iterator.hasNext()) {
 			WebModule module = (WebModule) iterator.next();
@@ -545,7 +644,15 @@ public class TomcatServerBehaviour extends ServerBehaviourDelegate implements IT
 			int port = configuration.getMainPort().getPort();
 			if (port != 80)
 				url += ":" + port;
-			ping = new PingThread(getServer(), url, -1, this);
+			ping = new ServerStartupProber(url, -1, new ServerStartupProber.IProbeListener() {
+				public void serverStarted() {
+					setServerStarted();
+				}
+
+				public void probeTimedOut() {
+					// no timeout
+				}
+			});
 		} catch (Exception e) {
 			Trace.trace(Trace.SEVERE, "Can't ping for Tomcat startup.");
 		}
@@ -575,6 +682,10 @@ public class TomcatServerBehaviour extends ServerBehaviourDelegate implements IT
 				Trace.trace(Trace.FINER, "Stopping Tomcat");
 			if (state != IServer.STATE_STOPPED)
 				setServerState(IServer.STATE_STOPPING);
+			
+			// send the shutdown command directly if possible, instead of launching Tomcat to do it
+			if (sendShutdownCommand())
+				return;
 	
 			ILaunchConfiguration launchConfig = ((Server)getServer()).getLaunchConfiguration(true, null);
 			ILaunchConfigurationWorkingCopy wc = launchConfig.getWorkingCopy();
@@ -595,6 +706,47 @@ public class TomcatServerBehaviour extends ServerBehaviourDelegate implements IT
 		}
 	}
 
+	/**
+	 * Writes the shutdown command to the shutdown port of the server.
+	 * 
+	 * @return <code>true</code> if the command was sent, and <code>false</code>
+	 *    if the server has no shutdown port or the command could not be sent
+	 */
+	protected boolean sendShutdownCommand() {
+		int port = -1;
+		String command = null;
+		try {
+			TomcatConfiguration configuration = getTomcatConfiguration();
+			port = configuration.getShutdownPort();
+			command = configuration.getShutdownCommand();
+		} catch (Exception e) {
+			Trace.trace(Trace.WARNING, "Could not read Tomcat shutdown port", e);
+		}
+		if (port <= 0 || command == null)
+			return false;
+		
+		Socket socket = new Socket();
+		try {
+			socket.connect(new InetSocketAddress("localhost", port), SHUTDOWN_TIMEOUT);
+			socket.setSoTimeout(SHUTDOWN_TIMEOUT);
+			OutputStream out = socket.getOutputStream();
+			out.write(command.getBytes("ISO-8859-1"));
+			out.flush();
+			if (Trace.isTraceEnabled())
+				Trace.trace(Trace.FINER, "Sent shutdown command to port " + port);
+			return true;
+		} catch (IOException e) {
+			Trace.trace(Trace.WARNING, "Could not send shutdown command to port " + port + ", launching Tomcat to stop it", e);
+			return false;
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
 	/**
 	 * Terminates the server.
 	 */
@@ -965,6 +1117,7 @@ public class TomcatServerBehaviour extends ServerBehaviourDelegate implements IT
 		if (getServer().getServerRestartState())
 			return;
 		
+		boolean hotClassReplace = isHotClassReplaceActive();
 		Iterator iterator = getAllModules().iterator();
 		while (iterator.hasNext()) {
 			IModule[] module = (IModule[]) iterator.next();
@@ -973,12 +1126,181 @@ public class TomcatServerBehaviour extends ServerBehaviourDelegate implements IT
 				continue;
 			
 			if (containsNonResourceChange(delta)) {
+				// changed classes have already been replaced in the running server by the debugger
+				if (hotClassReplace && containsOnlyClassChanges(delta)) {
+					if (Trace.isTraceEnabled())
+						Trace.trace(Trace.FINER, "Class changes in " + module[module.length - 1].getName() + " were hot replaced");
+					continue;
+				}
+				// only the web module needs to be restarted if its context can be reloaded
+				IModule[] webModule = new IModule[] { module[0] };
+				if (canRestartModule(webModule)) {
+					setModuleRestartState(webModule, true);
+					continue;
+				}
 				setServerRestartState(true);
 				return;
 			}
 		}
 	}
 
+	/**
+	 * Returns true if the given web module can be restarted on its own. This
+	 * requires the server to be running and its contexts to be published to
+	 * separate context files, which Tomcat redeploys when they change.
+	 * 
+	 * @see ServerBehaviourDelegate#canRestartModule(IModule[])
+	 */
+	public boolean canRestartModule(IModule[] module) {
+		if (module == null || module.length != 1 || getServer().getServerState() != IServer.STATE_STARTED)
+			return false;
+		
+		// the option is off by default, in which case contexts are only in server.xml
+		TomcatServer ts = getTomcatServer();
+		if (ts == null || !ts.isSaveSeparateContextFiles())
+			return false;
+		ITomcatVersionHandler tvh = getTomcatVersionHandler();
+		return tvh != null && tvh.supportsSeparateContextFiles();
+	}
+
+	/**
+	 * Restarts a web module by asking Tomcat to reload its context. The
+	 * other contexts on the server are not affected. The module is starting
+	 * until Tomcat has had time to redeploy the context and the context
+	 * responds to requests.
+	 * 
+	 * @see ServerBehaviourDelegate#restartModule(IModule[], IProgressMonitor)
+	 */
+	public void restartModule(IModule[] module, IProgressMonitor monitor) throws CoreException {
+		if (!canRestartModule(module))
+			return;
+		
+		WebModule webModule = getTomcatConfiguration().getWebModule(module[0]);
+		if (webModule == null)
+			throw new CoreException(new Status(IStatus.ERROR, TomcatPlugin.PLUGIN_ID, 0,
+					NLS.bind(Messages.errorPublishContextNotFound, module[0].getName()), null));
+		
+		setModuleState(module, IServer.STATE_STARTING);
+		IStatus status = TomcatVersionHelper.reloadContext(getRuntimeBaseDirectory(), webModule.getPath());
+		if (!status.isOK()) {
+			// the existing context is still running
+			setModuleState(module, IServer.STATE_STARTED);
+			throw new CoreException(status);
+		}
+		
+		setModuleRestartState(module, false);
+		monitor = ProgressUtil.getMonitorFor(monitor);
+		if (waitForContext(module[0], monitor))
+			setModuleState(module, IServer.STATE_STARTED);
+		else {
+			setModuleState(module, IServer.STATE_UNKNOWN);
+			if (!monitor.isCanceled())
+				throw new CoreException(new Status(IStatus.ERROR, TomcatPlugin.PLUGIN_ID, 0,
+						NLS.bind(Messages.errorRestartModuleTimeout, webModule.getPath()), null));
+		}
+	}
+
+	/**
+	 * Waits until Tomcat has redeployed the context and the context responds
+	 * to requests. Tomcat only notices the changed context file on its next
+	 * background check, so the context is polled until it stops responding,
+	 * which shows that the redeploy has started, or until the check must have
+	 * happened. The context is then probed until it responds with a status
+	 * other than 404 or 503.
+	 * 
+	 * @param module a web module
+	 * @param monitor a progress monitor
+	 * @return true if the context responded, and false if it did not respond
+	 *    within the server's start timeout or the monitor was cancelled
+	 */
+	private boolean waitForContext(IModule module, IProgressMonitor monitor) {
+		int timeout = getServer().getStartTimeout() * 1000;
+		if (timeout <= 0)
+			timeout = RESTART_MODULE_TIMEOUT;
+		try {
+			URL url = getTomcatServer().getModuleRootURL(module);
+			long end = System.currentTimeMillis() + REDEPLOY_DELAY;
+			while (System.currentTimeMillis() < end) {
+				if (monitor.isCanceled() || getServer().getServerState() != IServer.STATE_STARTED)
+					return false;
+				if (url != null && isRedeploying(url))
+					break;
+				Thread.sleep(250);
+			}
+			if (url == null)
+				return true;
+			
+			final boolean[] started = new boolean[1];
+			final CountDownLatch latch = new CountDownLatch(1);
+			ServerStartupProber probe = new ServerStartupProber(url.toExternalForm(), timeout, REDEPLOY_STATUS, new ServerStartupProber.IProbeListener() {
+				public void serverStarted() {
+					started[0] = true;
+					latch.countDown();
+				}
+
+				public void probeTimedOut() {
+					latch.countDown();
+				}
+			});
+			try {
+				while (!latch.await(250, TimeUnit.MILLISECONDS)) {
+					if (monitor.isCanceled() || getServer().getServerState() != IServer.STATE_STARTED)
+						return false;
+				}
+				return started[0];
+			} finally {
+				probe.stop();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (Exception e) {
+			Trace.trace(Trace.WARNING, "Could not check restarted module " + module.getName(), e);
+			return false;
+		}
+	}
+
+	/**
+	 * Returns true if the context at the given URL responds with a status
+	 * that shows it is being redeployed. Failed requests don't show anything.
+	 */
+	private static boolean isRedeploying(URL url) {
+		HttpURLConnection conn = null;
+		try {
+			conn = (HttpURLConnection) url.openConnection();
+			conn.setRequestMethod("HEAD");
+			conn.setInstanceFollowRedirects(false);
+			conn.setUseCaches(false);
+			conn.setConnectTimeout(REDEPLOY_POLL_TIMEOUT);
+			conn.setReadTimeout(REDEPLOY_POLL_TIMEOUT);
+			int status = conn.getResponseCode();
+			for (int i = 0; i < REDEPLOY_STATUS.length; i++) {
+				if (REDEPLOY_STATUS[i] == status)
+					return true;
+			}
+		} catch (Exception e) {
+			// ignore
+		} finally {
+			if (conn != null)
+				conn.disconnect();
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if class changes may have been applied to the running
+	 * server by hot code replace. The server must have been started in debug
+	 * mode, so that the debugger replaces the changed classes when they are
+	 * built. If hot code replace fails, e.g. because a class has changed
+	 * structurally, the server is marked as needing a restart.
+	 * 
+	 * @return true if class changes can be hot replaced
+	 */
+	protected boolean isHotClassReplaceActive() {
+		return getTomcatServer().isHotClassReplace() && hotCodeReplaceListener != null
+			&& getServer().getServerState() == IServer.STATE_STARTED;
+	}
+
 	protected boolean containsNonResourceChange(IModuleResourceDelta[] delta) {
 		int size = delta.length;
 		for (int i = 0; i < size; i++) {
@@ -999,6 +1321,61 @@ public class TomcatServerBehaviour extends ServerBehaviourDelegate implements IT
 		return false;
 	}
 
+	/**
+	 * Returns true if the only changed files under WEB-INF in the given delta
+	 * are existing class files under WEB-INF/classes that have been hot
+	 * replaced, i.e. a hot code replace succeeded after they were written.
+	 * Added or removed classes are not included, since they change the
+	 * structure of the application.
+	 * 
+	 * @param delta a module resource delta
+	 * @return true if the delta only contains hot replaced class files
+	 */
+	protected boolean containsOnlyClassChanges(IModuleResourceDelta[] delta) {
+		int size = delta.length;
+		for (int i = 0; i < size; i++) {
+			IModuleResourceDelta d = delta[i];
+			if ("WEB-INF".equals(d.getModuleResource().getName()) && !containsOnlyChangedClasses(d.getAffectedChildren()))
+				return false;
+		}
+		return true;
+	}
+
+	private boolean containsOnlyChangedClasses(IModuleResourceDelta[] delta) {
+		if (delta == null)
+			return true;
+		int size = delta.length;
+		for (int i = 0; i < size; i++) {
+			IModuleResourceDelta d = delta[i];
+			IModuleResource resource = d.getModuleResource();
+			if (resource instanceof IModuleFile) {
+				if (d.getKind() != IModuleResourceDelta.CHANGED || !resource.getName().endsWith(".class"))
+					return false;
+				IPath path = resource.getModuleRelativePath();
+				if (path.segmentCount() < 2 || !"classes".equals(path.segment(1)))
+					return false;
+				long time = getLastModified((IModuleFile) resource);
+				if (time <= 0 || time > hotCodeReplaceTime)
+					return false;
+			} else if (d.getKind() != IModuleResourceDelta.CHANGED && d.getKind() != IModuleResourceDelta.NO_CHANGE)
+				return false;
+			
+			if (!containsOnlyChangedClasses(d.getAffectedChildren()))
+				return false;
+		}
+		return true;
+	}
+
+	private static long getLastModified(IModuleFile mf) {
+		File file = (File) mf.getAdapter(File.class);
+		if (file != null)
+			return file.lastModified();
+		IFile file2 = (IFile) mf.getAdapter(IFile.class);
+		if (file2 != null)
+			return file2.getLocalTimeStamp();
+		return -1;
+	}
+
 	protected boolean containsNonAddChange(IModuleResourceDelta[] delta) {
 		if (delta == null)
 			return false;
@@ -1135,7 +1512,19 @@ public class TomcatServerBehaviour extends ServerBehaviourDelegate implements IT
 		setModulePublishState(module, state);
 	}
 	
-	public Properties loadModulePublishLocations() {
+	/**
+	 * Returns the module publish locations, mapping module ids to the path that
+	 * the module was published to. The locations are read from disk the first
+	 * time and kept for the life of the behaviour; the returned properties may
+	 * be modified and are safe to use from multiple threads. Call
+	 * {@link #saveModulePublishLocations(Properties)} after modifying them.
+	 * 
+	 * @return the module publish locations
+	 */
+	public synchronized Properties loadModulePublishLocations() {
+		if (publishLocations != null)
+			return publishLocations;
+		
 		Properties p = new Properties();
 		IPath path = getTempDirectory().append("publish.txt");
 		FileInputStream fin = null;
@@ -1151,21 +1540,60 @@ public class TomcatServerBehaviour extends ServerBehaviourDelegate implements IT
 				// ignore
 			}
 		}
+		publishLocations = p;
 		return p;
 	}
 	
+	/**
+	 * Records that the module publish locations have changed. They are
+	 * written to disk when the publish finishes.
+	 * 
+	 * @param p the module publish locations
+	 */
 	public void saveModulePublishLocations(Properties p) {
-		IPath path = getTempDirectory().append("publish.txt");
+		Properties locations = loadModulePublishLocations();
+		if (p != locations) {
+			synchronized (locations) {
+				locations.clear();
+				locations.putAll(p);
+			}
+		}
+		publishLocationsChanged = true;
+	}
+
+	/**
+	 * Writes the module publish locations to disk if they have changed. The
+	 * file is written to a temporary file first and then renamed, so that a
+	 * failure cannot leave a partially written file.
+	 */
+	protected void flushModulePublishLocations() {
+		if (!publishLocationsChanged)
+			return;
+		
+		publishLocationsChanged = false;
+		Properties p = loadModulePublishLocations();
+		File file = getTempDirectory().append("publish.txt").toFile();
+		File temp = getTempDirectory().append("publish.txt.tmp").toFile();
 		FileOutputStream fout = null;
 		try {
-			fout = new FileOutputStream(path.toFile());
+			fout = new FileOutputStream(temp);
 			p.store(fout, "Tomcat publish data");
+			fout.close();
+			fout = null;
+			if (!temp.renameTo(file)) {
+				// can't rename over an existing file on some platforms
+				file.delete();
+				if (!temp.renameTo(file))
+					throw new IOException("Could not rename " + temp + " to " + file);
+			}
 		} catch (Exception e) {
-			// ignore
+			Trace.trace(Trace.WARNING, "Could not save module publish locations", e);
+			publishLocationsChanged = true;
 		}
 		finally {
 			try {
-				fout.close();
+				if (fout != null)
+					fout.close();
 			} catch (Exception ex) {
 				// ignore
 			}
@@ -34,6 +34,7 @@ import java.util.jar.JarFile;
 import javax.xml.parsers.DocumentBuilder;
 
 import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -192,6 +193,129 @@ public class TomcatVersionHelper {
 	}
 
 	
+	/**
+	 * A server.xml document that has been loaded during a publish.
+	 */
+	private static class PublishedServerXml {
+		Factory factory;
+		Server server;
+		// timestamp and size of the file when it was loaded or last saved
+		long lastModified;
+		long length;
+		// true if the document has changes that have not been saved
+		boolean dirty;
+	}
+
+	/**
+	 * server.xml documents for servers that are being published, by path.
+	 * A document is parsed once and shared by the operations of a publish,
+	 * and changes are written back when the publish finishes.
+	 */
+	private static Map<File, PublishedServerXml> publishedServerXml = new ConcurrentHashMap<File, PublishedServerXml>();
+
+	/**
+	 * Starts caching the server.xml found in the specified Catalina instance
+	 * directory. Until {@link #endPublish(IPath)} is called, the publish
+	 * operations in this class share one parsed copy of server.xml and defer
+	 * saving it. The cached copy is discarded if the file is changed by
+	 * anything else, e.g. when the configuration is published over it.
+	 * 
+	 * @param baseDir directory where the Catalina instance is found
+	 */
+	public static void beginPublish(IPath baseDir) {
+		File file = baseDir.append("conf").append("server.xml").toFile();
+		publishedServerXml.put(file, new PublishedServerXml());
+	}
+
+	/**
+	 * Stops caching the server.xml found in the specified Catalina instance
+	 * directory, saving it if it has been modified.
+	 * <p>
+	 * Failures are logged and returned rather than thrown, since this is
+	 * called when a publish finishes, even if it failed.
+	 * </p>
+	 * 
+	 * @param baseDir directory where the Catalina instance is found
+	 * @return result of saving server.xml
+	 */
+	public static IStatus endPublish(IPath baseDir) {
+		File file = baseDir.append("conf").append("server.xml").toFile();
+		PublishedServerXml serverXml = publishedServerXml.remove(file);
+		if (serverXml == null || !serverXml.dirty)
+			return Status.OK_STATUS;
+		
+		// don't overwrite the file if something else has replaced it
+		if (file.lastModified() != serverXml.lastModified || file.length() != serverXml.length) {
+			Trace.trace(Trace.WARNING, "Published server.xml was modified during publish, changes discarded: " + file.getAbsolutePath());
+			return Status.OK_STATUS;
+		}
+		
+		try {
+			serverXml.factory.save(file.getAbsolutePath());
+			if (Trace.isTraceEnabled())
+				Trace.trace(Trace.FINER, "Saved published server.xml: " + file.getAbsolutePath());
+			return Status.OK_STATUS;
+		} catch (Exception e) {
+			Trace.trace(Trace.SEVERE, "Could not save published server.xml: " + file.getAbsolutePath(), e);
+			return new Status(IStatus.ERROR, TomcatPlugin.PLUGIN_ID, 0, NLS.bind(Messages.errorPublishConfiguration, new String[] {e.getLocalizedMessage()}), e);
+		}
+	}
+
+	/**
+	 * Discards the cached copy of a server.xml that has been replaced, in case
+	 * the change cannot be detected from its timestamp and size.
+	 * 
+	 * @param file a server.xml file
+	 */
+	static void discardServerXml(File file) {
+		PublishedServerXml serverXml = publishedServerXml.get(file);
+		if (serverXml != null) {
+			serverXml.server = null;
+			serverXml.factory = null;
+			serverXml.dirty = false;
+		}
+	}
+
+	/**
+	 * Loads the specified server.xml, or returns the cached copy if a publish
+	 * is in progress and the file has not changed since it was loaded.
+	 */
+	private static PublishedServerXml loadServerXml(IPath path) throws IOException, SAXException {
+		File file = path.toFile();
+		PublishedServerXml cached = publishedServerXml.get(file);
+		if (cached != null && cached.server != null) {
+			if (file.lastModified() == cached.lastModified && file.length() == cached.length)
+				return cached;
+			if (cached.dirty)
+				Trace.trace(Trace.WARNING, "Published server.xml was replaced during publish, changes discarded: " + file.getAbsolutePath());
+		}
+		
+		PublishedServerXml serverXml = cached != null ? cached : new PublishedServerXml();
+		serverXml.factory = new Factory();
+		serverXml.factory.setPackageName("org.eclipse.jst.server.tomcat.core.internal.xml.server40");
+		InputStream in = new FileInputStream(file);
+		try {
+			serverXml.server = (Server) serverXml.factory.loadDocument(in);
+		} finally {
+			in.close();
+		}
+		serverXml.lastModified = file.lastModified();
+		serverXml.length = file.length();
+		serverXml.dirty = false;
+		return serverXml;
+	}
+
+	/**
+	 * Saves the specified server.xml, or marks it to be saved when the
+	 * publish finishes if a publish is in progress.
+	 */
+	private static void saveServerXml(IPath path, PublishedServerXml serverXml) throws IOException {
+		if (publishedServerXml.get(path.toFile()) == serverXml)
+			serverXml.dirty = true;
+		else
+			serverXml.factory.save(path.toOSString());
+	}
+
 	/**
 	 * Gets a ServerInstance for the specified server.xml, Service name,
 	 * and Host name.  Returns null if server.xml does not exist
@@ -208,16 +332,23 @@ public class TomcatVersionHelper {
 	 */
 	public static ServerInstance getCatalinaServerInstance(IPath serverXml, String serviceName, String hostName) throws FileNotFoundException, IOException, SAXException {
 		ServerInstance serverInstance = null;
-		Factory factory = new Factory();
-		factory.setPackageName("org.eclipse.jst.server.tomcat.core.internal.xml.server40");
 		File serverFile = serverXml.toFile();
 		if (serverFile.exists()) {
-			Server server = (Server) factory.loadDocument(new FileInputStream(serverFile));
-			serverInstance = new ServerInstance(server, serviceName, hostName);
+			PublishedServerXml published = loadServerXml(serverXml);
+			serverInstance = new ServerInstance(published.server, serviceName, hostName);
 			
 			IPath contextPath = serverInstance.getContextXmlDirectory(serverXml.removeLastSegments(1));
 			File contextDir = contextPath.toFile();
 			if (contextDir.exists()) {
+				// separate contexts are added to the document, so don't modify the shared copy
+				Factory factory = published.factory;
+				if (publishedServerXml.get(serverFile) == published) {
+					factory = new Factory();
+					factory.setPackageName("org.eclipse.jst.server.tomcat.core.internal.xml.server40");
+					Server server = (Server) factory.copyDocument(published.factory.getDocument());
+					serverInstance = new ServerInstance(server, serviceName, hostName);
+				}
+				
 				Map<File, Context> projectContexts = new HashMap<File, Context>();
 				loadSeparateContextFiles(contextPath.toFile(), factory, projectContexts);
 				
@@ -501,10 +632,8 @@ public class TomcatVersionHelper {
 			monitor.beginTask(Messages.publishConfigurationTask, 300);
 
 			monitor.subTask(Messages.publishContextConfigTask);
-			Factory factory = new Factory();
-			factory.setPackageName("org.eclipse.jst.server.tomcat.core.internal.xml.server40");
-			Server publishedServer = (Server) factory.loadDocument(new FileInputStream(confDir.append("server.xml").toFile()));
-			ServerInstance publishedInstance = new ServerInstance(publishedServer, null, null);
+			PublishedServerXml serverXml = loadServerXml(confDir.append("server.xml"));
+			ServerInstance publishedInstance = new ServerInstance(serverXml.server, null, null);
 			monitor.worked(100);
 			
 			boolean modified = false;
@@ -524,7 +653,7 @@ public class TomcatVersionHelper {
 			monitor.worked(100);
 			if (modified) {
 				monitor.subTask(Messages.savingContextConfigTask);
-				factory.save(confDir.append("server.xml").toOSString());
+				saveServerXml(confDir.append("server.xml"), serverXml);
 			}
 			
 			// If problem(s) occurred adding context configurations, return error status
@@ -624,7 +753,9 @@ public class TomcatVersionHelper {
 	/**
 	 * If modules are not being deployed to the "webapps" directory, the
 	 * context for the published modules is updated to contain the
-	 * corrected docBase.
+	 * corrected docBase. While class changes are hot replaced, the contexts
+	 * of published modules are not reloadable, since reloading a context
+	 * would discard the replaced classes.
 	 * 
 	 * @param baseDir runtime base directory for the server
 	 * @param deployDir deployment directory for the server
@@ -639,12 +770,9 @@ public class TomcatVersionHelper {
 			monitor = ProgressUtil.getMonitorFor(monitor);
 			monitor.beginTask(Messages.publishConfigurationTask, 300);
 
-			IPath serverXml = baseDir.append("conf/server.xml");
-			Factory factory = new Factory();
-			factory.setPackageName("org.eclipse.jst.server.tomcat.core.internal.xml.server40");
-			Server publishedServer = (Server)factory.loadDocument(
-					new FileInputStream(serverXml.toFile()));
-			ServerInstance publishedInstance = new ServerInstance(publishedServer, null, null);
+			IPath serverXml = baseDir.append("conf").append("server.xml");
+			PublishedServerXml published = loadServerXml(serverXml);
+			ServerInstance publishedInstance = new ServerInstance(published.server, null, null);
 			monitor.worked(100);
 
 			if (monitor.isCanceled())
@@ -660,6 +788,7 @@ public class TomcatVersionHelper {
 			boolean deployingToAppBase = "webapps".equals(server.getDeployDirectory());
 			
 			Map<String, String> pathMap = new HashMap<String, String>();
+			Map<String, String> reloadableMap = getReloadableSettings(server);
 			
 			MultiStatus ms = new MultiStatus(TomcatPlugin.PLUGIN_ID, 0, 
 					NLS.bind(Messages.errorPublishServer, server.getServer().getName()), null);
@@ -708,13 +837,20 @@ public class TomcatVersionHelper {
 					}
 
 					// If not deploying to appBase, convert to absolute path under deploy dir
+					String source = context.getSource();
 					if (!deployingToAppBase) {
-						String source = context.getSource();
 						if (source != null && source.length() > 0 )	{
 							context.setDocBase(deployDir.append(context.getDocBase()).toOSString());
 							modified = true;
 						}
 					}
+
+					// Apply or remove the hot class replace override of reloadable
+					String reloadable = source == null ? null : reloadableMap.get(source);
+					if (reloadable != null && !reloadable.equals(context.getReloadable())) {
+						context.setReloadable(reloadable);
+						modified = true;
+					}
 				}
 			}
 			// If errors are present, return status
@@ -736,7 +872,7 @@ public class TomcatVersionHelper {
 			
 			if (modified) {
 				monitor.subTask(Messages.savingContextConfigTask);
-				factory.save(serverXml.toOSString());
+				saveServerXml(serverXml, published);
 			}
 			monitor.worked(100);
 			if (Trace.isTraceEnabled())
@@ -752,6 +888,24 @@ public class TomcatVersionHelper {
 		return Status.OK_STATUS;
 	}
 	
+	/**
+	 * Returns the reloadable setting to publish for each web module of the
+	 * server, by memento. No module is reloadable while class changes are hot
+	 * replaced.
+	 */
+	private static Map<String, String> getReloadableSettings(TomcatServer server) throws CoreException {
+		Map<String, String> map = new HashMap<String, String>();
+		boolean hotClassReplace = server.isHotClassReplace();
+		List modules = server.getTomcatConfiguration().getWebModules();
+		int size = modules.size();
+		for (int i = 0; i < size; i++) {
+			WebModule module = (WebModule) modules.get(i);
+			if (module.getMemento() != null)
+				map.put(module.getMemento(), !hotClassReplace && module.isReloadable() ? "true" : "false");
+		}
+		return map;
+	}
+
 	/**
 	 * Copies the custom loader jar required to serve projects without
 	 * publishing to the specified destination directory.
@@ -909,10 +1063,8 @@ public class TomcatVersionHelper {
 			monitor.beginTask(Messages.publishConfigurationTask, 300);
 
 			monitor.subTask(Messages.publishContextConfigTask);
-			Factory factory = new Factory();
-			factory.setPackageName("org.eclipse.jst.server.tomcat.core.internal.xml.server40");
-			Server publishedServer = (Server) factory.loadDocument(new FileInputStream(serverXml.toFile()));
-			ServerInstance publishedInstance = new ServerInstance(publishedServer, null, null);
+			PublishedServerXml published = loadServerXml(serverXml);
+			ServerInstance publishedInstance = new ServerInstance(published.server, null, null);
 			monitor.worked(100);
 
 			boolean modified = false;
@@ -940,7 +1092,7 @@ public class TomcatVersionHelper {
 
 			if (modified) {
 				monitor.subTask(Messages.savingContextConfigTask);
-				factory.save(serverXml.toOSString());
+				saveServerXml(serverXml, published);
 			}
 			monitor.worked(100);
 			if (Trace.isTraceEnabled())
@@ -973,10 +1125,8 @@ public class TomcatVersionHelper {
 			monitor.beginTask(Messages.publishConfigurationTask, 300);
 
 			monitor.subTask(Messages.publishContextConfigTask);
-			Factory factory = new Factory();
-			factory.setPackageName("org.eclipse.jst.server.tomcat.core.internal.xml.server40");
-			Server publishedServer = (Server) factory.loadDocument(new FileInputStream(serverXml.toFile()));
-			ServerInstance publishedInstance = new ServerInstance(publishedServer, null, null);
+			PublishedServerXml published = loadServerXml(serverXml);
+			ServerInstance publishedInstance = new ServerInstance(published.server, null, null);
 			monitor.worked(100);
 
 			boolean modified = false;
@@ -1035,7 +1185,7 @@ public class TomcatVersionHelper {
 			monitor.worked(100);
 			if (modified) {
 				monitor.subTask(Messages.savingContextConfigTask);
-				factory.save(serverXml.toOSString());
+				saveServerXml(serverXml, published);
 			}
 			monitor.worked(100);
 			if (Trace.isTraceEnabled())
@@ -1050,6 +1200,58 @@ public class TomcatVersionHelper {
 		return Status.OK_STATUS;
 	}
 	
+	/**
+	 * Asks a running Catalina server to reload a single context. The context
+	 * must have been published to a separate context XML file. Touching that
+	 * file causes the Host's deployer to redeploy the context the next time
+	 * it checks for changes, without affecting the other contexts.
+	 * 
+	 * @param baseDir directory where the Catalina instance is found
+	 * @param contextPath path of the context to reload
+	 * @return result of operation
+	 */
+	public static IStatus reloadContext(IPath baseDir, String contextPath) {
+		IPath serverXml = baseDir.append("conf").append("server.xml");
+		try {
+			PublishedServerXml published = loadServerXml(serverXml);
+			ServerInstance publishedInstance = new ServerInstance(published.server, null, null);
+			Host host = publishedInstance.getHost();
+			if (host == null)
+				return publishedInstance.getStatus();
+			
+			// the deployer only checks for changes if auto deploy is enabled, which is the default
+			if ("false".equalsIgnoreCase(host.getAttributeValue("autoDeploy")))
+				return new Status(IStatus.ERROR, TomcatPlugin.PLUGIN_ID, 0,
+						NLS.bind(Messages.errorReloadContextAutoDeploy, contextPath, host.getName()), null);
+			
+			// same file name as used by moveContextsToSeparateFiles()
+			String name = contextPath;
+			if (name.startsWith("/"))
+				name = name.substring(1);
+			if (name.length() == 0)
+				name = "ROOT";
+			name = name.replace('/', '#');
+			
+			IPath contextDir = publishedInstance.getContextXmlDirectory(serverXml.removeLastSegments(1));
+			File contextFile = contextDir.append(name + ".xml").toFile();
+			if (!contextFile.exists())
+				return new Status(IStatus.ERROR, TomcatPlugin.PLUGIN_ID, 0,
+						NLS.bind(Messages.errorReloadContextFileNotFound, contextPath, contextFile.getAbsolutePath()), null);
+			
+			// make sure the timestamp changes, even on file systems with coarse timestamps
+			long time = Math.max(System.currentTimeMillis(), contextFile.lastModified() + 1000);
+			if (!contextFile.setLastModified(time))
+				throw new IOException("Could not update " + contextFile.getAbsolutePath());
+			if (Trace.isTraceEnabled())
+				Trace.trace(Trace.FINER, "Requested reload of context " + contextPath);
+			return Status.OK_STATUS;
+		} catch (Exception e) {
+			Trace.trace(Trace.WARNING, "Could not reload context " + contextPath, e);
+			return new Status(IStatus.ERROR, TomcatPlugin.PLUGIN_ID, 0,
+					NLS.bind(Messages.errorReloadContext, contextPath, e.getLocalizedMessage()), e);
+		}
+	}
+	
 	private static void loadSeparateContextFiles(File contextDir, Factory factory, Map<File, Context> projectContexts) {
 		File[] contextFiles = contextDir.listFiles(new FilenameFilter() {
 			public boolean accept(File dir, String name) {
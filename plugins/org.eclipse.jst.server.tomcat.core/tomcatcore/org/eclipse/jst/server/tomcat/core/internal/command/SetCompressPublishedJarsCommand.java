@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jst.server.tomcat.core.internal.command;
+
+import org.eclipse.jst.server.tomcat.core.internal.ITomcatServerWorkingCopy;
+import org.eclipse.jst.server.tomcat.core.internal.Messages;
+/**
+ * Command to change whether the entries of published jars are compressed.
+ */
+public class SetCompressPublishedJarsCommand extends ServerCommand {
+	protected boolean compress;
+	protected boolean oldCompress;
+
+	/**
+	 * SetCompressPublishedJarsCommand constructor comment.
+	 *
+	 * @param server a Tomcat server
+	 * @param compress <code>true</code> to compress the entries of jars
+	 * published to the server, or <code>false</code> to store them
+	 */
+	public SetCompressPublishedJarsCommand(ITomcatServerWorkingCopy server, boolean compress) {
+		super(server, Messages.serverEditorActionSetCompressPublishedJars);
+		this.compress = compress;
+	}
+
+	/**
+	 * Execute the command.
+	 */
+	public void execute() {
+		oldCompress = server.isCompressPublishedJars();
+		server.setCompressPublishedJars(compress);
+	}
+
+	/**
+	 * Undo the command.
+	 */
+	public void undo() {
+		server.setCompressPublishedJars(oldCompress);
+	}
+}
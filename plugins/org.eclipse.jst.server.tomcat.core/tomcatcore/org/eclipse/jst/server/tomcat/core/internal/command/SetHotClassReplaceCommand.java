@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jst.server.tomcat.core.internal.command;
+
+import org.eclipse.jst.server.tomcat.core.internal.ITomcatServerWorkingCopy;
+import org.eclipse.jst.server.tomcat.core.internal.Messages;
+/**
+ * Command to enable or disable applying class changes by hot code replace.
+ */
+public class SetHotClassReplaceCommand extends ServerCommand {
+	protected boolean hcr;
+	protected boolean oldHcr;
+
+	/**
+	 * SetHotClassReplaceCommand constructor comment.
+	 *
+	 * @param server a Tomcat server
+	 * @param hcr <code>true</code> to apply class changes to a server
+	 * running in debug mode by hot code replace instead of restarting it.
+	 */
+	public SetHotClassReplaceCommand(ITomcatServerWorkingCopy server, boolean hcr) {
+		super(server, Messages.serverEditorActionSetHotClassReplace);
+		this.hcr = hcr;
+	}
+
+	/**
+	 * Execute the command.
+	 */
+	public void execute() {
+		oldHcr = server.isHotClassReplace();
+		server.setHotClassReplace(hcr);
+	}
+
+	/**
+	 * Undo the command.
+	 */
+	public void undo() {
+		server.setHotClassReplace(oldHcr);
+	}
+}
@@ -94,6 +94,18 @@ public class Factory {
 		}
 	}
 
+	/**
+	 * Loads a copy of the given document, so that it can be modified
+	 * without changing the original.
+	 * 
+	 * @param d a document
+	 * @return the root element of the copy
+	 */
+	public XMLElement copyDocument(Document d) {
+		document = (Document) d.cloneNode(true);
+		return newInstance(document.getDocumentElement());
+	}
+
 	protected XMLElement newInstance(Element element) {
 		String s = element.getNodeName();
 		try {
@@ -26,7 +26,14 @@ import org.xml.sax.SAXException;
  * Utility class to create and read XML documents.
  */
 public class XMLUtil {
-	private static DocumentBuilder documentBuilder;
+	// DocumentBuilders are not thread-safe, so each thread has its own
+	private static final ThreadLocal<DocumentBuilder> documentBuilder = new ThreadLocal<DocumentBuilder>() {
+		protected DocumentBuilder initialValue() {
+			return createDocumentBuilder();
+		}
+	};
+
+	private static final int BUFFER_SIZE = 8192;
 
 	/**
 	 * XMLUtil constructor comment.
@@ -35,32 +42,46 @@ public class XMLUtil {
 		super();
 	}
 	
+	/**
+	 * Returns a document builder for the current thread. The builder must not
+	 * be shared with other threads.
+	 * 
+	 * @return a document builder, or <code>null</code> if one could not be created
+	 */
 	public static DocumentBuilder getDocumentBuilder() {
-		if (documentBuilder == null)
+		DocumentBuilder builder = documentBuilder.get();
+		if (builder == null) {
+			// try again next time
+			documentBuilder.remove();
+		}
+		return builder;
+	}
+
+	private static DocumentBuilder createDocumentBuilder() {
+		try {
+			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			factory.setValidating(false);
+			factory.setNamespaceAware(false);
+			factory.setExpandEntityReferences(false);
+			// In case we happen to have a Xerces parser, try to set the feature that allows Java encodings to be used
 			try {
-				DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-				factory.setValidating(false);
-				factory.setNamespaceAware(false);
-				factory.setExpandEntityReferences(false);
-				// In case we happen to have a Xerces parser, try to set the feature that allows Java encodings to be used
-				try {
-					factory.setFeature("http://apache.org/xml/features/allow-java-encodings", true);
-				}
-				catch (ParserConfigurationException e) {
-					// Ignore if feature isn't supported
-				}
-				//factory.setAttribute("http://apache.org/xml/features/nonvalidating/load-external-dtd", new Boolean(false));
-				documentBuilder = factory.newDocumentBuilder();
-				documentBuilder.setEntityResolver(new EntityResolver() {
-					public InputSource resolveEntity(String publicId, String systemId) throws SAXException, IOException {
-						return new InputSource(new ByteArrayInputStream(new byte[0]));
-					}
-				});
-			} catch (Exception e) {
-				Trace.trace(Trace.SEVERE, "Rrror creating document builder");
+				factory.setFeature("http://apache.org/xml/features/allow-java-encodings", true);
 			}
-
-		return documentBuilder;
+			catch (ParserConfigurationException e) {
+				// Ignore if feature isn't supported
+			}
+			//factory.setAttribute("http://apache.org/xml/features/nonvalidating/load-external-dtd", new Boolean(false));
+			DocumentBuilder builder = factory.newDocumentBuilder();
+			builder.setEntityResolver(new EntityResolver() {
+				public InputSource resolveEntity(String publicId, String systemId) throws SAXException, IOException {
+					return new InputSource(new ByteArrayInputStream(new byte[0]));
+				}
+			});
+			return builder;
+		} catch (Exception e) {
+			Trace.trace(Trace.SEVERE, "Error creating document builder");
+			return null;
+		}
 	}
 
 	/**
@@ -117,20 +138,9 @@ public class XMLUtil {
 	}
 
 	public static byte[] getContents(Document document) throws IOException {
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
-		try {
-			print(new PrintStream(out, true, "UTF-8"), document);
-			return out.toByteArray();
-		} catch (Exception ex) {
-			throw new IOException(ex.getLocalizedMessage());
-		} finally {
-			if (out != null)
-				try {
-					out.close();
-				} catch (Exception e) {
-					// ignore
-				}
-		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+		write(out, document);
+		return out.toByteArray();
 	}
 
 	protected static String getDocumentTypeData(DocumentType doctype) {
@@ -200,173 +210,36 @@ public class XMLUtil {
 		node.appendChild(doc.createCDATASection(text));
 	}
 
-	protected static String normalize(String s) {
-		StringBuffer stringbuffer = new StringBuffer();
-		int i = s == null ? 0 : s.length();
-		for (int j = 0; j < i; j++) {
-			char c = s.charAt(j);
-			switch (c) {
-				case 60 : /* '<' */
-					stringbuffer.append("&lt;");
-					break;
-	
-				case 62 : /* '>' */
-					stringbuffer.append("&gt;");
-					break;
-	
-				case 38 : /* '&' */
-					stringbuffer.append("&amp;");
-					break;
-	
-				case 34 : /* '"' */
-					stringbuffer.append("&quot;");
-					break;
-	
-				case 10 : /* '\n' */
-				case 13 : /* '\r' */
-				default :
-					stringbuffer.append(c);
-					break;
-	
-			}
-		}
-	
-		return stringbuffer.toString();
-	}
-
-	protected static void print(PrintStream out, Node node) {
-		if (node == null)
-			return;
-		short type = node.getNodeType();
-		switch (type) {
-			case Node.DOCUMENT_NODE: {
-				out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
-				//out.println("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n");
-				NodeList nodelist = node.getChildNodes();
-				int size = nodelist.getLength();
-				for (int i = 0; i < size; i++)
-					print(out, nodelist.item(i));
-				break;
-			}
-	
-			case Node.DOCUMENT_TYPE_NODE: {
-				DocumentType docType = (DocumentType) node;
-				out.print("<!DOCTYPE " + getDocumentTypeData(docType) + ">\n");
-				break;
-			}
-	
-			case Node.ELEMENT_NODE: {
-				out.print('<');
-				out.print(node.getNodeName());
-				NamedNodeMap map = node.getAttributes();
-				if (map != null) {
-					int size = map.getLength();
-					for (int i = 0; i < size; i++) {
-						Attr attr = (Attr) map.item(i);
-						out.print(' ');
-						out.print(attr.getNodeName());
-						out.print("=\"");
-						out.print(normalize(attr.getNodeValue()));
-						out.print('"');
-					}
-				}
-	
-				if (!node.hasChildNodes())
-					out.print("/>");
-				else {
-					out.print('>');
-					NodeList nodelist = node.getChildNodes();
-					int numChildren = nodelist.getLength();
-					for (int i = 0; i < numChildren; i++)
-						print(out, nodelist.item(i));
-	
-					out.print("</");
-					out.print(node.getNodeName());
-					out.print('>');
-				}
-				break;
-			}
-	
-			case Node.ENTITY_REFERENCE_NODE: {
-				NodeList nodelist = node.getChildNodes();
-				if (nodelist != null) {
-					int size = nodelist.getLength();
-					for (int i = 0; i < size; i++)
-						print(out, nodelist.item(i));
-	
-				}
-				break;
-			}
-	
-			case Node.CDATA_SECTION_NODE: {
-				out.print(normalize(node.getNodeValue()));
-				break;
-			}
-	
-			case Node.TEXT_NODE: {
-				out.print(normalize(node.getNodeValue()));
-				break;
-			}
-	
-			case Node.PROCESSING_INSTRUCTION_NODE: {
-				out.print("<?");
-				out.print(node.getNodeName());
-				String s = node.getNodeValue();
-				if (s != null && s.length() > 0) {
-					out.print(' ');
-					out.print(s);
-				}
-				out.print("?>");
-				break;
-			}
-	
-			case Node.COMMENT_NODE: {
-				out.print("<!--");
-				out.print(node.getNodeValue());
-				out.print("-->");
-				break;
-			}
-	
-			default: {
-				out.print(normalize(node.getNodeValue()));
-				break;
-			}
-		}
-		out.flush();
-	}
-
 	public static void save(String filename, Document document) throws IOException {
-		PrintStream out = null;
-		try {
-			out = new PrintStream(new BufferedOutputStream(new FileOutputStream(filename)), true, "UTF-8");
-			//traceNode(document, "");
-			print(out, document);
-		} catch (Exception ex) {
-			throw new IOException(ex.getLocalizedMessage());
-		} finally {
-			if (out != null)
-				try {
-					out.close();
-				} catch (Exception e) {
-					// ignore
-				}
-		}
+		save(filename, (Node) document);
 	}
 
 	public static void save(String filename, Node node) throws IOException {
-		PrintStream out = null;
+		write(new FileOutputStream(filename), node);
+	}
+
+	/**
+	 * Write the given node to a stream as UTF-8, and close the stream.
+	 */
+	private static void write(OutputStream os, Node node) throws IOException {
+		Writer out = null;
 		try {
-			out = new PrintStream(new BufferedOutputStream(new FileOutputStream(filename)), true, "UTF-8");
-			print(out, node);
+			out = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"), BUFFER_SIZE);
+			new XMLWriter(out).write(node);
+			out.flush();
+		} catch (IOException ex) {
+			throw ex;
 		} catch (Exception ex) {
 			throw new IOException(ex.getLocalizedMessage());
 		} finally {
-			if (out != null)
-				try {
+			try {
+				if (out != null)
 					out.close();
-				} catch (Exception e) {
-					// ignore
-				}
+				else
+					os.close();
+			} catch (Exception e) {
+				// ignore
+			}
 		}
 	}
 
@@ -394,21 +267,12 @@ public class XMLUtil {
 	}
 
 	public static String toString(Document document) {
-		PrintStream out = null;
 		try {
-			ByteArrayOutputStream baos = new ByteArrayOutputStream(2048);
-			out = new PrintStream(baos);
-			print(out, document);
-			return new String(baos.toByteArray(), "UTF-8");
+			StringWriter out = new StringWriter(2048);
+			new XMLWriter(out).write(document);
+			return out.toString();
 		} catch (Exception ex) {
 			// ignore
-		} finally {
-			if (out != null)
-				try {
-					out.close();
-				} catch (Exception e) {
-					// ignore
-				}
 		}
 		return null;
 	}
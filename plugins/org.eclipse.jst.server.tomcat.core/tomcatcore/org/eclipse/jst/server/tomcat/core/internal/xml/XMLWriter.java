@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jst.server.tomcat.core.internal.xml;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.w3c.dom.*;
+/**
+ * Writes DOM nodes as XML to a character stream. Nodes are written as the
+ * tree is walked, and text is escaped directly into the stream, so no copy
+ * of the document is built in memory. The stream should be buffered; it is
+ * not flushed or closed by this class.
+ */
+public class XMLWriter {
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+	private Writer out;
+
+	/**
+	 * Create a new writer on the given character stream.
+	 *
+	 * @param out a character stream, which should be buffered
+	 */
+	public XMLWriter(Writer out) {
+		this.out = out;
+	}
+
+	/**
+	 * Write the given node and its children. Documents are written with
+	 * an XML declaration for the UTF-8 encoding.
+	 *
+	 * @param node a node, or <code>null</code> to write nothing
+	 * @throws IOException if the stream cannot be written
+	 */
+	public void write(Node node) throws IOException {
+		if (node == null)
+			return;
+
+		switch (node.getNodeType()) {
+			case Node.DOCUMENT_NODE: {
+				out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+				out.write(LINE_SEPARATOR);
+				writeChildren(node);
+				break;
+			}
+
+			case Node.DOCUMENT_TYPE_NODE: {
+				out.write("<!DOCTYPE ");
+				out.write(XMLUtil.getDocumentTypeData((DocumentType) node));
+				out.write(">\n");
+				break;
+			}
+
+			case Node.ELEMENT_NODE: {
+				out.write('<');
+				out.write(node.getNodeName());
+				NamedNodeMap map = node.getAttributes();
+				if (map != null) {
+					int size = map.getLength();
+					for (int i = 0; i < size; i++) {
+						Node attr = map.item(i);
+						out.write(' ');
+						out.write(attr.getNodeName());
+						out.write("=\"");
+						writeEscaped(attr.getNodeValue());
+						out.write('"');
+					}
+				}
+
+				if (!node.hasChildNodes())
+					out.write("/>");
+				else {
+					out.write('>');
+					writeChildren(node);
+					out.write("</");
+					out.write(node.getNodeName());
+					out.write('>');
+				}
+				break;
+			}
+
+			case Node.ENTITY_REFERENCE_NODE: {
+				writeChildren(node);
+				break;
+			}
+
+			case Node.PROCESSING_INSTRUCTION_NODE: {
+				out.write("<?");
+				out.write(node.getNodeName());
+				String s = node.getNodeValue();
+				if (s != null && s.length() > 0) {
+					out.write(' ');
+					out.write(s);
+				}
+				out.write("?>");
+				break;
+			}
+
+			case Node.COMMENT_NODE: {
+				out.write("<!--");
+				out.write(String.valueOf(node.getNodeValue()));
+				out.write("-->");
+				break;
+			}
+
+			default: {
+				// text and CDATA sections are written as escaped text
+				writeEscaped(node.getNodeValue());
+				break;
+			}
+		}
+	}
+
+	private void writeChildren(Node node) throws IOException {
+		Node child = node.getFirstChild();
+		while (child != null) {
+			write(child);
+			child = child.getNextSibling();
+		}
+	}
+
+	/**
+	 * Write text, replacing the characters that are not allowed in attribute
+	 * values or text with entity references.
+	 */
+	private void writeEscaped(String s) throws IOException {
+		if (s == null)
+			return;
+
+		int start = 0;
+		int length = s.length();
+		for (int i = 0; i < length; i++) {
+			String entity;
+			switch (s.charAt(i)) {
+				case '<':
+					entity = "&lt;";
+					break;
+				case '>':
+					entity = "&gt;";
+					break;
+				case '&':
+					entity = "&amp;";
+					break;
+				case '"':
+					entity = "&quot;";
+					break;
+				default:
+					continue;
+			}
+			if (i > start)
+				out.write(s, start, i - start);
+			out.write(entity);
+			start = i + 1;
+		}
+		if (length > start)
+			out.write(s, start, length - start);
+	}
+}
@@ -73,6 +73,8 @@ public class Messages extends NLS {
 	public static String serverEditorNoPublish;
 	public static String serverEditorSeparateContextFiles;
 	public static String serverEditorReloadableByDefault;
+	public static String serverEditorHotClassReplace;
+	public static String serverEditorCompressPublishedJars;
 	public static String serverEditorSecure;
 	public static String serverEditorDebugMode;
 	public static String serverEditorNotSupported;
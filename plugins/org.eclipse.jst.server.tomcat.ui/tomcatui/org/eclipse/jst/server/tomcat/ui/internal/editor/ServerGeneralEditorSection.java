@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2012 IBM Corporation and others.
+ * Copyright (c) 2003, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,7 +18,9 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.jst.server.tomcat.core.internal.ITomcatServer;
 import org.eclipse.jst.server.tomcat.core.internal.ITomcatVersionHandler;
 import org.eclipse.jst.server.tomcat.core.internal.TomcatServer;
+import org.eclipse.jst.server.tomcat.core.internal.command.SetCompressPublishedJarsCommand;
 import org.eclipse.jst.server.tomcat.core.internal.command.SetDebugModeCommand;
+import org.eclipse.jst.server.tomcat.core.internal.command.SetHotClassReplaceCommand;
 import org.eclipse.jst.server.tomcat.core.internal.command.SetModulesReloadableByDefaultCommand;
 import org.eclipse.jst.server.tomcat.core.internal.command.SetSecureCommand;
 import org.eclipse.jst.server.tomcat.core.internal.command.SetSaveSeparateContextFilesCommand;
@@ -54,6 +56,8 @@ public class ServerGeneralEditorSection extends ServerEditorSection {
 	protected Button noPublish;
 	protected Button separateContextFiles;
 	protected Button reloadableByDefault;
+	protected Button hotClassReplace;
+	protected Button compressPublishedJars;
 	protected boolean updating;
 
 	protected PropertyChangeListener listener;
@@ -96,6 +100,12 @@ public class ServerGeneralEditorSection extends ServerEditorSection {
 				} else if (ITomcatServer.PROPERTY_MODULES_RELOADABLE_BY_DEFAULT.equals(event.getPropertyName())) {
 					Boolean b = (Boolean) event.getNewValue();
 					ServerGeneralEditorSection.this.reloadableByDefault.setSelection(b.booleanValue());
+				} else if (ITomcatServer.PROPERTY_HOT_CLASS_REPLACE.equals(event.getPropertyName())) {
+					Boolean b = (Boolean) event.getNewValue();
+					ServerGeneralEditorSection.this.hotClassReplace.setSelection(b.booleanValue());
+				} else if (ITomcatServer.PROPERTY_COMPRESS_PUBLISHED_JARS.equals(event.getPropertyName())) {
+					Boolean b = (Boolean) event.getNewValue();
+					ServerGeneralEditorSection.this.compressPublishedJars.setSelection(b.booleanValue());
 				}
 				updating = false;
 			}
@@ -187,6 +197,36 @@ public class ServerGeneralEditorSection extends ServerEditorSection {
 		// TODO Address help
 //		whs.setHelp(reloadableByDefault, ContextIds.SERVER_EDITOR_SECURE);
 		
+		// hot replace class changes when debugging
+		hotClassReplace = toolkit.createButton(composite, NLS.bind(Messages.serverEditorHotClassReplace, ""), SWT.CHECK);
+		data = new GridData(GridData.HORIZONTAL_ALIGN_FILL);
+		data.horizontalSpan = 3;
+		hotClassReplace.setLayoutData(data);
+		hotClassReplace.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent se) {
+				if (updating)
+					return;
+				updating = true;
+				execute(new SetHotClassReplaceCommand(tomcatServer, hotClassReplace.getSelection()));
+				updating = false;
+			}
+		});
+		
+		// compress published jars
+		compressPublishedJars = toolkit.createButton(composite, Messages.serverEditorCompressPublishedJars, SWT.CHECK);
+		data = new GridData(GridData.HORIZONTAL_ALIGN_FILL);
+		data.horizontalSpan = 3;
+		compressPublishedJars.setLayoutData(data);
+		compressPublishedJars.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent se) {
+				if (updating)
+					return;
+				updating = true;
+				execute(new SetCompressPublishedJarsCommand(tomcatServer, compressPublishedJars.getSelection()));
+				updating = false;
+			}
+		});
+		
 		// security
 		secure = toolkit.createButton(composite, Messages.serverEditorSecure, SWT.CHECK);
 		data = new GridData(GridData.HORIZONTAL_ALIGN_FILL);
@@ -282,6 +322,13 @@ public class ServerGeneralEditorSection extends ServerEditorSection {
 		else
 			reloadableByDefault.setEnabled(true);
 
+		hotClassReplace.setText(NLS.bind(Messages.serverEditorHotClassReplace, ""));
+		hotClassReplace.setSelection(tomcatServer.isHotClassReplace());
+		hotClassReplace.setEnabled(!readOnly);
+
+		compressPublishedJars.setSelection(tomcatServer.isCompressPublishedJars());
+		compressPublishedJars.setEnabled(!readOnly);
+
 		secure.setSelection(tomcatServer.isSecure());
 		
 		supported = tvh != null && tvh.supportsDebugArgument();
@@ -12,6 +12,7 @@ package org.eclipse.wst.internet.monitor.core.internal;
 
 import java.io.InterruptedIOException;
 import java.net.*;
+import java.nio.channels.ServerSocketChannel;
 
 import org.eclipse.wst.internet.monitor.core.internal.provisional.IMonitor;
 /**
@@ -38,7 +39,10 @@ public class AcceptThread {
 		public void run() {
 			// create a new server socket
 			try {
-				serverSocket = new ServerSocket(monitor.getLocalPort());
+				// open the socket through a channel so accepted connections can be relayed without blocking
+				ServerSocketChannel channel = ServerSocketChannel.open();
+				channel.socket().bind(new InetSocketAddress(monitor.getLocalPort()));
+				serverSocket = channel.socket();
 				serverSocket.setSoTimeout(2000);
 				if (Trace.FINEST) {
 					Trace.trace(Trace.STRING_FINEST, "Monitoring localhost:" + monitor.getLocalPort() + " -> "
@@ -56,6 +60,19 @@ public class AcceptThread {
 					// accept the connection from the client
 					Socket localSocket = serverSocket.accept();
 					
+					String protocolId = monitor.getProtocol();
+					ProtocolAdapter adapter = MonitorPlugin.getInstance().getProtocolAdapter(protocolId);
+					RelayHandler handler = adapter.createRelayHandler(monitor);
+					if (handler != null) {
+						try {
+							RelayEngine.getInstance().connect((Monitor) monitor, localSocket.getChannel(), handler);
+						} catch (Exception e) {
+							FailedConnectionThread thread2 = new FailedConnectionThread((Monitor) monitor, localSocket, null);
+							thread2.start();
+						}
+						continue;
+					}
+					
 					int timeout = monitor.getTimeout();
 					if (timeout != 0)
 						localSocket.setSoTimeout(timeout);
@@ -69,8 +86,6 @@ public class AcceptThread {
 						remoteSocket.connect(new InetSocketAddress(monitor.getRemoteHost(), monitor.getRemotePort()), timeout);
 						
 						// relay the call through
-						String protocolId = monitor.getProtocol();
-						ProtocolAdapter adapter = MonitorPlugin.getInstance().getProtocolAdapter(protocolId);
 						adapter.connect(monitor, localSocket, remoteSocket);
 					} catch (SocketTimeoutException e) {
 						FailedConnectionThread thread2 = new FailedConnectionThread((Monitor) monitor, localSocket, Messages.errorConnectTimeout);
@@ -147,6 +162,7 @@ public class AcceptThread {
 			String protocolId = monitor.getProtocol();
 		   ProtocolAdapter adapter = MonitorPlugin.getInstance().getProtocolAdapter(protocolId);
 			adapter.disconnect(monitor);
+			RelayEngine.disconnect(monitor);
 			if (serverSocket != null)
 				serverSocket.close();
 		} catch (Exception e) {
@@ -0,0 +1,278 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.internet.monitor.core.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+/**
+ * An append-only buffer for captured traffic. Data is kept in a list of
+ * chunks, so appending never copies what has already been captured. Once the
+ * buffer grows beyond a threshold its contents are moved to a temporary file,
+ * and later data is appended to the file. The file is deleted when the buffer
+ * is disposed. Once capture is complete the buffer can be closed, so that it
+ * does not hold the file open; the file is reopened if the buffer is read or
+ * appended to again.
+ * <p>
+ * The buffer holds at most {@link #MAX_SIZE} bytes, so that its contents can
+ * always be returned as a single array; anything beyond that is dropped.
+ * </p>
+ * <p>
+ * This class is not thread-safe; callers must synchronize access.
+ * </p>
+ */
+public class ContentBuffer {
+	private static final int MIN_CHUNK = 1024;
+	private static final int MAX_CHUNK = 64 * 1024;
+
+	// size beyond which the content is moved to disk
+	private static final int SPILL_THRESHOLD = 1024 * 1024;
+
+	/**
+	 * The maximum number of bytes in a buffer. This is the largest array that
+	 * the VM can be expected to allocate.
+	 */
+	public static final long MAX_SIZE = Integer.MAX_VALUE - 8;
+
+	private List<byte[]> chunks = new ArrayList<byte[]>();
+
+	// number of bytes used in the last chunk
+	private int last;
+	private long size;
+
+	private File file;
+	private FileChannel channel;
+	private boolean noSpill;
+	private boolean truncated;
+
+	/**
+	 * Append the remaining bytes of the given buffer. The buffer's position
+	 * is not changed. Bytes that would make the buffer larger than
+	 * {@link #MAX_SIZE} are dropped.
+	 *
+	 * @param data the data to append
+	 */
+	public void append(ByteBuffer data) {
+		int len = data.remaining();
+		if (len == 0 || truncated)
+			return;
+
+		if (size + len > MAX_SIZE) {
+			len = (int) (MAX_SIZE - size);
+			data = data.duplicate();
+			data.limit(data.position() + len);
+			truncated = true;
+			if (Trace.WARNING) {
+				Trace.trace(Trace.STRING_WARNING, "Captured content is larger than " + MAX_SIZE + " bytes and has been truncated");
+			}
+			if (len == 0)
+				return;
+		}
+
+		if (file == null && !noSpill && size + len > SPILL_THRESHOLD)
+			spill();
+
+		if (file != null) {
+			try {
+				if (channel == null) {
+					channel = new RandomAccessFile(file, "rw").getChannel();
+					channel.position(size);
+				}
+				ByteBuffer b = data.duplicate();
+				while (b.hasRemaining())
+					channel.write(b);
+				size += len;
+				return;
+			} catch (IOException e) {
+				if (Trace.WARNING) {
+					Trace.trace(Trace.STRING_WARNING, "Could not write captured content to " + file, e);
+				}
+				// keep the data in memory instead
+				byte[] b = readFile();
+				closeFile();
+				noSpill = true;
+				chunks.add(b);
+				last = b.length;
+			}
+		}
+
+		int pos = data.position();
+		while (len > 0) {
+			byte[] chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+			if (chunk == null || last == chunk.length) {
+				// grow chunk sizes with the content, so small captures stay small
+				int n = (int) Math.min(MAX_CHUNK, Math.max(MIN_CHUNK, size));
+				chunk = new byte[Math.max(n, Math.min(len, MAX_CHUNK))];
+				chunks.add(chunk);
+				last = 0;
+			}
+			int n = Math.min(len, chunk.length - last);
+			ByteBuffer b = data.duplicate();
+			b.position(pos);
+			b.get(chunk, last, n);
+			last += n;
+			pos += n;
+			len -= n;
+			size += n;
+		}
+	}
+
+	/**
+	 * Returns the number of bytes in the buffer.
+	 *
+	 * @return the size
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of bytes of the buffer that are held in memory, which
+	 * is zero once the content has been moved to a temporary file.
+	 *
+	 * @return the size in memory
+	 */
+	public long memorySize() {
+		return file != null ? 0 : size;
+	}
+
+	/**
+	 * Returns <code>true</code> if data was dropped because the buffer
+	 * reached its maximum size.
+	 *
+	 * @return <code>true</code> if the content is incomplete
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * Returns the contents of the buffer as a single array.
+	 *
+	 * @return the contents
+	 */
+	public byte[] toByteArray() {
+		if (file != null)
+			return readFile();
+
+		byte[] b = new byte[(int) size];
+		int pos = 0;
+		int count = chunks.size();
+		for (int i = 0; i < count; i++) {
+			byte[] chunk = chunks.get(i);
+			int n = (i == count - 1) ? last : chunk.length;
+			System.arraycopy(chunk, 0, b, pos, n);
+			pos += n;
+		}
+		return b;
+	}
+
+	/**
+	 * Close the buffer's temporary file, if there is one, until the buffer is
+	 * read or appended to again.
+	 */
+	public void close() {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			channel = null;
+		}
+	}
+
+	/**
+	 * Release the buffer, deleting its temporary file if there is one.
+	 */
+	public void dispose() {
+		chunks = new ArrayList<byte[]>();
+		last = 0;
+		size = 0;
+		truncated = false;
+		closeFile();
+	}
+
+	/**
+	 * Move the content to a temporary file.
+	 */
+	private void spill() {
+		try {
+			file = File.createTempFile("monitor", ".tmp");
+			channel = new RandomAccessFile(file, "rw").getChannel();
+			int count = chunks.size();
+			for (int i = 0; i < count; i++) {
+				int n = (i == count - 1) ? last : chunks.get(i).length;
+				ByteBuffer b = ByteBuffer.wrap(chunks.get(i), 0, n);
+				while (b.hasRemaining())
+					channel.write(b);
+			}
+			chunks = new ArrayList<byte[]>();
+			last = 0;
+		} catch (IOException e) {
+			if (Trace.WARNING) {
+				Trace.trace(Trace.STRING_WARNING, "Could not create file for captured content", e);
+			}
+			closeFile();
+			noSpill = true;
+		}
+	}
+
+	/**
+	 * Read the content from the temporary file. If the buffer has been closed
+	 * the file is opened only for the read.
+	 */
+	private byte[] readFile() {
+		byte[] b = new byte[(int) size];
+		FileChannel ch = channel;
+		try {
+			if (ch == null)
+				ch = new RandomAccessFile(file, "r").getChannel();
+			ByteBuffer buf = ByteBuffer.wrap(b);
+			long pos = 0;
+			while (buf.hasRemaining()) {
+				int n = ch.read(buf, pos);
+				if (n < 0)
+					break;
+				pos += n;
+			}
+		} catch (IOException e) {
+			if (Trace.WARNING) {
+				Trace.trace(Trace.STRING_WARNING, "Could not read captured content from " + file, e);
+			}
+		} finally {
+			if (ch != null && ch != channel) {
+				try {
+					ch.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+		return b;
+	}
+
+	private void closeFile() {
+		close();
+		if (file != null) {
+			if (!file.delete() && file.exists()) {
+				if (Trace.WARNING) {
+					Trace.trace(Trace.STRING_WARNING, "Could not delete captured content file " + file);
+				}
+			}
+			file = null;
+		}
+	}
+}
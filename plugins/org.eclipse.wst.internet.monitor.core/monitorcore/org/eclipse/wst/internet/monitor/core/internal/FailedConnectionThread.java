@@ -12,6 +12,7 @@ package org.eclipse.wst.internet.monitor.core.internal;
 
 import java.io.InputStream;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 
 import org.eclipse.wst.internet.monitor.core.internal.provisional.Request;
 
@@ -43,9 +44,8 @@ public class FailedConnectionThread extends Thread {
 			byte[] b = new byte[BUFFER];
 			while (in.available() > 0) {
 				int n = in.read(b);
-				byte[] c = new byte[n];
-				System.arraycopy(b, 0, c, 0, n);
-				request.addToRequest(c);
+				if (n > 0)
+					request.addToRequest(ByteBuffer.wrap(b, 0, n));
 			}
 		} catch (Exception e) {
 			// ignore
@@ -209,4 +209,9 @@ public class MonitorPlugin extends Plugin {
 		props.put(DebugOptions.LISTENER_SYMBOLICNAME, PLUGIN_ID);
 		context.registerService(DebugOptionsListener.class.getName(), new Trace(), props);
 	}
+
+	public void stop(BundleContext context) throws Exception {
+		RelayEngine.shutdown();
+		super.stop(context);
+	}
 }
\ No newline at end of file
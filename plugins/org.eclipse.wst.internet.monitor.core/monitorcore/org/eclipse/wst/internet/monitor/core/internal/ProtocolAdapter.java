@@ -65,6 +65,18 @@ public class ProtocolAdapter implements IProtocolAdapter {
 		getDelegate().connect(monitor, in, out);
 	}
 
+	/**
+	 * Returns a handler to relay a new connection with the protocol, or
+	 * <code>null</code> if the protocol must be relayed using
+	 * {@link #connect(IMonitor, Socket, Socket)}.
+	 * 
+	 * @param monitor a monitor
+	 * @return a handler, or <code>null</code>
+	 */
+	public RelayHandler createRelayHandler(IMonitor monitor) {
+		return getDelegate().createRelayHandler(monitor);
+	}
+
 	/**
 	 * Disconnect from the sockets.
 	 * 
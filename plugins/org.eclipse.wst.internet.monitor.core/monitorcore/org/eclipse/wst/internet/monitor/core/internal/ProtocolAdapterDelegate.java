@@ -73,6 +73,25 @@ public abstract class ProtocolAdapterDelegate {
 	 *    input or output sockets
 	 */
 	public abstract void connect(IMonitor monitor, Socket in, Socket out) throws IOException;
+
+	/**
+	 * Returns a handler for a new connection to the given monitor, so that the
+	 * connection is relayed on the shared relay threads of the
+	 * {@link RelayEngine} instead of on threads created by
+	 * {@link #connect(IMonitor, Socket, Socket)}. Handlers must never block.
+	 * <p>
+	 * The default implementation returns <code>null</code>, which means that
+	 * {@link #connect(IMonitor, Socket, Socket)} is used. Subclasses that can
+	 * handle their protocol incrementally should override this method.
+	 * </p>
+	 * 
+	 * @param monitor the monitor that uses this protocol adapter
+	 * @return a handler for the connection, or <code>null</code> to relay the
+	 *    connection with {@link #connect(IMonitor, Socket, Socket)}
+	 */
+	public RelayHandler createRelayHandler(IMonitor monitor) {
+		return null;
+	}
 	
 	/**
 	 * Called if the monitor is changed or deleted, or the plugin is shutting down.
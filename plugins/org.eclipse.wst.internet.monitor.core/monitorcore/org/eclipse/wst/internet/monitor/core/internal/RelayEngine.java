@@ -0,0 +1,525 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.internet.monitor.core.internal;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.eclipse.wst.internet.monitor.core.internal.provisional.IMonitor;
+import org.eclipse.wst.internet.monitor.core.internal.provisional.Request;
+/**
+ * Relays monitored connections between clients and servers using
+ * non-blocking I/O. The connections of all monitors are shared between a
+ * small, fixed number of relay threads, each of which waits on a selector for
+ * any of its connections to be ready; the protocol is handled by a
+ * {@link RelayHandler} for each connection.
+ */
+public class RelayEngine {
+	private static final int BUFFER = 8192;
+
+	// how often to check for connections that have timed out, in ms
+	private static final long TIMEOUT_CHECK_INTERVAL = 1000;
+
+	private static RelayEngine instance;
+
+	protected RelayThread[] threads;
+	protected int next;
+
+	/**
+	 * A relay thread, which handles all I/O for the connections registered
+	 * with its selector.
+	 */
+	class RelayThread extends Thread {
+		protected Selector selector;
+		protected volatile boolean alive = true;
+
+		// tasks to run on this thread, added by other threads
+		protected Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+		// connections and buffer, only used on this thread
+		protected Set<Relay> relays = new HashSet<Relay>();
+		protected ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER);
+		protected long lastTimeoutCheck;
+
+		public RelayThread(int count) throws IOException {
+			super("TCP/IP Monitor Relay (" + count + ")");
+			selector = Selector.open();
+			setPriority(Thread.NORM_PRIORITY + 1);
+			setDaemon(true);
+		}
+
+		/**
+		 * Run the given task on this thread.
+		 */
+		protected void execute(Runnable r) {
+			tasks.add(r);
+			selector.wakeup();
+		}
+
+		public void run() {
+			while (alive) {
+				try {
+					selector.select(TIMEOUT_CHECK_INTERVAL);
+				} catch (Exception e) {
+					if (Trace.SEVERE) {
+						Trace.trace(Trace.STRING_SEVERE, "Error waiting for connections", e);
+					}
+				}
+
+				// an error in one connection must not stop this thread, which serves many others
+				Runnable r = tasks.poll();
+				while (r != null) {
+					try {
+						r.run();
+					} catch (Exception e) {
+						if (Trace.SEVERE) {
+							Trace.trace(Trace.STRING_SEVERE, "Error running relay task", e);
+						}
+					}
+					r = tasks.poll();
+				}
+
+				Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+				while (iterator.hasNext()) {
+					SelectionKey key = iterator.next();
+					iterator.remove();
+					Relay relay = (Relay) key.attachment();
+					try {
+						relay.ready(key);
+					} catch (Exception e) {
+						relay.abort(e);
+					}
+				}
+
+				long time = System.currentTimeMillis();
+				if (time - lastTimeoutCheck >= TIMEOUT_CHECK_INTERVAL) {
+					lastTimeoutCheck = time;
+					Iterator<Relay> iter = new ArrayList<Relay>(relays).iterator();
+					while (iter.hasNext()) {
+						Relay relay = iter.next();
+						try {
+							relay.checkTimeout(time);
+						} catch (Exception e) {
+							relay.abort(e);
+						}
+					}
+				}
+			}
+
+			Iterator<Relay> iter = new ArrayList<Relay>(relays).iterator();
+			while (iter.hasNext())
+				iter.next().close();
+			try {
+				selector.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+	/**
+	 * A single relayed connection.
+	 */
+	static class Relay {
+		protected RelayThread thread;
+		protected Monitor monitor;
+		protected RelayHandler handler;
+		protected SocketChannel client;
+		protected SocketChannel server;
+		protected InetSocketAddress address;
+		protected SelectionKey clientKey;
+		protected SelectionKey serverKey;
+
+		// data waiting to be written to the server and client
+		protected ByteBuffer requestPending;
+		protected ByteBuffer responsePending;
+
+		// true once the client or server has closed its side
+		protected boolean requestEnd;
+		protected boolean responseEnd;
+
+		protected boolean connected;
+		protected boolean closed;
+		protected int timeout;
+		protected long lastActivity;
+
+		public Relay(RelayThread thread, Monitor monitor, SocketChannel client, InetSocketAddress address, RelayHandler handler) {
+			this.thread = thread;
+			this.monitor = monitor;
+			this.client = client;
+			this.address = address;
+			this.handler = handler;
+			timeout = monitor.getTimeout();
+			lastActivity = System.currentTimeMillis();
+		}
+
+		/**
+		 * Register with the selector and start connecting to the server.
+		 */
+		protected void start() {
+			thread.relays.add(this);
+			try {
+				server = SocketChannel.open();
+				server.configureBlocking(false);
+				clientKey = client.register(thread.selector, 0, this);
+				serverKey = server.register(thread.selector, 0, this);
+				if (server.connect(address))
+					connected();
+				else
+					updateInterest();
+			} catch (Exception e) {
+				if (Trace.FINEST) {
+					Trace.trace(Trace.STRING_FINEST, "Could not connect to " + address, e);
+				}
+				fail(null);
+			}
+		}
+
+		protected void connected() {
+			connected = true;
+			lastActivity = System.currentTimeMillis();
+			handler.connected();
+			updateInterest();
+		}
+
+		/**
+		 * Handle a key that is ready for I/O.
+		 */
+		protected void ready(SelectionKey key) {
+			if (closed || !key.isValid())
+				return;
+
+			if (key.isConnectable()) {
+				try {
+					if (server.finishConnect())
+						connected();
+				} catch (Exception e) {
+					if (Trace.FINEST) {
+						Trace.trace(Trace.STRING_FINEST, "Could not connect to " + address, e);
+					}
+					fail(null);
+				}
+				return;
+			}
+
+			boolean isClient = (key == clientKey);
+			try {
+				if (key.isWritable())
+					flush(!isClient);
+				if (!closed && key.isValid() && key.isReadable())
+					read(isClient);
+				updateInterest();
+			} catch (Exception e) {
+				if (Trace.FINEST) {
+					Trace.trace(Trace.STRING_FINEST, "Error relaying connection", e);
+				}
+				close();
+			}
+		}
+
+		/**
+		 * Read from the client (if isRequest) or server and pass on what the
+		 * handler returns.
+		 */
+		protected void read(boolean isRequest) throws IOException {
+			ByteBuffer buffer = thread.buffer;
+			buffer.clear();
+			int n = (isRequest ? client : server).read(buffer);
+			if (n < 0) {
+				endOfStream(isRequest);
+				return;
+			}
+			if (n == 0)
+				return;
+
+			lastActivity = System.currentTimeMillis();
+			buffer.flip();
+			ByteBuffer out = handler.handle(buffer, isRequest);
+			if (out == null || !out.hasRemaining())
+				return;
+
+			(isRequest ? server : client).write(out);
+			if (out.hasRemaining()) {
+				// the other side is not keeping up; keep the rest and stop reading until it is written
+				ByteBuffer pending = ByteBuffer.allocate(out.remaining());
+				pending.put(out);
+				pending.flip();
+				if (isRequest)
+					requestPending = pending;
+				else
+					responsePending = pending;
+			}
+		}
+
+		/**
+		 * Write pending data to the server (if isRequest) or client.
+		 */
+		protected void flush(boolean isRequest) throws IOException {
+			ByteBuffer pending = isRequest ? requestPending : responsePending;
+			if (pending == null)
+				return;
+
+			(isRequest ? server : client).write(pending);
+			lastActivity = System.currentTimeMillis();
+			if (pending.hasRemaining())
+				return;
+
+			if (isRequest) {
+				requestPending = null;
+				if (requestEnd)
+					finish(true);
+			} else {
+				responsePending = null;
+				if (responseEnd)
+					finish(false);
+			}
+		}
+
+		protected void endOfStream(boolean isRequest) throws IOException {
+			if (isRequest)
+				requestEnd = true;
+			else
+				responseEnd = true;
+			handler.endOfStream(isRequest);
+
+			if ((isRequest ? requestPending : responsePending) == null)
+				finish(isRequest);
+		}
+
+		/**
+		 * Called when all data from one side has been passed on. When the client
+		 * is done the server is told so it can finish the response; when the
+		 * server is done the connection is closed.
+		 */
+		protected void finish(boolean isRequest) throws IOException {
+			if (isRequest)
+				server.socket().shutdownOutput();
+			else
+				close();
+		}
+
+		protected void updateInterest() {
+			if (closed)
+				return;
+
+			if (!connected) {
+				clientKey.interestOps(0);
+				serverKey.interestOps(SelectionKey.OP_CONNECT);
+				return;
+			}
+
+			int ops = 0;
+			if (responsePending != null)
+				ops |= SelectionKey.OP_WRITE;
+			if (!requestEnd && requestPending == null)
+				ops |= SelectionKey.OP_READ;
+			clientKey.interestOps(ops);
+
+			ops = 0;
+			if (requestPending != null)
+				ops |= SelectionKey.OP_WRITE;
+			if (!responseEnd && responsePending == null)
+				ops |= SelectionKey.OP_READ;
+			serverKey.interestOps(ops);
+		}
+
+		protected void checkTimeout(long time) {
+			if (closed || timeout <= 0 || time - lastActivity < timeout)
+				return;
+
+			if (connected) {
+				if (Trace.FINEST) {
+					Trace.trace(Trace.STRING_FINEST, "Connection timed out");
+				}
+				close();
+			} else
+				fail(Messages.errorConnectTimeout);
+		}
+
+		/**
+		 * Report a connection that could not be made to the server, and close it.
+		 */
+		protected void fail(String error) {
+			Request request = new Request(monitor, IProtocolAdapter.TCPIP_PROTOCOL_ID, monitor.getLocalPort(), monitor.getRemoteHost(), monitor.getRemotePort());
+			String err = error;
+			if (err == null)
+				err = Messages.errorConnectToServer;
+			request.addToResponse(err.getBytes());
+
+			// record whatever the client has already sent
+			try {
+				ByteBuffer buffer = thread.buffer;
+				buffer.clear();
+				int n = client.read(buffer);
+				while (n > 0) {
+					buffer.flip();
+					request.addToRequest(buffer);
+					buffer.clear();
+					n = client.read(buffer);
+				}
+			} catch (Exception e) {
+				// ignore
+			}
+			close();
+		}
+
+		/**
+		 * Close both sides of the connection.
+		 */
+		protected void close() {
+			if (closed)
+				return;
+			closed = true;
+			thread.relays.remove(this);
+
+			if (Trace.FINEST) {
+				Trace.trace(Trace.STRING_FINEST, "Closing connection");
+			}
+			close(client);
+			if (server != null)
+				close(server);
+			try {
+				handler.closed();
+			} catch (Exception e) {
+				if (Trace.WARNING) {
+					Trace.trace(Trace.STRING_WARNING, "Error closing connection", e);
+				}
+			}
+		}
+
+		/**
+		 * Close the connection after an unexpected error, e.g. in the handler
+		 * or a request listener.
+		 */
+		protected void abort(Exception e) {
+			if (Trace.WARNING) {
+				Trace.trace(Trace.STRING_WARNING, "Error relaying connection", e);
+			}
+			close();
+		}
+
+		private static void close(SocketChannel channel) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				if (Trace.WARNING) {
+					Trace.trace(Trace.STRING_WARNING, "Error closing connection", e);
+				}
+			}
+		}
+	}
+
+	private RelayEngine() throws IOException {
+		int count = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+		threads = new RelayThread[count];
+		for (int i = 0; i < count; i++)
+			threads[i] = new RelayThread(i + 1);
+		for (int i = 0; i < count; i++)
+			threads[i].start();
+	}
+
+	/**
+	 * Returns the relay engine, starting it if necessary.
+	 *
+	 * @return the relay engine
+	 * @throws IOException if the relay threads could not be started
+	 */
+	public static synchronized RelayEngine getInstance() throws IOException {
+		if (instance == null)
+			instance = new RelayEngine();
+		return instance;
+	}
+
+	/**
+	 * Stop the relay engine, if it is running, and close all connections.
+	 */
+	public static synchronized void shutdown() {
+		if (instance == null)
+			return;
+
+		RelayThread[] threads2 = instance.threads;
+		for (int i = 0; i < threads2.length; i++) {
+			threads2[i].alive = false;
+			threads2[i].selector.wakeup();
+		}
+		instance = null;
+	}
+
+	/**
+	 * Close all connections that are being relayed for the given monitor.
+	 *
+	 * @param monitor a monitor
+	 */
+	public static synchronized void disconnect(final IMonitor monitor) {
+		if (instance == null)
+			return;
+
+		for (int i = 0; i < instance.threads.length; i++) {
+			final RelayThread thread = instance.threads[i];
+			thread.execute(new Runnable() {
+				public void run() {
+					List<Relay> list = new ArrayList<Relay>(thread.relays);
+					int size = list.size();
+					for (int j = 0; j < size; j++) {
+						Relay relay = list.get(j);
+						if (relay.monitor.equals(monitor))
+							relay.close();
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Relay a connection from a client to the given monitor's server. The
+	 * connection to the server is made, and all further I/O is done, on one of
+	 * the relay threads; this method does not block.
+	 *
+	 * @param monitor a monitor
+	 * @param client the connection from the client
+	 * @param handler the handler for the connection's traffic
+	 * @throws IOException if the client connection cannot be used
+	 */
+	public void connect(Monitor monitor, SocketChannel client, RelayHandler handler) throws IOException {
+		client.configureBlocking(false);
+
+		// resolve the server's address here, so the relay threads never wait for a name lookup
+		InetSocketAddress address = new InetSocketAddress(monitor.getRemoteHost(), monitor.getRemotePort());
+
+		RelayThread thread;
+		synchronized (this) {
+			thread = threads[next];
+			next = (next + 1) % threads.length;
+		}
+
+		final Relay relay = new Relay(thread, monitor, client, address, handler);
+		thread.execute(new Runnable() {
+			public void run() {
+				try {
+					relay.start();
+				} catch (Exception e) {
+					relay.abort(e);
+				}
+			}
+		});
+	}
+}
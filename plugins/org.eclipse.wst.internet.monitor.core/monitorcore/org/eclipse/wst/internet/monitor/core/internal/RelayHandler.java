@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.internet.monitor.core.internal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+/**
+ * Handles the traffic of a single connection relayed by the {@link RelayEngine}.
+ * Handlers are created by {@link ProtocolAdapterDelegate#createRelayHandler(
+ * org.eclipse.wst.internet.monitor.core.internal.provisional.IMonitor)}
+ * for each accepted connection.
+ * <p>
+ * All methods are called on one of the shared relay threads, and must never
+ * block: data is handed to the handler as it arrives, so protocol parsing has
+ * to be incremental.
+ * </p>
+ */
+public abstract class RelayHandler {
+	/**
+	 * Called once the connection to the server has been established, before
+	 * any data is passed to the handler. The default implementation does
+	 * nothing.
+	 */
+	public void connected() {
+		// do nothing
+	}
+
+	/**
+	 * Called with data that has been read from the client (if
+	 * <code>isRequest</code> is <code>true</code>) or the server. Returns the
+	 * data to pass to the other side, which may be the given buffer itself.
+	 * <p>
+	 * The given buffer is reused once this method returns, so the handler must
+	 * copy any data it wants to keep. The returned buffer is written from its
+	 * position to its limit.
+	 * </p>
+	 *
+	 * @param data the data that was read, from its position to its limit
+	 * @param isRequest <code>true</code> if the data was sent by the client, and
+	 *    <code>false</code> if it was sent by the server
+	 * @return the data to pass on, or <code>null</code> to pass nothing
+	 * @throws IOException if the data cannot be handled; the connection is closed
+	 */
+	public abstract ByteBuffer handle(ByteBuffer data, boolean isRequest) throws IOException;
+
+	/**
+	 * Called when the client (if <code>isRequest</code> is <code>true</code>)
+	 * or the server has closed its side of the connection. The default
+	 * implementation does nothing.
+	 *
+	 * @param isRequest <code>true</code> if the client has closed, and
+	 *    <code>false</code> if the server has closed
+	 */
+	public void endOfStream(boolean isRequest) {
+		// do nothing
+	}
+
+	/**
+	 * Called once the connection has been closed. The default implementation
+	 * does nothing.
+	 */
+	public void closed() {
+		// do nothing
+	}
+}
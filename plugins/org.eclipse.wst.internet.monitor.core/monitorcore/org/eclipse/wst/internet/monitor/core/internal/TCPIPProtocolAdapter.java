@@ -12,6 +12,7 @@ package org.eclipse.wst.internet.monitor.core.internal;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -35,6 +36,33 @@ public class TCPIPProtocolAdapter extends ProtocolAdapterDelegate {
 		new TCPIPThread(conn, request, out.getInputStream(), in.getOutputStream(), false).start();
 	}
 
+	/**
+	 * @see ProtocolAdapterDelegate#createRelayHandler(IMonitor)
+	 */
+	public RelayHandler createRelayHandler(final IMonitor monitor) {
+		return new RelayHandler() {
+			protected Request request;
+
+			public void connected() {
+				request = new Request((Monitor) monitor, IProtocolAdapter.TCPIP_PROTOCOL_ID, monitor.getLocalPort(), monitor.getRemoteHost(), monitor.getRemotePort());
+			}
+
+			public ByteBuffer handle(ByteBuffer data, boolean isRequest) {
+				// pass the data straight through, keeping a copy
+				if (isRequest)
+					request.addToRequest(data);
+				else
+					request.addToResponse(data);
+				return data;
+			}
+
+			public void closed() {
+				if (request != null)
+					request.closeContent();
+			}
+		};
+	}
+
 	/**
 	 * @see ProtocolAdapterDelegate#disconnect(IMonitor)
 	 */
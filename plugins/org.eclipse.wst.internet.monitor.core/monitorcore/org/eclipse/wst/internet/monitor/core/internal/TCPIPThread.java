@@ -11,12 +11,13 @@
 package org.eclipse.wst.internet.monitor.core.internal;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import org.eclipse.wst.internet.monitor.core.internal.provisional.Request;
 /**
  * Monitor server I/O thread.
  */
 public class TCPIPThread extends Thread {
-	private static final int BUFFER = 2048;
+	private static final int BUFFER = 8192;
 	protected InputStream in;
 	protected OutputStream out;
 	protected boolean isRequest;
@@ -53,19 +54,10 @@ public class TCPIPThread extends Thread {
 			int n = in.read(b);
 			while (n > 0) {
 				out.write(b, 0, n);
-				if (b != null && n > 0) {
-					byte[] x = null;
-					if (n == BUFFER)
-						x = b;
-					else {
-						x = new byte[n];
-						System.arraycopy(b, 0, x, 0, n);
-					}
-					if (isRequest)
-						request.addToRequest(x);
-					else
-						request.addToResponse(x);
-				}
+				if (isRequest)
+					request.addToRequest(ByteBuffer.wrap(b, 0, n));
+				else
+					request.addToResponse(ByteBuffer.wrap(b, 0, n));
 				n = in.read(b);
 				Thread.yield();
 			}
@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.internet.monitor.core.internal.http;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.eclipse.wst.internet.monitor.core.internal.ContentBuffer;
+import org.eclipse.wst.internet.monitor.core.internal.Trace;
+/**
+ * Streaming decoder for the gzip and deflate content codings. Encoded data is
+ * passed to the decoder as it arrives, in pieces of any size, and is decoded
+ * into a content buffer.
+ * <p>
+ * Decoding stops once the decoded content is larger than the given limit.
+ * </p>
+ */
+public class ContentDecoder {
+	private static final int BUFFER = 8192;
+
+	// gzip header flags
+	private static final int FHCRC = 2;
+	private static final int FEXTRA = 4;
+	private static final int FNAME = 8;
+	private static final int FCOMMENT = 16;
+
+	// decoder states
+	private static final byte HEADER = 0;
+	private static final byte EXTRA_LENGTH = 1;
+	private static final byte EXTRA = 2;
+	private static final byte NAME = 3;
+	private static final byte COMMENT = 4;
+	private static final byte HEADER_CRC = 5;
+	private static final byte INFLATE = 6;
+	private static final byte DONE = 7;
+
+	protected boolean gzip;
+	protected long limit;
+
+	private byte state = HEADER;
+	private boolean failed;
+
+	// header bytes read so far
+	private byte[] header = new byte[10];
+	private int headerCount;
+	private int flags;
+	private int extraLength;
+
+	private Inflater inflater;
+	private byte[] input;
+	private byte[] output = new byte[BUFFER];
+	private ContentBuffer content = new ContentBuffer();
+
+	/**
+	 * Create a new decoder.
+	 *
+	 * @param gzip <code>true</code> to decode gzip, and <code>false</code> to
+	 *    decode deflate
+	 * @param limit the size beyond which decoding stops
+	 */
+	public ContentDecoder(boolean gzip, long limit) {
+		this.gzip = gzip;
+		this.limit = limit;
+	}
+
+	/**
+	 * Returns a decoder for the given value of a Content-Encoding: header, or
+	 * <code>null</code> if the coding is not supported.
+	 *
+	 * @param encoding the content coding
+	 * @param limit the size beyond which decoding stops
+	 * @return a decoder, or <code>null</code>
+	 */
+	public static ContentDecoder create(String encoding, long limit) {
+		if ("gzip".equalsIgnoreCase(encoding) || "x-gzip".equalsIgnoreCase(encoding))
+			return new ContentDecoder(true, limit);
+		if ("deflate".equalsIgnoreCase(encoding))
+			return new ContentDecoder(false, limit);
+		return null;
+	}
+
+	/**
+	 * Decode the remaining bytes of the given buffer.
+	 *
+	 * @param in the encoded data
+	 */
+	public void decode(ByteBuffer in) {
+		try {
+			while (in.hasRemaining() && !failed && state != DONE && content.size() <= limit) {
+				if (state == INFLATE)
+					inflate(in);
+				else if (gzip)
+					readGzipHeader(in);
+				else
+					readZlibHeader(in);
+			}
+		} catch (DataFormatException e) {
+			if (Trace.PARSING) {
+				Trace.trace(Trace.STRING_PARSING, "Could not decode content", e);
+			}
+			failed = true;
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if the data could not be decoded.
+	 *
+	 * @return <code>true</code> if decoding failed
+	 */
+	public boolean isFailed() {
+		return failed;
+	}
+
+	/**
+	 * Returns the decoded content.
+	 *
+	 * @return the decoded content
+	 */
+	public ContentBuffer getContent() {
+		return content;
+	}
+
+	/**
+	 * Release the resources used by the decoder, including the decoded content.
+	 */
+	public void dispose() {
+		if (inflater != null) {
+			inflater.end();
+			inflater = null;
+		}
+		content.dispose();
+	}
+
+	private void readGzipHeader(ByteBuffer in) throws DataFormatException {
+		byte b = in.get();
+		switch (state) {
+			case HEADER: {
+				header[headerCount++] = b;
+				if (headerCount == 2 && (header[0] != (byte) 0x1f || header[1] != (byte) 0x8b))
+					throw new DataFormatException("Not in gzip format");
+				if (headerCount == 3 && header[2] != 8)
+					throw new DataFormatException("Unsupported compression method");
+				if (headerCount == header.length) {
+					flags = header[3];
+					headerCount = 0;
+					nextHeaderField(HEADER);
+				}
+				break;
+			}
+			case EXTRA_LENGTH: {
+				extraLength |= (b & 0xff) << (8 * headerCount++);
+				if (headerCount == 2) {
+					headerCount = 0;
+					if (extraLength == 0)
+						nextHeaderField(EXTRA);
+					else
+						state = EXTRA;
+				}
+				break;
+			}
+			case EXTRA: {
+				if (--extraLength == 0)
+					nextHeaderField(EXTRA);
+				break;
+			}
+			case NAME: {
+				if (b == 0)
+					nextHeaderField(NAME);
+				break;
+			}
+			case COMMENT: {
+				if (b == 0)
+					nextHeaderField(COMMENT);
+				break;
+			}
+			case HEADER_CRC: {
+				if (++headerCount == 2)
+					startInflate(true);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Move to the next optional header field that is present, after the
+	 * field that has just been read.
+	 */
+	private void nextHeaderField(byte done) {
+		if (done < EXTRA_LENGTH && (flags & FEXTRA) != 0)
+			state = EXTRA_LENGTH;
+		else if (done < NAME && (flags & FNAME) != 0)
+			state = NAME;
+		else if (done < COMMENT && (flags & FCOMMENT) != 0)
+			state = COMMENT;
+		else if (done < HEADER_CRC && (flags & FHCRC) != 0)
+			state = HEADER_CRC;
+		else
+			startInflate(true);
+	}
+
+	/**
+	 * Read the first two bytes of deflate data. The deflate coding should be
+	 * wrapped in a zlib header, but some servers send raw deflate data.
+	 */
+	private void readZlibHeader(ByteBuffer in) throws DataFormatException {
+		header[headerCount++] = in.get();
+		if (headerCount < 2)
+			return;
+
+		int cmf = header[0] & 0xff;
+		int flg = header[1] & 0xff;
+		boolean zlib = (cmf & 0x0f) == 8 && ((cmf << 8) | flg) % 31 == 0;
+		startInflate(!zlib);
+		inflate(ByteBuffer.wrap(header, 0, 2));
+	}
+
+	private void startInflate(boolean nowrap) {
+		inflater = new Inflater(nowrap);
+		headerCount = 0;
+		state = INFLATE;
+	}
+
+	private void inflate(ByteBuffer in) throws DataFormatException {
+		int n = in.remaining();
+		if (in.hasArray())
+			inflater.setInput(in.array(), in.arrayOffset() + in.position(), n);
+		else {
+			if (input == null || input.length < n)
+				input = new byte[Math.max(BUFFER, n)];
+			in.duplicate().get(input, 0, n);
+			inflater.setInput(input, 0, n);
+		}
+
+		while (content.size() <= limit) {
+			int count = inflater.inflate(output);
+			if (count > 0)
+				content.append(ByteBuffer.wrap(output, 0, count));
+			else if (inflater.finished() || inflater.needsInput())
+				break;
+			else if (inflater.needsDictionary())
+				throw new DataFormatException("Preset dictionary not supported");
+		}
+
+		// anything after the end of the data (e.g. the gzip trailer) is ignored
+		if (inflater.finished())
+			state = DONE;
+		in.position(in.position() + n - inflater.getRemaining());
+		if (state == DONE)
+			in.position(in.limit());
+	}
+}
@@ -15,6 +15,7 @@ import org.eclipse.wst.internet.monitor.core.internal.Trace;
 import org.eclipse.wst.internet.monitor.core.internal.provisional.IMonitor;
 import org.eclipse.wst.internet.monitor.core.internal.provisional.Request;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.ArrayList;
 /**
@@ -69,6 +70,32 @@ public class HTTPConnection {
 		request.addToResponse(b);
 	}
 
+	/**
+	 * Add a request.
+	 * 
+	 * @param b the request data; the bytes are copied
+	 * @param isNew true if new
+	 */
+	public void addRequest(ByteBuffer b, boolean isNew) {
+		if (isNew)
+			req ++;
+		HTTPRequest request = (HTTPRequest) getRequestResponse(req);
+		request.addToRequest(b);
+	}
+
+	/**
+	 * Add a response.
+	 * 
+	 * @param b the response data; the bytes are copied
+	 * @param isNew true if new
+	 */
+	public void addResponse(ByteBuffer b, boolean isNew) {
+		if (isNew)
+			resp ++;
+		HTTPRequest request = (HTTPRequest) getRequestResponse(resp);
+		request.addToResponse(b);
+	}
+
 	/**
 	 * Add a property.
 	 * 
@@ -0,0 +1,543 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.internet.monitor.core.internal.http;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+
+import org.eclipse.wst.internet.monitor.core.internal.ContentBuffer;
+import org.eclipse.wst.internet.monitor.core.internal.Messages;
+import org.eclipse.wst.internet.monitor.core.internal.Trace;
+import org.eclipse.wst.internet.monitor.core.internal.provisional.Request;
+/**
+ * Incremental parser for one direction of an HTTP/1.1 connection. Data is
+ * passed to the parser as it arrives, in pieces of any size; the parser
+ * records each message in the connection's requests, translates the Host:
+ * header of requests, and returns the data to pass on. Persistent connections
+ * and pipelined requests are supported.
+ * <p>
+ * Only an incomplete header or chunk-size line is ever kept between calls,
+ * in a line buffer that is reused for every line, and lines are parsed in
+ * place. Message bodies are passed through without being buffered.
+ * </p>
+ */
+public class HTTPParser {
+	private static final int BUFFER = 8192;
+
+	// largest body that is kept for display
+	private static final int MAX_BODY = 1024 * 1024;
+
+	private static final byte CR = (byte) '\r';
+	private static final byte LF = (byte) '\n';
+
+	private static final byte[] HOST = "host:".getBytes();
+	private static final byte[] CONTENT_LENGTH = "content-length:".getBytes();
+	private static final byte[] CONNECTION = "connection:".getBytes();
+	private static final byte[] TRANSFER_ENCODING = "transfer-encoding:".getBytes();
+	private static final byte[] CONTENT_ENCODING = "content-encoding:".getBytes();
+	private static final byte[] KEEP_ALIVE = "keep-alive".getBytes();
+	private static final byte[] CHUNKED = "chunked".getBytes();
+
+	// parser states
+	private static final byte HEADER = 0;
+	private static final byte BODY = 1;
+	private static final byte BODY_TO_END = 2;
+	private static final byte CHUNK_SIZE = 3;
+	private static final byte CHUNK_DATA = 4;
+	private static final byte CHUNK_END = 5;
+	private static final byte TRAILER = 6;
+
+	protected HTTPConnection conn;
+	protected boolean isRequest;
+	protected HTTPParser request;
+
+	// replacement Host: header line for requests
+	protected byte[] hostLine;
+
+	// methods of requests that have not been answered yet, used to find responses to HEAD
+	protected LinkedList<String> methods = new LinkedList<String>();
+
+	private byte state = HEADER;
+
+	// the incomplete line, reused for every line
+	private byte[] line = new byte[256];
+	private int lineLength;
+
+	// output, reused for every call
+	private ByteBuffer out = ByteBuffer.allocate(BUFFER);
+
+	// start of output that has not yet been added to the request
+	private int captured;
+	private boolean captureNew;
+
+	// current message
+	private int lineCount;
+	private long contentLength;
+	private long bytesLeft;
+	private boolean chunked;
+	private boolean keepAlive;
+	private boolean interim;
+	private boolean noBody;
+	private ContentBuffer body;
+	private ContentDecoder decoder;
+
+	/**
+	 * Create a new parser.
+	 *
+	 * @param conn the connection to record messages in
+	 * @param isRequest <code>true</code> to parse requests, and <code>false</code>
+	 *    to parse responses
+	 * @param host the host to put in the Host: header of requests
+	 * @param port the port to put in the Host: header of requests
+	 * @param request for responses, the parser of the requests on the same
+	 *    connection; <code>null</code> for requests
+	 */
+	public HTTPParser(HTTPConnection conn, boolean isRequest, String host, int port, HTTPParser request) {
+		this.conn = conn;
+		this.isRequest = isRequest;
+		this.request = request;
+		String t = "Host: " + host;
+		if (port != 80)
+			t += ":" + port;
+		hostLine = (t + "\r\n").getBytes();
+		resetMessage();
+	}
+
+	/**
+	 * Parse the given data. All of the data is consumed, and the data to pass
+	 * on is returned. The returned buffer may be the given buffer, and is only
+	 * valid until the next call to this parser.
+	 *
+	 * @param in the data that was read
+	 * @return the data to pass on
+	 */
+	public ByteBuffer parse(ByteBuffer in) {
+		out.clear();
+		captured = 0;
+
+		// pass body data straight through when there is nothing else to send
+		if ((state == BODY && in.remaining() <= bytesLeft) || state == BODY_TO_END) {
+			captureBody(in, in.position(), in.limit());
+			capture(in, in.position(), in.limit());
+			if (state == BODY) {
+				bytesLeft -= in.remaining();
+				if (bytesLeft == 0)
+					endMessage();
+			}
+			return in;
+		}
+
+		while (in.hasRemaining()) {
+			switch (state) {
+				case BODY:
+				case CHUNK_DATA: {
+					int n = (int) Math.min(in.remaining(), bytesLeft);
+					int pos = in.position();
+					captureBody(in, pos, pos + n);
+					emit(in, pos, n);
+					bytesLeft -= n;
+					if (bytesLeft == 0) {
+						if (state == BODY)
+							endMessage();
+						else
+							state = CHUNK_END;
+					}
+					break;
+				}
+				case BODY_TO_END: {
+					int pos = in.position();
+					int n = in.remaining();
+					captureBody(in, pos, pos + n);
+					emit(in, pos, n);
+					break;
+				}
+				default: {
+					if (readLine(in))
+						parseLine();
+				}
+			}
+		}
+
+		capture(out, captured, out.position());
+		out.flip();
+		return out;
+	}
+
+	/**
+	 * Called when the other side has closed the connection. Completes a
+	 * response that is delimited by the end of the connection, and discards
+	 * any other incomplete message.
+	 */
+	public void endOfStream() {
+		if (state == BODY_TO_END)
+			endMessage();
+		else {
+			if (body != null)
+				body.dispose();
+			resetMessage();
+		}
+	}
+
+	/**
+	 * Add bytes to the line buffer, up to and including the next line feed.
+	 * Returns true if the line is complete.
+	 */
+	private boolean readLine(ByteBuffer in) {
+		int pos = in.position();
+		int limit = in.limit();
+		int end = pos;
+		while (end < limit && in.get(end) != LF)
+			end++;
+		boolean complete = end < limit;
+		if (complete)
+			end++;
+
+		int n = end - pos;
+		if (lineLength + n > line.length) {
+			byte[] b = new byte[Math.max(line.length * 2, lineLength + n)];
+			System.arraycopy(line, 0, b, 0, lineLength);
+			line = b;
+		}
+		in.get(line, lineLength, n);
+		lineLength += n;
+		return complete;
+	}
+
+	/**
+	 * Parse the complete line in the line buffer, and pass it on.
+	 */
+	private void parseLine() {
+		// length without the line terminator
+		int len = lineLength - 1;
+		if (len > 0 && line[len - 1] == CR)
+			len--;
+
+		if (Trace.PARSING) {
+			Trace.trace(Trace.STRING_PARSING, "Parsing line: '" + new String(line, 0, len) + "'");
+		}
+
+		if (state == CHUNK_SIZE) {
+			emitLine();
+			long size = parseNumber(0, len, 16);
+			if (size <= 0)
+				state = TRAILER;
+			else {
+				bytesLeft = size;
+				state = CHUNK_DATA;
+			}
+			return;
+		}
+
+		if (state == CHUNK_END) {
+			emitLine();
+			state = CHUNK_SIZE;
+			return;
+		}
+
+		if (len == 0) {
+			emitLine();
+			if (state == TRAILER)
+				endMessage();
+			else if (lineCount > 0)
+				endHeader();
+			// else ignore blank lines between messages
+			return;
+		}
+
+		if (state == TRAILER) {
+			emitLine();
+			return;
+		}
+
+		if (lineCount++ == 0) {
+			startMessage(len);
+			emitLine();
+			return;
+		}
+
+		if (isRequest && startsWith(HOST, len)) {
+			emit(hostLine);
+			lineLength = 0;
+			return;
+		}
+
+		if (startsWith(CONTENT_LENGTH, len))
+			contentLength = parseNumber(CONTENT_LENGTH.length, len, 10);
+		else if (startsWith(CONNECTION, len)) {
+			if (contains(KEEP_ALIVE, CONNECTION.length, len))
+				keepAlive = true;
+		} else if (startsWith(TRANSFER_ENCODING, len)) {
+			if (contains(CHUNKED, TRANSFER_ENCODING.length, len))
+				chunked = true;
+		} else if (!isRequest && startsWith(CONTENT_ENCODING, len)) {
+			String encoding = new String(line, CONTENT_ENCODING.length, len - CONTENT_ENCODING.length).trim();
+			decoder = ContentDecoder.create(encoding, MAX_BODY);
+		}
+		emitLine();
+	}
+
+	/**
+	 * Handle the first line of a message.
+	 */
+	private void startMessage(int len) {
+		// record the previous message's data before starting a new one
+		capture(out, captured, out.position());
+
+		String s = new String(line, 0, len);
+		int index1 = s.indexOf(' ');
+		int index2 = s.indexOf(' ', index1 + 1);
+		if (index2 < 0)
+			index2 = len;
+
+		if (isRequest) {
+			captureNew = true;
+			if (index1 > 0) {
+				synchronized (methods) {
+					methods.add(s.substring(0, index1));
+				}
+				if (index1 <= 15 && index2 > index1) {
+					conn.setLabel(s.substring(index1 + 1, index2), true);
+					captureNew = false;
+				}
+			}
+			return;
+		}
+
+		String responseType = null;
+		if (index1 > 0 && index2 > index1)
+			responseType = s.substring(index1 + 1, index2).trim();
+		if (Trace.PARSING) {
+			Trace.trace(Trace.STRING_PARSING, "Response Type: " + responseType);
+		}
+
+		// interim (1xx) responses are recorded with the final response that follows
+		captureNew = !interim;
+		interim = responseType != null && responseType.startsWith("1");
+		if (interim)
+			return;
+
+		String method = null;
+		if (request != null) {
+			synchronized (request.methods) {
+				if (!request.methods.isEmpty())
+					method = request.methods.removeFirst();
+			}
+		}
+		noBody = "HEAD".equals(method) || "204".equals(responseType) || "304".equals(responseType);
+	}
+
+	/**
+	 * Handle the end of the header, and start reading the body.
+	 */
+	private void endHeader() {
+		capture(out, captured, out.position());
+		Request rr = conn.getRequestResponse(isRequest);
+		if (isRequest)
+			rr.setProperty(HTTPRequest.HTTP_REQUEST_HEADER, rr.getRequest(Request.ALL));
+		else
+			rr.setProperty(HTTPRequest.HTTP_RESPONSE_HEADER, rr.getResponse(Request.ALL));
+
+		if (interim) {
+			// the final response follows
+			resetMessage();
+			interim = true;
+			return;
+		}
+
+		if (noBody)
+			endMessage();
+		else if (chunked)
+			state = CHUNK_SIZE;
+		else if (contentLength > 0) {
+			bytesLeft = contentLength;
+			state = BODY;
+		} else if (contentLength == 0 || isRequest || keepAlive)
+			endMessage();
+		else // the response ends when the connection is closed
+			state = BODY_TO_END;
+	}
+
+	/**
+	 * Handle the end of a message.
+	 */
+	private void endMessage() {
+		// record the rest of the message, so its content is complete when closed below
+		capture(out, captured, out.position());
+
+		// the body is kept as it was sent, and responses are also kept decoded, if they could be
+		byte[] b = null;
+		byte[] decoded = null;
+		if (body != null) {
+			b = getBytes(body);
+			if (decoder != null && !decoder.isFailed())
+				decoded = getBytes(decoder.getContent());
+			body.dispose();
+		}
+		if (b == null)
+			b = new byte[0];
+
+		Request rr = conn.getRequestResponse(isRequest);
+		rr.setProperty(isRequest ? HTTPRequest.HTTP_REQUEST_BODY : HTTPRequest.HTTP_RESPONSE_BODY, b);
+		if (decoded != null)
+			rr.setProperty(HTTPRequest.HTTP_RESPONSE_DECODED_BODY, decoded);
+		rr.closeContent();
+
+		if (Trace.PARSING) {
+			Trace.trace(Trace.STRING_PARSING, "Done HTTP " + (isRequest ? "request" : "response"));
+		}
+		resetMessage();
+	}
+
+	/**
+	 * Returns the content of the given buffer for display, or a message if it
+	 * is too large.
+	 */
+	private static byte[] getBytes(ContentBuffer content) {
+		if (content.size() > MAX_BODY)
+			return Messages.errorContentSize.getBytes();
+		return content.toByteArray();
+	}
+
+	private void resetMessage() {
+		state = HEADER;
+		lineCount = 0;
+		contentLength = -1;
+		bytesLeft = 0;
+		chunked = false;
+		keepAlive = false;
+		interim = false;
+		noBody = false;
+		body = null;
+		if (decoder != null)
+			decoder.dispose();
+		decoder = null;
+	}
+
+	/**
+	 * Keep body data for display, decoding it if it has a content coding.
+	 */
+	private void captureBody(ByteBuffer in, int from, int to) {
+		if (body == null)
+			body = new ContentBuffer();
+
+		ByteBuffer b = in.duplicate();
+		b.limit(to);
+		b.position(from);
+		if (body.size() <= MAX_BODY)
+			body.append(b);
+		if (decoder != null)
+			decoder.decode(b);
+	}
+
+	/**
+	 * Add data that has been passed on to the current request or response.
+	 */
+	private void capture(ByteBuffer buf, int from, int to) {
+		if (to <= from)
+			return;
+
+		ByteBuffer b = buf.duplicate();
+		b.limit(to);
+		b.position(from);
+		if (isRequest)
+			conn.addRequest(b, captureNew);
+		else
+			conn.addResponse(b, captureNew);
+		captureNew = false;
+		if (buf == out)
+			captured = to;
+	}
+
+	private void emitLine() {
+		ensureCapacity(lineLength);
+		out.put(line, 0, lineLength);
+		lineLength = 0;
+	}
+
+	private void emit(byte[] b) {
+		ensureCapacity(b.length);
+		out.put(b);
+	}
+
+	private void emit(ByteBuffer in, int pos, int n) {
+		ensureCapacity(n);
+		ByteBuffer b = in.duplicate();
+		b.limit(pos + n);
+		out.put(b);
+		in.position(pos + n);
+	}
+
+	private void ensureCapacity(int n) {
+		if (out.remaining() >= n)
+			return;
+
+		ByteBuffer b = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + n));
+		out.flip();
+		b.put(out);
+		out = b;
+	}
+
+	/**
+	 * Returns true if the line starts with the given lower case header name.
+	 */
+	private boolean startsWith(byte[] name, int len) {
+		if (len < name.length)
+			return false;
+		for (int i = 0; i < name.length; i++) {
+			if (toLowerCase(line[i]) != name[i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if the given lower case token appears in the line between
+	 * the given indexes.
+	 */
+	private boolean contains(byte[] token, int from, int to) {
+		int last = to - token.length;
+		for (int i = from; i <= last; i++) {
+			int j = 0;
+			while (j < token.length && toLowerCase(line[i + j]) == token[j])
+				j++;
+			if (j == token.length)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Parse a number from the line, skipping leading white space and
+	 * stopping at the first character that is not a digit. Returns -1 if
+	 * there is no number.
+	 */
+	private long parseNumber(int from, int to, int radix) {
+		int i = from;
+		while (i < to && (line[i] == ' ' || line[i] == '\t'))
+			i++;
+
+		long n = -1;
+		while (i < to) {
+			int d = Character.digit((char) line[i], radix);
+			if (d < 0)
+				break;
+			n = (n < 0 ? 0 : n * radix) + d;
+			i++;
+		}
+		return n;
+	}
+
+	private static byte toLowerCase(byte b) {
+		if (b >= 'A' && b <= 'Z')
+			return (byte) (b + ('a' - 'A'));
+		return b;
+	}
+}
@@ -12,11 +12,13 @@ package org.eclipse.wst.internet.monitor.core.internal.http;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.eclipse.wst.internet.monitor.core.internal.Connection;
 import org.eclipse.wst.internet.monitor.core.internal.ProtocolAdapterDelegate;
+import org.eclipse.wst.internet.monitor.core.internal.RelayHandler;
 import org.eclipse.wst.internet.monitor.core.internal.provisional.IMonitor;
 /**
  * 
@@ -37,6 +39,24 @@ public class HTTPProtocolAdapter extends ProtocolAdapterDelegate {
 		response.start();
 	}
 
+	/**
+	 * @see ProtocolAdapterDelegate#createRelayHandler(IMonitor)
+	 */
+	public RelayHandler createRelayHandler(IMonitor monitor) {
+		HTTPConnection conn = new HTTPConnection(monitor);
+		final HTTPParser request = new HTTPParser(conn, true, monitor.getRemoteHost(), monitor.getRemotePort(), null);
+		final HTTPParser response = new HTTPParser(conn, false, "localhost", monitor.getLocalPort(), request);
+		return new RelayHandler() {
+			public ByteBuffer handle(ByteBuffer data, boolean isRequest) {
+				return (isRequest ? request : response).parse(data);
+			}
+
+			public void endOfStream(boolean isRequest) {
+				(isRequest ? request : response).endOfStream();
+			}
+		};
+	}
+
 	/**
 	 * @see ProtocolAdapterDelegate#disconnect(IMonitor)
 	 */
@@ -23,6 +23,9 @@ public class HTTPRequest extends Request {
 	protected static final String HTTP_REQUEST_BODY = "request-body";
 	protected static final String HTTP_RESPONSE_BODY = "response-body";
 
+	// the response body with its content coding (e.g. gzip) removed
+	protected static final String HTTP_RESPONSE_DECODED_BODY = "response-decoded-body";
+
 	protected static final byte[] EMPTY = new byte[0];
 
 	/**
@@ -42,7 +45,7 @@ public class HTTPRequest extends Request {
 	 */
 	public byte[] getRequest(int type2) {
 		if (type2 == ALL)
-			return request;
+			return super.getRequest(ALL);
 		else if (type2 == TRANSPORT)
 			return getRequestHeader();
 		else
@@ -54,7 +57,7 @@ public class HTTPRequest extends Request {
 	 */
 	public byte[] getResponse(int type2) {
 		if (type2 == ALL)
-			return response;
+			return super.getResponse(ALL);
 		else if (type2 == TRANSPORT)
 			return getResponseHeader();
 		else
@@ -89,6 +92,21 @@ public class HTTPRequest extends Request {
 		return (byte[]) obj;
 	}
 
+	/**
+	 * Returns the response body with its content coding, e.g. gzip or
+	 * deflate, removed. The content returned by {@link #getResponse(int)} is
+	 * the body as it was sent.
+	 *
+	 * @return the decoded response body, or <code>null</code> if the response
+	 *    did not have a content coding or could not be decoded
+	 */
+	public byte[] getDecodedResponseContent() {
+		Object obj = getProperty(HTTP_RESPONSE_DECODED_BODY);
+		if (obj == null || !(obj instanceof byte[]))
+			return null;
+		return (byte[]) obj;
+	}
+
 	protected void setName(String n) {
 		super.setName(n);
 	}
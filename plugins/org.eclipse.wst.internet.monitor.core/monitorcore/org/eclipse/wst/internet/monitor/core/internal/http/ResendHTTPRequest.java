@@ -13,6 +13,7 @@ package org.eclipse.wst.internet.monitor.core.internal.http;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 
 import org.eclipse.wst.internet.monitor.core.internal.Connection;
 import org.eclipse.wst.internet.monitor.core.internal.Monitor;
@@ -83,6 +84,13 @@ public class ResendHTTPRequest extends HTTPRequest {
 		// Don't want to add to the request as we already have the request.
 	}
 
+	/** (non-Javadoc)
+	 * @see Request#addToRequest(ByteBuffer)
+	 */
+	public void addToRequest(ByteBuffer addRequest) {
+		// Don't want to add to the request as we already have the request.
+	}
+
 	/**
 	 * Returns <code>true</code> if the request has been sent.
 	 * 
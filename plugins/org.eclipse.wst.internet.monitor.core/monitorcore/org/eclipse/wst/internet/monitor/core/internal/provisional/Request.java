@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2011 IBM Corporation and others.
+ * Copyright (c) 2004, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,11 +10,16 @@
  *******************************************************************************/
 package org.eclipse.wst.internet.monitor.core.internal.provisional;
 
+import java.nio.ByteBuffer;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Properties;
 
 import org.eclipse.core.runtime.IAdaptable;
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.wst.internet.monitor.core.internal.ContentBuffer;
 import org.eclipse.wst.internet.monitor.core.internal.Monitor;
 import org.eclipse.wst.internet.monitor.core.internal.Trace;
 /**
@@ -40,11 +45,19 @@ public class Request implements IAdaptable {
 	protected int remotePort;
 	protected byte[] request;
 	protected byte[] response;
+
+	// captured content; request and response are built from these when needed
+	protected ContentBuffer requestBuffer;
+	protected ContentBuffer responseBuffer;
 	
 	protected String name;
 	protected String protocolId;
 
 	protected Properties properties;
+
+	// keys used for the request and response in released content
+	private static final String RELEASED_REQUEST = "#request";
+	private static final String RELEASED_RESPONSE = "#response";
 	
 	/**
 	 * Request2 content type (value 1) for the transport (header) of a request
@@ -155,7 +168,11 @@ public class Request implements IAdaptable {
 	 * @return the content bytes
 	 */
 	public byte[] getRequest(int type) {
-		return request;
+		synchronized (this) {
+			if (request == null && requestBuffer != null && requestBuffer.size() > 0)
+				request = requestBuffer.toByteArray();
+			return request;
+		}
 	}
 
 	/**
@@ -173,7 +190,11 @@ public class Request implements IAdaptable {
 	 * @return the content bytes
 	 */
 	public byte[] getResponse(int type) {
-		return response;
+		synchronized (this) {
+			if (response == null && responseBuffer != null && responseBuffer.size() > 0)
+				response = responseBuffer.toByteArray();
+			return response;
+		}
 	}
 
 	/**
@@ -256,17 +277,29 @@ public class Request implements IAdaptable {
 	public void addToRequest(byte[] addRequest) {
 		if (addRequest == null || addRequest.length == 0)
 			return;
-	
-		if (request == null || request.length == 0) {
-			setRequest(addRequest);
+		
+		addToRequest(ByteBuffer.wrap(addRequest));
+	}
+
+	/**
+	 * Add the remaining bytes of the given buffer to the request. The bytes
+	 * are copied, and the buffer's position is not changed.
+	 *
+	 * @param addRequest the bytes to add
+	 */
+	public void addToRequest(ByteBuffer addRequest) {
+		if (addRequest == null || !addRequest.hasRemaining())
 			return;
+		
+		synchronized (this) {
+			if (requestBuffer == null) {
+				requestBuffer = new ContentBuffer();
+				if (request != null)
+					requestBuffer.append(ByteBuffer.wrap(request));
+			}
+			requestBuffer.append(addRequest);
+			request = null;
 		}
-	
-		int size = request.length + addRequest.length;
-		byte[] b = new byte[size];
-		System.arraycopy(request, 0, b, 0, request.length);
-		System.arraycopy(addRequest, 0, b, request.length, addRequest.length);
-		request = b;
 		fireChangedEvent();
 	}
 
@@ -279,16 +312,30 @@ public class Request implements IAdaptable {
 		if (addResponse == null || addResponse.length == 0)
 			return;
 		
-		if (response == null || response.length == 0) {
-			setResponse(addResponse);
+		addToResponse(ByteBuffer.wrap(addResponse));
+	}
+
+	/**
+	 * Add the remaining bytes of the given buffer to the response. The bytes
+	 * are copied, and the buffer's position is not changed.
+	 *
+	 * @param addResponse the bytes to add
+	 */
+	public void addToResponse(ByteBuffer addResponse) {
+		if (addResponse == null || !addResponse.hasRemaining())
 			return;
-		}
 		
-		int size = response.length + addResponse.length;
-		byte[] b = new byte[size];
-		System.arraycopy(response, 0, b, 0, response.length);
-		System.arraycopy(addResponse, 0, b, response.length, addResponse.length);
-		response = b;
+		synchronized (this) {
+			if (responseBuffer == null) {
+				responseBuffer = new ContentBuffer();
+				if (response != null)
+					responseBuffer.append(ByteBuffer.wrap(response));
+				else
+					responseTime = System.currentTimeMillis() - date.getTime();
+			}
+			responseBuffer.append(addResponse);
+			response = null;
+		}
 		fireChangedEvent();
 	}
 
@@ -301,7 +348,12 @@ public class Request implements IAdaptable {
 		if (request == null || request.length == 0)
 			return;
 		
-		this.request = request;
+		synchronized (this) {
+			if (requestBuffer != null)
+				requestBuffer.dispose();
+			requestBuffer = null;
+			this.request = request;
+		}
 		monitor.requestChanged(this);
 	}
 
@@ -314,11 +366,182 @@ public class Request implements IAdaptable {
 		if (response == null || response.length == 0)
 			return;
 	
-		this.response = response;
-		responseTime = System.currentTimeMillis() - date.getTime();
+		synchronized (this) {
+			if (responseBuffer != null)
+				responseBuffer.dispose();
+			responseBuffer = null;
+			this.response = response;
+			responseTime = System.currentTimeMillis() - date.getTime();
+		}
 		monitor.requestChanged(this);
 	}
 
+	/**
+	 * Returns the approximate number of bytes of captured content that this
+	 * request holds in memory, including byte array properties. Content that
+	 * has been moved to a temporary file is not counted.
+	 *
+	 * @return the size of the content in memory
+	 */
+	public synchronized long getContentSize() {
+		long size = 0;
+		if (requestBuffer != null)
+			size += requestBuffer.memorySize();
+		if (request != null)
+			size += request.length;
+		if (responseBuffer != null)
+			size += responseBuffer.memorySize();
+		if (response != null)
+			size += response.length;
+		
+		Iterator iterator = properties.values().iterator();
+		while (iterator.hasNext()) {
+			Object obj = iterator.next();
+			if (obj instanceof byte[])
+				size += ((byte[]) obj).length;
+		}
+		return size;
+	}
+
+	/**
+	 * Removes the captured content of this request, including byte array
+	 * properties, from memory and returns it. The returned map can be stored
+	 * elsewhere by the caller and passed to {@link #restoreContent(Map)} when
+	 * the content is needed again. Until then the content of this request is
+	 * missing, so this method should only be used on requests that are not
+	 * being displayed.
+	 * <p>
+	 * Content that has already been moved to a temporary file is not in
+	 * memory, and is kept by the request rather than returned; the file is
+	 * closed until the content is needed again.
+	 * </p>
+	 * <p>
+	 * No change events are fired.
+	 * </p>
+	 *
+	 * @return the content that was removed, which may be empty
+	 */
+	public synchronized Map<String, byte[]> releaseContent() {
+		Map<String, byte[]> content = new HashMap<String, byte[]>();
+		if (isInMemory(requestBuffer)) {
+			byte[] b = getRequest(ALL);
+			if (b != null)
+				content.put(RELEASED_REQUEST, b);
+			if (requestBuffer != null)
+				requestBuffer.dispose();
+			requestBuffer = null;
+		}
+		request = null;
+		if (isInMemory(responseBuffer)) {
+			byte[] b = getResponse(ALL);
+			if (b != null)
+				content.put(RELEASED_RESPONSE, b);
+			if (responseBuffer != null)
+				responseBuffer.dispose();
+			responseBuffer = null;
+		}
+		response = null;
+		closeContent();
+		
+		Iterator iterator = properties.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry entry = (Map.Entry) iterator.next();
+			if (entry.getValue() instanceof byte[]) {
+				content.put((String) entry.getKey(), (byte[]) entry.getValue());
+				iterator.remove();
+			}
+		}
+		return content;
+	}
+
+	/**
+	 * Close any temporary files that hold the captured content of this request,
+	 * so that they are not kept open. Called once the request or response is
+	 * complete; the files are reopened if more content is added, or when the
+	 * content is read.
+	 */
+	public synchronized void closeContent() {
+		if (requestBuffer != null)
+			requestBuffer.close();
+		if (responseBuffer != null)
+			responseBuffer.close();
+	}
+
+	/**
+	 * Returns <code>true</code> if the given buffer, which may be null, does
+	 * not keep its content in a temporary file.
+	 */
+	private static boolean isInMemory(ContentBuffer buffer) {
+		return buffer == null || buffer.memorySize() == buffer.size();
+	}
+
+	/**
+	 * Restores content that was removed by {@link #releaseContent()}. Content
+	 * that was captured after the release is kept, and is added after the
+	 * restored content.
+	 * <p>
+	 * No change events are fired.
+	 * </p>
+	 *
+	 * @param content the content that was returned by <code>releaseContent()</code>
+	 */
+	public synchronized void restoreContent(Map<String, byte[]> content) {
+		if (content == null)
+			throw new IllegalArgumentException();
+		
+		byte[] b = content.get(RELEASED_REQUEST);
+		if (b != null) {
+			ContentBuffer buffer = new ContentBuffer();
+			buffer.append(ByteBuffer.wrap(b));
+			if (requestBuffer != null || request != null) {
+				buffer.append(ByteBuffer.wrap(getRequest(ALL)));
+				if (requestBuffer != null)
+					requestBuffer.dispose();
+			}
+			requestBuffer = buffer;
+			request = null;
+		}
+		b = content.get(RELEASED_RESPONSE);
+		if (b != null) {
+			ContentBuffer buffer = new ContentBuffer();
+			buffer.append(ByteBuffer.wrap(b));
+			if (responseBuffer != null || response != null) {
+				buffer.append(ByteBuffer.wrap(getResponse(ALL)));
+				if (responseBuffer != null)
+					responseBuffer.dispose();
+			}
+			responseBuffer = buffer;
+			response = null;
+		}
+		
+		Iterator<Map.Entry<String, byte[]>> iterator = content.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<String, byte[]> entry = iterator.next();
+			String key = entry.getKey();
+			if (!RELEASED_REQUEST.equals(key) && !RELEASED_RESPONSE.equals(key) && !properties.containsKey(key))
+				properties.put(key, entry.getValue());
+		}
+	}
+
+	/**
+	 * Release the captured content of this request, including any temporary
+	 * files that it uses. Called when the request is no longer needed; the
+	 * content of the request is missing afterwards.
+	 * <p>
+	 * No change events are fired.
+	 * </p>
+	 */
+	public synchronized void dispose() {
+		if (requestBuffer != null)
+			requestBuffer.dispose();
+		requestBuffer = null;
+		request = null;
+		if (responseBuffer != null)
+			responseBuffer.dispose();
+		responseBuffer = null;
+		response = null;
+	}
+
 	/**
 	 * Returns the monitor that created this request.
 	 * Change events will be fired from this monitor.
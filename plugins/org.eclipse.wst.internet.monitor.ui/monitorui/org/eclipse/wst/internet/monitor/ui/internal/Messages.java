@@ -28,6 +28,7 @@ public class Messages extends NLS {
 	public static String errorDialogTitle;
 	public static String preferenceDescription;
 	public static String prefShowView;
+	public static String prefMemoryLimit;
 	public static String monitorList;
 	public static String columnStatus;
 	public static String columnRemote;
@@ -39,6 +39,7 @@ import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Spinner;
 import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableColumn;
 import org.eclipse.swt.widgets.Text;
@@ -53,6 +54,7 @@ import org.eclipse.wst.internet.monitor.core.internal.provisional.MonitorCore;
  */
 public class MonitorPreferencePage extends PreferencePage implements IWorkbenchPreferencePage, IShellProvider {
 	protected Button displayButton;
+	protected Spinner memoryLimit;
 	
 	protected Table table;
 	protected TableViewer tableViewer;
@@ -109,6 +111,18 @@ public class MonitorPreferencePage extends PreferencePage implements IWorkbenchP
 		displayButton.setLayoutData(data);
 		PlatformUI.getWorkbench().getHelpSystem().setHelp(displayButton, ContextIds.PREF_SHOW);
 		
+		Label memoryLabel = new Label(composite, SWT.NONE);
+		memoryLabel.setText(Messages.prefMemoryLimit);
+		data = new GridData(GridData.HORIZONTAL_ALIGN_BEGINNING);
+		memoryLabel.setLayoutData(data);
+		
+		memoryLimit = new Spinner(composite, SWT.BORDER);
+		memoryLimit.setMinimum(1);
+		memoryLimit.setMaximum(4096);
+		memoryLimit.setSelection(MonitorUIPlugin.getMemoryLimitPreference());
+		data = new GridData(GridData.HORIZONTAL_ALIGN_BEGINNING);
+		memoryLimit.setLayoutData(data);
+		
 		Label label = new Label(composite, SWT.WRAP);
 		label.setText(Messages.monitorList);
 		data = new GridData(GridData.FILL_HORIZONTAL);
@@ -306,6 +320,7 @@ public class MonitorPreferencePage extends PreferencePage implements IWorkbenchP
 	 */
 	protected void performDefaults() {
 		displayButton.setSelection(MonitorUIPlugin.getDefaultShowOnActivityPreference());
+		memoryLimit.setSelection(MonitorUIPlugin.getDefaultMemoryLimitPreference());
 		super.performDefaults();
 	}
 
@@ -314,6 +329,7 @@ public class MonitorPreferencePage extends PreferencePage implements IWorkbenchP
 	 */
 	public boolean performOk() {
 		MonitorUIPlugin.setShowOnActivityPreference(displayButton.getSelection());
+		MonitorUIPlugin.setMemoryLimitPreference(memoryLimit.getSelection());
 		MonitorUIPlugin.getInstance().savePluginPreferences();
 		return true;
 	}
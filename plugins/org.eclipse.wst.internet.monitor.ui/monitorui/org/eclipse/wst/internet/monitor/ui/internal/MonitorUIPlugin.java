@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2011 IBM Corporation and others.
+ * Copyright (c) 2003, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,6 +12,8 @@ package org.eclipse.wst.internet.monitor.ui.internal;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.InputStreamReader;
 import java.net.URL;
 import java.util.*;
@@ -32,8 +34,6 @@ import org.osgi.framework.BundleContext;
 public class MonitorUIPlugin extends AbstractUIPlugin {
 	public static final String PLUGIN_ID = "org.eclipse.wst.internet.monitor.ui";
 	
-	private static final byte[] BUFFER = new byte[4096];
-
 	private static MonitorUIPlugin singleton;
 
 	protected Map<String, ImageDescriptor> imageDescriptors = new HashMap<String, ImageDescriptor>();
@@ -69,8 +69,11 @@ public class MonitorUIPlugin extends AbstractUIPlugin {
 	private static final String SHOW_VIEW_ON_ACTIVITY = "show-view";
 	private static final String PIN_VIEW = "pin-view";
 	private static final String SHOW_HEADER = "show-header";
+	private static final String MEMORY_LIMIT = "memory-limit";
+
+	private static final String REQUEST_FILE = "requests.dat";
 
-	protected List<Request> requests = new ArrayList<Request>();
+	protected RequestStore requests;
 
 	protected IMonitorListener monitorListener = new IMonitorListener() {
 		public void monitorAdded(IMonitor monitor) {
@@ -97,6 +100,8 @@ public class MonitorUIPlugin extends AbstractUIPlugin {
 		}
 
 		public void requestChanged(IMonitor monitor, Request request) {
+			requests.changed(request);
+			
 			if (MonitorView.view != null)
 				MonitorView.view.doRequestChanged(request);
 		}
@@ -208,6 +213,10 @@ public class MonitorUIPlugin extends AbstractUIPlugin {
 		
 		getPreferenceStore().setDefault(MonitorUIPlugin.SHOW_VIEW_ON_ACTIVITY, true);
 		getPreferenceStore().setDefault(MonitorUIPlugin.PIN_VIEW, false);
+		getPreferenceStore().setDefault(MonitorUIPlugin.MEMORY_LIMIT, 64);
+		
+		File file = getStateLocation().append(REQUEST_FILE).toFile();
+		requests = new RequestStore(file, getMemoryLimitPreference() * 1024L * 1024L);
 		
 		MonitorCore.addMonitorListener(monitorListener);
 		
@@ -236,6 +245,8 @@ public class MonitorUIPlugin extends AbstractUIPlugin {
 		}
 		
 		MonitorCore.removeMonitorListener(monitorListener);
+		
+		requests.dispose();
 	}
 
 	public static boolean getDefaultShowOnActivityPreference() {
@@ -269,6 +280,26 @@ public class MonitorUIPlugin extends AbstractUIPlugin {
 		getInstance().savePluginPreferences();
 	}
 
+	public static int getDefaultMemoryLimitPreference() {
+		return getInstance().getPreferenceStore().getDefaultInt(MEMORY_LIMIT);
+	}
+
+	/**
+	 * Returns the amount of request content to keep in memory, in MB. Content
+	 * beyond this limit is moved to disk.
+	 * 
+	 * @return the memory limit, in MB
+	 */
+	public static int getMemoryLimitPreference() {
+		return getInstance().getPreferenceStore().getInt(MEMORY_LIMIT);
+	}
+
+	public static void setMemoryLimitPreference(int limit) {
+		getInstance().getPreferenceStore().setValue(MEMORY_LIMIT, limit);
+		getInstance().savePluginPreferences();
+		getInstance().requests.setLimit(limit * 1024L * 1024L);
+	}
+
 	/**
 	 * Convenience method to unzip the given bytes using gzip. The returned byte
 	 * array is either the unzipped results, or the original byte array if unzipping
@@ -276,24 +307,23 @@ public class MonitorUIPlugin extends AbstractUIPlugin {
 	 * 
 	 * @param b a byte array
 	 * @return the unzipped array, or the original array if unsuccessful
+	 * @deprecated HTTP responses are decoded by the monitor when they are
+	 *    captured, so content no longer needs to be unzipped for display
 	 */
-	public static synchronized byte[] unzip(byte[] b) {
+	public static byte[] unzip(byte[] b) {
 		if (b == null)
 			throw new IllegalArgumentException();
 		
 		try {
 			GZIPInputStream gin = new GZIPInputStream(new ByteArrayInputStream(b));
-			byte[] t = new byte[0];
-			while (gin.available() > 0) {
-				int n = gin.read(BUFFER);
-				if (n > 0) {
-					byte[] temp = new byte[t.length + n];
-					System.arraycopy(t, 0, temp, 0, t.length);
-					System.arraycopy(BUFFER, 0, temp, t.length, n);
-					t = temp;
-				}
+			ByteArrayOutputStream out = new ByteArrayOutputStream(b.length * 4);
+			byte[] buf = new byte[4096];
+			int n = gin.read(buf);
+			while (n >= 0) {
+				out.write(buf, 0, n);
+				n = gin.read(buf);
 			}
-			return t;
+			return out.toByteArray();
 		} catch (Exception e) {
 			if (Trace.FINEST) {
 				Trace.trace(Trace.STRING_FINEST, "Could not unzip byte array");
@@ -335,22 +365,30 @@ public class MonitorUIPlugin extends AbstractUIPlugin {
 	}
 
 	public void addRequest(Request request) {
-		if (!requests.contains(request))
-			requests.add(request);
+		requests.add(request);
 	}
 
 	/**
-	 * Returns a list of the current requests.
+	 * Returns a list of the current requests. The returned array is shared,
+	 * and must not be modified.
 	 *
 	 * @return an array of requests
 	 */
 	public Request[] getRequests() {
-		Request[] r = new Request[requests.size()];
-		requests.toArray(r);
-		return r;
+		return requests.getRequests();
+	}
+
+	/**
+	 * Make sure that the content of the given request is in memory, e.g.
+	 * before it is displayed.
+	 * 
+	 * @param request a request
+	 */
+	public void loadRequest(Request request) {
+		requests.load(request);
 	}
 	
 	public void clearRequests() {
-		requests = new ArrayList<Request>();
+		requests.clear();
 	}
 }
@@ -0,0 +1,465 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.internet.monitor.ui.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.eclipse.wst.internet.monitor.core.internal.http.ResendHTTPRequest;
+import org.eclipse.wst.internet.monitor.core.internal.provisional.Request;
+/**
+ * The history of captured requests. Request content is kept in memory up to
+ * a limit; beyond that, the content of the least recently used requests is
+ * moved to a file and read back when the request is loaded again.
+ * <p>
+ * The file is append-only: each release writes a new record with the content
+ * that is in memory, and the store keeps the records of each request. Records
+ * that have been loaded again are dead, and once they take up more than half
+ * of the file the live records are moved down over them and the file is
+ * truncated. The file is truncated when the history is cleared, and deleted
+ * when the store is disposed.
+ * </p>
+ * <p>
+ * Requests that have changed recently are not moved to disk, so if the limit
+ * is still exceeded after a burst of traffic, another attempt is scheduled
+ * once they have been idle long enough.
+ * </p>
+ */
+public class RequestStore {
+	// requests that have changed more recently than this are still being captured, in ms
+	private static final long MIN_IDLE = 2000;
+
+	// size of dead records below which the file is never compacted
+	private static final long COMPACT_MIN = 256 * 1024;
+
+	private static final String UTF8 = "UTF-8";
+
+	private static class Record {
+		// position and length of the record in the file
+		protected long offset;
+		protected final int length;
+
+		public Record(long offset, int length) {
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	private static class Entry {
+		// bytes of content in memory
+		protected long size;
+		protected long lastChange;
+
+		// records in the file, oldest first, or null if all content is in memory
+		protected List<Record> records;
+	}
+
+	private File file;
+	private FileChannel channel;
+	private long fileSize;
+	private long deadSize;
+	private boolean noSpill;
+
+	private long limit;
+	private long memory;
+
+	// all requests, in the order they were added
+	private List<Request> requests = new ArrayList<Request>();
+	private Request[] requestArray;
+
+	private Map<Request, Entry> entries = new HashMap<Request, Entry>();
+
+	// requests with content in memory, in order of last change, least recent first
+	private LinkedHashMap<Request, Entry> resident = new LinkedHashMap<Request, Entry>(16, 0.75f, true);
+
+	// the request that was loaded last, which is never moved to disk
+	private Request loaded;
+
+	// runs an eviction once recently changed requests have been idle long enough
+	private Timer timer;
+	private TimerTask evictTask;
+
+	/**
+	 * Create a new store.
+	 *
+	 * @param file the file to move request content to
+	 * @param limit the number of bytes of content to keep in memory
+	 */
+	public RequestStore(File file, long limit) {
+		this.file = file;
+		this.limit = limit;
+	}
+
+	/**
+	 * Set the number of bytes of content to keep in memory.
+	 *
+	 * @param limit the limit, in bytes
+	 */
+	public synchronized void setLimit(long limit) {
+		this.limit = limit;
+		evict();
+	}
+
+	/**
+	 * Add a request to the store. If the request is already in the store, it
+	 * is treated as changed.
+	 *
+	 * @param request a request
+	 */
+	public synchronized void add(Request request) {
+		Entry entry = entries.get(request);
+		if (entry == null) {
+			entry = new Entry();
+			entries.put(request, entry);
+			requests.add(request);
+			requestArray = null;
+		}
+		update(request, entry);
+		evict();
+	}
+
+	/**
+	 * Notify the store that a request has changed.
+	 *
+	 * @param request a request
+	 */
+	public synchronized void changed(Request request) {
+		Entry entry = entries.get(request);
+		if (entry == null)
+			return;
+
+		update(request, entry);
+		evict();
+	}
+
+	/**
+	 * Make sure that the content of the given request is in memory. The
+	 * request is kept in memory until another request is loaded.
+	 *
+	 * @param request a request
+	 */
+	public synchronized void load(Request request) {
+		loaded = request;
+		Entry entry = entries.get(request);
+		if (entry == null || entry.records == null)
+			return;
+
+		// content is restored in front of what is in memory, so the newest record goes first
+		for (int i = entry.records.size() - 1; i >= 0; i--) {
+			Record record = entry.records.get(i);
+			Map<String, byte[]> content = read(record);
+			if (content != null)
+				request.restoreContent(content);
+			deadSize += record.length;
+		}
+		entry.records = null;
+		update(request, entry);
+		evict();
+		if (deadSize > COMPACT_MIN && deadSize * 2 > fileSize)
+			compact();
+	}
+
+	/**
+	 * Returns the requests in the order they were added. The returned array
+	 * is shared, and must not be modified.
+	 *
+	 * @return an array of requests
+	 */
+	public synchronized Request[] getRequests() {
+		if (requestArray == null)
+			requestArray = requests.toArray(new Request[requests.size()]);
+		return requestArray;
+	}
+
+	/**
+	 * Remove all requests from the store, and release their content.
+	 */
+	public synchronized void clear() {
+		for (Request request : requests)
+			request.dispose();
+		requests = new ArrayList<Request>();
+		requestArray = null;
+		entries.clear();
+		resident.clear();
+		memory = 0;
+		loaded = null;
+		if (evictTask != null) {
+			evictTask.cancel();
+			evictTask = null;
+		}
+
+		if (channel != null) {
+			try {
+				channel.truncate(0);
+			} catch (IOException e) {
+				if (Trace.WARNING) {
+					Trace.trace(Trace.STRING_WARNING, "Could not clear request file", e);
+				}
+			}
+		}
+		fileSize = 0;
+		deadSize = 0;
+	}
+
+	/**
+	 * Remove all requests and delete the file.
+	 */
+	public synchronized void dispose() {
+		clear();
+		if (timer != null) {
+			timer.cancel();
+			timer = null;
+		}
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			channel = null;
+		}
+		if (file.exists() && !file.delete()) {
+			if (Trace.WARNING) {
+				Trace.trace(Trace.STRING_WARNING, "Could not delete request file " + file);
+			}
+		}
+	}
+
+	private void update(Request request, Entry entry) {
+		long size = request.getContentSize();
+		memory += size - entry.size;
+		entry.size = size;
+		entry.lastChange = System.currentTimeMillis();
+		if (size > 0)
+			resident.put(request, entry);
+		else
+			resident.remove(request);
+	}
+
+	/**
+	 * Move the content of the least recently changed requests to disk until
+	 * the content in memory is within the limit. Only requests with content
+	 * in memory are visited, and since they are in order of last change, the
+	 * search stops at the first request that is still being captured, and
+	 * another eviction is scheduled for when that request will be idle.
+	 */
+	private void evict() {
+		if (memory <= limit || noSpill)
+			return;
+
+		long now = System.currentTimeMillis();
+		Iterator<Map.Entry<Request, Entry>> iterator = resident.entrySet().iterator();
+		while (memory > limit && !noSpill && iterator.hasNext()) {
+			Map.Entry<Request, Entry> me = iterator.next();
+			Request request = me.getKey();
+			Entry entry = me.getValue();
+			if (now - entry.lastChange < MIN_IDLE) {
+				scheduleEvict(entry.lastChange + MIN_IDLE - now);
+				break;
+			}
+			if (request == loaded || request instanceof ResendHTTPRequest)
+				continue;
+
+			if (release(request, entry))
+				iterator.remove();
+		}
+	}
+
+	/**
+	 * Run an eviction after the given delay, unless one is already scheduled.
+	 * The scheduled eviction is never later than needed, since requests only
+	 * become idle later as they change.
+	 */
+	private void scheduleEvict(long delay) {
+		if (evictTask != null)
+			return;
+
+		if (timer == null)
+			timer = new Timer("Monitor request history", true);
+		evictTask = new TimerTask() {
+			public void run() {
+				synchronized (RequestStore.this) {
+					if (evictTask != this)
+						return;
+					evictTask = null;
+					evict();
+				}
+			}
+		};
+		timer.schedule(evictTask, delay);
+	}
+
+	/**
+	 * Write the content of the given request that is in memory to a new
+	 * record. Returns true if the request no longer has content in memory.
+	 */
+	private boolean release(Request request, Entry entry) {
+		Map<String, byte[]> content = request.releaseContent();
+		try {
+			if (!content.isEmpty()) {
+				Record record = write(content);
+				if (entry.records == null)
+					entry.records = new LinkedList<Record>();
+				entry.records.add(record);
+			}
+			memory -= entry.size;
+			entry.size = 0;
+			return true;
+		} catch (IOException e) {
+			if (Trace.WARNING) {
+				Trace.trace(Trace.STRING_WARNING, "Could not write to request file " + file, e);
+			}
+			// keep everything in memory from now on
+			request.restoreContent(content);
+			noSpill = true;
+			return false;
+		}
+	}
+
+	/**
+	 * Append a record with the given content to the file. A record is a count
+	 * followed by that many (key length, key, value length, value) entries.
+	 */
+	private Record write(Map<String, byte[]> content) throws IOException {
+		if (channel == null) {
+			file.getParentFile().mkdirs();
+			channel = new RandomAccessFile(file, "rw").getChannel();
+			channel.truncate(0);
+			fileSize = 0;
+		}
+
+		List<ByteBuffer> list = new ArrayList<ByteBuffer>();
+		ByteBuffer count = ByteBuffer.allocate(4);
+		count.putInt(content.size());
+		count.flip();
+		list.add(count);
+		long length = 4;
+		for (Map.Entry<String, byte[]> me : content.entrySet()) {
+			byte[] key = me.getKey().getBytes(UTF8);
+			byte[] value = me.getValue();
+			ByteBuffer header = ByteBuffer.allocate(4 + key.length + 4);
+			header.putInt(key.length);
+			header.put(key);
+			header.putInt(value.length);
+			header.flip();
+			list.add(header);
+			list.add(ByteBuffer.wrap(value));
+			length += header.limit() + value.length;
+		}
+		if (length > Integer.MAX_VALUE)
+			throw new IOException("Request too large");
+
+		ByteBuffer[] buffers = list.toArray(new ByteBuffer[list.size()]);
+		channel.position(fileSize);
+		long n = 0;
+		while (n < length)
+			n += channel.write(buffers);
+
+		Record record = new Record(fileSize, (int) length);
+		fileSize += length;
+		return record;
+	}
+
+	/**
+	 * Move the live records to the start of the file, in order, over the dead
+	 * ones, and truncate the file after them. Each record is read before it is
+	 * written, and is never moved to a later position, so records that have
+	 * not been moved yet are not overwritten.
+	 */
+	private void compact() {
+		List<Record> live = new ArrayList<Record>();
+		for (Entry entry : entries.values()) {
+			if (entry.records != null)
+				live.addAll(entry.records);
+		}
+		Collections.sort(live, new Comparator<Record>() {
+			public int compare(Record r1, Record r2) {
+				return r1.offset < r2.offset ? -1 : (r1.offset == r2.offset ? 0 : 1);
+			}
+		});
+
+		try {
+			long pos = 0;
+			for (Record record : live) {
+				if (record.offset != pos) {
+					ByteBuffer buf = readRecord(record);
+					long p = pos;
+					while (buf.hasRemaining())
+						p += channel.write(buf, p);
+					record.offset = pos;
+				}
+				pos += record.length;
+			}
+			channel.truncate(pos);
+			fileSize = pos;
+			deadSize = 0;
+		} catch (IOException e) {
+			if (Trace.WARNING) {
+				Trace.trace(Trace.STRING_WARNING, "Could not compact request file " + file, e);
+			}
+		}
+	}
+
+	/**
+	 * Read the bytes of the given record.
+	 */
+	private ByteBuffer readRecord(Record record) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(record.length);
+		long pos = record.offset;
+		while (buf.hasRemaining()) {
+			int n = channel.read(buf, pos);
+			if (n < 0)
+				throw new IOException("Unexpected end of file");
+			pos += n;
+		}
+		buf.flip();
+		return buf;
+	}
+
+	/**
+	 * Read the given record, or return null if it cannot be read.
+	 */
+	private Map<String, byte[]> read(Record record) {
+		try {
+			ByteBuffer buf = readRecord(record);
+
+			int count = buf.getInt();
+			Map<String, byte[]> content = new HashMap<String, byte[]>(count * 2);
+			for (int i = 0; i < count; i++) {
+				byte[] key = new byte[buf.getInt()];
+				buf.get(key);
+				byte[] value = new byte[buf.getInt()];
+				buf.get(value);
+				content.put(new String(key, UTF8), value);
+			}
+			return content;
+		} catch (Exception e) {
+			if (Trace.SEVERE) {
+				Trace.trace(Trace.STRING_SEVERE, "Could not read from request file " + file, e);
+			}
+			return null;
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2006 IBM Corporation and others.
+ * Copyright (c) 2004, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -30,10 +30,30 @@ public final class MonitorUICore {
 	/**
 	 * Returns an array of the requests currently being displayed in the TCP/IP
 	 * monitor view.
+	 * <p>
+	 * To limit memory use, the content of requests that have not been used
+	 * recently may have been moved out of memory, in which case their request
+	 * and response content is missing. Call {@link #loadRequest(Request)}
+	 * before reading the content of a returned request.
+	 * </p>
 	 *
 	 * @return an array of requests
 	 */
 	public static Request[] getRequests() {
-		return MonitorUIPlugin.getInstance().getRequests();
+		return MonitorUIPlugin.getInstance().getRequests().clone();
+	}
+
+	/**
+	 * Make sure that the content of the given request, which was returned by
+	 * {@link #getRequests()}, is in memory. The content stays in memory until
+	 * another request is loaded.
+	 *
+	 * @param request a request
+	 */
+	public static void loadRequest(Request request) {
+		if (request == null)
+			throw new IllegalArgumentException();
+		
+		MonitorUIPlugin.getInstance().loadRequest(request);
 	}
 }
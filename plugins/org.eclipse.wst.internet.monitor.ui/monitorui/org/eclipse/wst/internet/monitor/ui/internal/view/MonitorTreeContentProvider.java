@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2008 IBM Corporation and others.
+ * Copyright (c) 2003, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,7 +11,9 @@
 package org.eclipse.wst.internet.monitor.ui.internal.view;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import org.eclipse.jface.viewers.ITreeContentProvider;
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.wst.internet.monitor.core.internal.MonitorManager;
@@ -99,16 +101,13 @@ public class MonitorTreeContentProvider implements ITreeContentProvider {
 	 */
 	public Object[] getElements(Object element) {
 		if (ROOT.equals(element)) {
-			List<Integer> list = new ArrayList<Integer>();
+			Set<Integer> set = new LinkedHashSet<Integer>();
 			Request[] requests = MonitorUIPlugin.getInstance().getRequests();
 			if (requests != null) {
-				for (Request req :  requests) {
-					Integer in = new Integer(req.getLocalPort());
-					if (!list.contains(in))
-						list.add(in);
-				}
+				for (Request req :  requests)
+					set.add(new Integer(req.getLocalPort()));
 			}
-			return list.toArray();
+			return set.toArray();
 		}
 		return getChildren(element);
 	}
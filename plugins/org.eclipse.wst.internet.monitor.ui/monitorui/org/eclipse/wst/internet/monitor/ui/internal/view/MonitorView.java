@@ -378,6 +378,8 @@ public class MonitorView extends ViewPart {
 				}
 	
 				if (currentRequest != null) {
+					MonitorUIPlugin.getInstance().loadRequest(currentRequest);
+					
 					detailsTimeText.setText(NLS.bind(Messages.viewTime, format.format(currentRequest.getDate())));
 	
 					if (currentRequest.getResponseTime() == -1)
@@ -22,6 +22,7 @@ import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.wst.internet.monitor.core.internal.IContentFilter;
+import org.eclipse.wst.internet.monitor.core.internal.http.HTTPRequest;
 import org.eclipse.wst.internet.monitor.core.internal.http.ResendHTTPRequest;
 import org.eclipse.wst.internet.monitor.core.internal.provisional.Request;
 import org.eclipse.wst.internet.monitor.ui.internal.MonitorUIPlugin;
@@ -182,7 +183,7 @@ public class ViewerManager {
 		reqViewer.setContent(b);
 		b = null;
 		if (rr != null)
-			b = filter(rr.getResponse(Request.CONTENT));
+			b = filter(getResponseContent(rr));
 		respViewer.setContent(b);
 		request = rr;
 		
@@ -211,6 +212,20 @@ public class ViewerManager {
 		setRequest(request);
 	}
 
+	/**
+	 * Returns the response content to show in the response viewer. Responses
+	 * with a content coding are shown decoded, except in the byte viewer,
+	 * which shows the bytes as they were sent.
+	 */
+	protected byte[] getResponseContent(Request rr) {
+		if (rr instanceof HTTPRequest && !(respViewer instanceof ByteViewer)) {
+			byte[] b = ((HTTPRequest) rr).getDecodedResponseContent();
+			if (b != null)
+				return b;
+		}
+		return rr.getResponse(Request.CONTENT);
+	}
+
 	protected byte[] filter(byte[] b) {
 		if (b == null)
 			return null;
@@ -316,7 +331,7 @@ public class ViewerManager {
 		//respViewer.setRequestResponse(rr);
 		byte[] b = null;
 		if (request != null)
-			b = filter(request.getResponse(Request.CONTENT));
+			b = filter(getResponseContent(request));
 		respViewer.setContent(b);
 		respComp.layout(true);
 	}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2007 IBM Corporation and others.
+ * Copyright (c) 2003, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -16,7 +16,6 @@ import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Listener;
 import org.eclipse.wst.internet.monitor.ui.internal.Messages;
-import org.eclipse.wst.internet.monitor.ui.internal.MonitorUIPlugin;
 import org.eclipse.wst.internet.monitor.ui.internal.provisional.ContentViewer;
 /**
  * A browser viewer.
@@ -49,28 +48,14 @@ public class BrowserViewer extends ContentViewer {
 		if (b == null || b.length == 0) {
 			browser.setText(Messages.htmlViewInvalid);
 		} else {
-			b = MonitorUIPlugin.unzip(b);
-			
-			int trimFront = 0;
-			int trimBack = 0;
-			int len = b.length - 1;
-			while (trimFront < b.length && (b[trimFront] == CR || b[trimFront] == LF))
-				trimFront++;
-			while (trimBack < b.length && b.length > 0 && (b[len - trimBack] == CR || b[len - trimBack] == LF))
-				trimBack++;
-			
-			if (trimFront + trimBack > 0) {
-				if (trimFront + trimBack > b.length) {
-					b = new byte[0];
-				} else {
-					byte[] temp = b;
-					b = new byte[temp.length - trimBack - trimFront];
-					for (int i = trimFront; i < temp.length - trimBack; i++) {
-						b[i - trimFront] = temp[i];
-					}
-				}
-			}
-			browser.setText(new String(b));
+			// skip leading and trailing line breaks without copying the content
+			int start = 0;
+			int end = b.length;
+			while (start < end && (b[start] == CR || b[start] == LF))
+				start++;
+			while (end > start && (b[end - 1] == CR || b[end - 1] == LF))
+				end--;
+			browser.setText(new String(b, start, end - start));
 		}
 	}
 
@@ -30,7 +30,6 @@ import org.eclipse.swt.widgets.Text;
 import org.eclipse.ui.PlatformUI;
 import org.eclipse.wst.internet.monitor.ui.internal.ContextIds;
 import org.eclipse.wst.internet.monitor.ui.internal.Messages;
-import org.eclipse.wst.internet.monitor.ui.internal.MonitorUIPlugin;
 import org.eclipse.wst.internet.monitor.ui.internal.Trace;
 import org.eclipse.wst.internet.monitor.ui.internal.provisional.ContentViewer;
 /**
@@ -147,7 +146,6 @@ public class ByteViewer extends ContentViewer {
 		String out = "";
 		if (b != null) {
 			contentArray = b;
-			b = MonitorUIPlugin.unzip(b);
 			out = parseEncoded(b);
 		}
 		
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2007 IBM Corporation and others.
+ * Copyright (c) 2003, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -19,7 +19,6 @@ import org.eclipse.swt.graphics.ImageData;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.wst.internet.monitor.ui.internal.Messages;
-import org.eclipse.wst.internet.monitor.ui.internal.MonitorUIPlugin;
 import org.eclipse.wst.internet.monitor.ui.internal.provisional.ContentViewer;
 /**
  * An image viewer.
@@ -53,30 +52,16 @@ public class ImageViewer extends ContentViewer {
 		if (b == null || b.length == 0) {
 			messageLabel.setImage(null);
 		} else {
-			b = MonitorUIPlugin.unzip(b);
-			
-			int trimFront = 0;
-			int trimBack = 0;
-			int len = b.length - 1;
-			while (trimFront < b.length && b[trimFront] == CR || b[trimFront] == LF)
-				trimFront++;
-			while (trimBack < b.length && b[len - trimBack] == CR || b[len - trimBack] == LF)
-				trimBack++;
-			
-			if (trimFront + trimBack > 0) {
-				if (trimFront + trimBack > b.length) {
-					b = new byte[0];
-				} else {
-					byte[] temp = b;
-					b = new byte[temp.length - trimBack - trimFront];
-					for (int i = trimFront; i < temp.length - trimBack; i++) {
-						b[i - trimFront] = temp[i];
-					}
-				}
-			}
+			// skip leading and trailing line breaks without copying the content
+			int start = 0;
+			int end = b.length;
+			while (start < end && (b[start] == CR || b[start] == LF))
+				start++;
+			while (end > start && (b[end - 1] == CR || b[end - 1] == LF))
+				end--;
 			
 			try {
-				ImageData imgD = new ImageData(new ByteArrayInputStream(b));
+				ImageData imgD = new ImageData(new ByteArrayInputStream(b, start, end - start));
 				Image img = new Image(null, imgD);
 				messageLabel.setImage(img);
 			} catch(Exception e) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2011 IBM Corporation and others.
+ * Copyright (c) 2003, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -60,7 +60,6 @@ public class XMLViewer extends ContentViewer {
 		content = b;
 		String out = "";	
 		if (b != null) {
-			b = MonitorUIPlugin.unzip(b);
 			out = MonitorUIPlugin.parse(b);
 		}
 		
@@ -0,0 +1,377 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.server.core.internal;
+
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.UnknownHostException;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+/**
+ * Resolves whether host names refer to the local machine. Results are cached
+ * with a time to live, and name lookups are done on a small pool of background
+ * threads, so a lookup of a host that has been seen before never blocks and a
+ * slow lookup does not hold up lookups of other hosts.
+ * Expired entries are returned while they are refreshed in the background.
+ * The cache is cleared whenever the addresses of the local network interfaces
+ * change, e.g. when the user switches from a wired to a wireless connection,
+ * and lookups that were started before the change do not add to it.
+ * Threads that have been idle for a while exit, so the resolver holds no
+ * threads once the host names in use are cached.
+ */
+public class LocalhostResolver {
+	// time to live for hosts found to be local, in ms
+	private static final long LOCAL_TTL = 10 * 60 * 1000;
+
+	// time to live for hosts found not to be local, in ms
+	private static final long NOT_LOCAL_TTL = 60 * 1000;
+
+	// minimum time between checks of the network interfaces, in ms
+	private static final long NETWORK_CHECK_INTERVAL = 10 * 1000;
+
+	// number of lookups that can run at the same time
+	private static final int THREADS = 3;
+
+	// number of cached hosts above which expired entries are removed
+	private static final int MAX_CACHE_SIZE = 256;
+
+	private static final LocalhostResolver instance = new LocalhostResolver();
+
+	private static class CacheEntry {
+		protected final boolean local;
+		protected final long expiry;
+
+		public CacheEntry(boolean local, long expiry) {
+			this.local = local;
+			this.expiry = expiry;
+		}
+	}
+
+	/**
+	 * The network configuration when it was last checked. Instances are never
+	 * modified, so they can be read without locking.
+	 */
+	private static class NetworkState {
+		protected final Set<InetAddress> addresses;
+		protected final Set<String> names;
+
+		public NetworkState(Set<InetAddress> addresses, Set<String> names) {
+			this.addresses = addresses;
+			this.names = names;
+		}
+	}
+
+	private final ConcurrentMap<String, CacheEntry> cache = new ConcurrentHashMap<String, CacheEntry>();
+	private final ConcurrentMap<String, Future<Boolean>> pending = new ConcurrentHashMap<String, Future<Boolean>>();
+	private final AtomicBoolean networkCheckPending = new AtomicBoolean();
+	private volatile NetworkState network;
+	private volatile long lastNetworkCheck;
+
+	// incremented whenever the network configuration changes and the cache is cleared
+	private final AtomicInteger generation = new AtomicInteger();
+
+	// tasks waiting for a worker, and the number of workers running them
+	private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+	private final AtomicInteger workers = new AtomicInteger();
+
+	// idle threads exit after a minute; at most THREADS of them run tasks at a time
+	private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "Caching localhost information");
+			t.setDaemon(true);
+			t.setPriority(Thread.NORM_PRIORITY - 1);
+			return t;
+		}
+	});
+
+	private final Runnable worker = new Runnable() {
+		public void run() {
+			do {
+				Runnable task = tasks.poll();
+				while (task != null) {
+					try {
+						task.run();
+					} catch (RuntimeException e) {
+						if (Trace.WARNING) {
+							Trace.trace(Trace.STRING_WARNING, "Localhost caching failure", e);
+						}
+					}
+					task = tasks.poll();
+				}
+				workers.decrementAndGet();
+				// a task may have been queued after the last poll, while this worker was still counted
+			} while (!tasks.isEmpty() && startWorker());
+		}
+	};
+
+	private LocalhostResolver() {
+		// use getInstance()
+	}
+
+	/**
+	 * Returns the shared resolver.
+	 *
+	 * @return the resolver
+	 */
+	public static LocalhostResolver getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Returns whether the given host refers to the local machine. If the host
+	 * is not in the cache, it is looked up in the background and this method
+	 * waits at most the given time for the result; if the lookup is not
+	 * complete by then, <code>false</code> is returned and later calls will
+	 * return the result once it is known.
+	 *
+	 * @param host a lower case host name or IP address
+	 * @param timeout the maximum time to wait for an uncached host, in ms
+	 * @return <code>true</code> if the host is known to be local, and
+	 *    <code>false</code> otherwise
+	 */
+	public boolean isLocalhost(String host, long timeout) {
+		checkNetwork();
+
+		CacheEntry entry = cache.get(host);
+		if (entry != null) {
+			if (entry.expiry < System.currentTimeMillis())
+				resolve(host);
+			return entry.local;
+		}
+
+		// the addresses of the local interfaces can be checked without a lookup
+		NetworkState state = network;
+		if (state != null && state.names.contains(host))
+			return true;
+
+		Future<Boolean> future = resolve(host);
+		try {
+			return future.get(timeout, TimeUnit.MILLISECONDS).booleanValue();
+		} catch (Exception e) {
+			// not resolved yet, or failed
+			return false;
+		}
+	}
+
+	/**
+	 * Queue a lookup of the given host, unless one is already queued. Each
+	 * caller waits only for the lookup of its own host.
+	 */
+	private Future<Boolean> resolve(final String host) {
+		Future<Boolean> future = pending.get(host);
+		if (future != null)
+			return future;
+
+		FutureTask<Boolean> task = new FutureTask<Boolean>(new Callable<Boolean>() {
+			public Boolean call() {
+				try {
+					int gen = generation.get();
+					boolean local = isLocal(host);
+					long ttl = local ? LOCAL_TTL : NOT_LOCAL_TTL;
+					CacheEntry entry = new CacheEntry(local, System.currentTimeMillis() + ttl);
+					if (gen == generation.get()) {
+						cache.put(host, entry);
+						// the network may have changed and the cache been cleared since the check
+						if (gen != generation.get())
+							cache.remove(host, entry);
+						else
+							pruneCache();
+					}
+					return Boolean.valueOf(local);
+				} finally {
+					pending.remove(host);
+				}
+			}
+		});
+		future = pending.putIfAbsent(host, task);
+		if (future != null) // another caller queued the same host first
+			return future;
+
+		execute(task);
+		return task;
+	}
+
+	/**
+	 * Queue the given task, and start a worker to run it unless the maximum
+	 * number of workers are already running.
+	 */
+	private void execute(Runnable task) {
+		tasks.add(task);
+		if (startWorker()) {
+			try {
+				executor.execute(worker);
+			} catch (RuntimeException e) {
+				workers.decrementAndGet();
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Count a new worker if fewer than the maximum are running.
+	 *
+	 * @return <code>true</code> if the worker was counted and should run,
+	 *    and <code>false</code> otherwise
+	 */
+	private boolean startWorker() {
+		while (true) {
+			int n = workers.get();
+			if (n >= THREADS)
+				return false;
+			if (workers.compareAndSet(n, n + 1))
+				return true;
+		}
+	}
+
+	/**
+	 * Keep the cache bounded: once it holds more than the maximum number of
+	 * hosts, remove the expired entries, and if that is not enough, remove
+	 * entries until it is back within the maximum.
+	 */
+	private void pruneCache() {
+		if (cache.size() <= MAX_CACHE_SIZE)
+			return;
+
+		long now = System.currentTimeMillis();
+		Iterator<Map.Entry<String, CacheEntry>> iterator = cache.entrySet().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().getValue().expiry < now)
+				iterator.remove();
+		}
+
+		iterator = cache.entrySet().iterator();
+		while (cache.size() > MAX_CACHE_SIZE && iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Look up the given host. Called only on the background threads.
+	 */
+	private boolean isLocal(String host) {
+		NetworkState state = network;
+		if (state == null)
+			state = updateNetwork();
+		if (state.names.contains(host))
+			return true;
+
+		try {
+			InetAddress[] addrs = InetAddress.getAllByName(host);
+			for (int i = 0; i < addrs.length; i++) {
+				if (addrs[i].isLoopbackAddress() || state.addresses.contains(addrs[i]))
+					return true;
+			}
+		} catch (UnknownHostException e) {
+			return false;
+		}
+
+		// the host may resolve elsewhere (e.g. behind NAT) but still name this machine
+		try {
+			InetAddress localHost = InetAddress.getLocalHost();
+			return host.equals(localHost.getHostName().toLowerCase())
+				|| host.equals(localHost.getCanonicalHostName().toLowerCase());
+		} catch (Exception e) {
+			if (Trace.WARNING) {
+				Trace.trace(Trace.STRING_WARNING, "Localhost caching failure", e);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Queue a check of the network interfaces if one has not been done
+	 * recently.
+	 */
+	private void checkNetwork() {
+		if (System.currentTimeMillis() - lastNetworkCheck < NETWORK_CHECK_INTERVAL)
+			return;
+		if (!networkCheckPending.compareAndSet(false, true))
+			return;
+
+		try {
+			execute(new Runnable() {
+				public void run() {
+					try {
+						updateNetwork();
+					} finally {
+						networkCheckPending.set(false);
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			networkCheckPending.set(false);
+			throw e;
+		}
+	}
+
+	/**
+	 * Read the addresses of the local network interfaces, and clear the
+	 * cache if they have changed. Called only on the background threads.
+	 */
+	private NetworkState updateNetwork() {
+		Set<InetAddress> addresses = new HashSet<InetAddress>();
+		try {
+			addresses.add(InetAddress.getLocalHost());
+		} catch (Exception e) {
+			if (Trace.WARNING) {
+				Trace.trace(Trace.STRING_WARNING, "Localhost caching failure", e);
+			}
+		}
+		try {
+			Enumeration nis = NetworkInterface.getNetworkInterfaces();
+			while (nis != null && nis.hasMoreElements()) {
+				NetworkInterface inter = (NetworkInterface) nis.nextElement();
+				Enumeration<InetAddress> ias = inter.getInetAddresses();
+				while (ias.hasMoreElements())
+					addresses.add(ias.nextElement());
+			}
+		} catch (Exception e) {
+			if (Trace.WARNING) {
+				Trace.trace(Trace.STRING_WARNING, "Localhost caching failure", e);
+			}
+		}
+		lastNetworkCheck = System.currentTimeMillis();
+
+		NetworkState state = network;
+		if (state != null && state.addresses.equals(addresses))
+			return state;
+
+		Set<String> names = new HashSet<String>(addresses.size() * 2);
+		for (InetAddress addr : addresses)
+			names.add(addr.getHostAddress().toLowerCase());
+
+		state = new NetworkState(addresses, names);
+		network = state;
+		generation.incrementAndGet();
+		cache.clear();
+		if (Trace.FINER) {
+			Trace.trace(Trace.STRING_FINER, "Network configuration changed: " + names);
+		}
+		return state;
+	}
+}
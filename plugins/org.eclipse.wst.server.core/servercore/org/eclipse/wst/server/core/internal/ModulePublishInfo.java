@@ -10,9 +10,7 @@
  *******************************************************************************/
 package org.eclipse.wst.server.core.internal;
 
-import java.io.DataInput;
-import java.io.DataOutput;
-import java.io.IOException;
+import java.io.*;
 import java.util.*;
 import org.eclipse.core.runtime.*;
 import org.eclipse.wst.server.core.IModule;
@@ -26,6 +24,8 @@ import org.eclipse.wst.server.core.util.ModuleFile;
 import org.eclipse.wst.server.core.util.ModuleFolder;
 /**
  * Publish information for a specific module on a specific server.
+ * The resource cache may be filled from multiple threads during a
+ * publish, so access to it is synchronized on this object.
  */
 public class ModulePublishInfo {
 	private static final IModuleResource[] EMPTY_MODULE_RESOURCE = new IModuleResource[0];
@@ -45,10 +45,18 @@ public class ModulePublishInfo {
 	private IModuleType moduleType;
 	private boolean isExternal;
 
+	// the saved segment that the resources have not been loaded from yet, or null
+	private File segment;
+	// the name of the segment file that the resources are saved to
+	private String segmentName;
+	// true if the resources have changed since they were last saved
+	private boolean dirty = true;
+
 	private boolean useCache;
 	private IModuleResource[] currentResources = null;
 	private IModuleResourceDelta[] delta = null;
 	private boolean hasDelta;
+	private Map<IModuleResource, byte[]> digests = null;
 
 	/**
 	 * ModulePublishInfo constructor.
@@ -104,6 +112,21 @@ public class ModulePublishInfo {
 		load(in);
 	}
 
+	/**
+	 * ModulePublishInfo constructor. The module resources are not loaded
+	 * from the segment file until they are needed.
+	 * 
+	 * @param in an input stream containing the module information
+	 * @param segment the segment file containing the module resources
+	 * @throws IOException if the load fails
+	 */
+	public ModulePublishInfo(DataInput in, File segment) throws IOException {
+		super();
+		
+		loadHeader(in);
+		setSegment(segment);
+	}
+
 	public String getModuleId() {
 		return moduleId;
 	}
@@ -116,12 +139,16 @@ public class ModulePublishInfo {
 		return moduleType;
 	}
 
-	public IModuleResource[] getResources() {
+	public synchronized IModuleResource[] getResources() {
+		if (segment != null)
+			loadSegment();
 		return resources;
 	}
 
-	public void setResources(IModuleResource[] res) {
+	public synchronized void setResources(IModuleResource[] res) {
 		resources = res;
+		segment = null;
+		dirty = true;
 	}
 
 	/**
@@ -189,7 +216,17 @@ public class ModulePublishInfo {
 	}
 
 	protected void load(DataInput in) throws IOException {
+		loadHeader(in);
+		resources = loadResource(in, new Path(""));
+	}
 
+	/**
+	 * Load the module information, without the resources, from the given input.
+	 * 
+	 * @param in an input
+	 * @throws IOException if the load fails
+	 */
+	protected void loadHeader(DataInput in) throws IOException {
 		if (Trace.FINEST) {
 			Trace.trace(Trace.STRING_FINEST, "Loading module publish info");
 		}
@@ -209,8 +246,92 @@ public class ModulePublishInfo {
 				moduleType = ModuleType.getModuleType(mt, mv);
 		} else
 			moduleType = null;
+	}
+
+	/**
+	 * Sets the segment file that contains the saved resources of this module.
+	 * The resources will not be loaded until they are needed.
+	 * 
+	 * @param file the segment file
+	 */
+	protected synchronized void setSegment(File file) {
+		segment = file;
+		segmentName = file.getName();
+		resources = EMPTY_MODULE_RESOURCE;
+		dirty = false;
+	}
+
+	protected synchronized String getSegmentName() {
+		return segmentName;
+	}
+
+	protected synchronized void setSegmentName(String name) {
+		segmentName = name;
+		dirty = true;
+	}
+
+	protected synchronized boolean isDirty() {
+		return dirty;
+	}
+
+	private void loadSegment() {
+		File file = segment;
+		segment = null;
+		resources = EMPTY_MODULE_RESOURCE;
 		
-		resources = loadResource(in, new Path(""));
+		DataInputStream in = null;
+		try {
+			// read the whole segment at once, it is only needed for a moment
+			byte[] b = new byte[(int) file.length()];
+			in = new DataInputStream(new FileInputStream(file));
+			in.readFully(b);
+			in.close();
+			in = new DataInputStream(new ByteArrayInputStream(b));
+			resources = loadResource(in, new Path(""));
+		} catch (Exception e) {
+			// an unreadable segment means the module must be published again
+			dirty = true;
+			if (Trace.WARNING) {
+				Trace.trace(Trace.STRING_WARNING, "Could not load module publish info " + file, e);
+			}
+		} finally {
+			try {
+				if (in != null)
+					in.close();
+			} catch (Exception e) {
+				// ignore
+			}
+		}
+	}
+
+	/**
+	 * Save the resources of this module to the given segment file. The resources
+	 * are written to a temporary file that replaces the segment once complete.
+	 * 
+	 * @param file the segment file
+	 * @throws IOException if the save fails
+	 */
+	protected synchronized void saveSegment(File file) throws IOException {
+		IModuleResource[] resources2 = getResources();
+		File temp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			saveResource(out, resources2);
+			out.close();
+			out = null;
+			ServerPublishInfo.rename(temp, file);
+			dirty = false;
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (Exception e) {
+					// ignore
+				}
+				temp.delete();
+			}
+		}
 	}
 
 	private IModuleResource[] loadResource(DataInput in, IPath path) throws IOException {
@@ -225,6 +346,12 @@ public class ModulePublishInfo {
 				String name2 = in.readUTF();
 				long stamp = in.readLong();
 				resources2[i] = new ModuleFile(name2, path, stamp);
+			} else if (b == 3) {
+				String name2 = in.readUTF();
+				long stamp = in.readLong();
+				byte[] digest = new byte[in.readUnsignedByte()];
+				in.readFully(digest);
+				resources2[i] = new PublishedModuleFile(name2, path, stamp, digest);
 			} else if (b == 1) {
 				String name2 = in.readUTF();
 				ModuleFolder folder = new ModuleFolder(null, name2, path);
@@ -238,22 +365,8 @@ public class ModulePublishInfo {
 
 	protected void save(DataOutput out) {
 		try {
-			out.writeUTF(moduleId);
-			byte b = 0;
-			if (name != null)
-				b |= 1;
-			if (moduleType != null)
-				b |= 2;
-			out.writeByte(b);
-			
-			if (name != null)
-				out.writeUTF(name);
-			
-			if (moduleType != null) {
-				out.writeUTF(moduleType.getId());
-				out.writeUTF(moduleType.getVersion());
-			}
-			saveResource(out, resources);
+			saveHeader(out);
+			saveResource(out, getResources());
 		} catch (Exception e) {
 			if (Trace.SEVERE) {
 				Trace.trace(Trace.STRING_SEVERE, "Could not save module publish info", e);
@@ -261,13 +374,45 @@ public class ModulePublishInfo {
 		}
 	}
 
+	/**
+	 * Save the module information, without the resources, to the given output.
+	 * 
+	 * @param out an output
+	 * @throws IOException if the save fails
+	 */
+	protected void saveHeader(DataOutput out) throws IOException {
+		out.writeUTF(moduleId);
+		byte b = 0;
+		if (name != null)
+			b |= 1;
+		if (moduleType != null)
+			b |= 2;
+		out.writeByte(b);
+		
+		if (name != null)
+			out.writeUTF(name);
+		
+		if (moduleType != null) {
+			out.writeUTF(moduleType.getId());
+			out.writeUTF(moduleType.getVersion());
+		}
+	}
+
 	protected void saveResource(DataOutput out, IModuleResource[] resources2) throws IOException {
 		if (resources2 == null)
 			return;
 		int size = resources2.length;
 		out.writeInt(size);
 		for (int i = 0; i < size; i++) {
-			if (resources2[i] instanceof IModuleFile) {
+			if (resources2[i] instanceof PublishedModuleFile && ((PublishedModuleFile) resources2[i]).getDigest() != null) {
+				PublishedModuleFile file = (PublishedModuleFile) resources2[i];
+				byte[] digest = file.getDigest();
+				out.writeByte(3);
+				out.writeUTF(file.getName());
+				out.writeLong(file.getModificationStamp());
+				out.writeByte(digest.length);
+				out.write(digest);
+			} else if (resources2[i] instanceof IModuleFile) {
 				IModuleFile file = (IModuleFile) resources2[i];
 				out.writeByte(0);
 				out.writeUTF(file.getName());
@@ -285,11 +430,12 @@ public class ModulePublishInfo {
 	/**
 	 * Start using the module cache.
 	 */
-	protected void startCaching() {
+	protected synchronized void startCaching() {
 		useCache = true;
 		currentResources = null;
 		delta = null;
 		hasDelta = false;
+		digests = null;
 	}
 
 	/**
@@ -297,7 +443,7 @@ public class ModulePublishInfo {
 	 * 
 	 * @param module
 	 */
-	private void fillCache(IModule[] module) {
+	private synchronized void fillCache(IModule[] module) {
 		if (!useCache)
 			return;
 		
@@ -313,7 +459,9 @@ public class ModulePublishInfo {
 			else
 				currentResources = pm.members();
 			
-			delta = ServerPublishInfo.getDelta(resources, currentResources);
+			if (ServerPreferences.getInstance().isPublishingContentDigest())
+				digests = new HashMap<IModuleResource, byte[]>();
+			delta = ServerPublishInfo.getDelta(getResources(), currentResources, digests);
 			hasDelta = (delta != null && delta.length > 0);
 			if (Trace.PERFORMANCE) {
 				Trace.trace(Trace.STRING_PERFORMANCE,
@@ -328,14 +476,27 @@ public class ModulePublishInfo {
 			delta = EMPTY_MODULE_RESOURCE_DELTA;
 	}
 
-	protected void clearCache() {
+	/**
+	 * Returns true if the given resources have the same structure and
+	 * modification stamps as the published resources, so that the published
+	 * resources, and the saved segment, can be kept as they are.
+	 */
+	private boolean isUnchanged(IModuleResource[] current) {
+		IModuleResource[] published = getResources();
+		if (published == null || current == null)
+			return false;
+		return !ServerPublishInfo.hasDelta(published, current);
+	}
+
+	protected synchronized void clearCache() {
 		useCache = false;
 		currentResources = null;
 		delta = null;
 		hasDelta = false;
+		digests = null;
 	}
 
-	protected IModuleResource[] getModuleResources(IModule[] module) {
+	protected synchronized IModuleResource[] getModuleResources(IModule[] module) {
 		if (module == null)
 			return EMPTY_MODULE_RESOURCE;
 		
@@ -388,7 +549,7 @@ public class ModulePublishInfo {
 		}
 	}
 
-	protected IModuleResourceDelta[] getDelta(IModule[] module) {
+	protected synchronized IModuleResourceDelta[] getDelta(IModule[] module) {
 		if (module == null)
 			return EMPTY_MODULE_RESOURCE_DELTA;
 		
@@ -416,7 +577,7 @@ public class ModulePublishInfo {
 		return ServerPublishInfo.getDelta(getResources(), resources2);
 	}
 
-	protected boolean hasDelta(IModule[] module) {
+	protected synchronized boolean hasDelta(IModule[] module) {
 		if (module == null)
 			return false;
 		
@@ -443,25 +604,37 @@ public class ModulePublishInfo {
 		return ServerPublishInfo.hasDelta(getResources(), resources2);
 	}
 
-	public void fill(IModule[] module) {
+	public synchronized void fill(IModule[] module) {
 		if (module == null)
 			return;
 		
 		if (useCache) {
 			fillCache(module);
-			setResources(currentResources);
+			if (isUnchanged(currentResources))
+				return;
+			if (digests != null)
+				setResources(PublishedModuleFile.getPublishedResources(currentResources, digests));
+			else
+				setResources(currentResources);
 			return;
 		}
 		
 		IModule m = module[module.length - 1];
 		ModuleDelegate pm = (ModuleDelegate) m.loadAdapter(ModuleDelegate.class, null);
 		if (pm == null || (m.getProject() != null && !m.getProject().isAccessible())) {
-			setResources(EMPTY_MODULE_RESOURCE);
+			if (!isUnchanged(EMPTY_MODULE_RESOURCE))
+				setResources(EMPTY_MODULE_RESOURCE);
 			return;
 		}
 		
 		try {
-			setResources(pm.members());
+			IModuleResource[] members = pm.members();
+			if (isUnchanged(members))
+				return;
+			if (ServerPreferences.getInstance().isPublishingContentDigest())
+				setResources(PublishedModuleFile.getPublishedResources(members, null));
+			else
+				setResources(members);
 		} catch (CoreException ce) {
 			if (Trace.WARNING) {
 				Trace.trace(Trace.STRING_WARNING, "Possible failure in fill", ce);
@@ -128,6 +128,15 @@ public class PublishInfo {
 			path.append(path2).toFile().delete();
 			path2 = path2.substring(0, path2.length() - 3) + "dat";
 			path.append(path2).toFile().delete();
+			
+			// remove the module segments
+			File folder = path.append(path2.substring(0, path2.length() - 4)).toFile();
+			File[] files = folder.listFiles();
+			if (files != null) {
+				for (int i = 0; i < files.length; i++)
+					files[i].delete();
+			}
+			folder.delete();
 		}
 	}
 
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.server.core.internal;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.wst.server.core.model.IModuleFile;
+import org.eclipse.wst.server.core.model.IModuleFolder;
+import org.eclipse.wst.server.core.model.IModuleResource;
+import org.eclipse.wst.server.core.util.ModuleFile;
+import org.eclipse.wst.server.core.util.ModuleFolder;
+/**
+ * A module file in the publish information that also records a digest
+ * of the file contents at the time it was published. The digest is used
+ * to ignore files whose modification stamp has changed, but whose
+ * contents are identical (e.g. after a clean build).
+ */
+public class PublishedModuleFile extends ModuleFile {
+	private static final String DIGEST_ALGORITHM = "MD5";
+
+	private byte[] digest;
+
+	public PublishedModuleFile(String name, IPath path, long stamp, byte[] digest) {
+		super(name, path, stamp);
+		this.digest = digest;
+	}
+
+	/**
+	 * Returns the digest of the file contents, or <code>null</code> if it is
+	 * unknown.
+	 *
+	 * @return the digest, or <code>null</code>
+	 */
+	public byte[] getDigest() {
+		return digest;
+	}
+
+	/**
+	 * Returns true if the given file has changed since it was published.
+	 * The file is considered unchanged if the modification stamp is the same
+	 * or, when a digest was recorded, the contents have the same digest. The
+	 * contents are only read if the modification stamp has changed.
+	 *
+	 * @param old the published file
+	 * @param current the current file
+	 * @param digests a map to store the computed digests in, or <code>null</code>
+	 * @return <code>true</code> if the file has changed
+	 */
+	protected static boolean isChanged(IModuleFile old, IModuleFile current, Map<IModuleResource, byte[]> digests) {
+		byte[] oldDigest = null;
+		if (old instanceof PublishedModuleFile)
+			oldDigest = ((PublishedModuleFile) old).getDigest();
+
+		if (old.getModificationStamp() == current.getModificationStamp()) {
+			if (digests != null && oldDigest != null)
+				digests.put(current, oldDigest);
+			return false;
+		}
+
+		if (oldDigest == null)
+			return true;
+
+		byte[] newDigest = getDigest(current);
+		if (digests != null && newDigest != null)
+			digests.put(current, newDigest);
+		return newDigest == null || !MessageDigest.isEqual(newDigest, oldDigest);
+	}
+
+	/**
+	 * Returns a copy of the given resources to store in the publish information,
+	 * with the digest of each file. Digests that have already been computed are
+	 * taken from the given map.
+	 *
+	 * @param resources the current module resources
+	 * @param digests previously computed digests, or <code>null</code>
+	 * @return the resources to store
+	 */
+	protected static IModuleResource[] getPublishedResources(IModuleResource[] resources, Map<IModuleResource, byte[]> digests) {
+		if (resources == null)
+			return null;
+
+		int size = resources.length;
+		IModuleResource[] resources2 = new IModuleResource[size];
+		for (int i = 0; i < size; i++) {
+			if (resources[i] instanceof IModuleFile) {
+				IModuleFile mf = (IModuleFile) resources[i];
+				byte[] digest = (digests == null) ? null : digests.get(mf);
+				if (digest == null)
+					digest = getDigest(mf);
+				resources2[i] = new PublishedModuleFile(mf.getName(), mf.getModuleRelativePath(), mf.getModificationStamp(), digest);
+			} else {
+				IModuleFolder mf = (IModuleFolder) resources[i];
+				ModuleFolder folder = new ModuleFolder(null, mf.getName(), mf.getModuleRelativePath());
+				folder.setMembers(getPublishedResources(mf.members(), digests));
+				resources2[i] = folder;
+			}
+		}
+		return resources2;
+	}
+
+	/**
+	 * Returns the MD5 digest of the contents of the given module file, or
+	 * <code>null</code> if the contents of the file cannot be read.
+	 *
+	 * @param mf a module file
+	 * @return the digest, or <code>null</code>
+	 */
+	protected static byte[] getDigest(IModuleFile mf) {
+		InputStream in = null;
+		try {
+			File file = (File) mf.getAdapter(File.class);
+			if (file == null) {
+				IFile ifile = (IFile) mf.getAdapter(IFile.class);
+				if (ifile == null)
+					return null;
+				if (ifile.getLocation() != null)
+					file = ifile.getLocation().toFile();
+				else
+					in = ifile.getContents();
+			}
+			if (in == null)
+				in = new FileInputStream(file);
+
+			MessageDigest md = MessageDigest.getInstance(DIGEST_ALGORITHM);
+			byte[] buf = new byte[8192];
+			int n = in.read(buf);
+			while (n >= 0) {
+				md.update(buf, 0, n);
+				n = in.read(buf);
+			}
+			return md.digest();
+		} catch (IOException e) {
+			return null;
+		} catch (CoreException e) {
+			return null;
+		} catch (NoSuchAlgorithmException e) {
+			if (Trace.WARNING) {
+				Trace.trace(Trace.STRING_WARNING, "Could not create file digest", e);
+			}
+			return null;
+		} finally {
+			try {
+				if (in != null)
+					in.close();
+			} catch (Exception e) {
+				// ignore
+			}
+		}
+	}
+
+	public String toString() {
+		return "PublishedModuleFile [" + getName() + ", " + getModuleRelativePath() + ", " + getModificationStamp() + ", " + (digest != null) + "]";
+	}
+}
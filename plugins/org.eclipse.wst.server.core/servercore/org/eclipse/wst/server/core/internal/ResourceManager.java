@@ -95,9 +95,17 @@ public class ResourceManager {
 			if (delta == null)
 				return;
 			
-			// ignore clean builds
-			if (event.getBuildKind() == IncrementalProjectBuilder.CLEAN_BUILD)
+			// ignore clean builds, other than to keep cached module resources current
+			if (event.getBuildKind() == IncrementalProjectBuilder.CLEAN_BUILD) {
+				IResourceDelta[] children = delta.getAffectedChildren();
+				int size = children.length;
+				for (int i = 0; i < size; i++) {
+					IResource resource = children[i].getResource();
+					if (resource instanceof IProject)
+						ProjectModuleFactoryDelegate.updateModuleResources((IProject) resource, children[i]);
+				}
 				return;
+			}
 			
 			if (Trace.RESOURCES) {
 				Trace.trace(Trace.STRING_RESOURCES, "->- ServerResourceChangeListener responding to resource change: "
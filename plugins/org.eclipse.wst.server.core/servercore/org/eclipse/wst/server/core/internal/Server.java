@@ -96,12 +96,13 @@ public class Server extends Base implements IServer {
 	protected transient int serverSyncState;
 	protected transient boolean serverRestartNeeded;
 
-	protected transient Map<String, Integer> moduleState = new HashMap<String, Integer>();
-	protected transient Map<String, Integer> modulePublishState = new HashMap<String, Integer>();
-	protected transient Map<String, Boolean> moduleRestartState = new HashMap<String, Boolean>();
+	// module states may be updated by multiple publishing threads
+	protected transient Map<String, Integer> moduleState = Collections.synchronizedMap(new HashMap<String, Integer>());
+	protected transient Map<String, Integer> modulePublishState = Collections.synchronizedMap(new HashMap<String, Integer>());
+	protected transient Map<String, Boolean> moduleRestartState = Collections.synchronizedMap(new HashMap<String, Boolean>());
 
 	protected transient IStatus serverStatus;
-	protected transient Map<String, IStatus> moduleStatus = new HashMap<String, IStatus>();
+	protected transient Map<String, IStatus> moduleStatus = Collections.synchronizedMap(new HashMap<String, IStatus>());
 
 	protected transient ServerPublishInfo publishInfo;
 	protected transient AutoPublishThread autoPublishThread;
@@ -17,6 +17,7 @@ import org.eclipse.core.runtime.*;
 public class ServerPreferences {
 	private static final String PREF_AUTO_PUBLISH = "auto-publish";
 	private static final String PREF_MODULE_START_TIMEOUT = "module-start-timeout";
+	private static final String PREF_PUBLISH_CONTENT_DIGEST = "publish-content-digest";
 		
 	private Preferences preferences;
 
@@ -91,11 +92,34 @@ public class ServerPreferences {
 		return preferences.getInt(PREF_MODULE_START_TIMEOUT);
 	}
 
+	/**
+	 * Returns whether a digest of the contents of each published file should
+	 * be stored, so that files whose contents have not changed are not
+	 * published again.
+	 * 
+	 * @return boolean
+	 */
+	public boolean isPublishingContentDigest() {
+		return preferences.getBoolean(PREF_PUBLISH_CONTENT_DIGEST);
+	}
+
+	/**
+	 * Set whether a digest of the contents of each published file should
+	 * be stored.
+	 *
+	 * @param value
+	 */
+	public void setPublishingContentDigest(boolean value) {
+		preferences.setValue(PREF_PUBLISH_CONTENT_DIGEST, value);
+		ServerPlugin.getInstance().savePluginPreferences();
+	}
+
 	/**
 	 * Set the default values.
 	 */
 	private void setDefaults() {
 		preferences.setDefault(PREF_AUTO_PUBLISH, isDefaultAutoPublishing());
+		preferences.setDefault(PREF_PUBLISH_CONTENT_DIGEST, false);
 			
 		preferences.setDefault(PREF_MODULE_START_TIMEOUT, 300001);
 		boolean save = false;
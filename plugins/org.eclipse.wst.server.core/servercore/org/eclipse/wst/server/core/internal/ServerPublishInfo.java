@@ -268,6 +268,16 @@ public class ServerPublishInfo {
 						modulePublishInfo.put(getKey(mpi.getModuleId()), mpi);
 					}
 					return;
+				} else if (ver == 3) {
+					// module resources are stored in separate segments and loaded lazily
+					File folder = getSegmentFolder();
+					int size = in.readInt();
+					for (int i = 0; i < size; i++) {
+						String segmentName = in.readUTF();
+						ModulePublishInfo mpi = new ModulePublishInfo(in, new File(folder, segmentName));
+						modulePublishInfo.put(getKey(mpi.getModuleId()), mpi);
+					}
+					return;
 				}
 			} catch (Exception e) {
 				if (Trace.WARNING) {
@@ -304,7 +314,11 @@ public class ServerPublishInfo {
 	}
 
 	/**
-	 * 
+	 * Save the publish information. The resources of each module are saved
+	 * in a separate segment file, and only segments for modules that have
+	 * changed since the last save are written. The index file and each
+	 * segment are written to a temporary file first and then renamed, so
+	 * a failed save never leaves a partially written file behind.
 	 */
 	public void save() {
 		String filename = path.toOSString();
@@ -312,21 +326,61 @@ public class ServerPublishInfo {
 			Trace.trace(Trace.STRING_FINEST, "Saving publish info to " + filename);
 		}
 		
+		File folder = getSegmentFolder();
+		if (!folder.exists())
+			folder.mkdirs();
+		
+		File temp = new File(filename + ".tmp");
 		DataOutputStream out = null;
 		try {
-			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+			Set<String> segments = new HashSet<String>();
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
 			out.writeByte(14);
 			out.writeByte(14);
 			// version
-			out.writeByte(1);
+			out.writeByte(3);
 			
 			synchronized (modulePublishInfo) {
-				out.writeInt(modulePublishInfo.keySet().size());
-				Iterator iterator = modulePublishInfo.keySet().iterator();
+				Iterator<ModulePublishInfo> iterator = modulePublishInfo.values().iterator();
 				while (iterator.hasNext()) {
-					String controlRef = (String) iterator.next();
-					ModulePublishInfo mpi = modulePublishInfo.get(controlRef);
-					mpi.save(out);
+					ModulePublishInfo mpi = iterator.next();
+					String segmentName = mpi.getSegmentName();
+					if (segmentName != null)
+						segments.add(segmentName);
+				}
+				
+				out.writeInt(modulePublishInfo.size());
+				int count = 0;
+				iterator = modulePublishInfo.values().iterator();
+				while (iterator.hasNext()) {
+					ModulePublishInfo mpi = iterator.next();
+					String segmentName = mpi.getSegmentName();
+					if (segmentName == null) {
+						do {
+							segmentName = "module" + (count++) + ".dat";
+						} while (segments.contains(segmentName));
+						segments.add(segmentName);
+						mpi.setSegmentName(segmentName);
+					}
+					
+					File segment = new File(folder, segmentName);
+					if (mpi.isDirty() || !segment.exists())
+						mpi.saveSegment(segment);
+					
+					out.writeUTF(segmentName);
+					mpi.saveHeader(out);
+				}
+			}
+			out.close();
+			out = null;
+			rename(temp, path.toFile());
+			
+			// remove segments of modules that are no longer on the server
+			File[] files = folder.listFiles();
+			if (files != null) {
+				for (int i = 0; i < files.length; i++) {
+					if (!segments.contains(files[i].getName()))
+						files[i].delete();
 				}
 			}
 		} catch (Exception e) {
@@ -335,8 +389,10 @@ public class ServerPublishInfo {
 			}
 		} finally {
 			try {
-				if (out != null)
+				if (out != null) {
 					out.close();
+					temp.delete();
+				}
 			} catch (Exception e) {
 				// ignore
 			}
@@ -349,6 +405,33 @@ public class ServerPublishInfo {
 			f.delete();
 	}
 
+	/**
+	 * Returns the folder that contains the module segment files.
+	 * 
+	 * @return the segment folder
+	 */
+	protected File getSegmentFolder() {
+		String filename = path.toOSString();
+		return new File(filename.substring(0, filename.length() - 4));
+	}
+
+	/**
+	 * Renames a file, replacing the destination if it exists.
+	 * 
+	 * @param from the file to rename
+	 * @param to the destination file
+	 * @throws IOException if the file could not be renamed
+	 */
+	protected static void rename(File from, File to) throws IOException {
+		if (from.renameTo(to))
+			return;
+		
+		// some platforms cannot rename over an existing file
+		to.delete();
+		if (!from.renameTo(to))
+			throw new IOException("Could not rename " + from + " to " + to);
+	}
+
 	/**
 	 * 
 	 * Note: save() must be called manually after making this call.
@@ -374,6 +457,16 @@ public class ServerPublishInfo {
 	}
 
 	protected static IModuleResourceDelta[] getDelta(IModuleResource[] original, IModuleResource[] current) {
+		return getDelta(original, current, null);
+	}
+
+	/**
+	 * Returns the delta between the published and current resources. If
+	 * the published files have content digests, files whose contents have
+	 * not changed are not included, and the digests of the current files
+	 * are added to the given map.
+	 */
+	protected static IModuleResourceDelta[] getDelta(IModuleResource[] original, IModuleResource[] current, Map<IModuleResource, byte[]> digests) {
 		if (original == null || current == null)
 			return new IModuleResourceDelta[0];
 		
@@ -381,15 +474,12 @@ public class ServerPublishInfo {
 		int size = original.length;
 		int size2 = current.length;
 		
-		Map<IModuleResource, IModuleResource> originalMap = new HashMap<IModuleResource, IModuleResource>(size);
-		for (int i = 0; i < size; i++){
-			originalMap.put(original[i], original[i]);
-		}
+		int[] match = match(original, current);
+		boolean[] matched = new boolean[size];
 		
 		// added and changed resources
 		for (int i = 0; i < size2; i++) {
-			IModuleResource old = originalMap.remove(current[i]);
-			if (old == null) {
+			if (match[i] < 0) {
 				ModuleResourceDelta delta = new ModuleResourceDelta(current[i], IModuleResourceDelta.ADDED);
 				if (current[i] instanceof IModuleFolder) {
 					IModuleFolder currentFolder = (IModuleFolder) current[i]; 
@@ -397,18 +487,20 @@ public class ServerPublishInfo {
 				}
 				list.add(delta);
 			} else {
+				IModuleResource old = original[match[i]];
+				matched[match[i]] = true;
 				if (current[i] instanceof IModuleFile) {
 					// include files only if the modification stamp has changed
 					IModuleFile mf1 = (IModuleFile) old;
 					IModuleFile mf2 = (IModuleFile) current[i];
-					if (mf1.getModificationStamp() != mf2.getModificationStamp()) {
+					if (PublishedModuleFile.isChanged(mf1, mf2, digests)) {
 						list.add(new ModuleResourceDelta(current[i], IModuleResourceDelta.CHANGED));
 					}
 				} else {
 					// include folders only if their contents have changed
 					IModuleFolder mf1 = (IModuleFolder) old;
 					IModuleFolder mf2 = (IModuleFolder) current[i];
-					IModuleResourceDelta[] mrdc = getDelta(mf1.members(), mf2.members());
+					IModuleResourceDelta[] mrdc = getDelta(mf1.members(), mf2.members(), digests);
 					if (mrdc.length > 0) {
 						ModuleResourceDelta mrd = new ModuleResourceDelta(current[i], IModuleResourceDelta.NO_CHANGE);
 						mrd.setChildren(mrdc);
@@ -420,7 +512,7 @@ public class ServerPublishInfo {
 		
 		// removed resources
 		for (int i = 0; i < size; i++) {
-			if (originalMap.containsKey(original[i])) {
+			if (!matched[i]) {
 				ModuleResourceDelta delta = new ModuleResourceDelta(original[i], IModuleResourceDelta.REMOVED);
 				if (original[i] instanceof IModuleFolder) {
 					IModuleFolder removedFolder = (IModuleFolder) original[i]; 
@@ -444,19 +536,20 @@ public class ServerPublishInfo {
 		if (original == null || current == null)
 			return false;
 		
+		// resources are unique within a folder, so any added or removed
+		// resource changes the number of members
 		int size = original.length;
-		int size2 = current.length;
+		if (size != current.length)
+			return true;
 		
-		Map<IModuleResource, IModuleResource> originalMap = new HashMap<IModuleResource, IModuleResource>(size);
-		for (int i = 0; i < size; i++)
-			originalMap.put(original[i], original[i]);
+		int[] match = match(original, current);
 		
 		// added and changed resources
-		for (int i = 0; i < size2; i++) {
-			IModuleResource old = originalMap.remove(current[i]);
-			if (old == null)
+		for (int i = 0; i < size; i++) {
+			if (match[i] < 0)
 				return true;
 			
+			IModuleResource old = original[match[i]];
 			if (current[i] instanceof IModuleFile) {
 				// include files only if the modification stamp has changed
 				IModuleFile mf1 = (IModuleFile) old;
@@ -472,8 +565,73 @@ public class ServerPublishInfo {
 			}
 		}
 		
-		// removed resources
-		return !originalMap.isEmpty();
+		return false;
+	}
+
+	/**
+	 * Matches the members of a single folder from the previous publish against
+	 * the current members. Returns an array containing the index of the original
+	 * resource that matches each current resource, or -1 if there is no match.
+	 * <p>
+	 * All members of a folder share the same module relative path, so resources
+	 * are matched by name and kind. Since members are usually returned in the
+	 * same order on each publish, the arrays are first compared positionally;
+	 * only if that fails are they sorted and merged.
+	 * </p>
+	 */
+	private static int[] match(IModuleResource[] original, IModuleResource[] current) {
+		int size = original.length;
+		int size2 = current.length;
+		int[] match = new int[size2];
+		
+		int i = 0;
+		int min = Math.min(size, size2);
+		while (i < min && compare(original[i], current[i]) == 0) {
+			match[i] = i;
+			i++;
+		}
+		if (i == size2)
+			return match;
+		
+		// sort the remaining resources and merge
+		Integer[] orig = sort(original, i);
+		Integer[] curr = sort(current, i);
+		int a = 0;
+		int b = 0;
+		while (b < curr.length) {
+			int j = curr[b].intValue();
+			int c = (a < orig.length) ? compare(original[orig[a].intValue()], current[j]) : 1;
+			if (c < 0)
+				a++;
+			else {
+				if (c == 0)
+					match[j] = orig[a++].intValue();
+				else
+					match[j] = -1;
+				b++;
+			}
+		}
+		return match;
+	}
+
+	private static Integer[] sort(final IModuleResource[] resources, int start) {
+		Integer[] index = new Integer[resources.length - start];
+		for (int i = 0; i < index.length; i++)
+			index[i] = new Integer(start + i);
+		Arrays.sort(index, new Comparator<Integer>() {
+			public int compare(Integer i1, Integer i2) {
+				return ServerPublishInfo.compare(resources[i1.intValue()], resources[i2.intValue()]);
+			}
+		});
+		return index;
+	}
+
+	private static int compare(IModuleResource r1, IModuleResource r2) {
+		boolean folder1 = r1 instanceof IModuleFolder;
+		boolean folder2 = r2 instanceof IModuleFolder;
+		if (folder1 != folder2)
+			return folder1 ? 1 : -1;
+		return r1.getName().compareTo(r2.getName());
 	}
 
 	/**
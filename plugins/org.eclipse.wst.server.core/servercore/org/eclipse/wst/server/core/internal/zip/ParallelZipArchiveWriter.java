@@ -0,0 +1,379 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.server.core.internal.zip;
+
+import java.io.*;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+import org.eclipse.core.runtime.CoreException;
+/**
+ * Writes a zip archive, compressing the entries on a pool of threads that is
+ * shared by all writers. Entries are always written to the archive in the
+ * order that they were added, so the archive is the same as one written by a
+ * single thread.
+ * <p>
+ * At most a fixed number of entries are compressed or waiting to be written at
+ * any time, and their total size is bounded, so memory use is bounded as well.
+ * Entries that are large or of unknown size are written directly on the
+ * calling thread.
+ * </p>
+ */
+public class ParallelZipArchiveWriter {
+	/**
+	 * The contents of an entry. The stream may be opened on another thread.
+	 */
+	public interface EntrySource {
+		/**
+		 * Returns a new stream on the contents of the entry.
+		 *
+		 * @return an input stream, which the caller will close
+		 * @throws IOException if the contents cannot be read
+		 * @throws CoreException if the contents cannot be read
+		 */
+		public InputStream getContents() throws IOException, CoreException;
+	}
+
+	// entries larger than this are written directly instead of being buffered
+	private static final long LARGE_ENTRY_SIZE = 4 * 1024 * 1024;
+
+	// maximum uncompressed size of the entries that are waiting to be written
+	private static final long MAX_PENDING_SIZE = 16 * 1024 * 1024;
+
+	private static final int BUFFER = 8192;
+
+	private static final int POOL_SIZE = java.lang.Runtime.getRuntime().availableProcessors();
+
+	// thread pool shared by all writers, created when first used
+	private static ExecutorService sharedExecutor;
+
+	/**
+	 * An entry that is being compressed or is waiting to be written.
+	 */
+	private static class PendingEntry {
+		protected Future<ZipArchiveEntry> future;
+		// uncompressed size of the data held in memory
+		protected long size;
+
+		PendingEntry(Future<ZipArchiveEntry> future, long size) {
+			this.future = future;
+			this.size = size;
+		}
+	}
+
+	private ZipArchiveWriter writer;
+	private boolean compress;
+	private ExecutorService executor;
+	private int maxPending;
+	private LinkedList<PendingEntry> pending = new LinkedList<PendingEntry>();
+	private long pendingSize;
+	private Set<String> names = new HashSet<String>();
+
+	/**
+	 * Create a new writer on the given output stream.
+	 *
+	 * @param out an output stream, which should be buffered
+	 * @param compress <code>true</code> to deflate entries, or <code>false</code>
+	 *    to store them without compression
+	 * @param threads the number of entries to compress at the same time, or
+	 *    0 to use one per available processor. If 1, all entries are written
+	 *    on the calling thread
+	 */
+	public ParallelZipArchiveWriter(OutputStream out, boolean compress, int threads) {
+		this(new ZipArchiveWriter(out), compress, threads);
+	}
+
+	/**
+	 * Create a new writer on the given file. Large entries that are stored
+	 * without compression are read only once.
+	 *
+	 * @param file a file, which is replaced
+	 * @param compress <code>true</code> to deflate entries, or <code>false</code>
+	 *    to store them without compression
+	 * @param threads the number of entries to compress at the same time, or
+	 *    0 to use one per available processor. If 1, all entries are written
+	 *    on the calling thread
+	 * @throws IOException if the file cannot be opened
+	 */
+	public ParallelZipArchiveWriter(File file, boolean compress, int threads) throws IOException {
+		this(new ZipArchiveWriter(file), compress, threads);
+	}
+
+	private ParallelZipArchiveWriter(ZipArchiveWriter writer, boolean compress, int threads) {
+		this.writer = writer;
+		this.compress = compress;
+		if (threads <= 0)
+			threads = POOL_SIZE;
+		maxPending = threads * 4;
+		if (threads > 1)
+			executor = getSharedExecutor();
+	}
+
+	private static synchronized ExecutorService getSharedExecutor() {
+		if (sharedExecutor == null) {
+			sharedExecutor = Executors.newFixedThreadPool(Math.max(2, POOL_SIZE), new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "Zip archive writer");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return sharedExecutor;
+	}
+
+	/**
+	 * Add a directory entry.
+	 *
+	 * @param name the entry name, ending in '/'
+	 * @param time the last modified time, or 0 to use the current time
+	 * @throws IOException if the entry cannot be written
+	 * @throws CoreException if a previous entry cannot be read
+	 */
+	public void putDirectory(String name, long time) throws IOException, CoreException {
+		checkName(name);
+		ZipArchiveEntry entry = new ZipArchiveEntry(name, ZipArchiveEntry.STORED, time);
+		entry.setData(0, 0, 0);
+		entry.data = new byte[0];
+		add(new CompletedFuture(entry), 0);
+	}
+
+	/**
+	 * Add an entry with the given contents.
+	 *
+	 * @param name the entry name
+	 * @param time the last modified time, or 0 to use the current time
+	 * @param contents the uncompressed contents
+	 * @throws IOException if the entry cannot be written
+	 * @throws CoreException if a previous entry cannot be read
+	 */
+	public void putEntry(String name, long time, final byte[] contents) throws IOException, CoreException {
+		putEntry(name, time, contents.length, new EntrySource() {
+			public InputStream getContents() {
+				return new ByteArrayInputStream(contents);
+			}
+		});
+	}
+
+	/**
+	 * Add an entry. Unless the entry is large or its size is not known, its
+	 * contents will be read and compressed on another thread.
+	 *
+	 * @param name the entry name
+	 * @param time the last modified time, or 0 to use the current time
+	 * @param length the uncompressed size of the entry, or -1 if not known
+	 * @param source the contents of the entry
+	 * @throws IOException if the entry cannot be written
+	 * @throws CoreException if the entry or a previous entry cannot be read
+	 */
+	public void putEntry(String name, long time, long length, final EntrySource source) throws IOException, CoreException {
+		checkName(name);
+		if (executor == null || length < 0 || length > LARGE_ENTRY_SIZE) {
+			flush(0);
+			writeDirect(name, time, source);
+			return;
+		}
+
+		final ZipArchiveEntry entry = new ZipArchiveEntry(name, compress ? ZipArchiveEntry.DEFLATED : ZipArchiveEntry.STORED, time);
+
+		Callable<ZipArchiveEntry> task = new Callable<ZipArchiveEntry>() {
+			public ZipArchiveEntry call() throws Exception {
+				InputStream in = source.getContents();
+				try {
+					compress(entry, in);
+				} finally {
+					in.close();
+				}
+				return entry;
+			}
+		};
+		add(executor.submit(task), length);
+	}
+
+	/**
+	 * Write the remaining entries and the central directory, and close the archive.
+	 *
+	 * @throws IOException if the archive cannot be written
+	 * @throws CoreException if an entry cannot be read
+	 */
+	public void close() throws IOException, CoreException {
+		try {
+			flush(0);
+			writer.close();
+		} finally {
+			dispose();
+		}
+	}
+
+	/**
+	 * Stop compressing entries and close the output stream without finishing
+	 * the archive. Used to clean up after an error.
+	 */
+	public void dispose() {
+		Iterator<PendingEntry> iterator = pending.iterator();
+		while (iterator.hasNext())
+			iterator.next().future.cancel(true);
+		pending.clear();
+		pendingSize = 0;
+		writer.dispose();
+	}
+
+	private void checkName(String name) throws ZipException {
+		if (!names.add(name))
+			throw new ZipException("Duplicate entry: " + name);
+	}
+
+	/**
+	 * Queue an entry, writing the oldest entries if too many are waiting.
+	 *
+	 * @param future the compressed entry
+	 * @param size the uncompressed size of the data that will be in memory
+	 */
+	private void add(Future<ZipArchiveEntry> future, long size) throws IOException, CoreException {
+		pending.add(new PendingEntry(future, size));
+		pendingSize += size;
+		flush(maxPending);
+	}
+
+	/**
+	 * Write entries in order until at most the given number are waiting,
+	 * and the size of the waiting entries is within the limit.
+	 */
+	private void flush(int max) throws IOException, CoreException {
+		while (pending.size() > max || (!pending.isEmpty() && pendingSize > MAX_PENDING_SIZE)) {
+			PendingEntry pe = pending.removeFirst();
+			pendingSize -= pe.size;
+			ZipArchiveEntry entry = null;
+			try {
+				entry = pe.future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while writing zip archive");
+			} catch (ExecutionException e) {
+				Throwable t = e.getCause();
+				if (t instanceof IOException)
+					throw (IOException) t;
+				if (t instanceof CoreException)
+					throw (CoreException) t;
+				if (t instanceof RuntimeException)
+					throw (RuntimeException) t;
+				if (t instanceof Error)
+					throw (Error) t;
+				IOException ioe = new IOException("Could not compress zip entry");
+				ioe.initCause(t);
+				throw ioe;
+			}
+			byte[] data = entry.data;
+			entry.data = null;
+			writer.putRawEntry(entry, new ByteArrayInputStream(data));
+		}
+	}
+
+	/**
+	 * Compress the given stream into the entry's data. Stored entries are
+	 * copied into the entry's data as their checksum is computed. Called on
+	 * a worker thread.
+	 */
+	private static void compress(ZipArchiveEntry entry, InputStream in) throws IOException {
+		CRC32 crc = new CRC32();
+		long size = 0;
+		byte[] b = new byte[BUFFER];
+		if (entry.method == ZipArchiveEntry.STORED) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			int n = in.read(b);
+			while (n >= 0) {
+				crc.update(b, 0, n);
+				out.write(b, 0, n);
+				size += n;
+				n = in.read(b);
+			}
+			entry.data = out.toByteArray();
+			entry.setData(crc.getValue(), size, size);
+		} else {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] b2 = new byte[BUFFER];
+			Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+			try {
+				int n = in.read(b);
+				while (n >= 0) {
+					if (n > 0) {
+						crc.update(b, 0, n);
+						size += n;
+						deflater.setInput(b, 0, n);
+						while (!deflater.needsInput())
+							out.write(b2, 0, deflater.deflate(b2, 0, b2.length));
+					}
+					n = in.read(b);
+				}
+				deflater.finish();
+				while (!deflater.finished())
+					out.write(b2, 0, deflater.deflate(b2, 0, b2.length));
+			} finally {
+				deflater.end();
+			}
+			entry.data = out.toByteArray();
+			entry.setData(crc.getValue(), entry.data.length, size);
+		}
+	}
+
+	/**
+	 * Write a large entry, or one of unknown size, on the calling thread
+	 * without buffering it.
+	 */
+	private void writeDirect(String name, long time, EntrySource source) throws IOException, CoreException {
+		InputStream in = source.getContents();
+		try {
+			if (compress)
+				writer.putDeflatedEntry(name, time, in);
+			else
+				writer.putStoredEntry(name, time, in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * A future for an entry that has nothing to compress.
+	 */
+	private static class CompletedFuture implements Future<ZipArchiveEntry> {
+		private ZipArchiveEntry entry;
+
+		CompletedFuture(ZipArchiveEntry entry) {
+			this.entry = entry;
+		}
+
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			return false;
+		}
+
+		public boolean isCancelled() {
+			return false;
+		}
+
+		public boolean isDone() {
+			return true;
+		}
+
+		public ZipArchiveEntry get() {
+			return entry;
+		}
+
+		public ZipArchiveEntry get(long timeout, TimeUnit unit) {
+			return entry;
+		}
+	}
+}
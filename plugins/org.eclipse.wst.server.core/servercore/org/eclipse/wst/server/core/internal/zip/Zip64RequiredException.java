@@ -0,0 +1,30 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.server.core.internal.zip;
+
+import java.util.zip.ZipException;
+/**
+ * Thrown when an archive has too many entries or is too large to be written
+ * without the Zip64 extensions, which ZipArchiveWriter does not support.
+ * Callers should write the archive with java.util.zip instead.
+ */
+public class Zip64RequiredException extends ZipException {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Create a new exception.
+	 *
+	 * @param message the detail message
+	 */
+	public Zip64RequiredException(String message) {
+		super(message);
+	}
+}
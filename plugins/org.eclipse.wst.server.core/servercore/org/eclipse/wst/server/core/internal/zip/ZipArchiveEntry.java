@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.server.core.internal.zip;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Calendar;
+/**
+ * Representation of an entry in a zip archive, as read from or written
+ * to the central directory.
+ */
+public class ZipArchiveEntry {
+	/**
+	 * Compression method for entries that are not compressed.
+	 */
+	public static final int STORED = 0;
+
+	/**
+	 * Compression method for entries that are compressed using deflate.
+	 */
+	public static final int DEFLATED = 8;
+
+	// general purpose flag: sizes and crc follow the data
+	static final int FLAG_DATA_DESCRIPTOR = 8;
+
+	// general purpose flag: name is encoded in UTF-8
+	static final int FLAG_UTF8 = 0x800;
+
+	private String name;
+	byte[] nameBytes;
+	int flags;
+	int method;
+	long dosTime;
+	long crc;
+	long compressedSize;
+	long size;
+
+	// offset of the local header in the archive
+	long offset;
+
+	// compressed data of an entry waiting to be written
+	byte[] data;
+
+	/**
+	 * Create a new entry.
+	 *
+	 * @param name the entry name
+	 * @param method the compression method, STORED or DEFLATED
+	 * @param time the last modified time, or 0 to use the current time
+	 */
+	public ZipArchiveEntry(String name, int method, long time) {
+		this.name = name;
+		this.method = method;
+		try {
+			nameBytes = name.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			// cannot happen, UTF-8 is always supported
+			nameBytes = name.getBytes();
+		}
+		flags = FLAG_UTF8;
+		setTime(time);
+	}
+
+	/**
+	 * Create an entry read from an archive.
+	 */
+	ZipArchiveEntry(byte[] nameBytes, int flags) {
+		this.nameBytes = nameBytes;
+		this.flags = flags;
+		try {
+			name = new String(nameBytes, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			// cannot happen, UTF-8 is always supported
+			name = new String(nameBytes);
+		}
+	}
+
+	/**
+	 * Returns the name of the entry.
+	 *
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns true if this entry is a directory.
+	 *
+	 * @return <code>true</code> if this entry is a directory
+	 */
+	public boolean isDirectory() {
+		return name.endsWith("/");
+	}
+
+	/**
+	 * Returns the compression method, STORED or DEFLATED.
+	 *
+	 * @return the compression method
+	 */
+	public int getMethod() {
+		return method;
+	}
+
+	/**
+	 * Returns the CRC-32 checksum of the uncompressed data.
+	 *
+	 * @return the checksum
+	 */
+	public long getCrc() {
+		return crc;
+	}
+
+	/**
+	 * Returns the size of the compressed data.
+	 *
+	 * @return the compressed size
+	 */
+	public long getCompressedSize() {
+		return compressedSize;
+	}
+
+	/**
+	 * Returns the size of the uncompressed data.
+	 *
+	 * @return the size
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Set the CRC-32 checksum and sizes of the entry data. This must be
+	 * called before writing the compressed data of a new entry.
+	 *
+	 * @param crc the CRC-32 checksum of the uncompressed data
+	 * @param compressedSize the size of the compressed data
+	 * @param size the size of the uncompressed data
+	 */
+	public void setData(long crc, long compressedSize, long size) {
+		this.crc = crc;
+		this.compressedSize = compressedSize;
+		this.size = size;
+	}
+
+	private void setTime(long time) {
+		if (time == 0)
+			time = System.currentTimeMillis();
+		Calendar c = Calendar.getInstance();
+		c.setTimeInMillis(time);
+		int year = c.get(Calendar.YEAR);
+		if (year < 1980) {
+			dosTime = (1 << 21) | (1 << 16);
+			return;
+		}
+		dosTime = (year - 1980) << 25 | (c.get(Calendar.MONTH) + 1) << 21
+			| c.get(Calendar.DAY_OF_MONTH) << 16 | c.get(Calendar.HOUR_OF_DAY) << 11
+			| c.get(Calendar.MINUTE) << 5 | c.get(Calendar.SECOND) >> 1;
+	}
+
+	public String toString() {
+		return "ZipArchiveEntry [" + name + ", " + method + ", " + compressedSize + ", " + size + "]";
+	}
+}
@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.server.core.internal.zip;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipException;
+/**
+ * Reads the central directory of a zip archive and gives access to the
+ * raw (still compressed) data of each entry, so that entries can be copied
+ * to another archive without being decompressed and compressed again.
+ * <p>
+ * Zip64 archives are not supported.
+ * </p>
+ */
+public class ZipArchiveReader {
+	private static final int END_HEADER_SIZE = 22;
+	private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+	private RandomAccessFile file;
+	private List<ZipArchiveEntry> entries;
+
+	/**
+	 * Open the given zip archive.
+	 *
+	 * @param f a zip file
+	 * @throws IOException if the file cannot be read or is not a supported zip archive
+	 */
+	public ZipArchiveReader(File f) throws IOException {
+		file = new RandomAccessFile(f, "r");
+		try {
+			readCentralDirectory();
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the entries of the archive, in the order of the central directory.
+	 *
+	 * @return the entries
+	 */
+	public List<ZipArchiveEntry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Returns a stream that reads the compressed data of the given entry.
+	 * The stream must be consumed before another stream is requested.
+	 *
+	 * @param entry an entry of this archive
+	 * @return an input stream
+	 * @throws IOException if the entry cannot be read
+	 */
+	public InputStream getRawInputStream(ZipArchiveEntry entry) throws IOException {
+		byte[] b = new byte[30];
+		file.seek(entry.offset);
+		file.readFully(b);
+		if (getInt(b, 0) != ZipArchiveWriter.LOCAL_HEADER_SIG)
+			throw new ZipException("Invalid local header: " + entry.getName());
+
+		long start = entry.offset + 30 + getShort(b, 26) + getShort(b, 28);
+		file.seek(start);
+		final long length = entry.compressedSize;
+		return new InputStream() {
+			private long remaining = length;
+
+			public int read() throws IOException {
+				if (remaining <= 0)
+					return -1;
+				remaining--;
+				return file.read();
+			}
+
+			public int read(byte[] buf, int off, int len) throws IOException {
+				if (remaining <= 0)
+					return -1;
+				if (len > remaining)
+					len = (int) remaining;
+				int n = file.read(buf, off, len);
+				if (n > 0)
+					remaining -= n;
+				return n;
+			}
+		};
+	}
+
+	/**
+	 * Close the archive.
+	 */
+	public void close() {
+		try {
+			file.close();
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+
+	private void readCentralDirectory() throws IOException {
+		long length = file.length();
+		int size = (int) Math.min(length, END_HEADER_SIZE + MAX_COMMENT_SIZE);
+		if (size < END_HEADER_SIZE)
+			throw new ZipException("Not a zip file");
+
+		// find the end of central directory record
+		byte[] b = new byte[size];
+		file.seek(length - size);
+		file.readFully(b);
+		int end = -1;
+		for (int i = size - END_HEADER_SIZE; i >= 0; i--) {
+			if (getInt(b, i) == ZipArchiveWriter.END_SIG) {
+				end = i;
+				break;
+			}
+		}
+		if (end < 0)
+			throw new ZipException("Not a zip file");
+
+		int count = getShort(b, end + 10);
+		long cdSize = getInt(b, end + 12);
+		long cdOffset = getInt(b, end + 16);
+		if (count == 0xFFFF || cdSize == 0xFFFFFFFFL || cdOffset == 0xFFFFFFFFL)
+			throw new ZipException("Zip64 archives are not supported");
+
+		b = new byte[(int) cdSize];
+		file.seek(cdOffset);
+		file.readFully(b);
+
+		entries = new ArrayList<ZipArchiveEntry>(count);
+		int pos = 0;
+		for (int i = 0; i < count; i++) {
+			if (pos + 46 > b.length || getInt(b, pos) != ZipArchiveWriter.CENTRAL_HEADER_SIG)
+				throw new ZipException("Invalid central directory");
+
+			int nameLength = getShort(b, pos + 28);
+			int extraLength = getShort(b, pos + 30);
+			int commentLength = getShort(b, pos + 32);
+			byte[] name = new byte[nameLength];
+			System.arraycopy(b, pos + 46, name, 0, nameLength);
+
+			ZipArchiveEntry entry = new ZipArchiveEntry(name, getShort(b, pos + 8) & ~ZipArchiveEntry.FLAG_DATA_DESCRIPTOR);
+			entry.method = getShort(b, pos + 10);
+			entry.dosTime = getInt(b, pos + 12);
+			entry.crc = getInt(b, pos + 16);
+			entry.compressedSize = getInt(b, pos + 20);
+			entry.size = getInt(b, pos + 24);
+			entry.offset = getInt(b, pos + 42);
+			if (entry.compressedSize == 0xFFFFFFFFL || entry.size == 0xFFFFFFFFL || entry.offset == 0xFFFFFFFFL)
+				throw new ZipException("Zip64 archives are not supported");
+			if (entry.method != ZipArchiveEntry.STORED && entry.method != ZipArchiveEntry.DEFLATED)
+				throw new ZipException("Unsupported compression method: " + entry.getName());
+			entries.add(entry);
+
+			pos += 46 + nameLength + extraLength + commentLength;
+		}
+	}
+
+	private static int getShort(byte[] b, int off) {
+		return (b[off] & 0xFF) | ((b[off + 1] & 0xFF) << 8);
+	}
+
+	private static long getInt(byte[] b, int off) {
+		return (getShort(b, off) | ((long) getShort(b, off + 2) << 16)) & 0xFFFFFFFFL;
+	}
+}
@@ -0,0 +1,356 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.server.core.internal.zip;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+/**
+ * Writes a zip archive. Unlike java.util.zip.ZipOutputStream, entries can
+ * be written from data that has already been compressed, e.g. copied from
+ * another archive or compressed on another thread, and entries can be
+ * stored without compression.
+ * <p>
+ * Zip64 archives are not supported. If an archive has too many entries or
+ * is too large to be written without the Zip64 extensions, a
+ * Zip64RequiredException is thrown and the archive should be written with
+ * java.util.zip instead.
+ * </p>
+ * <p>
+ * A writer on a file can write a stored entry as its contents are read, by
+ * filling in the checksum and size of the entry's header afterwards.
+ * </p>
+ */
+public class ZipArchiveWriter {
+	static final long LOCAL_HEADER_SIG = 0x04034b50L;
+	static final long DATA_DESCRIPTOR_SIG = 0x08074b50L;
+	static final long CENTRAL_HEADER_SIG = 0x02014b50L;
+	static final long END_SIG = 0x06054b50L;
+
+	private static final int VERSION = 20;
+	private static final long MAX_SIZE = 0xFFFFFFFFL;
+	private static final int MAX_ENTRIES = 0xFFFF;
+
+	// offset of the checksum and sizes in a local header
+	private static final int LOCAL_HEADER_CRC = 14;
+
+	private OutputStream out;
+	// channel of the file being written, or null if writing to a stream
+	private FileChannel channel;
+	private long written;
+	private byte[] buf = new byte[8192];
+	private List<ZipArchiveEntry> entries = new ArrayList<ZipArchiveEntry>();
+	private Set<String> names = new HashSet<String>();
+
+	/**
+	 * Create a new writer on the given output stream.
+	 *
+	 * @param out an output stream, which should be buffered
+	 */
+	public ZipArchiveWriter(OutputStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Create a new writer on the given file.
+	 *
+	 * @param file a file, which is replaced
+	 * @throws IOException if the file cannot be opened
+	 */
+	public ZipArchiveWriter(File file) throws IOException {
+		FileOutputStream fout = new FileOutputStream(file);
+		channel = fout.getChannel();
+		out = new BufferedOutputStream(fout);
+	}
+
+	/**
+	 * Returns true if an entry with the given name has already been written.
+	 *
+	 * @param name an entry name
+	 * @return <code>true</code> if the entry exists
+	 */
+	public boolean hasEntry(String name) {
+		return names.contains(name);
+	}
+
+	/**
+	 * Write a directory entry.
+	 *
+	 * @param name the entry name, ending in '/'
+	 * @param time the last modified time, or 0 to use the current time
+	 * @throws IOException if the entry cannot be written
+	 */
+	public void putDirectory(String name, long time) throws IOException {
+		ZipArchiveEntry entry = new ZipArchiveEntry(name, ZipArchiveEntry.STORED, time);
+		entry.setData(0, 0, 0);
+		writeLocalHeader(entry);
+	}
+
+	/**
+	 * Write an entry by compressing the contents of the given stream. The
+	 * stream is not closed.
+	 *
+	 * @param name the entry name
+	 * @param time the last modified time, or 0 to use the current time
+	 * @param in the uncompressed contents
+	 * @throws IOException if the entry cannot be written
+	 */
+	public void putDeflatedEntry(String name, long time, InputStream in) throws IOException {
+		ZipArchiveEntry entry = new ZipArchiveEntry(name, ZipArchiveEntry.DEFLATED, time);
+		// the sizes are not known until the data is compressed, so they follow the data
+		entry.flags |= ZipArchiveEntry.FLAG_DATA_DESCRIPTOR;
+		writeLocalHeader(entry);
+
+		long start = written;
+		CRC32 crc = new CRC32();
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		try {
+			long size = 0;
+			byte[] b = new byte[8192];
+			int n = in.read(b);
+			while (n >= 0) {
+				if (n > 0) {
+					crc.update(b, 0, n);
+					size += n;
+					deflater.setInput(b, 0, n);
+					while (!deflater.needsInput())
+						deflate(deflater);
+				}
+				n = in.read(b);
+			}
+			deflater.finish();
+			while (!deflater.finished())
+				deflate(deflater);
+			entry.setData(crc.getValue(), written - start, size);
+		} finally {
+			deflater.end();
+		}
+		checkSize(entry);
+
+		writeInt(DATA_DESCRIPTOR_SIG);
+		writeInt(entry.crc);
+		writeInt(entry.compressedSize);
+		writeInt(entry.size);
+	}
+
+	/**
+	 * Write an entry without compressing it. The checksum and size of the
+	 * entry must already be known. The stream is not closed.
+	 *
+	 * @param name the entry name
+	 * @param time the last modified time, or 0 to use the current time
+	 * @param crc the CRC-32 checksum of the contents
+	 * @param size the size of the contents
+	 * @param in the contents
+	 * @throws IOException if the entry cannot be written
+	 */
+	public void putStoredEntry(String name, long time, long crc, long size, InputStream in) throws IOException {
+		ZipArchiveEntry entry = new ZipArchiveEntry(name, ZipArchiveEntry.STORED, time);
+		entry.setData(crc, size, size);
+		putRawEntry(entry, in);
+	}
+
+	/**
+	 * Write an entry without compressing it, computing its checksum and size
+	 * while the contents are copied. The stream is not closed.
+	 * <p>
+	 * If the writer is on a file, the header of the entry is filled in after
+	 * the contents have been written. Otherwise the contents are read into
+	 * memory first.
+	 * </p>
+	 *
+	 * @param name the entry name
+	 * @param time the last modified time, or 0 to use the current time
+	 * @param in the contents
+	 * @throws IOException if the entry cannot be written
+	 */
+	public void putStoredEntry(String name, long time, InputStream in) throws IOException {
+		ZipArchiveEntry entry = new ZipArchiveEntry(name, ZipArchiveEntry.STORED, time);
+		CRC32 crc = new CRC32();
+		if (channel == null) {
+			ByteArrayOutputStream bout = new ByteArrayOutputStream();
+			int n = in.read(buf);
+			while (n >= 0) {
+				crc.update(buf, 0, n);
+				bout.write(buf, 0, n);
+				n = in.read(buf);
+			}
+			entry.setData(crc.getValue(), bout.size(), bout.size());
+			putRawEntry(entry, new ByteArrayInputStream(bout.toByteArray()));
+			return;
+		}
+
+		writeLocalHeader(entry);
+		long start = written;
+		int n = in.read(buf);
+		while (n >= 0) {
+			crc.update(buf, 0, n);
+			write(buf, 0, n);
+			n = in.read(buf);
+		}
+		entry.setData(crc.getValue(), written - start, written - start);
+		checkSize(entry);
+
+		out.flush();
+		ByteBuffer bb = ByteBuffer.allocate(12);
+		bb.order(ByteOrder.LITTLE_ENDIAN);
+		bb.putInt((int) entry.crc);
+		bb.putInt((int) entry.compressedSize);
+		bb.putInt((int) entry.size);
+		bb.flip();
+		long pos = entry.offset + LOCAL_HEADER_CRC;
+		while (bb.hasRemaining())
+			pos += channel.write(bb, pos);
+	}
+
+	/**
+	 * Write an entry from data that is already in the entry's compressed form.
+	 * The checksum and sizes of the entry must be set. The stream is not closed.
+	 *
+	 * @param entry an entry, either read from another archive or created
+	 *    with its data set
+	 * @param in the compressed contents
+	 * @throws IOException if the entry cannot be written
+	 */
+	public void putRawEntry(ZipArchiveEntry entry, InputStream in) throws IOException {
+		checkSize(entry);
+		ZipArchiveEntry entry2 = new ZipArchiveEntry(entry.nameBytes, entry.flags & ~ZipArchiveEntry.FLAG_DATA_DESCRIPTOR);
+		entry2.method = entry.method;
+		entry2.dosTime = entry.dosTime;
+		entry2.setData(entry.crc, entry.compressedSize, entry.size);
+		writeLocalHeader(entry2);
+
+		long remaining = entry.compressedSize;
+		while (remaining > 0) {
+			int n = in.read(buf, 0, (int) Math.min(buf.length, remaining));
+			if (n < 0)
+				throw new EOFException("Unexpected end of entry: " + entry.getName());
+			write(buf, 0, n);
+			remaining -= n;
+		}
+	}
+
+	/**
+	 * Write the central directory and close the archive.
+	 *
+	 * @throws IOException if the archive cannot be written
+	 */
+	public void close() throws IOException {
+		long start = written;
+		int size = entries.size();
+		for (int i = 0; i < size; i++) {
+			ZipArchiveEntry entry = entries.get(i);
+			writeInt(CENTRAL_HEADER_SIG);
+			writeShort(VERSION);
+			writeShort(VERSION);
+			writeShort(entry.flags);
+			writeShort(entry.method);
+			writeInt(entry.dosTime);
+			writeInt(entry.crc);
+			writeInt(entry.compressedSize);
+			writeInt(entry.size);
+			writeShort(entry.nameBytes.length);
+			writeShort(0); // extra
+			writeShort(0); // comment
+			writeShort(0); // disk number
+			writeShort(0); // internal attributes
+			writeInt(0); // external attributes
+			writeInt(entry.offset);
+			write(entry.nameBytes, 0, entry.nameBytes.length);
+		}
+		long end = written;
+		if (end > MAX_SIZE)
+			throw new Zip64RequiredException("Archive is too large for a zip archive");
+
+		writeInt(END_SIG);
+		writeShort(0); // disk number
+		writeShort(0); // disk with the central directory
+		writeShort(size);
+		writeShort(size);
+		writeInt(end - start);
+		writeInt(start);
+		writeShort(0); // comment
+		out.close();
+	}
+
+	/**
+	 * Close the output without finishing the archive. Used to clean up after
+	 * an error.
+	 */
+	void dispose() {
+		try {
+			out.close();
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+
+	private void writeLocalHeader(ZipArchiveEntry entry) throws IOException {
+		String name = entry.getName();
+		if (!names.add(name))
+			throw new ZipException("Duplicate entry: " + name);
+		if (written > MAX_SIZE)
+			throw new Zip64RequiredException("Archive is too large for a zip archive");
+		if (entries.size() >= MAX_ENTRIES)
+			throw new Zip64RequiredException("Too many entries for a zip archive");
+
+		entry.offset = written;
+		entries.add(entry);
+
+		boolean descriptor = (entry.flags & ZipArchiveEntry.FLAG_DATA_DESCRIPTOR) != 0;
+		writeInt(LOCAL_HEADER_SIG);
+		writeShort(VERSION);
+		writeShort(entry.flags);
+		writeShort(entry.method);
+		writeInt(entry.dosTime);
+		writeInt(descriptor ? 0 : entry.crc);
+		writeInt(descriptor ? 0 : entry.compressedSize);
+		writeInt(descriptor ? 0 : entry.size);
+		writeShort(entry.nameBytes.length);
+		writeShort(0); // extra
+		write(entry.nameBytes, 0, entry.nameBytes.length);
+	}
+
+	private void deflate(Deflater deflater) throws IOException {
+		int n = deflater.deflate(buf, 0, buf.length);
+		if (n > 0)
+			write(buf, 0, n);
+	}
+
+	private static void checkSize(ZipArchiveEntry entry) throws ZipException {
+		if (entry.compressedSize >= MAX_SIZE || entry.size >= MAX_SIZE)
+			throw new Zip64RequiredException("Entry is too large for a zip archive: " + entry.getName());
+	}
+
+	private void write(byte[] b, int off, int len) throws IOException {
+		out.write(b, off, len);
+		written += len;
+	}
+
+	private void writeShort(int v) throws IOException {
+		out.write(v & 0xFF);
+		out.write((v >>> 8) & 0xFF);
+		written += 2;
+	}
+
+	private void writeInt(long v) throws IOException {
+		writeShort((int) (v & 0xFFFF));
+		writeShort((int) ((v >>> 16) & 0xFFFF));
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2012 IBM Corporation and others.
+ * Copyright (c) 2005, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,8 +11,15 @@
 package org.eclipse.wst.server.core.model;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.core.runtime.*;
 import org.eclipse.debug.core.ILaunch;
@@ -865,29 +872,130 @@ public abstract class ServerBehaviourDelegate {
 	private List<Integer> computeDelta(final List<IModule[]> moduleList) {
 
 		final List<Integer> deltaKindList = new ArrayList<Integer>();
+		final List<IModule[]> changeList = new ArrayList<IModule[]>();
 		final Iterator<IModule[]> iterator = moduleList.iterator();
 		while (iterator.hasNext()) {
 			IModule[] module = iterator.next();
 			if (hasBeenPublished(module)) {
 				IModule m = module[module.length - 1];
-				if ((m.getProject() != null && !m.getProject().isAccessible())
-						|| getPublishedResourceDelta(module).length == 0) {
+				if (m.getProject() != null && !m.getProject().isAccessible()) {
 					deltaKindList.add(new Integer(ServerBehaviourDelegate.NO_CHANGE));
 				}
 				else {
-					deltaKindList.add(new Integer(ServerBehaviourDelegate.CHANGED));
+					// filled in once the resource delta has been computed
+					deltaKindList.add(null);
+					changeList.add(module);
 				}
 			}
 			else {
 				deltaKindList.add(new Integer(ServerBehaviourDelegate.ADDED));
 			}
 		}
+		
+		final boolean[] changed = computeResourceDelta(changeList);
+		int count = 0;
+		int size = deltaKindList.size();
+		for (int i = 0; i < size; i++) {
+			if (deltaKindList.get(i) == null) {
+				if (changed[count++])
+					deltaKindList.set(i, new Integer(ServerBehaviourDelegate.CHANGED));
+				else
+					deltaKindList.set(i, new Integer(ServerBehaviourDelegate.NO_CHANGE));
+			}
+		}
+		
 		this.addRemovedModules(moduleList, null);
 		while (deltaKindList.size() < moduleList.size()) {
 			deltaKindList.add(new Integer(ServerBehaviourDelegate.REMOVED));
 		}
 		return deltaKindList;
 	}
+
+	/**
+	 * Computes the published resource delta of each of the given modules,
+	 * and returns whether each module has changed. If the subclass allows it
+	 * (see {@link #canComputeResourceDeltasConcurrently()}), the deltas are
+	 * computed concurrently when there is more than one module and more than
+	 * one processor. The delta is cached by the publish info, so later calls to
+	 * {@link #getPublishedResourceDelta(IModule[])} during the publish
+	 * do not need to recompute it.
+	 */
+	private boolean[] computeResourceDelta(final List<IModule[]> modules) {
+		final int size = modules.size();
+		final boolean[] changed = new boolean[size];
+		int threads = Math.min(size, java.lang.Runtime.getRuntime().availableProcessors());
+		if (threads <= 1 || !canComputeResourceDeltasConcurrently()) {
+			for (int i = 0; i < size; i++)
+				changed[i] = getPublishedResourceDelta(modules.get(i)).length > 0;
+			return changed;
+		}
+		
+		ExecutorService executor = createExecutor(threads, "Computing publish delta for " + getServer().getName());
+		try {
+			for (int i = 0; i < size; i++) {
+				final int index = i;
+				executor.execute(new Runnable() {
+					public void run() {
+						try {
+							changed[index] = getPublishedResourceDelta(modules.get(index)).length > 0;
+						} catch (Throwable t) {
+							if (Trace.WARNING) {
+								Trace.trace(Trace.STRING_WARNING, "Error computing publish delta", t);
+							}
+							// assume the module has changed
+							changed[index] = true;
+						}
+					}
+				});
+			}
+			executor.shutdown();
+			while (!executor.awaitTermination(500, TimeUnit.MILLISECONDS)) {
+				// keep waiting
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			// assume all modules have changed
+			for (int i = 0; i < size; i++)
+				changed[i] = true;
+		}
+		return changed;
+	}
+
+	/**
+	 * Returns whether the published resource deltas of different modules can
+	 * be computed at the same time, at the start of a publish. The deltas are
+	 * computed by {@link #getPublishedResourceDelta(IModule[])}, which calls
+	 * <code>members()</code> on the module delegates.
+	 * <p>
+	 * The default implementation returns <code>false</code>, and the deltas
+	 * are computed serially on the calling thread. Subclasses may override to
+	 * return <code>true</code> if <code>getPublishedResourceDelta()</code> and
+	 * the <code>members()</code> of all of the server's module types are safe
+	 * to call from multiple threads.
+	 * </p>
+	 * 
+	 * @return <code>true</code> if the deltas may be computed concurrently,
+	 *    and <code>false</code> otherwise
+	 * @since 1.7
+	 */
+	protected boolean canComputeResourceDeltasConcurrently() {
+		return false;
+	}
+
+	/**
+	 * Creates a fixed pool of daemon threads used for publishing work.
+	 */
+	private static ExecutorService createExecutor(int threads, final String name) {
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private int count;
+			public synchronized Thread newThread(Runnable r) {
+				Thread t = new Thread(r, name + " (" + (++count) + ")");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
 	
 	/**
 	 * Publish to the server.
@@ -1157,6 +1265,12 @@ public abstract class ServerBehaviourDelegate {
 		if (size == 0)
 			return;
 		
+		int threads = getMaxConcurrentModulePublishes();
+		if (threads > 1 && size > 1) {
+			publishModulesConcurrently(kind, modules, deltaKind2, multi, monitor, threads);
+			return;
+		}
+		
 		// publish modules
 		for (int i = 0; i < size; i++) {
 			if (monitor.isCanceled())
@@ -1186,6 +1300,238 @@ public abstract class ServerBehaviourDelegate {
 		}
 	}
 
+	/**
+	 * Returns the maximum number of modules that may be published at the
+	 * same time. Modules are only published concurrently if the module (or one
+	 * of its parents) has been declared independent via
+	 * {@link #canPublishModuleConcurrently(IModule[])}.
+	 * <p>
+	 * The default implementation returns 1, and all modules are published
+	 * serially on the calling thread. Subclasses may override to enable
+	 * concurrent publishing, in which case {@link #publishModule(int, int, IModule[], IProgressMonitor)}
+	 * must be safe to call from multiple threads for independent modules.
+	 * </p>
+	 * 
+	 * @return the maximum number of modules to publish at the same time
+	 * @since 1.7
+	 */
+	protected int getMaxConcurrentModulePublishes() {
+		return 1;
+	}
+
+	/**
+	 * Returns whether the given module and its children can be published
+	 * concurrently with the other modules on the server. A module is always
+	 * published after its parent module has been published, and the children
+	 * of a module that is not independent are published serially along
+	 * with it.
+	 * <p>
+	 * This method is only called if {@link #getMaxConcurrentModulePublishes()}
+	 * returns a value greater than 1. The default implementation returns
+	 * <code>false</code>.
+	 * </p>
+	 * 
+	 * @param module the module
+	 * @return <code>true</code> if the module tree can be published
+	 *    independently of other modules, and <code>false</code> otherwise
+	 * @since 1.7
+	 */
+	protected boolean canPublishModuleConcurrently(IModule[] module) {
+		return false;
+	}
+
+	/**
+	 * A group of modules that are published serially, in order, by a
+	 * single worker. A unit does not start until its parent unit is done.
+	 */
+	private static class PublishUnit {
+		protected List<Integer> indexes = new ArrayList<Integer>();
+		protected PublishUnit parent;
+		protected CountDownLatch done = new CountDownLatch(1);
+	}
+
+	/**
+	 * Progress monitor that serializes the updates from multiple publishing
+	 * threads onto a single monitor.
+	 */
+	private static class SynchronizedProgressMonitor extends ProgressMonitorWrapper {
+		protected SynchronizedProgressMonitor(IProgressMonitor monitor) {
+			super(monitor);
+		}
+
+		public synchronized void beginTask(String name, int totalWork) {
+			super.beginTask(name, totalWork);
+		}
+
+		public synchronized void done() {
+			super.done();
+		}
+
+		public synchronized void internalWorked(double work) {
+			super.internalWorked(work);
+		}
+
+		public synchronized void setTaskName(String name) {
+			super.setTaskName(name);
+		}
+
+		public synchronized void subTask(String name) {
+			super.subTask(name);
+		}
+
+		public synchronized void worked(int work) {
+			super.worked(work);
+		}
+	}
+
+	/**
+	 * Publishes the given modules using a bounded pool of worker threads.
+	 * Modules are grouped into units that are published serially, and a unit
+	 * is only started once the unit containing its parent module has finished.
+	 * Removed modules are published serially once all other modules are done.
+	 * The resulting status is added to the multistatus in module order.
+	 */
+	private void publishModulesConcurrently(int kind, List modules, List deltaKind2, MultiStatus multi, IProgressMonitor monitor, int threads) {
+		int size = modules.size();
+		final IStatus[] status = new IStatus[size];
+		
+		// group the modules into units
+		List<PublishUnit> units = new ArrayList<PublishUnit>();
+		List<Integer> removed = new ArrayList<Integer>();
+		Map<String, PublishUnit> unitMap = new HashMap<String, PublishUnit>();
+		PublishUnit serialUnit = null;
+		for (int i = 0; i < size; i++) {
+			IModule[] module = (IModule[]) modules.get(i);
+			if (((Integer)deltaKind2.get(i)).intValue() == REMOVED) {
+				removed.add(new Integer(i));
+				continue;
+			}
+			
+			PublishUnit parent = null;
+			if (module.length > 1)
+				parent = unitMap.get(getModuleKey(module, module.length - 1));
+			
+			PublishUnit unit = null;
+			if (canPublishModuleConcurrently(module)) {
+				unit = new PublishUnit();
+				unit.parent = parent;
+				units.add(unit);
+			} else if (parent != null)
+				unit = parent;
+			else {
+				if (serialUnit == null) {
+					serialUnit = new PublishUnit();
+					units.add(serialUnit);
+				}
+				unit = serialUnit;
+			}
+			unit.indexes.add(new Integer(i));
+			unitMap.put(getModuleKey(module, module.length), unit);
+		}
+		
+		final IProgressMonitor syncMonitor = new SynchronizedProgressMonitor(monitor);
+		final int kind2 = kind;
+		final List modules2 = modules;
+		final List deltaKind3 = deltaKind2;
+		ExecutorService executor = createExecutor(Math.min(threads, Math.max(1, units.size())), "Publishing to " + getServer().getName());
+		
+		// units are submitted in module order, so a parent unit is always
+		// started before any of its children are taken off the queue
+		try {
+			Iterator<PublishUnit> iterator = units.iterator();
+			while (iterator.hasNext()) {
+				final PublishUnit unit = iterator.next();
+				executor.execute(new Runnable() {
+					public void run() {
+						try {
+							if (unit.parent != null)
+								unit.parent.done.await();
+							publishModules(kind2, modules2, deltaKind3, unit.indexes, status, syncMonitor);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							setUnpublishedStatus(modules2, unit.indexes, status, Status.CANCEL_STATUS);
+						} catch (Throwable t) {
+							if (Trace.SEVERE) {
+								Trace.trace(Trace.STRING_SEVERE, "Error publishing modules", t);
+							}
+							setUnpublishedStatus(modules2, unit.indexes, status,
+									new Status(IStatus.ERROR, ServerPlugin.PLUGIN_ID, 0, Messages.errorPublishing, t));
+						} finally {
+							unit.done.countDown();
+						}
+					}
+				});
+			}
+			executor.shutdown();
+			while (!executor.awaitTermination(500, TimeUnit.MILLISECONDS)) {
+				// keep waiting; workers stop early if the monitor is canceled
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			syncMonitor.setCanceled(true);
+			Thread.currentThread().interrupt();
+			
+			// units that were never started have no status
+			Iterator<PublishUnit> iterator = units.iterator();
+			while (iterator.hasNext())
+				setUnpublishedStatus(modules, iterator.next().indexes, status, Status.CANCEL_STATUS);
+		}
+		
+		if (!monitor.isCanceled())
+			publishModules(kind, modules, deltaKind2, removed, status, monitor);
+		else
+			setUnpublishedStatus(modules, removed, status, Status.CANCEL_STATUS);
+		
+		for (int i = 0; i < size; i++) {
+			if (status[i] != null && !status[i].isOK())
+				multi.add(status[i]);
+		}
+	}
+
+	/**
+	 * Set the given status on the modules that have not been published and
+	 * that should not be ignored.
+	 */
+	private void setUnpublishedStatus(List modules, List<Integer> indexes, IStatus[] status, IStatus s) {
+		Iterator<Integer> iterator = indexes.iterator();
+		while (iterator.hasNext()) {
+			int i = iterator.next().intValue();
+			IModule[] module = (IModule[]) modules.get(i);
+			if (status[i] == null && !shouldIgnorePublishRequest(module[module.length - 1]))
+				status[i] = s;
+		}
+	}
+
+	private void publishModules(int kind, List modules, List deltaKind2, List<Integer> indexes, IStatus[] status, IProgressMonitor monitor) {
+		Iterator<Integer> iterator = indexes.iterator();
+		while (iterator.hasNext()) {
+			if (monitor.isCanceled())
+				return;
+			
+			int i = iterator.next().intValue();
+			IModule[] module = (IModule[]) modules.get(i);
+			IModule m = module[module.length - 1];
+			if (shouldIgnorePublishRequest(m))
+				continue;
+			
+			int kind2 = kind;
+			if (getServer().getModulePublishState(module) == IServer.PUBLISH_STATE_UNKNOWN)
+				kind2 = IServer.PUBLISH_FULL;
+			
+			status[i] = publishModule(kind2, module, ((Integer)deltaKind2.get(i)).intValue(), ProgressUtil.getSubMonitorFor(monitor, 3000));
+		}
+	}
+
+	private static String getModuleKey(IModule[] module, int depth) {
+		StringBuffer sb = new StringBuffer();
+		for (int i = 0; i < depth; i++) {
+			if (i != 0)
+				sb.append("#");
+			sb.append(module[i].getId());
+		}
+		return sb.toString();
+	}
+
 	/**
 	 * Returns whether this module should be ignore during the publish
 	 * @param m
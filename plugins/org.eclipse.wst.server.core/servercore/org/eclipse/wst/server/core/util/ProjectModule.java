@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2007 IBM Corporation and others.
+ * Copyright (c) 2003, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,8 +10,8 @@
  *******************************************************************************/
 package org.eclipse.wst.server.core.util;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.lang.ref.WeakReference;
+import java.util.*;
 
 import org.eclipse.core.resources.*;
 import org.eclipse.core.runtime.CoreException;
@@ -20,6 +20,8 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Path;
 
 import org.eclipse.wst.server.core.IModule;
+import org.eclipse.wst.server.core.internal.Trace;
+import org.eclipse.wst.server.core.model.IModuleFolder;
 import org.eclipse.wst.server.core.model.IModuleResource;
 import org.eclipse.wst.server.core.model.ModuleDelegate;
 /**
@@ -29,8 +31,25 @@ import org.eclipse.wst.server.core.model.ModuleDelegate;
  * @since 1.0
  */
 public abstract class ProjectModule extends ModuleDelegate {
+	private static final IModuleResource[] EMPTY_RESOURCE_ARRAY = new IModuleResource[0];
+
+	// modules that have cached members, by project
+	private static final Map<IProject, List<WeakReference<ProjectModule>>> cachedModules = new HashMap<IProject, List<WeakReference<ProjectModule>>>();
+
 	private IProject project;
 
+	// cached result of members(), replaced (never modified) as resources change
+	private volatile IModuleResource[] members;
+
+	// incremented whenever the cached members are changed or discarded
+	private int membersVersion;
+
+	// whether a subclass changes how module resources are created
+	private Boolean customResources;
+
+	// whether this module has been added to cachedModules
+	private boolean registered;
+
 	/**
 	 * Create a new project module.
 	 */
@@ -141,11 +160,249 @@ public abstract class ProjectModule extends ModuleDelegate {
 	/**
 	 * Basic implementation of members() method. Assumes that the entire project should
 	 * be published to a server.
+	 * <p>
+	 * If {@link #isMembersCacheable()} returns <code>true</code>, the result is
+	 * cached until the resources of the project change or
+	 * {@link #clearMembersCache()} is called.
+	 * </p>
 	 * 
 	 * @see ModuleDelegate#members()
 	 */
 	public IModuleResource[] members() throws CoreException {
-		return getModuleResources(Path.EMPTY, getProject());
+		IModuleResource[] m = members;
+		if (m != null)
+			return m;
+		
+		IProject project2 = getProject();
+		if (project2 == null || !isMembersCacheable())
+			return getModuleResources(Path.EMPTY, project2);
+		
+		// register first so that changes during the walk are not missed
+		synchronized (cachedModules) {
+			if (!registered) {
+				registered = true;
+				List<WeakReference<ProjectModule>> list = cachedModules.get(project2);
+				if (list == null) {
+					list = new ArrayList<WeakReference<ProjectModule>>(2);
+					cachedModules.put(project2, list);
+				}
+				list.add(new WeakReference<ProjectModule>(this));
+			}
+		}
+		
+		int version;
+		synchronized (this) {
+			version = membersVersion;
+		}
+		m = getModuleResources(Path.EMPTY, project2);
+		synchronized (this) {
+			// don't cache if resources changed while the members were being created
+			if (version == membersVersion)
+				members = m;
+		}
+		return m;
+	}
+
+	/**
+	 * Returns <code>true</code> if the result of <code>members()</code> can be
+	 * cached until the resources of the module's project change, and
+	 * <code>false</code> otherwise.
+	 * <p>
+	 * By default, the members are cached unless a subclass overrides
+	 * <code>getModuleResources(IPath, IContainer)</code>. Subclasses whose
+	 * module resources only depend on the resources of their project may
+	 * override this method to return <code>true</code>. If the module resources
+	 * also depend on anything else, the subclass must call
+	 * {@link #clearMembersCache()} when that changes.
+	 * </p>
+	 * 
+	 * @return <code>true</code> if the members of this module can be cached,
+	 *    and <code>false</code> otherwise
+	 * @since 1.7
+	 */
+	protected boolean isMembersCacheable() {
+		return !hasCustomResources();
+	}
+
+	/**
+	 * Discards the cached result of <code>members()</code>, so that the module
+	 * resources are created again the next time they are requested.
+	 * 
+	 * @since 1.7
+	 */
+	public synchronized void clearMembersCache() {
+		membersVersion++;
+		members = null;
+	}
+
+	/**
+	 * Updates the cached members of all modules in the given project.
+	 * 
+	 * @param project a project
+	 * @param delta a resource delta for the project
+	 */
+	static void handleProjectChange(IProject project, IResourceDelta delta) {
+		List<ProjectModule> modules = new ArrayList<ProjectModule>(2);
+		synchronized (cachedModules) {
+			List<WeakReference<ProjectModule>> list = cachedModules.get(project);
+			if (list == null)
+				return;
+			
+			Iterator<WeakReference<ProjectModule>> iterator = list.iterator();
+			while (iterator.hasNext()) {
+				ProjectModule pm = iterator.next().get();
+				if (pm == null)
+					iterator.remove();
+				else
+					modules.add(pm);
+			}
+			if (delta.getKind() == IResourceDelta.REMOVED) {
+				cachedModules.remove(project);
+				for (int i = 0; i < modules.size(); i++)
+					modules.get(i).registered = false;
+			} else if (list.isEmpty())
+				cachedModules.remove(project);
+		}
+		
+		int size = modules.size();
+		for (int i = 0; i < size; i++)
+			modules.get(i).handleResourceChange(delta);
+	}
+
+	/**
+	 * Updates the cached members of this module using a resource delta for
+	 * the module's project. Members that did not change are reused, so callers
+	 * can continue to use the previous result of <code>members()</code>.
+	 * If a subclass overrides how module resources are created, the cache
+	 * is discarded instead.
+	 * 
+	 * @param delta a resource delta for the project
+	 */
+	synchronized void handleResourceChange(IResourceDelta delta) {
+		membersVersion++;
+		IModuleResource[] m = members;
+		if (m == null)
+			return;
+		
+		if (delta.getKind() != IResourceDelta.CHANGED || (delta.getFlags() & IResourceDelta.OPEN) != 0
+				|| hasCustomResources()) {
+			members = null;
+			return;
+		}
+		
+		try {
+			members = updateModuleResources(m, Path.EMPTY, delta);
+		} catch (Exception e) {
+			if (Trace.WARNING) {
+				Trace.trace(Trace.STRING_WARNING, "Could not update module resources for " + getProject(), e);
+			}
+			members = null;
+		}
+	}
+
+	/**
+	 * Returns the given module resources with the changes in the given container
+	 * delta applied, or the same array if nothing changed.
+	 */
+	private IModuleResource[] updateModuleResources(IModuleResource[] resources, IPath path, IResourceDelta delta) throws CoreException {
+		IResourceDelta[] children = delta.getAffectedChildren();
+		if (children == null || children.length == 0)
+			return resources;
+		
+		List<IModuleResource> list = null;
+		Map<String, Integer> map = null;
+		boolean added = false;
+		int size = children.length;
+		for (int i = 0; i < size; i++) {
+			IResourceDelta child = children[i];
+			int kind = child.getKind();
+			// folders whose only change is in their children are reported with no flags
+			if (kind == IResourceDelta.CHANGED && (child.getFlags() & ~IResourceDelta.MARKERS) == 0
+					&& child.getAffectedChildren().length == 0)
+				continue;
+			
+			if (map == null) {
+				map = new HashMap<String, Integer>();
+				for (int j = 0; j < resources.length; j++)
+					map.put(resources[j].getName(), new Integer(j));
+			}
+			
+			IResource resource = child.getResource();
+			String name = resource.getName();
+			Integer index = map.get(name);
+			IModuleResource current = index == null ? null : resources[index.intValue()];
+			IModuleResource mr = null;
+			if (kind != IResourceDelta.REMOVED && resource.exists()) {
+				if (resource instanceof IContainer) {
+					IContainer container = (IContainer) resource;
+					IPath path2 = path.append(name);
+					ModuleFolder mf = new org.eclipse.wst.server.core.internal.ModuleFolder(container, name, path);
+					if (current instanceof IModuleFolder && kind == IResourceDelta.CHANGED) {
+						IModuleResource[] members2 = ((IModuleFolder) current).members();
+						IModuleResource[] members3 = updateModuleResources(members2, path2, child);
+						if (members2 == members3)
+							continue;
+						mf.setMembers(members3);
+					} else
+						mf.setMembers(getModuleResources(path2, container));
+					mr = mf;
+				} else if (resource instanceof IFile)
+					mr = new ModuleFile((IFile) resource, name, path);
+			}
+			
+			if (list == null)
+				list = new ArrayList<IModuleResource>(Arrays.asList(resources));
+			if (index != null)
+				list.set(index.intValue(), mr);
+			else if (mr != null) {
+				map.put(name, new Integer(list.size()));
+				list.add(mr);
+				added = true;
+			}
+		}
+		
+		if (list == null)
+			return resources;
+		
+		// remove deleted resources, and keep the same order as IContainer.members()
+		List<IModuleResource> list2 = new ArrayList<IModuleResource>(list.size());
+		Iterator<IModuleResource> iterator = list.iterator();
+		while (iterator.hasNext()) {
+			IModuleResource mr = iterator.next();
+			if (mr != null)
+				list2.add(mr);
+		}
+		if (added) {
+			Collections.sort(list2, new Comparator<IModuleResource>() {
+				public int compare(IModuleResource r1, IModuleResource r2) {
+					return r1.getName().compareTo(r2.getName());
+				}
+			});
+		}
+		if (list2.isEmpty())
+			return EMPTY_RESOURCE_ARRAY;
+		return list2.toArray(new IModuleResource[list2.size()]);
+	}
+
+	/**
+	 * Returns true if a subclass overrides getModuleResources(), in which case
+	 * the cached members cannot be updated from a resource delta.
+	 */
+	private boolean hasCustomResources() {
+		if (customResources == null) {
+			boolean b = false;
+			Class c = getClass();
+			while (c != ProjectModule.class && !b) {
+				try {
+					c.getDeclaredMethod("getModuleResources", new Class[] { IPath.class, IContainer.class });
+					b = true;
+				} catch (NoSuchMethodException e) {
+					c = c.getSuperclass();
+				}
+			}
+			customResources = Boolean.valueOf(b);
+		}
+		return customResources.booleanValue();
 	}
 
 	/**
@@ -146,6 +146,8 @@ public abstract class ProjectModuleFactoryDelegate extends ModuleFactoryDelegate
 	 * @param delta a resource delta
 	 */
 	public final static void handleGlobalProjectChange(IProject project, IResourceDelta delta) {
+		updateModuleResources(project, delta);
+		
 		ModuleFactory[] factories = ServerPlugin.getModuleFactories();
 		int size = factories.length;
 		for (int i = 0; i < size; i++) {
@@ -159,6 +161,19 @@ public abstract class ProjectModuleFactoryDelegate extends ModuleFactoryDelegate
 		}
 	}
 
+	/**
+	 * Update the cached resources of modules in a project, without changing
+	 * the modules themselves. This is called for resource changes that do
+	 * not affect publishing, such as clean builds.
+	 * 
+	 * @param project a project
+	 * @param delta a resource delta
+	 * @since 1.7
+	 */
+	public final static void updateModuleResources(IProject project, IResourceDelta delta) {
+		ProjectModule.handleProjectChange(project, delta);
+	}
+
 	/**
 	 * Returns <code>true</code> if the delta may have changed modules,
 	 * and <code>false</code> otherwise.
@@ -11,8 +11,9 @@
 package org.eclipse.wst.server.core.util;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -24,6 +25,11 @@ import org.eclipse.wst.server.core.internal.Messages;
 import org.eclipse.wst.server.core.internal.ProgressUtil;
 import org.eclipse.wst.server.core.internal.ServerPlugin;
 import org.eclipse.wst.server.core.internal.Trace;
+import org.eclipse.wst.server.core.internal.zip.ParallelZipArchiveWriter;
+import org.eclipse.wst.server.core.internal.zip.ZipArchiveEntry;
+import org.eclipse.wst.server.core.internal.zip.ZipArchiveReader;
+import org.eclipse.wst.server.core.internal.zip.ZipArchiveWriter;
+import org.eclipse.wst.server.core.internal.zip.Zip64RequiredException;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.wst.server.core.model.IModuleFile;
 import org.eclipse.wst.server.core.model.IModuleFolder;
@@ -38,8 +44,12 @@ public class PublishHelper {
 	// size of the buffer
 	private static final int BUFFER = 65536;
 
-	// the buffer
-	private static byte[] buf = new byte[BUFFER];
+	// a buffer per thread, so that multiple servers can publish at the same time
+	private static final ThreadLocal<byte[]> buffer = new ThreadLocal<byte[]>() {
+		protected byte[] initialValue() {
+			return new byte[BUFFER];
+		}
+	};
 
 	private static final IStatus[] EMPTY_STATUS = new IStatus[0];
 
@@ -64,7 +74,9 @@ public class PublishHelper {
 	}
 
 	/**
-	 * Copy a file from a to b. Closes the input stream after use.
+	 * Copy a file from a to b. Closes the input stream after use. File input
+	 * streams are copied using a file channel transfer, which lets the
+	 * operating system copy the contents without passing them through the VM.
 	 * 
 	 * @param in an input stream
 	 * @param to a path to copy to. the directory must already exist
@@ -81,6 +93,11 @@ public class PublishHelper {
 			
 			out = new FileOutputStream(tempFile);
 			
+			if (in instanceof FileInputStream)
+				transfer((FileInputStream) in, (FileOutputStream) out);
+			
+			// copy anything that was not transferred
+			byte[] buf = buffer.get();
 			int avail = in.read(buf);
 			while (avail > 0) {
 				out.write(buf, 0, avail);
@@ -121,6 +138,43 @@ public class PublishHelper {
 		}
 	}
 
+	/**
+	 * Copy a file from a to b using a file channel transfer.
+	 * 
+	 * @param from a file to copy from
+	 * @param to a path to copy to. the directory must already exist
+	 * @param ts timestamp
+	 * @throws CoreException if anything goes wrong
+	 */
+	private void copyFile(File from, IPath to, long ts, IModuleFile mf) throws CoreException {
+		FileInputStream in = null;
+		try {
+			in = new FileInputStream(from);
+		} catch (IOException e) {
+			throw new CoreException(new Status(IStatus.ERROR, ServerPlugin.PLUGIN_ID, 0, NLS.bind(Messages.errorReading, from.getAbsolutePath()), e));
+		}
+		copyFile(in, to, ts, mf);
+	}
+
+	/**
+	 * Transfer the contents of a file between channels. The transfer may stop
+	 * early, e.g. if the channel cannot transfer any more; both streams are
+	 * left positioned after the bytes that were transferred.
+	 */
+	private static void transfer(FileInputStream in, FileOutputStream out) throws IOException {
+		FileChannel inChannel = in.getChannel();
+		FileChannel outChannel = out.getChannel();
+		long size = inChannel.size();
+		long position = inChannel.position();
+		while (position < size) {
+			long n = inChannel.transferTo(position, size - position, outChannel);
+			if (n <= 0)
+				break;
+			position += n;
+		}
+		inChannel.position(position);
+	}
+
 	/**
 	 * Utility method to recursively delete a directory.
 	 *
@@ -208,9 +262,13 @@ public class PublishHelper {
 		File toDir = path.toFile();
 		int fromSize = resources.length;
 		String[] fromFileNames = new String[fromSize];
-		for (int i = 0; i < fromSize; i++)
+		// index the source resources by name so that each destination file is matched in constant time
+		Map<String, IModuleResource> fromMap = new HashMap<String, IModuleResource>(fromSize * 2);
+		for (int i = 0; i < fromSize; i++) {
 			fromFileNames[i] = resources[i].getName();
-		List<String> ignoreFileNames = new ArrayList<String>();
+			fromMap.put(fromFileNames[i], resources[i]);
+		}
+		Set<String> ignoreFileNames = new HashSet<String>();
 		if (ignore != null) {
 			for (int i = 0; i < ignore.length; i++) {
 				if (ignore[i].segmentCount() == 1) {
@@ -219,41 +277,29 @@ public class PublishHelper {
 			}
 		}
 		
-		//	cache files and file names for performance
-		File[] toFiles = null;
-		String[] toFileNames = null;
+		// cache the remaining file names and last modified dates for performance
+		Map<String, Long> toFileMod = new HashMap<String, Long>();
 		
 		boolean foundExistingDir = false;
 		if (toDir.exists()) {
 			if (toDir.isDirectory()) {
 				foundExistingDir = true;
-				toFiles = toDir.listFiles();
+				File[] toFiles = toDir.listFiles();
+				if (toFiles == null)
+					toFiles = new File[0];
 				int toSize = toFiles.length;
-				toFileNames = new String[toSize];
 				
 				// check if this exact file exists in the new directory
 				for (int i = 0; i < toSize; i++) {
-					toFileNames[i] = toFiles[i].getName();
+					String toFileName = toFiles[i].getName();
 					boolean isDir = toFiles[i].isDirectory();
-					boolean found = false;
-					for (int j = 0; j < fromSize; j++) {
-						if (toFileNames[i].equals(fromFileNames[j]) && isDir == resources[j] instanceof IModuleFolder) {
-							found = true;
-							break;
-						}
-					}
+					IModuleResource from = fromMap.get(toFileName);
+					boolean found = from != null && isDir == from instanceof IModuleFolder;
 					
 					// delete file if it can't be found or isn't the correct type
 					if (!found) {
-						boolean delete = true;
 						// if should be preserved, don't delete and don't try to copy
-						for (String preserveFileName : ignoreFileNames) {
-							if (toFileNames[i].equals(preserveFileName)) {
-								delete = false;
-								break;
-							}
-						}
-						if (delete) {
+						if (!ignoreFileNames.contains(toFileName)) {
 							if (isDir) {
 								IStatus[] stat = deleteDirectory(toFiles[i], null);
 								addArrayToList(status, stat);
@@ -262,9 +308,8 @@ public class PublishHelper {
 									status.add(new Status(IStatus.ERROR, ServerPlugin.PLUGIN_ID, 0, NLS.bind(Messages.errorDeleting, toFiles[i].getAbsolutePath()), null));
 							}
 						}
-						toFiles[i] = null;
-						toFileNames[i] = null;
-					}
+					} else
+						toFileMod.put(toFileName, new Long(toFiles[i].lastModified()));
 				}
 			} else { //if (toDir.isFile())
 				if (!toDir.delete()) {
@@ -289,29 +334,12 @@ public class PublishHelper {
 		
 		// cycle through files and only copy when it doesn't exist
 		// or is newer
-		if (toFiles == null) {
-			toFiles = toDir.listFiles();
-			if (toFiles == null)
-				toFiles = new File[0];
-		}
-		int toSize = toFiles.length;
+		int toSize = toFileMod.size();
 		
 		int dw = 0;
 		if (toSize > 0)
 			dw = 500 / toSize;
 		
-		// cache file names and last modified dates for performance
-		if (toFileNames == null)
-			toFileNames = new String[toSize];
-		long[] toFileMod = new long[toSize];
-		for (int i = 0; i < toSize; i++) {
-			if (toFiles[i] != null) {
-				if (toFileNames[i] != null)
-					toFileNames[i] = toFiles[i].getName();
-				toFileMod[i] = toFiles[i].lastModified();
-			}
-		}
-		
 		for (int i = 0; i < fromSize; i++) {
 			IModuleResource current = resources[i];
 			String name = fromFileNames[i];
@@ -331,12 +359,9 @@ public class PublishHelper {
 					mod = file2.lastModified();
 				}
 				
-				for (int j = 0; j < toSize; j++) {
-					if (name.equals(toFileNames[j]) && mod == toFileMod[j]) {
-						copy = false;
-						break;
-					}
-				}
+				Long toMod = toFileMod.get(name);
+				if (toMod != null && mod == toMod.longValue())
+					copy = false;
 				
 				if (copy) {
 					try {
@@ -496,13 +521,7 @@ public class PublishHelper {
 			copyFile(file.getContents(), path, file.getLocalTimeStamp(), mf);
 		else {
 			File file2 = (File) mf.getAdapter(File.class);
-			InputStream in = null;
-			try {
-				in = new FileInputStream(file2);
-			} catch (IOException e) {
-				throw new CoreException(new Status(IStatus.ERROR, ServerPlugin.PLUGIN_ID, 0, NLS.bind(Messages.errorReading, file2.getAbsolutePath()), e));
-			}
-			copyFile(in, path, file2.lastModified(), mf);
+			copyFile(file2, path, file2.lastModified(), mf);
 		}
 	}
 	
@@ -617,10 +636,79 @@ public class PublishHelper {
 			File file = path.toFile();
 			tempFile = File.createTempFile(TEMPFILE_PREFIX, "." + path.getFileExtension(), tempDir);
 			
-			BufferedOutputStream bout = new BufferedOutputStream(new FileOutputStream(tempFile));
-			ZipOutputStream zout = new ZipOutputStream(bout);
-			addZipEntries(zout, resources);
-			zout.close();
+			writeZip(tempFile, resources, true);
+			
+			moveTempFile(tempFile, file);
+		} catch (CoreException e) {
+			return new IStatus[] { e.getStatus() };
+		} catch (Exception e) {
+			if (Trace.SEVERE) {
+				Trace.trace(Trace.STRING_SEVERE, "Error zipping", e);
+			}
+			return new Status[] { new Status(IStatus.ERROR, ServerPlugin.PLUGIN_ID, 0, NLS.bind(Messages.errorCreatingZipFile, path.lastSegment(), e.getLocalizedMessage()), e) };
+		} finally {
+			if (tempFile != null && tempFile.exists())
+				tempFile.deleteOnExit();
+		}
+		return EMPTY_STATUS;
+	}
+
+	/**
+	 * Updates the zip file at the given path using the given module resource delta,
+	 * which must be the delta since the zip file was last published. Entries for
+	 * resources that have not changed are copied from the existing zip file without
+	 * being decompressed and compressed again, so only the added and changed files
+	 * are read. If there is no existing zip file, no delta is provided, or the existing
+	 * zip file cannot be updated, a new zip file is created from all of the resources.
+	 * Deletes the existing file (and doesn't create a new one) if resources is null
+	 * or empty.
+	 * <p>
+	 * New entries are compressed unless <code>compress</code> is <code>false</code>,
+	 * in which case they are stored. Storing entries is faster and is useful when
+	 * the zip file is published to a local server.
+	 * </p>
+	 * 
+	 * @param resources an array of module resources
+	 * @param delta the module resource delta since the last publish, or <code>null</code>
+	 *    to create a new zip file
+	 * @param path the path where the zip file should be created
+	 * @param compress <code>true</code> to compress new entries, or <code>false</code>
+	 *    to store them without compression
+	 * @param monitor a progress monitor, or <code>null</code> if progress
+	 *    reporting and cancellation are not desired
+	 * @return a possibly-empty array of error and warning status
+	 * @since 1.7
+	 */
+	public IStatus[] publishZip(IModuleResource[] resources, IModuleResourceDelta[] delta, IPath path, boolean compress, IProgressMonitor monitor) {
+		if (resources == null || resources.length == 0) {
+			// should also check if resources consists of all empty directories
+			File file = path.toFile();
+			if (file.exists())
+				file.delete();
+			return EMPTY_STATUS;
+		}
+		
+		monitor = ProgressUtil.getMonitorFor(monitor);
+		
+		File file = path.toFile();
+		File tempFile = null;
+		try {
+			tempFile = File.createTempFile(TEMPFILE_PREFIX, "." + path.getFileExtension(), tempDir);
+			
+			boolean updated = false;
+			if (delta != null && file.exists()) {
+				try {
+					updateZip(file, tempFile, delta, compress);
+					updated = true;
+				} catch (IOException e) {
+					// the existing archive can't be updated, e.g. it is not a valid zip file
+					if (Trace.FINEST) {
+						Trace.trace(Trace.STRING_FINEST, "Could not update zip " + file + ", creating a new one", e);
+					}
+				}
+			}
+			if (!updated)
+				writeZip(tempFile, resources, compress);
 			
 			moveTempFile(tempFile, file);
 		} catch (CoreException e) {
@@ -637,7 +725,165 @@ public class PublishHelper {
 		return EMPTY_STATUS;
 	}
 
-	private static void addZipEntries(ZipOutputStream zout, IModuleResource[] resources) throws Exception {
+	/**
+	 * Writes a copy of the given zip file with the delta applied to the temp file.
+	 */
+	private static void updateZip(File file, File tempFile, IModuleResourceDelta[] delta, boolean compress) throws IOException, CoreException {
+		// find the entries that need to be replaced or removed
+		Map<String, IModuleResource> changed = new LinkedHashMap<String, IModuleResource>();
+		Set<String> removed = new HashSet<String>();
+		Set<String> removedFolders = new HashSet<String>();
+		getZipDelta(delta, changed, removed, removedFolders);
+		
+		ZipArchiveReader zin = new ZipArchiveReader(file);
+		ZipArchiveWriter zout = null;
+		try {
+			zout = new ZipArchiveWriter(tempFile);
+			Iterator<ZipArchiveEntry> iterator = zin.getEntries().iterator();
+			while (iterator.hasNext()) {
+				ZipArchiveEntry entry = iterator.next();
+				String name = entry.getName();
+				// changed entries replace the existing entry, so the order of the archive is kept
+				IModuleResource resource = changed.remove(name);
+				if (resource != null)
+					addZipEntry(zout, resource, compress);
+				else if (!removed.contains(name) && !isInFolder(name, removedFolders))
+					zout.putRawEntry(entry, zin.getRawInputStream(entry));
+			}
+			
+			// added entries go at the end
+			Iterator<IModuleResource> iterator2 = changed.values().iterator();
+			while (iterator2.hasNext())
+				addZipEntry(zout, iterator2.next(), compress);
+			zout.close();
+			zout = null;
+		} finally {
+			zin.close();
+			if (zout != null) {
+				try {
+					zout.close();
+				} catch (Exception e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	private static void getZipDelta(IModuleResourceDelta[] delta, Map<String, IModuleResource> changed, Set<String> removed, Set<String> removedFolders) {
+		if (delta == null)
+			return;
+		
+		int size = delta.length;
+		for (int i = 0; i < size; i++) {
+			IModuleResource resource = delta[i].getModuleResource();
+			String name = getZipEntryName(resource);
+			int kind = delta[i].getKind();
+			if (kind == IModuleResourceDelta.REMOVED) {
+				removed.add(name);
+				if (resource instanceof IModuleFolder)
+					removedFolders.add(name);
+			} else if (resource instanceof IModuleFile) {
+				changed.put(name, resource);
+			} else {
+				if (kind == IModuleResourceDelta.ADDED) {
+					changed.put(name, resource);
+					addZipMembers(((IModuleFolder) resource).members(), changed);
+				}
+				getZipDelta(delta[i].getAffectedChildren(), changed, removed, removedFolders);
+			}
+		}
+	}
+
+	private static void addZipMembers(IModuleResource[] resources, Map<String, IModuleResource> changed) {
+		if (resources == null)
+			return;
+		
+		int size = resources.length;
+		for (int i = 0; i < size; i++) {
+			changed.put(getZipEntryName(resources[i]), resources[i]);
+			if (resources[i] instanceof IModuleFolder)
+				addZipMembers(((IModuleFolder) resources[i]).members(), changed);
+		}
+	}
+
+	private static boolean isInFolder(String name, Set<String> folders) {
+		if (folders.isEmpty())
+			return false;
+		
+		// check each parent folder of the entry
+		int i = name.indexOf('/');
+		while (i >= 0) {
+			if (folders.contains(name.substring(0, i + 1)))
+				return true;
+			i = name.indexOf('/', i + 1);
+		}
+		return false;
+	}
+
+	private static String getZipEntryName(IModuleResource resource) {
+		String entryPath = resource.getModuleRelativePath().append(resource.getName()).toPortableString();
+		if (resource instanceof IModuleFolder && !entryPath.endsWith("/"))
+			entryPath += '/';
+		return entryPath;
+	}
+
+	private static long getTimestamp(IModuleResource resource) {
+		long ts = 0;
+		if (resource instanceof IModuleFolder) {
+			IContainer folder = (IContainer) resource.getAdapter(IContainer.class);
+			if (folder != null)
+				ts = folder.getLocalTimeStamp();
+		} else {
+			IFile file = (IFile) resource.getAdapter(IFile.class);
+			if (file != null)
+				ts = file.getLocalTimeStamp();
+			else {
+				File file2 = (File) resource.getAdapter(File.class);
+				if (file2 != null)
+					ts = file2.lastModified();
+			}
+		}
+		if (ts == IResource.NULL_STAMP)
+			ts = 0;
+		return ts;
+	}
+
+	private static InputStream getInputStream(IModuleFile mf) throws IOException, CoreException {
+		IFile file = (IFile) mf.getAdapter(IFile.class);
+		if (file != null)
+			return file.getContents();
+		File file2 = (File) mf.getAdapter(File.class);
+		return new FileInputStream(file2);
+	}
+
+	/**
+	 * Creates a zip file from the given resources, compressing the entries in parallel.
+	 * Archives that need the Zip64 extensions are written with java.util.zip instead.
+	 */
+	private static void writeZip(File file, IModuleResource[] resources, boolean compress) throws IOException, CoreException {
+		try {
+			writeParallelZip(file, resources, compress);
+		} catch (Zip64RequiredException e) {
+			if (Trace.FINEST) {
+				Trace.trace(Trace.STRING_FINEST, "Writing zip " + file + " with java.util.zip", e);
+			}
+			writeJavaZip(file, resources, compress);
+		}
+	}
+
+	private static void writeParallelZip(File file, IModuleResource[] resources, boolean compress) throws IOException, CoreException {
+		ParallelZipArchiveWriter zout = new ParallelZipArchiveWriter(file, compress, 0);
+		try {
+			addZipEntries(zout, resources);
+			zout.close();
+			zout = null;
+		} finally {
+			if (zout != null)
+				zout.dispose();
+		}
+	}
+
+	private static void addZipEntries(ParallelZipArchiveWriter zout, IModuleResource[] resources) throws IOException, CoreException {
 		if (resources == null)
 			return;
 		
@@ -645,67 +891,97 @@ public class PublishHelper {
 		for (int i = 0; i < size; i++) {
 			if (resources[i] instanceof IModuleFolder) {
 				IModuleFolder mf = (IModuleFolder) resources[i];
-				IModuleResource[] res = mf.members();
-				
-				IPath path = mf.getModuleRelativePath().append(mf.getName());
-				String entryPath = path.toPortableString();
-				if (!entryPath.endsWith("/"))
-					entryPath += '/';
-				
-				ZipEntry ze = new ZipEntry(entryPath);
-				
-				long ts = 0;
-				IContainer folder = (IContainer) mf.getAdapter(IContainer.class);
-				if (folder != null)
-					ts = folder.getLocalTimeStamp();
-				
-				if (ts != IResource.NULL_STAMP && ts != 0)
-					ze.setTime(ts);
-				
-				zout.putNextEntry(ze);
-				zout.closeEntry();
-				
-				addZipEntries(zout, res);
-				continue;
-			}
-			
-			IModuleFile mf = (IModuleFile) resources[i];
-			IPath path = mf.getModuleRelativePath().append(mf.getName());
-			
-			ZipEntry ze = new ZipEntry(path.toPortableString());
-			
-			InputStream in = null;
-			long ts = 0;
-			IFile file = (IFile) mf.getAdapter(IFile.class);
-			if (file != null) {
-				ts = file.getLocalTimeStamp();
-				in = file.getContents();
+				zout.putDirectory(getZipEntryName(mf), getTimestamp(mf));
+				addZipEntries(zout, mf.members());
 			} else {
-				File file2 = (File) mf.getAdapter(File.class);
-				ts = file2.lastModified();
-				in = new FileInputStream(file2);
+				final IModuleFile mf = (IModuleFile) resources[i];
+				zout.putEntry(getZipEntryName(mf), getTimestamp(mf), getLength(mf), new ParallelZipArchiveWriter.EntrySource() {
+					public InputStream getContents() throws IOException, CoreException {
+						return getInputStream(mf);
+					}
+				});
 			}
-			
-			if (ts != IResource.NULL_STAMP && ts != 0)
+		}
+	}
+
+	private static void writeJavaZip(File file, IModuleResource[] resources, boolean compress) throws IOException, CoreException {
+		ZipOutputStream zout = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			if (!compress)
+				zout.setLevel(Deflater.NO_COMPRESSION);
+			addZipEntries(zout, resources);
+		} finally {
+			zout.close();
+		}
+	}
+
+	private static void addZipEntries(ZipOutputStream zout, IModuleResource[] resources) throws IOException, CoreException {
+		if (resources == null)
+			return;
+		
+		int size = resources.length;
+		for (int i = 0; i < size; i++) {
+			ZipEntry ze = new ZipEntry(getZipEntryName(resources[i]));
+			long ts = getTimestamp(resources[i]);
+			if (ts != 0)
 				ze.setTime(ts);
-			
 			zout.putNextEntry(ze);
 			
+			if (resources[i] instanceof IModuleFolder) {
+				zout.closeEntry();
+				addZipEntries(zout, ((IModuleFolder) resources[i]).members());
+				continue;
+			}
+			
+			InputStream in = getInputStream((IModuleFile) resources[i]);
 			try {
-				int n = 0;
-				while (n > -1) {
+				byte[] buf = buffer.get();
+				int n = in.read(buf);
+				while (n >= 0) {
+					zout.write(buf, 0, n);
 					n = in.read(buf);
-					if (n > 0)
-						zout.write(buf, 0, n);
 				}
 			} finally {
 				in.close();
 			}
-			
 			zout.closeEntry();
 		}
 	}
 
+	private static long getLength(IModuleFile mf) {
+		File file = (File) mf.getAdapter(File.class);
+		if (file == null) {
+			IFile file2 = (IFile) mf.getAdapter(IFile.class);
+			if (file2 != null && file2.getLocation() != null)
+				file = file2.getLocation().toFile();
+		}
+		if (file == null)
+			return -1;
+		return file.length();
+	}
+
+	private static void addZipEntry(ZipArchiveWriter zout, IModuleResource resource, boolean compress) throws IOException, CoreException {
+		if (resource instanceof IModuleFolder) {
+			String entryPath = getZipEntryName(resource);
+			if (!zout.hasEntry(entryPath))
+				zout.putDirectory(entryPath, getTimestamp(resource));
+			return;
+		}
+		
+		IModuleFile mf = (IModuleFile) resource;
+		String name = getZipEntryName(mf);
+		long ts = getTimestamp(mf);
+		InputStream in = getInputStream(mf);
+		try {
+			if (compress)
+				zout.putDeflatedEntry(name, ts, in);
+			else
+				zout.putStoredEntry(name, ts, in);
+		} finally {
+			in.close();
+		}
+	}
+
 	/**
 	 * Accepts an IModuleResource array which is expected to contain a single
 	 * IModuleFile resource and copies it to the specified path, which should
@@ -793,6 +1069,7 @@ public class PublishHelper {
 		try {
 			out = new FileOutputStream(to);
 			
+			byte[] buf = buffer.get();
 			int avail = in.read(buf);
 			while (avail > 0) {
 				out.write(buf, 0, avail);
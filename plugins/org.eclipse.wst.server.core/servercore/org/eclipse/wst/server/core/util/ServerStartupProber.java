@@ -0,0 +1,637 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.server.core.util;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+
+import org.eclipse.wst.server.core.internal.Trace;
+/**
+ * Probes a server's HTTP port to detect when the server has started.
+ * <p>
+ * All probes share a single daemon thread, which uses non-blocking sockets
+ * to connect to the servers and send an HTTP HEAD request, or for https
+ * servers the start of a TLS handshake. The server is considered started as
+ * soon as it sends an HTTP response, or a TLS handshake message in reply.
+ * A probe can be given HTTP status codes, such as 404 or 503, that mean the
+ * server or web application is not ready yet, in which case it keeps probing
+ * until the server sends a different response.
+ * Probes that fail, or get no response in time, are retried with a delay
+ * that grows from 100ms to one second. The thread exits when there is
+ * nothing left to probe. The server's host name is looked up once, on
+ * another thread.
+ * </p>
+ * <p>
+ * Typical use in a server behaviour, once the server process is launched:
+ * <pre>
+ * ping = new ServerStartupProber(url, timeout, new ServerStartupProber.IProbeListener() {
+ *    public void serverStarted() {
+ *       setServerState(IServer.STATE_STARTED);
+ *    }
+ *    public void probeTimedOut() {
+ *       getServer().stop(false);
+ *    }
+ * });
+ * </pre>
+ * and when the server is stopped:
+ * <pre>
+ * ping.stop();
+ * </pre>
+ * </p>
+ *
+ * @since 1.7
+ */
+public class ServerStartupProber {
+	/**
+	 * A listener that is notified of the result of a probe. Listeners are
+	 * called on the probe thread, and must return quickly.
+	 */
+	public interface IProbeListener {
+		/**
+		 * The server has started.
+		 */
+		public void serverStarted();
+
+		/**
+		 * The server did not start within the timeout.
+		 */
+		public void probeTimedOut();
+	}
+
+	// delay before the first probe
+	private static final int INITIAL_DELAY = 250;
+
+	// delay between probes, which grows up to the maximum
+	private static final int MIN_INTERVAL = 100;
+	private static final int MAX_INTERVAL = 1000;
+
+	// time allowed to connect, before trying again
+	private static final int CONNECT_TIMEOUT = 2000;
+
+	// time allowed for a response after connecting, before trying again; it
+	// doubles each time there is no response, so that a busy server is given
+	// longer to respond
+	private static final int MIN_RESPONSE_TIMEOUT = 2000;
+	private static final int MAX_RESPONSE_TIMEOUT = 30000;
+
+	// TLS record type of handshake messages
+	private static final byte TLS_HANDSHAKE = 22;
+
+	private static final byte[] HTTP_RESPONSE = new byte[] { 'H', 'T', 'T', 'P', '/' };
+
+	private static final Object lock = new Object();
+	private static ProbeThread thread;
+
+	private final String host;
+	private final int port;
+	private final boolean secure;
+	private final byte[] request;
+	private final long deadline;
+	private final IProbeListener listener;
+	private final int[] notReadyStatus;
+
+	private volatile boolean stop;
+
+	// the address of the server, or null until the host name has been looked up
+	private volatile InetSocketAddress address;
+
+	// state used only by the probe thread
+	private long next;
+	private int interval = MIN_INTERVAL;
+	private int responseTimeout = MIN_RESPONSE_TIMEOUT;
+	private SocketChannel channel;
+	private long channelTimeout;
+	private boolean connected;
+	private ByteBuffer buffer;
+
+	/**
+	 * Create a new probe and start probing the given URL.
+	 *
+	 * @param url the URL to probe, which must be an http or https URL
+	 * @param timeout the time to wait for the server to start in milliseconds,
+	 *    or -1 to wait until the probe is stopped
+	 * @param listener a listener to be notified when the server starts or the
+	 *    probe times out
+	 * @throws MalformedURLException if the URL is not valid
+	 */
+	public ServerStartupProber(String url, int timeout, IProbeListener listener) throws MalformedURLException {
+		this(url, timeout, null, listener);
+	}
+
+	/**
+	 * Create a new probe and start probing the given URL, until the server
+	 * sends an HTTP response with a status code other than the given ones.
+	 * For https URLs the status codes are ignored.
+	 *
+	 * @param url the URL to probe, which must be an http or https URL
+	 * @param timeout the time to wait for the server to start in milliseconds,
+	 *    or -1 to wait until the probe is stopped
+	 * @param notReadyStatus HTTP status codes that mean the server is not
+	 *    ready yet, e.g. 404 and 503, or null to accept any response
+	 * @param listener a listener to be notified when the server starts or the
+	 *    probe times out
+	 * @throws MalformedURLException if the URL is not valid
+	 */
+	public ServerStartupProber(String url, int timeout, int[] notReadyStatus, IProbeListener listener) throws MalformedURLException {
+		if (listener == null)
+			throw new IllegalArgumentException();
+		this.notReadyStatus = notReadyStatus;
+
+		URL u = new URL(url);
+		host = u.getHost();
+		port = u.getPort() > 0 ? u.getPort() : u.getDefaultPort();
+		this.listener = listener;
+
+		// the TLS handshake message is created for each connection
+		secure = "https".equalsIgnoreCase(u.getProtocol());
+		if (secure)
+			request = null;
+		else {
+			String path = u.getFile();
+			if (path == null || path.length() == 0)
+				path = "/";
+			String s = "HEAD " + path + " HTTP/1.0\r\nHost: " + host + "\r\nConnection: close\r\n\r\n";
+			try {
+				request = s.getBytes("ISO-8859-1");
+			} catch (IOException e) {
+				// cannot happen, ISO-8859-1 is always supported
+				throw new IllegalArgumentException(e.getMessage());
+			}
+		}
+
+		long now = System.currentTimeMillis();
+		deadline = timeout < 0 ? Long.MAX_VALUE : now + timeout;
+		next = now + INITIAL_DELAY;
+
+		// look up the host name here so that a slow lookup can't hold up other probes
+		Thread t = new Thread("Server Startup Prober lookup") {
+			public void run() {
+				address = new InetSocketAddress(host, port);
+			}
+		};
+		t.setDaemon(true);
+		t.start();
+
+		synchronized (lock) {
+			if (thread == null) {
+				thread = new ProbeThread(false);
+				thread.start();
+			}
+			thread.add(this);
+		}
+	}
+
+	/**
+	 * Stop probing. The listener will not be called after this method returns,
+	 * unless it is already being called.
+	 */
+	public void stop() {
+		if (Trace.FINEST) {
+			Trace.trace(Trace.STRING_FINEST, "Probe: stopping " + host + ":" + port);
+		}
+		stop = true;
+		synchronized (lock) {
+			if (thread != null)
+				thread.selector.wakeup();
+		}
+	}
+
+	/**
+	 * Start a connection attempt. Called on the probe thread.
+	 */
+	private void connect(Selector selector, long now) {
+		InetSocketAddress address2 = address;
+		if (address2 == null) {
+			// the host name is still being looked up
+			next = now + MIN_INTERVAL;
+			return;
+		}
+		if (Trace.FINEST) {
+			Trace.trace(Trace.STRING_FINEST, "Probe: probing " + host + ":" + port);
+		}
+		try {
+			if (address2.isUnresolved())
+				throw new IOException("Unknown host: " + host);
+			channel = SocketChannel.open();
+			channel.configureBlocking(false);
+			channelTimeout = now + CONNECT_TIMEOUT;
+			connected = false;
+			if (channel.connect(address2))
+				connected(selector, now);
+			else
+				channel.register(selector, SelectionKey.OP_CONNECT, this);
+		} catch (IOException e) {
+			failed(now, e);
+		}
+	}
+
+	/**
+	 * The connection was accepted. Called on the probe thread.
+	 */
+	private void connected(Selector selector, long now) throws IOException {
+		connected = true;
+		channelTimeout = now + responseTimeout;
+		// the request is small enough to fit in the socket's send buffer
+		channel.write(secure ? createClientHello() : ByteBuffer.wrap(request));
+		buffer = ByteBuffer.allocate(16);
+		channel.register(selector, SelectionKey.OP_READ, this);
+	}
+
+	/**
+	 * Returns the first message of a TLS handshake with the server.
+	 */
+	private ByteBuffer createClientHello() throws IOException {
+		try {
+			SSLContext context = SSLContext.getInstance("TLS");
+			context.init(null, null, null);
+			SSLEngine engine = context.createSSLEngine(host, port);
+			engine.setUseClientMode(true);
+			engine.beginHandshake();
+			ByteBuffer b = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+			engine.wrap(ByteBuffer.allocate(0), b);
+			engine.closeOutbound();
+			b.flip();
+			return b;
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			IOException ioe = new IOException("Could not start TLS handshake");
+			ioe.initCause(e);
+			throw ioe;
+		}
+	}
+
+	/**
+	 * Returns true if the bytes read so far are the start of a response
+	 * to the request, false if they are not, and null if more are needed.
+	 */
+	private Boolean isResponse() {
+		if (secure)
+			return Boolean.valueOf(buffer.get(0) == TLS_HANDSHAKE);
+		int n = Math.min(buffer.position(), HTTP_RESPONSE.length);
+		for (int i = 0; i < n; i++) {
+			if (buffer.get(i) != HTTP_RESPONSE[i])
+				return Boolean.FALSE;
+		}
+		if (n < HTTP_RESPONSE.length)
+			return null;
+		// wait for the status code if it is needed, unless the buffer is full
+		if (notReadyStatus != null && getStatus() < 0 && buffer.hasRemaining())
+			return null;
+		return Boolean.TRUE;
+	}
+
+	/**
+	 * Returns the status code of the HTTP response read so far, or -1 if it
+	 * has not been read or is not valid.
+	 */
+	private int getStatus() {
+		int n = buffer.position();
+		int i = HTTP_RESPONSE.length;
+		while (i < n && buffer.get(i) != ' ')
+			i++;
+		if (i + 3 >= n)
+			return -1;
+		int status = 0;
+		for (int j = i + 1; j <= i + 3; j++) {
+			byte c = buffer.get(j);
+			if (c < '0' || c > '9')
+				return -1;
+			status = status * 10 + c - '0';
+		}
+		return status;
+	}
+
+	/**
+	 * Returns true if the response read so far has one of the status codes
+	 * that mean the server is not ready.
+	 */
+	private boolean isNotReady() {
+		if (secure || notReadyStatus == null)
+			return false;
+		int status = getStatus();
+		for (int i = 0; i < notReadyStatus.length; i++) {
+			if (notReadyStatus[i] == status)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Handle a ready channel. Called on the probe thread.
+	 */
+	private void ready(SelectionKey key, long now) {
+		try {
+			if (key.isConnectable()) {
+				if (channel.finishConnect())
+					connected(key.selector(), now);
+			} else if (key.isReadable()) {
+				int n = channel.read(buffer);
+				if (n < 0)
+					throw new IOException("Connection closed");
+				if (n > 0) {
+					Boolean b = isResponse();
+					if (Boolean.FALSE.equals(b))
+						throw new IOException("Unexpected response");
+					if (b != null && isNotReady())
+						throw new IOException("Not ready, status " + getStatus());
+					if (b != null) {
+						if (Trace.FINEST) {
+							Trace.trace(Trace.STRING_FINEST, "Probe: response from " + host + ":" + port);
+						}
+						succeeded();
+					}
+				}
+			}
+		} catch (IOException e) {
+			failed(now, e);
+		}
+	}
+
+	/**
+	 * Check whether the current connection attempt has taken too long. Called on
+	 * the probe thread.
+	 */
+	private void checkTimeout(long now) {
+		if (channel == null || now < channelTimeout)
+			return;
+
+		// the server did not accept the connection or respond in time
+		if (connected)
+			responseTimeout = Math.min(MAX_RESPONSE_TIMEOUT, responseTimeout * 2);
+		failed(now, new IOException(connected ? "No response" : "Connect timed out"));
+	}
+
+	private void succeeded() {
+		close();
+		if (stop)
+			return;
+
+		stop = true;
+		if (Trace.FINEST) {
+			Trace.trace(Trace.STRING_FINEST, "Probe: success " + host + ":" + port);
+		}
+		try {
+			listener.serverStarted();
+		} catch (Throwable t) {
+			if (Trace.SEVERE) {
+				Trace.trace(Trace.STRING_SEVERE, "Error notifying probe listener", t);
+			}
+		}
+	}
+
+	private void failed(long now, IOException e) {
+		close();
+		if (Trace.FINEST) {
+			Trace.trace(Trace.STRING_FINEST, "Probe: failed " + host + ":" + port + (e == null ? "" : ": " + e.getMessage()));
+		}
+		next = now + interval;
+		interval = Math.min(MAX_INTERVAL, interval * 3 / 2);
+	}
+
+	/**
+	 * An unexpected error while probing. The current connection attempt is
+	 * abandoned and the probe continues. Called on the probe thread.
+	 */
+	private void error(long now, RuntimeException e) {
+		if (Trace.WARNING) {
+			Trace.trace(Trace.STRING_WARNING, "Probe: error probing " + host + ":" + port, e);
+		}
+		failed(now, null);
+	}
+
+	private void timedOut() {
+		close();
+		if (stop)
+			return;
+
+		stop = true;
+		if (Trace.FINEST) {
+			Trace.trace(Trace.STRING_FINEST, "Probe: timed out " + host + ":" + port);
+		}
+		try {
+			listener.probeTimedOut();
+		} catch (Throwable t) {
+			if (Trace.SEVERE) {
+				Trace.trace(Trace.STRING_SEVERE, "Error notifying probe listener", t);
+			}
+		}
+	}
+
+	private void close() {
+		buffer = null;
+		if (channel == null)
+			return;
+
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// ignore
+		}
+		channel = null;
+	}
+
+	/**
+	 * The thread that runs all probes.
+	 */
+	private static class ProbeThread extends Thread {
+		protected Selector selector;
+		private ConcurrentLinkedQueue<ServerStartupProber> added = new ConcurrentLinkedQueue<ServerStartupProber>();
+
+		// probes waiting to connect, by the time of their next attempt
+		private PriorityQueue<ServerStartupProber> waiting = new PriorityQueue<ServerStartupProber>(11, new Comparator<ServerStartupProber>() {
+			public int compare(ServerStartupProber p1, ServerStartupProber p2) {
+				if (p1.next < p2.next)
+					return -1;
+				if (p1.next > p2.next)
+					return 1;
+				return 0;
+			}
+		});
+
+		// probes that are connecting or waiting for a response
+		private List<ServerStartupProber> active = new ArrayList<ServerStartupProber>();
+
+		// whether this thread replaced one that failed
+		private boolean restarted;
+
+		public ProbeThread(boolean restarted) {
+			super("Server Startup Prober");
+			this.restarted = restarted;
+			setDaemon(true);
+			try {
+				selector = Selector.open();
+			} catch (IOException e) {
+				throw new IllegalStateException(e.getMessage());
+			}
+		}
+
+		protected void add(ServerStartupProber probe) {
+			added.add(probe);
+			selector.wakeup();
+		}
+
+		public void run() {
+			try {
+				while (true) {
+					long now = System.currentTimeMillis();
+					ServerStartupProber probe = added.poll();
+					while (probe != null) {
+						waiting.add(probe);
+						probe = added.poll();
+					}
+
+					// check for timeouts and cancelled probes
+					Iterator<ServerStartupProber> iterator = active.iterator();
+					while (iterator.hasNext()) {
+						probe = iterator.next();
+						try {
+							if (probe.stop)
+								probe.close();
+							else if (now >= probe.deadline)
+								probe.timedOut();
+							else
+								probe.checkTimeout(now);
+						} catch (RuntimeException e) {
+							probe.error(now, e);
+						}
+						if (probe.channel == null) {
+							iterator.remove();
+							if (!probe.stop)
+								waiting.add(probe);
+						}
+					}
+
+					// start the probes that are due
+					while (!waiting.isEmpty() && (waiting.peek().stop || waiting.peek().next <= now)) {
+						probe = waiting.poll();
+						if (probe.stop)
+							continue;
+						if (now >= probe.deadline) {
+							probe.timedOut();
+							continue;
+						}
+						try {
+							probe.connect(selector, now);
+						} catch (RuntimeException e) {
+							probe.error(now, e);
+						}
+						if (probe.channel != null)
+							active.add(probe);
+						else if (!probe.stop)
+							waiting.add(probe);
+					}
+
+					synchronized (lock) {
+						if (active.isEmpty() && waiting.isEmpty() && added.isEmpty()) {
+							thread = null;
+							return;
+						}
+					}
+
+					// wait for a channel or the next probe, up to the next timeout
+					long wait = MAX_INTERVAL;
+					if (!waiting.isEmpty())
+						wait = Math.min(wait, waiting.peek().next - now);
+					for (int i = 0; i < active.size(); i++)
+						wait = Math.min(wait, active.get(i).channelTimeout - now);
+					if (wait > 0)
+						selector.select(wait);
+					else
+						selector.selectNow();
+
+					now = System.currentTimeMillis();
+					Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+					while (keys.hasNext()) {
+						SelectionKey key = keys.next();
+						keys.remove();
+						probe = (ServerStartupProber) key.attachment();
+						if (key.isValid() && probe.channel == key.channel()) {
+							try {
+								probe.ready(key, now);
+							} catch (RuntimeException e) {
+								probe.error(now, e);
+							}
+						}
+					}
+				}
+			} catch (Throwable t) {
+				if (Trace.SEVERE) {
+					Trace.trace(Trace.STRING_SEVERE, "Error in server startup prober", t);
+				}
+				restart();
+			} finally {
+				try {
+					selector.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+
+		/**
+		 * Move the outstanding probes to a new thread after this thread failed.
+		 * If a restarted thread also fails, the probes are timed out instead
+		 * of being left waiting forever.
+		 */
+		private void restart() {
+			List<ServerStartupProber> probes = new ArrayList<ServerStartupProber>(active);
+			probes.addAll(waiting);
+			active.clear();
+			waiting.clear();
+			for (int i = 0; i < probes.size(); i++)
+				probes.get(i).close();
+
+			synchronized (lock) {
+				ServerStartupProber probe = added.poll();
+				while (probe != null) {
+					probes.add(probe);
+					probe = added.poll();
+				}
+				if (thread == this) {
+					thread = null;
+					if (!restarted && !probes.isEmpty()) {
+						try {
+							thread = new ProbeThread(true);
+							for (int i = 0; i < probes.size(); i++)
+								thread.add(probes.get(i));
+							thread.start();
+							return;
+						} catch (RuntimeException e) {
+							if (Trace.SEVERE) {
+								Trace.trace(Trace.STRING_SEVERE, "Could not restart server startup prober", e);
+							}
+							thread = null;
+						}
+					}
+				}
+			}
+
+			for (int i = 0; i < probes.size(); i++)
+				probes.get(i).timedOut();
+		}
+	}
+}
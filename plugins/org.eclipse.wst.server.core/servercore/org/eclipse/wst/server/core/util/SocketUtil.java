@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2011 IBM Corporation and others.
+ * Copyright (c) 2003, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -15,15 +15,15 @@ import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.ServerSocket;
 import java.net.SocketException;
-import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
 import java.util.Random;
 import java.util.Set;
 
+import org.eclipse.wst.server.core.internal.LocalhostResolver;
 import org.eclipse.wst.server.core.internal.Trace;
 /**
  * A utility class for socket-related function. It's main purposes are to find
@@ -35,77 +35,52 @@ import org.eclipse.wst.server.core.internal.Trace;
 public class SocketUtil {
 	private static final Random rand = new Random(System.currentTimeMillis());
 
+	/**
+	 * @deprecated no longer used; localhost information is cached internally
+	 */
 	protected static final Object lock = new Object();
 
+	/**
+	 * @deprecated no longer used; localhost information is cached internally
+	 */
 	protected static Set<String> localHostCache = new HashSet<String>();
-	private static Set<String> notLocalHostCache = new HashSet<String>();
-	private static Map<String, CacheThread> threadMap = new HashMap<String, CacheThread>();
-
-	private static Set<InetAddress> addressCache;
 
-	static class CacheThread extends Thread {
-		private Set<InetAddress> currentAddresses;
-		private Set<String> addressList;
-		private String host;
-		private Set<String> nonAddressList;
-		private Map threadMap2;
+	/**
+	 * Thread used to check a single port until it is free or a shared deadline
+	 * passes.
+	 */
+	static class PortThread extends Thread {
+		private InetAddress[] addresses;
+		private int port;
+		private long deadline;
+		private boolean inUse = true;
 
-		public CacheThread(String host, Set<InetAddress> currentAddresses, Set<String> addressList, Set<String> nonAddressList, Map threadMap2) {
-			super("Caching localhost information");
-			this.host = host;
-			this.currentAddresses = currentAddresses;
-			this.addressList = addressList;
-			this.nonAddressList = nonAddressList;
-			this.threadMap2 = threadMap2;
+		public PortThread(InetAddress[] addresses, int port, long deadline) {
+			super("Checking port " + port);
+			this.addresses = addresses;
+			this.port = port;
+			this.deadline = deadline;
 		}
 
 		public void run() {
-			if (currentAddresses != null) {
-				Iterator iter2 = currentAddresses.iterator();
-				while (iter2.hasNext()) {
-					InetAddress addr = (InetAddress) iter2.next();
-					String hostname = addr.getHostName().toLowerCase();
-					String hostname2 = addr.getCanonicalHostName().toLowerCase();
-					synchronized (lock) {
-						if (hostname != null && !addressList.contains(hostname))
-							addressList.add(hostname);
-						if (hostname2 != null && !addressList.contains(hostname2))
-							addressList.add(hostname2);
-					}
-				}
-			}
-			
-			try {
-				InetAddress[] addrs = InetAddress.getAllByName(host);
-				int length = addrs.length;
-				for (int j = 0; j < length; j++) {
-					InetAddress addr = addrs[0];
-					String hostname = addr.getHostName().toLowerCase();
-					String hostname2 = addr.getCanonicalHostName().toLowerCase();
-					synchronized (lock) {
-						if (addr.isLoopbackAddress()) {
-							if (hostname != null && !addressList.contains(hostname))
-								addressList.add(hostname);
-							if (hostname2 != null && !addressList.contains(hostname2))
-								addressList.add(hostname2);
-						} else {
-							if (hostname != null && !nonAddressList.contains(hostname))
-								nonAddressList.add(hostname);
-							if (hostname2 != null && !nonAddressList.contains(hostname2))
-								nonAddressList.add(hostname2);
-						}
-					}
-				}
-			} catch (UnknownHostException e) {
-				synchronized (lock) {
-					if (host != null && !nonAddressList.contains(host))
-						nonAddressList.add(host);
+			while (isPortInUseOnAny(addresses, port)) {
+				long wait = deadline - System.currentTimeMillis();
+				if (wait <= 0)
+					return;
+				try {
+					Thread.sleep(Math.min(wait, 500));
+				} catch (InterruptedException e) {
+					return;
 				}
 			}
-			synchronized (lock) {
-				threadMap2.remove(host);
+			synchronized (this) {
+				inUse = false;
 			}
 		}
+
+		public synchronized boolean isInUse() {
+			return inUse;
+		}
 	}
 
 	/**
@@ -147,6 +122,74 @@ public class SocketUtil {
 		return -1;
 	}
 
+	/**
+	 * Finds the given number of distinct unused local ports between the given
+	 * from and to values. The candidate ports are checked concurrently.
+	 * 
+	 * @param count the number of ports to find
+	 * @param low lowest possible port number
+	 * @param high highest possible port number
+	 * @return an array of <code>count</code> unused port numbers, or
+	 *    <code>null</code> if not enough unused ports could be found
+	 * @since 1.7
+	 */
+	public static int[] findUnusedPorts(int count, int low, int high) {
+		return findUnusedPorts(null, count, low, high);
+	}
+
+	/**
+	 * Finds the given number of distinct unused local ports between the given
+	 * from and to values. The candidate ports are checked concurrently.
+	 * 
+	 * @param address a local InetAddress, or <code>null</code> to check all
+	 *    local addresses
+	 * @param count the number of ports to find
+	 * @param low lowest possible port number
+	 * @param high highest possible port number
+	 * @return an array of <code>count</code> unused port numbers, or
+	 *    <code>null</code> if not enough unused ports could be found
+	 * @since 1.7
+	 */
+	public static int[] findUnusedPorts(InetAddress address, int count, int low, int high) {
+		if (count < 0 || high - low < count)
+			return null;
+		
+		Set<Integer> found = new HashSet<Integer>(count * 2);
+		Set<Integer> tried = new HashSet<Integer>();
+		for (int i = 0; i < 10 && found.size() < count; i++) {
+			// pick new candidates, never retrying a port found to be in use
+			int need = count - found.size();
+			List<Integer> candidates = new ArrayList<Integer>(need);
+			for (int j = 0; j < need * 4 && candidates.size() < need; j++) {
+				Integer port = new Integer(getRandomPort(low, high));
+				if (tried.add(port))
+					candidates.add(port);
+			}
+			if (candidates.isEmpty())
+				break;
+			
+			int size = candidates.size();
+			int[] ports = new int[size];
+			for (int j = 0; j < size; j++)
+				ports[j] = candidates.get(j).intValue();
+			
+			boolean[] inUse = checkPorts(address, ports, 0);
+			for (int j = 0; j < size; j++) {
+				if (!inUse[j])
+					found.add(candidates.get(j));
+			}
+		}
+		
+		if (found.size() < count)
+			return null;
+		
+		int[] ports = new int[count];
+		Iterator<Integer> iter = found.iterator();
+		for (int i = 0; i < count; i++)
+			ports[i] = iter.next().intValue();
+		return ports;
+	}
+
 	/**
 	 * Return a random local port number in the given range.
 	 * 
@@ -247,198 +290,209 @@ public class SocketUtil {
 	}
 
 	/**
-	 * Checks if the given host (name, fully qualified name, or IP address) is
-	 * referring to the local machine.
+	 * Checks to see which of the given local port numbers are being used.
+	 * The ports are checked concurrently, and each port that is in use is
+	 * retried every 500ms until it is free or the timeout expires. The total
+	 * time taken is bounded by the timeout, however many ports are checked.
 	 * <p>
-	 * The first time this method is called (or the first call after each time
-	 * the network configuration has changed, e.g. by the user switching from a
-	 * wired connection to wireless) a background process is used to cache the
-	 * network information. On most machines the network information will be found
-	 * quickly and the results of this call will be returned immediately.
-	 * </p><p>
-	 * On machines where the network configuration of the machine is bad or the
-	 * network has problems, the first call to this method will always return after
-	 * 350ms, even if the caching is not complete. At that point it may return
-	 * "false negative" results. (i.e. the method will return <code>false</code>
-	 * even though it may later determine that the host address is a local host)
-	 * </p><p>
-	 * All subsequent calls (until the network configuration changes) will
-	 * return very quickly. If the background process is still running it will
-	 * continue to fill the cache and each subsequent call to this method may be
-	 * more correct/complete.
+	 * Each port is checked on the wildcard address and on every address of
+	 * the local network interfaces, so a port that is bound on only one
+	 * interface is also reported as being in use.
 	 * </p>
 	 * 
-	 * @param host a hostname or IP address
-	 * @return <code>true</code> if the given host is localhost, and
-	 *    <code>false</code> otherwise
+	 * @param ports the port numbers to check
+	 * @param timeout the time to wait for used ports to become free, in ms
+	 * @return the port numbers that are in use, in the order that they were
+	 *    given; an empty array if all ports are free
+	 * @since 1.7
 	 */
-	public static boolean isLocalhost(String host) {
-		if (host == null || host.equals(""))
-			return false;
-		
-		host = host.toLowerCase();
-		if ("localhost".equals(host) || "127.0.0.1".equals(host) || "::1".equals(host))
-			return true;
+	public static int[] getPortsInUse(int[] ports, int timeout) {
+		return getPortsInUse(null, ports, timeout);
+	}
+
+	/**
+	 * Checks to see which of the given local port numbers are being used.
+	 * The ports are checked concurrently, and each port that is in use is
+	 * retried every 500ms until it is free or the timeout expires. The total
+	 * time taken is bounded by the timeout, however many ports are checked.
+	 * 
+	 * @param address a local InetAddress, or <code>null</code> to check the
+	 *    wildcard address and the addresses of all local network interfaces
+	 * @param ports the port numbers to check
+	 * @param timeout the time to wait for used ports to become free, in ms
+	 * @return the port numbers that are in use, in the order that they were
+	 *    given; an empty array if all ports are free
+	 * @since 1.7
+	 */
+	public static int[] getPortsInUse(InetAddress address, int[] ports, int timeout) {
+		if (ports == null)
+			return new int[0];
 		
-		// check existing caches to see if the host is there
-		synchronized (lock) {
-			if (localHostCache.contains(host))
-				return true;
-			if (notLocalHostCache.contains(host))
-				return false;
+		boolean[] inUse = checkPorts(address, ports, timeout);
+		int count = 0;
+		for (int i = 0; i < inUse.length; i++) {
+			if (inUse[i])
+				count++;
 		}
-		InetAddress localHostaddr = null;
 		
-		// check simple cases
-		try {
-			localHostaddr = InetAddress.getLocalHost();
-			if (host.equals(localHostaddr.getHostName().toLowerCase())
-					|| host.equals(localHostaddr.getHostAddress().toLowerCase())){
-				synchronized (lock) {
-					localHostCache.add(host);
-				}
-				return true;
-			}
-		} catch (Exception e) {
-			if (Trace.WARNING) {
-				Trace.trace(Trace.STRING_WARNING, "Localhost caching failure", e);
-			}
+		int[] used = new int[count];
+		count = 0;
+		for (int i = 0; i < inUse.length; i++) {
+			if (inUse[i])
+				used[count++] = ports[i];
 		}
+		return used;
+	}
+
+	/**
+	 * Checks the given ports concurrently, waiting at most until the timeout
+	 * for ports in use to become free.
+	 * 
+	 * @param address a local InetAddress, or <code>null</code> to check all
+	 *    local addresses
+	 * @param ports the port numbers to check
+	 * @param timeout the time to wait for used ports to become free, in ms
+	 * @return an array with an entry for each port that is <code>true</code>
+	 *    if the port is in use
+	 */
+	private static boolean[] checkPorts(InetAddress address, int[] ports, int timeout) {
+		int size = ports.length;
+		boolean[] inUse = new boolean[size];
+		if (size == 0)
+			return inUse;
 		
-		// Bug 337763 - the InetAddress's getCanonicalHostName was removed from the simple case
-		// to be called in its own separate thread. This was due to the call being platform
-		// dependent and in some cases, taking up to 10 seconds to return. 
-		// 
-		// The cached thread may perform operations that are expensive. Therefore, to handle
-		// the case where the canonical host name returns quickly, a thread that terminates 
-		// after 100ms is used.
-		try {
-			final String hostFinal = host;
-			final InetAddress localHostaddrFinal = localHostaddr;
-			Thread compareCanonicalHostNameThread = new Thread(){
-				public void run(){
-					boolean isLocal = 
-						hostFinal.equals(localHostaddrFinal.getCanonicalHostName().toLowerCase());					
-					if (isLocal){
-						synchronized (lock) {
-							localHostCache.add(hostFinal);
-						}
-					}
-				}
-			};
-			compareCanonicalHostNameThread.start();
-			compareCanonicalHostNameThread.join(100);
-			// Check cache again
-			if (localHostCache.contains(host)){
-				return true;
-			}
-		} catch (Exception e){
-			if (Trace.WARNING) {
-				Trace.trace(Trace.STRING_WARNING, "Comparing host with local host conical host name failed", e);
-			}			
+		InetAddress[] addresses = getAddresses(address);
+		long deadline = System.currentTimeMillis() + Math.max(timeout, 0);
+		if (size == 1) {
+			PortThread t = new PortThread(addresses, ports[0], deadline);
+			t.run();
+			inUse[0] = t.isInUse();
+			return inUse;
 		}
 		
-		// check for current thread and wait if necessary
-		boolean currentThread = false;
-		try {
-			Thread t = null;
-			synchronized (lock) {
-				t = threadMap.get(host);
-			}
-			if (t != null && t.isAlive()) {
-				currentThread = true;
-				t.join(30);
-			}
-		} catch (Exception e) {
-			if (Trace.WARNING) {
-				Trace.trace(Trace.STRING_WARNING, "Localhost caching failure", e);
-			}
+		PortThread[] threads = new PortThread[size];
+		for (int i = 0; i < size; i++) {
+			threads[i] = new PortThread(addresses, ports[i], deadline);
+			threads[i].setDaemon(true);
+			threads[i].start();
 		}
 		
-		// check if cache is still ok
-		boolean refreshedCache = false;
-		try {
-			// get network interfaces
-			final Set<InetAddress> currentAddresses = new HashSet<InetAddress>();
-			
-			if(localHostaddr != null)
-				currentAddresses.add(localHostaddr);
-			
-			Enumeration nis = NetworkInterface.getNetworkInterfaces();
-			while (nis.hasMoreElements()) {
-				NetworkInterface inter = (NetworkInterface) nis.nextElement();
-				Enumeration<InetAddress> ias = inter.getInetAddresses();
-				while (ias.hasMoreElements())
-					currentAddresses.add(ias.nextElement());
-			}
-			
-			// check if cache is empty or old and refill it if necessary
-			if (addressCache == null || !addressCache.containsAll(currentAddresses) || !currentAddresses.containsAll(addressCache)) {
-				CacheThread cacheThread = null;
-				refreshedCache = true;
-				
-				synchronized (lock) {
-					addressCache = currentAddresses;
-					notLocalHostCache = new HashSet<String>();
-					localHostCache = new HashSet<String>(currentAddresses.size() * 3);
-					
-					Iterator iter = currentAddresses.iterator();
-					while (iter.hasNext()) {
-						InetAddress addr = (InetAddress) iter.next();
-						String a = addr.getHostAddress().toLowerCase();
-						if (a != null && !localHostCache.contains(a))
-							localHostCache.add(a);
-					}
-					
-					cacheThread = new CacheThread(host, currentAddresses, localHostCache, notLocalHostCache, threadMap);
-					threadMap.put(host, cacheThread);
-					cacheThread.setDaemon(true);
-					cacheThread.setPriority(Thread.NORM_PRIORITY - 1);
-					cacheThread.start();
+		// the probes themselves can block briefly, so allow a little past the deadline
+		for (int i = 0; i < size; i++) {
+			long wait = deadline - System.currentTimeMillis() + 250;
+			if (wait > 0) {
+				try {
+					threads[i].join(wait);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
 				}
-				cacheThread.join(200);
-			}
-		} catch (Exception e) {
-			if (Trace.WARNING) {
-				Trace.trace(Trace.STRING_WARNING, "Localhost caching failure", e);
 			}
 		}
 		
-		synchronized (lock) {
-			if (localHostCache.contains(host))
-				return true;
-			if (notLocalHostCache.contains(host))
-				return false;
-		}
-		
-		// if the cache hasn't been cleared, maybe we still need to lookup the host  
-		if (!refreshedCache && !currentThread) {
+		for (int i = 0; i < size; i++)
+			inUse[i] = threads[i].isInUse();
+		return inUse;
+	}
+
+	/**
+	 * Returns the addresses to check a port on: the given address, or the
+	 * wildcard address followed by the address of every local network interface.
+	 * Interface addresses that cannot be bound at all, e.g. tentative IPv6
+	 * addresses, are left out, since every port would appear to be in use.
+	 */
+	private static InetAddress[] getAddresses(InetAddress address) {
+		List<InetAddress> list = new ArrayList<InetAddress>();
+		list.add(address);
+		if (address == null) {
 			try {
-				CacheThread cacheThread = null;
-				synchronized (lock) {
-					cacheThread = new CacheThread(host, null, localHostCache, notLocalHostCache, threadMap);
-					threadMap.put(host, cacheThread);
-					cacheThread.setDaemon(true);
-					cacheThread.setPriority(Thread.NORM_PRIORITY - 1);
-					cacheThread.start();
-				}
-				cacheThread.join(75);
-				
-				synchronized (lock) {
-					if (localHostCache.contains(host))
-						return true;
+				Enumeration nis = NetworkInterface.getNetworkInterfaces();
+				while (nis != null && nis.hasMoreElements()) {
+					NetworkInterface inter = (NetworkInterface) nis.nextElement();
+					Enumeration<InetAddress> ias = inter.getInetAddresses();
+					while (ias.hasMoreElements()) {
+						InetAddress ia = ias.nextElement();
+						if (canBind(ia))
+							list.add(ia);
+					}
 				}
 			} catch (Exception e) {
 				if (Trace.WARNING) {
-					Trace.trace(Trace.STRING_WARNING, "Could not find localhost", e);
+					Trace.trace(Trace.STRING_WARNING, "Could not list network interfaces", e);
 				}
 			}
 		}
-		synchronized (lock) {
-			if(!notLocalHostCache.contains(host)){
-				notLocalHostCache.add(host);
+		return list.toArray(new InetAddress[list.size()]);
+	}
+
+	/**
+	 * Returns <code>true</code> if a socket can be bound to the given address
+	 * on an ephemeral port.
+	 */
+	private static boolean canBind(InetAddress address) {
+		ServerSocket s = null;
+		try {
+			s = new ServerSocket(0, 0, address);
+			return true;
+		} catch (Exception e) {
+			if (Trace.FINEST) {
+				Trace.trace(Trace.STRING_FINEST, "Skipping address " + address + " that cannot be bound", e);
 			}
+			return false;
+		} finally {
+			if (s != null) {
+				try {
+					s.close();
+				} catch (Exception e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if the given port is in use on any of the
+	 * given addresses.
+	 */
+	private static boolean isPortInUseOnAny(InetAddress[] addresses, int port) {
+		for (int i = 0; i < addresses.length; i++) {
+			if (isPortInUse(addresses[i], port))
+				return true;
 		}
 		return false;
 	}
+
+	/**
+	 * Checks if the given host (name, fully qualified name, or IP address) is
+	 * referring to the local machine.
+	 * <p>
+	 * Results are cached, and host names are looked up and the network
+	 * configuration is checked on background threads. A host that has
+	 * been checked before (until the network configuration changes, e.g. by the
+	 * user switching from a wired connection to wireless) is answered from the
+	 * cache without waiting; expired results are returned while they are
+	 * refreshed in the background.
+	 * </p><p>
+	 * The first call for a host waits at most 350ms for the lookup. On machines
+	 * where the network configuration of the machine is bad or the network has
+	 * problems, it may then return a "false negative" result (i.e. the method
+	 * will return <code>false</code> even though it may later determine that
+	 * the host address is a local host). Subsequent calls will return the
+	 * correct result once the lookup completes.
+	 * </p>
+	 * 
+	 * @param host a hostname or IP address
+	 * @return <code>true</code> if the given host is localhost, and
+	 *    <code>false</code> otherwise
+	 */
+	public static boolean isLocalhost(String host) {
+		if (host == null || host.equals(""))
+			return false;
+		
+		host = host.toLowerCase();
+		if ("localhost".equals(host) || "127.0.0.1".equals(host) || "::1".equals(host))
+			return true;
+		
+		return LocalhostResolver.getInstance().isLocalhost(host, 350);
+	}
 }
\ No newline at end of file
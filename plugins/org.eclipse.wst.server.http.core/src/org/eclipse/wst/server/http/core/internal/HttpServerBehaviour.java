@@ -23,12 +23,13 @@ import org.eclipse.wst.server.core.model.IModuleResource;
 import org.eclipse.wst.server.core.model.ServerBehaviourDelegate;
 import org.eclipse.wst.server.core.util.IStaticWeb;
 import org.eclipse.wst.server.core.util.PublishHelper;
+import org.eclipse.wst.server.core.util.ServerStartupProber;
 /**
  * Generic HTTP server implementation.
  */
 public class HttpServerBehaviour extends ServerBehaviourDelegate {
 	// the thread used to ping the server to check for startup
-	protected transient PingThread ping = null;
+	protected transient ServerStartupProber ping = null;
 
 	/**
 	 * HttpServer.
@@ -0,0 +1,27 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.internet.monitor.core.tests;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+public class AllTests {
+	public static Test suite() {
+		TestSuite suite = new TestSuite("Test for org.eclipse.wst.internet.monitor.core.tests");
+		//$JUnit-BEGIN$
+		suite.addTestSuite(ContentBufferTestCase.class);
+		suite.addTestSuite(HTTPParserTestCase.class);
+		suite.addTestSuite(RelayEngineTestCase.class);
+		suite.addTestSuite(RequestTestCase.class);
+		//$JUnit-END$
+		return suite;
+	}
+}
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.internet.monitor.core.tests;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.eclipse.wst.internet.monitor.core.internal.ContentBuffer;
+/**
+ * Tests the buffer that captured traffic is appended to.
+ */
+public class ContentBufferTestCase extends TestCase {
+	private static final int SPILL_SIZE = 2 * 1024 * 1024;
+
+	private ContentBuffer buffer = new ContentBuffer();
+
+	protected void tearDown() throws Exception {
+		buffer.dispose();
+	}
+
+	private static byte[] createContents(int size, long seed) {
+		byte[] b = new byte[size];
+		new Random(seed).nextBytes(b);
+		return b;
+	}
+
+	/**
+	 * Append the given bytes in pieces of the given size.
+	 */
+	private void append(byte[] b, int size) {
+		for (int i = 0; i < b.length; i += size)
+			buffer.append(ByteBuffer.wrap(b, i, Math.min(size, b.length - i)));
+	}
+
+	/**
+	 * Returns the temporary files that buffers may have created.
+	 */
+	private static Set<String> getTempFiles() {
+		String[] names = new File(System.getProperty("java.io.tmpdir")).list(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.startsWith("monitor") && name.endsWith(".tmp");
+			}
+		});
+		return new HashSet<String>(Arrays.asList(names));
+	}
+
+	public void testEmpty() {
+		assertEquals(0, buffer.size());
+		assertEquals(0, buffer.memorySize());
+		assertEquals(0, buffer.toByteArray().length);
+		buffer.append(ByteBuffer.allocate(0));
+		assertEquals(0, buffer.size());
+	}
+
+	public void testSmallAppends() {
+		byte[] b = createContents(200000, 1);
+		append(b, 100);
+		assertEquals(b.length, buffer.size());
+		assertEquals(b.length, buffer.memorySize());
+		assertTrue(Arrays.equals(b, buffer.toByteArray()));
+	}
+
+	public void testLargeAppends() {
+		byte[] b = createContents(500000, 2);
+		append(b, 100000);
+		assertTrue(Arrays.equals(b, buffer.toByteArray()));
+	}
+
+	public void testPositionNotChanged() {
+		ByteBuffer b = ByteBuffer.wrap(createContents(100, 3));
+		b.position(10);
+		buffer.append(b);
+		assertEquals(10, b.position());
+		assertEquals(90, buffer.size());
+
+		byte[] b2 = new byte[90];
+		System.arraycopy(b.array(), 10, b2, 0, 90);
+		assertTrue(Arrays.equals(b2, buffer.toByteArray()));
+	}
+
+	public void testDirectBuffer() {
+		byte[] b = createContents(5000, 4);
+		ByteBuffer direct = ByteBuffer.allocateDirect(b.length);
+		direct.put(b);
+		direct.flip();
+		buffer.append(direct);
+		assertTrue(Arrays.equals(b, buffer.toByteArray()));
+	}
+
+	public void testSpill() {
+		byte[] b = createContents(SPILL_SIZE, 5);
+		append(b, 64 * 1024);
+		assertEquals(b.length, buffer.size());
+		assertEquals(0, buffer.memorySize());
+		assertFalse(buffer.isTruncated());
+		assertTrue(Arrays.equals(b, buffer.toByteArray()));
+
+		// appends after the content is moved to disk
+		byte[] b2 = createContents(1000, 6);
+		append(b2, 100);
+		byte[] all = buffer.toByteArray();
+		assertEquals(b.length + b2.length, all.length);
+		byte[] tail = new byte[b2.length];
+		System.arraycopy(all, b.length, tail, 0, tail.length);
+		assertTrue(Arrays.equals(b2, tail));
+	}
+
+	public void testClose() {
+		byte[] b = createContents(SPILL_SIZE, 10);
+		append(b, 64 * 1024);
+		buffer.close();
+		assertEquals(0, buffer.memorySize());
+		assertTrue(Arrays.equals(b, buffer.toByteArray()));
+
+		// the file is reopened to append to it
+		byte[] b2 = createContents(1000, 11);
+		append(b2, 100);
+		buffer.close();
+		byte[] all = buffer.toByteArray();
+		assertEquals(b.length + b2.length, all.length);
+		byte[] tail = new byte[b2.length];
+		System.arraycopy(all, b.length, tail, 0, tail.length);
+		assertTrue(Arrays.equals(b2, tail));
+	}
+
+	public void testDisposeDeletesFile() {
+		Set<String> files = getTempFiles();
+		append(createContents(SPILL_SIZE, 7), 64 * 1024);
+		Set<String> created = getTempFiles();
+		created.removeAll(files);
+		assertEquals(1, created.size());
+
+		buffer.dispose();
+		assertEquals(0, buffer.size());
+		assertEquals(0, buffer.toByteArray().length);
+		assertFalse(getTempFiles().containsAll(created));
+	}
+
+	public void testReuseAfterDispose() {
+		append(createContents(SPILL_SIZE, 8), 64 * 1024);
+		buffer.dispose();
+
+		byte[] b = createContents(100, 9);
+		append(b, 10);
+		assertEquals(b.length, buffer.memorySize());
+		assertTrue(Arrays.equals(b, buffer.toByteArray()));
+	}
+}
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.internet.monitor.core.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import junit.framework.TestCase;
+
+import org.eclipse.wst.internet.monitor.core.internal.Monitor;
+import org.eclipse.wst.internet.monitor.core.internal.http.HTTPConnection;
+import org.eclipse.wst.internet.monitor.core.internal.http.HTTPParser;
+import org.eclipse.wst.internet.monitor.core.internal.http.HTTPRequest;
+import org.eclipse.wst.internet.monitor.core.internal.provisional.Request;
+/**
+ * Tests capturing HTTP messages as they are relayed.
+ */
+public class HTTPParserTestCase extends TestCase {
+	private static final String BODY = "<html><body>Hello, world!</body></html>";
+
+	private HTTPConnection conn = new HTTPConnection(new Monitor());
+	private HTTPParser requestParser = new HTTPParser(conn, true, "localhost", 8080, null);
+	private HTTPParser responseParser = new HTTPParser(conn, false, "localhost", 80, requestParser);
+
+	private static byte[] getBytes(String s) throws Exception {
+		return s.getBytes("ISO-8859-1");
+	}
+
+	private static byte[] concat(byte[] b1, byte[] b2) {
+		byte[] b = new byte[b1.length + b2.length];
+		System.arraycopy(b1, 0, b, 0, b1.length);
+		System.arraycopy(b2, 0, b, b1.length, b2.length);
+		return b;
+	}
+
+	private static byte[] gzip(byte[] b) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GZIPOutputStream gout = new GZIPOutputStream(out);
+		gout.write(b);
+		gout.close();
+		return out.toByteArray();
+	}
+
+	/**
+	 * Pass a request and the given response through the parsers, and return
+	 * the captured request.
+	 */
+	private HTTPRequest exchange(byte[] response) throws Exception {
+		requestParser.parse(ByteBuffer.wrap(getBytes("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n")));
+		responseParser.parse(ByteBuffer.wrap(response));
+		return (HTTPRequest) conn.getRequestResponse(false);
+	}
+
+	public void testResponse() throws Exception {
+		byte[] body = getBytes(BODY);
+		byte[] header = getBytes("HTTP/1.1 200 OK\r\nContent-Length: " + body.length + "\r\n\r\n");
+		HTTPRequest request = exchange(concat(header, body));
+
+		assertTrue(Arrays.equals(body, request.getResponse(Request.CONTENT)));
+		assertNull(request.getDecodedResponseContent());
+	}
+
+	public void testGzipResponse() throws Exception {
+		byte[] body = gzip(getBytes(BODY));
+		byte[] header = getBytes("HTTP/1.1 200 OK\r\nContent-Encoding: gzip\r\nContent-Length: " + body.length + "\r\n\r\n");
+		HTTPRequest request = exchange(concat(header, body));
+
+		// the body is kept as it was sent, and decoded separately
+		assertTrue(Arrays.equals(body, request.getResponse(Request.CONTENT)));
+		assertTrue(Arrays.equals(getBytes(BODY), request.getDecodedResponseContent()));
+		assertTrue(Arrays.equals(concat(header, body), request.getResponse(Request.ALL)));
+	}
+
+	public void testInvalidGzipResponse() throws Exception {
+		byte[] body = getBytes(BODY);
+		byte[] header = getBytes("HTTP/1.1 200 OK\r\nContent-Encoding: gzip\r\nContent-Length: " + body.length + "\r\n\r\n");
+		HTTPRequest request = exchange(concat(header, body));
+
+		assertTrue(Arrays.equals(body, request.getResponse(Request.CONTENT)));
+		assertNull(request.getDecodedResponseContent());
+	}
+}
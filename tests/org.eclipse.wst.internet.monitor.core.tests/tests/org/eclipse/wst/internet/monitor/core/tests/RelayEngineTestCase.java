@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.internet.monitor.core.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import junit.framework.TestCase;
+
+import org.eclipse.wst.internet.monitor.core.internal.MonitorWorkingCopy;
+import org.eclipse.wst.internet.monitor.core.internal.RelayEngine;
+import org.eclipse.wst.internet.monitor.core.internal.RelayHandler;
+/**
+ * Tests relaying connections between a client and a server.
+ */
+public class RelayEngineTestCase extends TestCase {
+	private ServerSocket server;
+	private ServerSocketChannel acceptor;
+	private MonitorWorkingCopy monitor;
+
+	protected void setUp() throws Exception {
+		InetAddress loopback = InetAddress.getByName("127.0.0.1");
+		server = new ServerSocket(0, 50, loopback);
+		startEchoServer();
+		acceptor = ServerSocketChannel.open();
+		acceptor.socket().bind(new InetSocketAddress(loopback, 0));
+
+		monitor = new MonitorWorkingCopy();
+		monitor.setRemoteHost("127.0.0.1");
+		monitor.setRemotePort(server.getLocalPort());
+	}
+
+	protected void tearDown() throws Exception {
+		server.close();
+		acceptor.close();
+	}
+
+	/**
+	 * Start a server that sends back everything it reads, and closes the
+	 * connection once the client has closed its side.
+	 */
+	private void startEchoServer() {
+		Thread t = new Thread("Test echo server") {
+			public void run() {
+				try {
+					while (true) {
+						final Socket socket = server.accept();
+						Thread t2 = new Thread("Test echo server connection") {
+							public void run() {
+								try {
+									InputStream in = socket.getInputStream();
+									OutputStream out = socket.getOutputStream();
+									byte[] b = new byte[1024];
+									int n = in.read(b);
+									while (n >= 0) {
+										out.write(b, 0, n);
+										n = in.read(b);
+									}
+								} catch (IOException e) {
+									// ignore
+								} finally {
+									try {
+										socket.close();
+									} catch (IOException e) {
+										// ignore
+									}
+								}
+							}
+						};
+						t2.setDaemon(true);
+						t2.start();
+					}
+				} catch (IOException e) {
+					// server closed
+				}
+			}
+		};
+		t.setDaemon(true);
+		t.start();
+	}
+
+	/**
+	 * Send the given text through the relay, and return what comes back.
+	 */
+	private String relay(String s, RelayHandler handler) throws IOException {
+		Socket client = new Socket("127.0.0.1", acceptor.socket().getLocalPort());
+		try {
+			client.setSoTimeout(10000);
+			SocketChannel channel = acceptor.accept();
+			RelayEngine.getInstance().connect(monitor, channel, handler);
+
+			client.getOutputStream().write(s.getBytes("ISO-8859-1"));
+			client.shutdownOutput();
+			InputStream in = client.getInputStream();
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] b = new byte[1024];
+			int n = in.read(b);
+			while (n >= 0) {
+				out.write(b, 0, n);
+				n = in.read(b);
+			}
+			return new String(out.toByteArray(), "ISO-8859-1");
+		} finally {
+			client.close();
+		}
+	}
+
+	private static class EchoHandler extends RelayHandler {
+		public ByteBuffer handle(ByteBuffer data, boolean isRequest) {
+			return data;
+		}
+	}
+
+	public void testRelay() throws Exception {
+		assertEquals("hello", relay("hello", new EchoHandler()));
+	}
+
+	public void testHandlerError() throws Exception {
+		try {
+			relay("hello", new EchoHandler() {
+				public void connected() {
+					throw new IllegalStateException("test");
+				}
+
+				public void closed() {
+					throw new IllegalStateException("test");
+				}
+			});
+		} catch (IOException e) {
+			// the connection may be reset
+		}
+
+		// the error only closes its own connection, and every relay thread keeps working
+		for (int i = 0; i < 8; i++)
+			assertEquals("hello" + i, relay("hello" + i, new EchoHandler()));
+	}
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.internet.monitor.core.tests;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.eclipse.wst.internet.monitor.core.internal.Monitor;
+import org.eclipse.wst.internet.monitor.core.internal.provisional.Request;
+/**
+ * Tests capturing, releasing and restoring the content of a request.
+ */
+public class RequestTestCase extends TestCase {
+	private static final int SPILL_SIZE = 2 * 1024 * 1024;
+
+	private Request request;
+
+	protected void setUp() throws Exception {
+		request = new Request(new Monitor(), "TCP/IP", 8080, "localhost", 80);
+	}
+
+	protected void tearDown() throws Exception {
+		request.dispose();
+	}
+
+	private static byte[] createContents(int size, long seed) {
+		byte[] b = new byte[size];
+		new Random(seed).nextBytes(b);
+		return b;
+	}
+
+	private static byte[] concat(byte[] b1, byte[] b2) {
+		byte[] b = new byte[b1.length + b2.length];
+		System.arraycopy(b1, 0, b, 0, b1.length);
+		System.arraycopy(b2, 0, b, b1.length, b2.length);
+		return b;
+	}
+
+	public void testAppend() {
+		byte[] b1 = createContents(1000, 1);
+		byte[] b2 = createContents(3000, 2);
+		request.addToRequest(b1);
+		request.addToRequest(ByteBuffer.wrap(b2));
+		request.addToResponse(b2);
+		assertEquals(b1.length + 2 * b2.length, request.getContentSize());
+		assertTrue(Arrays.equals(concat(b1, b2), request.getRequest(Request.ALL)));
+		assertTrue(Arrays.equals(b2, request.getResponse(Request.ALL)));
+	}
+
+	public void testReleaseAndRestore() {
+		byte[] b1 = createContents(1000, 3);
+		byte[] b2 = createContents(2000, 4);
+		request.addToRequest(b1);
+		request.addToResponse(b2);
+		request.setProperty("response-body", b2);
+		request.setProperty("viewer", "text");
+
+		Map<String, byte[]> content = request.releaseContent();
+		assertEquals(0, request.getContentSize());
+		assertNull(request.getRequest(Request.ALL));
+		assertNull(request.getResponse(Request.ALL));
+		assertNull(request.getProperty("response-body"));
+		assertEquals("text", request.getProperty("viewer"));
+
+		request.restoreContent(content);
+		assertTrue(Arrays.equals(b1, request.getRequest(Request.ALL)));
+		assertTrue(Arrays.equals(b2, request.getResponse(Request.ALL)));
+		assertTrue(Arrays.equals(b2, (byte[]) request.getProperty("response-body")));
+	}
+
+	public void testRestoreMergesNewContent() {
+		byte[] b1 = createContents(1000, 5);
+		byte[] b2 = createContents(500, 6);
+		request.addToResponse(b1);
+		Map<String, byte[]> content = request.releaseContent();
+
+		// more data arrives while the content is released
+		request.addToResponse(b2);
+		request.restoreContent(content);
+		assertTrue(Arrays.equals(concat(b1, b2), request.getResponse(Request.ALL)));
+	}
+
+	public void testSpilledContentKept() {
+		byte[] b = createContents(SPILL_SIZE, 7);
+		request.addToResponse(b);
+		assertEquals(0, request.getContentSize());
+
+		// content on disk is not released
+		Map<String, byte[]> content = request.releaseContent();
+		assertTrue(content.isEmpty());
+		assertTrue(Arrays.equals(b, request.getResponse(Request.ALL)));
+	}
+
+	public void testDispose() {
+		request.addToRequest(createContents(1000, 8));
+		request.addToResponse(createContents(SPILL_SIZE, 9));
+		request.dispose();
+		assertEquals(0, request.getContentSize());
+		assertNull(request.getRequest(Request.ALL));
+		assertNull(request.getResponse(Request.ALL));
+	}
+}
@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.internet.monitor.ui.tests;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.eclipse.wst.internet.monitor.core.internal.Monitor;
+import org.eclipse.wst.internet.monitor.core.internal.provisional.Request;
+import org.eclipse.wst.internet.monitor.ui.internal.RequestStore;
+/**
+ * Tests keeping the content of captured requests within a memory limit.
+ */
+public class RequestStoreTestCase extends TestCase {
+	private static final int LIMIT = 100000;
+
+	// longer than the time a request must be idle before it is moved to disk
+	private static final long IDLE = 2100;
+
+	private static final String BODY = "response-body";
+
+	private File dir;
+	private File file;
+	private Monitor monitor = new Monitor();
+	private RequestStore store;
+
+	protected void setUp() throws Exception {
+		dir = File.createTempFile("monitor", "");
+		dir.delete();
+		dir.mkdirs();
+		file = new File(dir, "requests.dat");
+		store = new RequestStore(file, LIMIT);
+	}
+
+	protected void tearDown() throws Exception {
+		store.dispose();
+		dir.delete();
+	}
+
+	private static byte[] createContents(int size, long seed) {
+		byte[] b = new byte[size];
+		new Random(seed).nextBytes(b);
+		return b;
+	}
+
+	private Request createRequest(byte[] b) {
+		Request request = new Request(monitor, "TCP/IP", 8080, "localhost", 80);
+		store.add(request);
+		request.addToRequest(b);
+		request.addToResponse(b);
+		request.setProperty(BODY, b);
+		request.setProperty("viewer", "text");
+		store.changed(request);
+		return request;
+	}
+
+	/**
+	 * Create requests that hold more content than the limit.
+	 */
+	private List<Request> createRequests(List<byte[]> contents) {
+		List<Request> requests = new ArrayList<Request>();
+		Random r = new Random(1);
+		for (int i = 0; i < 20; i++) {
+			byte[] b = createContents(5000 + r.nextInt(5000), i);
+			requests.add(createRequest(b));
+			contents.add(b);
+		}
+		return requests;
+	}
+
+	private static long getContentSize(List<Request> requests) {
+		long size = 0;
+		for (Request request : requests)
+			size += request.getContentSize();
+		return size;
+	}
+
+	private static void assertContent(Request request, byte[] b) {
+		assertTrue(Arrays.equals(b, request.getRequest(Request.ALL)));
+		assertTrue(Arrays.equals(b, request.getResponse(Request.ALL)));
+		assertTrue(Arrays.equals(b, (byte[]) request.getProperty(BODY)));
+		assertEquals("text", request.getProperty("viewer"));
+	}
+
+	public void testGetRequests() {
+		Request r1 = createRequest(new byte[10]);
+		Request r2 = createRequest(new byte[10]);
+		store.add(r1);
+
+		Request[] requests = store.getRequests();
+		assertTrue(Arrays.equals(new Request[] { r1, r2 }, requests));
+		assertSame(requests, store.getRequests());
+	}
+
+	public void testRecentRequestsKept() {
+		List<byte[]> contents = new ArrayList<byte[]>();
+		List<Request> requests = createRequests(contents);
+
+		// requests that may still be being captured stay in memory
+		assertTrue(getContentSize(requests) > LIMIT);
+		assertFalse(file.exists());
+	}
+
+	public void testEvict() throws Exception {
+		List<byte[]> contents = new ArrayList<byte[]>();
+		List<Request> requests = createRequests(contents);
+		Thread.sleep(IDLE);
+		store.changed(requests.get(requests.size() - 1));
+
+		assertTrue(getContentSize(requests) <= LIMIT);
+		assertTrue(file.length() > 0);
+
+		// the least recently changed requests are moved to disk first
+		Request first = requests.get(0);
+		assertEquals(0, first.getContentSize());
+		assertNull(first.getRequest(Request.ALL));
+		assertNull(first.getProperty(BODY));
+		assertEquals("text", first.getProperty("viewer"));
+		assertTrue(requests.get(requests.size() - 1).getContentSize() > 0);
+	}
+
+	public void testEvictWhenIdle() throws Exception {
+		List<byte[]> contents = new ArrayList<byte[]>();
+		List<Request> requests = createRequests(contents);
+
+		// requests are moved to disk once idle, without any further changes
+		Thread.sleep(IDLE + 500);
+		assertTrue(getContentSize(requests) <= LIMIT);
+		assertTrue(file.length() > 0);
+	}
+
+	public void testLoad() throws Exception {
+		List<byte[]> contents = new ArrayList<byte[]>();
+		List<Request> requests = createRequests(contents);
+		Thread.sleep(IDLE);
+		store.changed(requests.get(requests.size() - 1));
+
+		for (int i = 0; i < requests.size(); i++) {
+			Request request = requests.get(i);
+			store.load(request);
+			assertContent(request, contents.get(i));
+		}
+	}
+
+	public void testCompact() throws Exception {
+		List<byte[]> contents = new ArrayList<byte[]>();
+		List<Request> requests = createRequests(contents);
+		Thread.sleep(IDLE);
+		store.changed(requests.get(requests.size() - 1));
+		long size = file.length();
+
+		// loaded records are dead, and the file is compacted once they take up half of it
+		for (int i = 0; i < requests.size(); i++)
+			store.load(requests.get(i));
+		assertTrue(file.length() < size);
+
+		for (int i = 0; i < requests.size(); i++) {
+			Request request = requests.get(i);
+			store.load(request);
+			assertContent(request, contents.get(i));
+		}
+	}
+
+	public void testLoadedRequestKept() throws Exception {
+		List<byte[]> contents = new ArrayList<byte[]>();
+		List<Request> requests = createRequests(contents);
+		Request first = requests.get(0);
+		store.load(first);
+		Thread.sleep(IDLE);
+		store.changed(requests.get(requests.size() - 1));
+
+		assertTrue(first.getContentSize() > 0);
+		assertTrue(requests.get(1).getContentSize() == 0);
+	}
+
+	public void testLoadMergesNewContent() throws Exception {
+		List<byte[]> contents = new ArrayList<byte[]>();
+		List<Request> requests = createRequests(contents);
+		Thread.sleep(IDLE);
+		store.changed(requests.get(requests.size() - 1));
+
+		// more content arrives for a request that was moved to disk
+		Request first = requests.get(0);
+		assertEquals(0, first.getContentSize());
+		first.addToResponse("tail".getBytes("UTF-8"));
+		store.changed(first);
+
+		store.load(first);
+		byte[] b = contents.get(0);
+		byte[] response = first.getResponse(Request.ALL);
+		assertEquals(b.length + 4, response.length);
+		byte[] head = new byte[b.length];
+		System.arraycopy(response, 0, head, 0, b.length);
+		assertTrue(Arrays.equals(b, head));
+		assertEquals("tail", new String(response, b.length, 4, "UTF-8"));
+		assertTrue(Arrays.equals(b, first.getRequest(Request.ALL)));
+	}
+
+	public void testSpilledContentNotWritten() throws Exception {
+		Request request = new Request(monitor, "TCP/IP", 8080, "localhost", 80);
+		store.add(request);
+		byte[] large = createContents(2 * 1024 * 1024, 1);
+		request.addToResponse(large);
+		request.setProperty(BODY, new byte[LIMIT / 2]);
+		store.changed(request);
+
+		// content that is already in a temporary file is not counted
+		assertEquals(LIMIT / 2, request.getContentSize());
+
+		store.setLimit(10000);
+		Thread.sleep(IDLE);
+		store.add(new Request(monitor, "TCP/IP", 8080, "localhost", 80));
+
+		// and is not written to the store's file
+		assertEquals(0, request.getContentSize());
+		assertTrue(file.length() < LIMIT);
+		assertTrue(Arrays.equals(large, request.getResponse(Request.ALL)));
+
+		store.load(request);
+		assertEquals(LIMIT / 2, ((byte[]) request.getProperty(BODY)).length);
+	}
+
+	public void testClear() throws Exception {
+		List<byte[]> contents = new ArrayList<byte[]>();
+		List<Request> requests = createRequests(contents);
+		Thread.sleep(IDLE);
+		store.changed(requests.get(requests.size() - 1));
+		assertTrue(file.length() > 0);
+
+		store.clear();
+		assertEquals(0, store.getRequests().length);
+		assertEquals(0, file.length());
+		for (Request request : requests) {
+			assertNull(request.getRequest(Request.ALL));
+			assertNull(request.getResponse(Request.ALL));
+		}
+	}
+
+	public void testDispose() throws Exception {
+		List<byte[]> contents = new ArrayList<byte[]>();
+		List<Request> requests = createRequests(contents);
+		Thread.sleep(IDLE);
+		store.changed(requests.get(requests.size() - 1));
+		assertTrue(file.exists());
+
+		store.dispose();
+		assertFalse(file.exists());
+	}
+}
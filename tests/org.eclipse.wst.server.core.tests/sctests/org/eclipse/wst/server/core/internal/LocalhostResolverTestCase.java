@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.server.core.internal;
+
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.util.Enumeration;
+
+import junit.framework.TestCase;
+
+import org.eclipse.wst.server.core.util.SocketUtil;
+/**
+ * Tests resolving whether host names refer to the local machine.
+ */
+public class LocalhostResolverTestCase extends TestCase {
+	private static final long TIMEOUT = 10000;
+
+	private LocalhostResolver resolver = LocalhostResolver.getInstance();
+
+	public void testLocalhost() {
+		assertTrue(SocketUtil.isLocalhost("localhost"));
+		assertTrue(SocketUtil.isLocalhost("LOCALHOST"));
+		assertTrue(SocketUtil.isLocalhost("127.0.0.1"));
+		assertTrue(resolver.isLocalhost("127.0.0.1", TIMEOUT));
+	}
+
+	public void testEmptyHost() {
+		assertFalse(SocketUtil.isLocalhost(null));
+		assertFalse(SocketUtil.isLocalhost(""));
+	}
+
+	public void testInterfaceAddresses() throws Exception {
+		Enumeration<NetworkInterface> nis = NetworkInterface.getNetworkInterfaces();
+		while (nis != null && nis.hasMoreElements()) {
+			Enumeration<InetAddress> ias = nis.nextElement().getInetAddresses();
+			while (ias.hasMoreElements()) {
+				String host = ias.nextElement().getHostAddress();
+				if (host.indexOf('%') < 0)
+					assertTrue(host, resolver.isLocalhost(host.toLowerCase(), TIMEOUT));
+			}
+		}
+	}
+
+	public void testLocalHostName() throws Exception {
+		String host = InetAddress.getLocalHost().getHostName().toLowerCase();
+		assertTrue(host, resolver.isLocalhost(host, TIMEOUT));
+	}
+
+	public void testRemoteAddress() {
+		// an address reserved for documentation, which no machine should have
+		assertFalse(resolver.isLocalhost("198.51.100.1", TIMEOUT));
+	}
+
+	public void testUnknownHost() {
+		assertFalse(resolver.isLocalhost("no-such-host.invalid", TIMEOUT));
+	}
+
+	public void testCached() {
+		assertFalse(resolver.isLocalhost("198.51.100.2", TIMEOUT));
+
+		// a host that has been resolved is answered without waiting
+		long time = System.currentTimeMillis();
+		for (int i = 0; i < 1000; i++)
+			assertFalse(resolver.isLocalhost("198.51.100.2", 0));
+		time = System.currentTimeMillis() - time;
+		assertTrue("Took " + time + "ms", time < 1000);
+	}
+
+	public void testManyHosts() {
+		// more hosts than are kept in the cache
+		for (int i = 1; i < 255; i++)
+			assertFalse(resolver.isLocalhost("198.51.100." + i, TIMEOUT));
+		for (int i = 1; i < 255; i++)
+			assertFalse(resolver.isLocalhost("203.0.113." + i, TIMEOUT));
+		assertTrue(resolver.isLocalhost("127.0.0.1", TIMEOUT));
+	}
+}
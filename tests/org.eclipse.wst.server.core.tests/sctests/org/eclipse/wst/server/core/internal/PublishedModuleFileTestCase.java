@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.server.core.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.Path;
+import org.eclipse.wst.server.core.model.IModuleFile;
+import org.eclipse.wst.server.core.model.IModuleFolder;
+import org.eclipse.wst.server.core.model.IModuleResource;
+import org.eclipse.wst.server.core.util.ModuleFile;
+import org.eclipse.wst.server.core.util.ModuleFolder;
+/**
+ * Tests the digest based change detection of published module files.
+ */
+public class PublishedModuleFileTestCase extends TestCase {
+	private File file;
+
+	protected void setUp() throws Exception {
+		file = File.createTempFile("publish", ".txt");
+		write("contents");
+		file.setLastModified(100000L);
+	}
+
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+
+	private void write(String s) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(s.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+	}
+
+	private IModuleFile getCurrent() {
+		return new ModuleFile(file, file.getName(), Path.EMPTY);
+	}
+
+	private PublishedModuleFile getPublished() {
+		IModuleResource[] resources = PublishedModuleFile.getPublishedResources(new IModuleResource[] { getCurrent() }, null);
+		return (PublishedModuleFile) resources[0];
+	}
+
+	public void testDigestRecorded() {
+		PublishedModuleFile published = getPublished();
+		assertNotNull(published.getDigest());
+		assertEquals(16, published.getDigest().length);
+		assertEquals(100000L, published.getModificationStamp());
+	}
+
+	public void testSameStampNotRead() {
+		PublishedModuleFile published = getPublished();
+		IModuleFile current = getCurrent();
+		file.delete();
+
+		Map<IModuleResource, byte[]> digests = new HashMap<IModuleResource, byte[]>();
+		assertFalse(PublishedModuleFile.isChanged(published, current, digests));
+		assertSame(published.getDigest(), digests.get(current));
+	}
+
+	public void testTouchedNotChanged() {
+		PublishedModuleFile published = getPublished();
+		file.setLastModified(200000L);
+
+		assertFalse(PublishedModuleFile.isChanged(published, getCurrent(), null));
+	}
+
+	public void testSameLengthChanged() throws Exception {
+		PublishedModuleFile published = getPublished();
+		write("contentz");
+		file.setLastModified(200000L);
+
+		Map<IModuleResource, byte[]> digests = new HashMap<IModuleResource, byte[]>();
+		IModuleFile current = getCurrent();
+		assertTrue(PublishedModuleFile.isChanged(published, current, digests));
+		assertNotNull(digests.get(current));
+	}
+
+	public void testNoDigestChanged() {
+		IModuleFile old = new ModuleFile(file.getName(), Path.EMPTY, 100000L);
+		file.setLastModified(200000L);
+
+		assertTrue(PublishedModuleFile.isChanged(old, getCurrent(), null));
+	}
+
+	public void testUnreadableChanged() {
+		PublishedModuleFile published = getPublished();
+		IModuleFile current = new ModuleFile(file.getName(), Path.EMPTY, 200000L);
+
+		assertTrue(PublishedModuleFile.isChanged(published, current, null));
+	}
+
+	public void testComputedDigestReused() {
+		IModuleFile current = getCurrent();
+		ModuleFolder folder = new ModuleFolder(null, "folder", Path.EMPTY);
+		folder.setMembers(new IModuleResource[] { current });
+
+		byte[] digest = new byte[16];
+		Map<IModuleResource, byte[]> digests = new HashMap<IModuleResource, byte[]>();
+		digests.put(current, digest);
+		IModuleResource[] resources = PublishedModuleFile.getPublishedResources(new IModuleResource[] { folder }, digests);
+
+		IModuleResource[] members = ((IModuleFolder) resources[0]).members();
+		assertEquals(1, members.length);
+		assertSame(digest, ((PublishedModuleFile) members[0]).getDigest());
+	}
+}
@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.server.core.tests;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.wst.server.core.internal.LocalhostResolverTestCase;
+import org.eclipse.wst.server.core.internal.PublishedModuleFileTestCase;
+import org.eclipse.wst.server.core.util.ProjectModuleTestCase;
+
+public class AllTests {
+	public static Test suite() {
+		TestSuite suite = new TestSuite("Test for org.eclipse.wst.server.core.tests");
+		//$JUnit-BEGIN$
+		suite.addTestSuite(PublishedModuleFileTestCase.class);
+		suite.addTestSuite(ProjectModuleTestCase.class);
+		suite.addTestSuite(PublishHelperTestCase.class);
+		suite.addTestSuite(ZipArchiveWriterTestCase.class);
+		suite.addTestSuite(ParallelZipArchiveWriterTestCase.class);
+		suite.addTestSuite(PublishZipTestCase.class);
+		suite.addTestSuite(ServerStartupProberTestCase.class);
+		suite.addTestSuite(SocketUtilTestCase.class);
+		suite.addTestSuite(LocalhostResolverTestCase.class);
+		//$JUnit-END$
+		return suite;
+	}
+}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.server.core.tests;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import junit.framework.TestCase;
+
+import org.eclipse.wst.server.core.internal.zip.ParallelZipArchiveWriter;
+import org.eclipse.wst.server.core.internal.zip.Zip64RequiredException;
+/**
+ * Tests the zip archive writer that compresses entries in parallel.
+ */
+public class ParallelZipArchiveWriterTestCase extends TestCase {
+	private static final long TIME = 1262304000000L; // 2010-01-01
+
+	private File file;
+
+	protected void setUp() throws Exception {
+		file = File.createTempFile("archive", ".zip");
+	}
+
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+
+	private ParallelZipArchiveWriter createWriter(boolean compress, int threads) throws IOException {
+		return new ParallelZipArchiveWriter(new BufferedOutputStream(new FileOutputStream(file)), compress, threads);
+	}
+
+	private static ParallelZipArchiveWriter.EntrySource source(final byte[] b) {
+		return new ParallelZipArchiveWriter.EntrySource() {
+			public InputStream getContents() {
+				return new ByteArrayInputStream(b);
+			}
+		};
+	}
+
+	/**
+	 * Returns compressible contents; every 50th entry is larger than the
+	 * size that is buffered.
+	 */
+	private static byte[] createContents(int i, Random r) {
+		int size = (i % 50 == 49) ? 5 * 1024 * 1024 : r.nextInt(100000);
+		byte[] b = new byte[size];
+		for (int j = 0; j < size; j++)
+			b[j] = (byte) ('a' + r.nextInt(4));
+		return b;
+	}
+
+	private void write(boolean compress, int threads) throws Exception {
+		Random r = new Random(threads);
+		List<String> names = new ArrayList<String>();
+		List<byte[]> contents = new ArrayList<byte[]>();
+		ParallelZipArchiveWriter zout = createWriter(compress, threads);
+		zout.putDirectory("dir/", TIME);
+		names.add("dir/");
+		contents.add(new byte[0]);
+		for (int i = 0; i < 150; i++) {
+			String name = "dir/file" + i;
+			byte[] b = createContents(i, r);
+			// some entries are added without their size
+			long length = (i % 7 == 0) ? -1 : b.length;
+			zout.putEntry(name, TIME, length, source(b));
+			names.add(name);
+			contents.add(b);
+		}
+		zout.close();
+
+		int method = compress ? ZipEntry.DEFLATED : ZipEntry.STORED;
+		ZipFile zip = new ZipFile(file);
+		try {
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			for (int i = 0; i < names.size(); i++) {
+				ZipEntry entry = entries.nextElement();
+				assertEquals(names.get(i), entry.getName());
+				if (i > 0)
+					assertEquals(entry.getName(), method, entry.getMethod());
+				assertTrue(entry.getName(), Arrays.equals(contents.get(i), PublishHelperTestCase.read(zip.getInputStream(entry))));
+			}
+			assertFalse(entries.hasMoreElements());
+		} finally {
+			zip.close();
+		}
+	}
+
+	public void testDeflatedSingleThread() throws Exception {
+		write(true, 1);
+	}
+
+	public void testDeflatedParallel() throws Exception {
+		write(true, 4);
+	}
+
+	public void testStoredSingleThread() throws Exception {
+		write(false, 1);
+	}
+
+	public void testStoredParallel() throws Exception {
+		write(false, 4);
+	}
+
+	public void testDuplicateEntry() throws Exception {
+		ParallelZipArchiveWriter zout = createWriter(true, 4);
+		try {
+			zout.putEntry("a.txt", TIME, new byte[10]);
+			zout.putEntry("a.txt", TIME, new byte[10]);
+			fail("Duplicate entry was written");
+		} catch (ZipException e) {
+			// expected
+		} finally {
+			zout.dispose();
+		}
+	}
+
+	public void testSourceFailure() throws Exception {
+		ParallelZipArchiveWriter zout = createWriter(true, 4);
+		try {
+			zout.putEntry("a.txt", TIME, new byte[10]);
+			zout.putEntry("b.txt", TIME, 10, new ParallelZipArchiveWriter.EntrySource() {
+				public InputStream getContents() throws IOException {
+					throw new IOException("Cannot read b.txt");
+				}
+			});
+			zout.putEntry("c.txt", TIME, new byte[10]);
+			zout.close();
+			fail("Entry that could not be read was written");
+		} catch (IOException e) {
+			assertEquals("Cannot read b.txt", e.getMessage());
+		} finally {
+			zout.dispose();
+		}
+	}
+
+	public void testEntryLimit() throws Exception {
+		ParallelZipArchiveWriter zout = createWriter(true, 4);
+		try {
+			for (int i = 0; i <= 0xFFFF; i++)
+				zout.putDirectory("d" + i + "/", TIME);
+			zout.close();
+			fail("More than 65535 entries were written");
+		} catch (Zip64RequiredException e) {
+			// expected
+		} finally {
+			zout.dispose();
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.server.core.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.wst.server.core.model.IModuleResource;
+import org.eclipse.wst.server.core.util.ModuleFile;
+import org.eclipse.wst.server.core.util.ModuleFolder;
+import org.eclipse.wst.server.core.util.PublishHelper;
+/**
+ * Tests copying module files with the publish helper.
+ */
+public class PublishHelperTestCase extends TestCase {
+	protected File dir;
+	protected PublishHelper helper;
+
+	protected void setUp() throws Exception {
+		dir = createTempDir();
+		helper = new PublishHelper(new File(dir, "temp"));
+	}
+
+	protected void tearDown() throws Exception {
+		PublishHelper.deleteDirectory(dir, null);
+	}
+
+	protected static File createTempDir() throws IOException {
+		File dir = File.createTempFile("publish", "");
+		dir.delete();
+		dir.mkdirs();
+		return dir;
+	}
+
+	protected static byte[] createContents(int size, long seed) {
+		byte[] b = new byte[size];
+		new Random(seed).nextBytes(b);
+		return b;
+	}
+
+	protected static File createFile(File dir, String name, byte[] contents, long time) throws IOException {
+		File file = new File(dir, name);
+		file.getParentFile().mkdirs();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(contents);
+		} finally {
+			out.close();
+		}
+		file.setLastModified(time);
+		return file;
+	}
+
+	protected static byte[] read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			byte[] buf = new byte[8192];
+			int n = in.read(buf);
+			while (n >= 0) {
+				out.write(buf, 0, n);
+				n = in.read(buf);
+			}
+		} finally {
+			in.close();
+		}
+		return out.toByteArray();
+	}
+
+	protected static void assertOK(IStatus[] status) {
+		for (int i = 0; i < status.length; i++)
+			assertTrue(status[i].getMessage(), status[i].isOK());
+	}
+
+	public void testCopySmallAndLargeFiles() throws Exception {
+		File src = new File(dir, "src");
+		byte[] small = createContents(100, 1);
+		byte[] large = createContents(3 * 1024 * 1024 + 17, 2);
+		File a = createFile(src, "a.txt", small, 1000000L);
+		File b = createFile(src, "b.bin", large, 2000000L);
+
+		ModuleFolder folder = new ModuleFolder(null, "folder", Path.EMPTY);
+		folder.setMembers(new IModuleResource[] { new ModuleFile(b, "b.bin", new Path("folder")) });
+		IModuleResource[] resources = new IModuleResource[] { new ModuleFile(a, "a.txt", Path.EMPTY), folder };
+
+		File dest = new File(dir, "dest");
+		assertOK(helper.publishFull(resources, new Path(dest.getAbsolutePath()), null));
+
+		File a2 = new File(dest, "a.txt");
+		File b2 = new File(dest, "folder/b.bin");
+		assertTrue(Arrays.equals(small, read(new FileInputStream(a2))));
+		assertTrue(Arrays.equals(large, read(new FileInputStream(b2))));
+		assertEquals(1000000L, a2.lastModified());
+		assertEquals(2000000L, b2.lastModified());
+	}
+
+	public void testCopyReplacesLongerFile() throws Exception {
+		File dest = new File(dir, "dest");
+		createFile(dest, "a.txt", createContents(200000, 3), 1000000L);
+
+		byte[] contents = createContents(1000, 4);
+		File a = createFile(new File(dir, "src"), "a.txt", contents, 2000000L);
+		IModuleResource[] resources = new IModuleResource[] { new ModuleFile(a, "a.txt", Path.EMPTY) };
+		assertOK(helper.publishSmart(resources, new Path(dest.getAbsolutePath()), null));
+
+		assertTrue(Arrays.equals(contents, read(new FileInputStream(new File(dest, "a.txt")))));
+	}
+
+	public void testCopyEmptyFile() throws Exception {
+		File a = createFile(new File(dir, "src"), "empty.txt", new byte[0], 1000000L);
+		IModuleResource[] resources = new IModuleResource[] { new ModuleFile(a, "empty.txt", Path.EMPTY) };
+		File dest = new File(dir, "dest");
+		assertOK(helper.publishFull(resources, new Path(dest.getAbsolutePath()), null));
+
+		File a2 = new File(dest, "empty.txt");
+		assertTrue(a2.exists());
+		assertEquals(0, a2.length());
+	}
+}
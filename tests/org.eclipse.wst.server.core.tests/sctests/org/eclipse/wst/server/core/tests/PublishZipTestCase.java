@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.server.core.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.wst.server.core.internal.ModuleResourceDelta;
+import org.eclipse.wst.server.core.model.IModuleResource;
+import org.eclipse.wst.server.core.model.IModuleResourceDelta;
+import org.eclipse.wst.server.core.util.ModuleFile;
+import org.eclipse.wst.server.core.util.ModuleFolder;
+import org.eclipse.wst.server.core.util.PublishHelper;
+/**
+ * Tests creating and incrementally updating zip files with the publish helper.
+ */
+public class PublishZipTestCase extends TestCase {
+	private static final long TIME = 1262304000000L; // 2010-01-01
+
+	private File dir;
+	private File src;
+	private PublishHelper helper;
+	private IPath zip;
+
+	private ModuleFile a;
+	private ModuleFolder lib;
+	private ModuleFile b;
+	private ModuleFile c;
+	private ModuleFile d;
+
+	protected void setUp() throws Exception {
+		dir = PublishHelperTestCase.createTempDir();
+		src = new File(dir, "src");
+		helper = new PublishHelper(new File(dir, "temp"));
+		zip = new Path(new File(dir, "module.jar").getAbsolutePath());
+
+		a = createFile("a.txt", "a");
+		lib = new ModuleFolder(null, "lib", Path.EMPTY);
+		b = createFile("lib/b.txt", "b");
+		c = createFile("lib/c.txt", "c");
+		lib.setMembers(new IModuleResource[] { b, c });
+		d = createFile("d.txt", "d");
+		PublishHelperTestCase.assertOK(helper.publishZip(getResources(), null, zip, true, null));
+	}
+
+	protected void tearDown() throws Exception {
+		PublishHelper.deleteDirectory(dir, null);
+	}
+
+	private ModuleFile createFile(String name, String contents) throws IOException {
+		File file = PublishHelperTestCase.createFile(src, name, contents.getBytes("UTF-8"), TIME);
+		IPath path = new Path(name);
+		return new ModuleFile(file, path.lastSegment(), path.removeLastSegments(1));
+	}
+
+	private IModuleResource[] getResources() {
+		return new IModuleResource[] { a, lib, d };
+	}
+
+	private static IModuleResourceDelta[] delta(IModuleResourceDelta d1) {
+		return new IModuleResourceDelta[] { d1 };
+	}
+
+	private static IModuleResourceDelta delta(IModuleResource resource, int kind, IModuleResourceDelta[] children) {
+		ModuleResourceDelta delta = new ModuleResourceDelta(resource, kind);
+		if (children != null)
+			delta.setChildren(children);
+		return delta;
+	}
+
+	private void assertZip(String[] names, String[] contents) throws IOException {
+		ZipFile zipFile = new ZipFile(zip.toFile());
+		try {
+			List<String> list = new ArrayList<String>();
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				list.add(entry.getName());
+				int i = list.size() - 1;
+				if (i < contents.length && contents[i] != null)
+					assertEquals(contents[i], new String(PublishHelperTestCase.read(zipFile.getInputStream(entry)), "UTF-8"));
+			}
+			assertEquals(Arrays.asList(names), list);
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	public void testCreate() throws Exception {
+		assertZip(new String[] { "a.txt", "lib/", "lib/b.txt", "lib/c.txt", "d.txt" },
+			new String[] { "a", null, "b", "c", "d" });
+	}
+
+	public void testUpdateKeepsEntryOrder() throws Exception {
+		b = createFile("lib/b.txt", "b2");
+		lib.setMembers(new IModuleResource[] { b, c });
+		ModuleFile e = createFile("e.txt", "e");
+
+		IModuleResourceDelta[] delta = new IModuleResourceDelta[] {
+			delta(lib, IModuleResourceDelta.CHANGED, delta(delta(b, IModuleResourceDelta.CHANGED, null))),
+			delta(e, IModuleResourceDelta.ADDED, null)
+		};
+		IModuleResource[] resources = new IModuleResource[] { a, lib, d, e };
+		PublishHelperTestCase.assertOK(helper.publishZip(resources, delta, zip, true, null));
+
+		assertZip(new String[] { "a.txt", "lib/", "lib/b.txt", "lib/c.txt", "d.txt", "e.txt" },
+			new String[] { "a", null, "b2", "c", "d", "e" });
+	}
+
+	public void testUpdateRemovesFolder() throws Exception {
+		IModuleResourceDelta[] delta = delta(delta(lib, IModuleResourceDelta.REMOVED, null));
+		PublishHelperTestCase.assertOK(helper.publishZip(new IModuleResource[] { a, d }, delta, zip, true, null));
+
+		assertZip(new String[] { "a.txt", "d.txt" }, new String[] { "a", "d" });
+	}
+
+	public void testUpdateAddsFolder() throws Exception {
+		ModuleFolder web = new ModuleFolder(null, "web", Path.EMPTY);
+		ModuleFile index = createFile("web/index.html", "index");
+		web.setMembers(new IModuleResource[] { index });
+
+		IModuleResourceDelta[] delta = delta(delta(web, IModuleResourceDelta.ADDED, null));
+		IModuleResource[] resources = new IModuleResource[] { a, lib, d, web };
+		PublishHelperTestCase.assertOK(helper.publishZip(resources, delta, zip, true, null));
+
+		assertZip(new String[] { "a.txt", "lib/", "lib/b.txt", "lib/c.txt", "d.txt", "web/", "web/index.html" },
+			new String[] { "a", null, "b", "c", "d", null, "index" });
+	}
+
+	public void testUpdateStored() throws Exception {
+		d = createFile("d.txt", "d2");
+		IModuleResourceDelta[] delta = delta(delta(d, IModuleResourceDelta.CHANGED, null));
+		PublishHelperTestCase.assertOK(helper.publishZip(getResources(), delta, zip, false, null));
+
+		ZipFile zipFile = new ZipFile(zip.toFile());
+		try {
+			assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("a.txt").getMethod());
+			assertEquals(ZipEntry.STORED, zipFile.getEntry("d.txt").getMethod());
+			assertEquals("d2", new String(PublishHelperTestCase.read(zipFile.getInputStream(zipFile.getEntry("d.txt"))), "UTF-8"));
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	public void testUpdateInvalidZip() throws Exception {
+		PublishHelperTestCase.createFile(dir, "module.jar", "not a zip file".getBytes("UTF-8"), TIME);
+		IModuleResourceDelta[] delta = delta(delta(d, IModuleResourceDelta.CHANGED, null));
+		PublishHelperTestCase.assertOK(helper.publishZip(getResources(), delta, zip, true, null));
+
+		assertZip(new String[] { "a.txt", "lib/", "lib/b.txt", "lib/c.txt", "d.txt" },
+			new String[] { "a", null, "b", "c", "d" });
+	}
+
+	public void testTooManyEntries() throws Exception {
+		int count = 0x10000 + 10;
+		IModuleResource[] resources = new IModuleResource[count];
+		for (int i = 0; i < count; i++)
+			resources[i] = new ModuleFolder(null, "d" + i, Path.EMPTY);
+		PublishHelperTestCase.assertOK(helper.publishZip(resources, null, zip, true, null));
+
+		ZipFile zipFile = new ZipFile(zip.toFile());
+		try {
+			assertEquals(count, zipFile.size());
+		} finally {
+			zipFile.close();
+		}
+	}
+}
@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.server.core.tests;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.eclipse.wst.server.core.util.ServerStartupProber;
+/**
+ * Tests probing a server to detect when it has started.
+ */
+public class ServerStartupProberTestCase extends TestCase {
+	private static final String STARTED = "started";
+	private static final String TIMED_OUT = "timedOut";
+
+	private List<ServerSocket> servers = new ArrayList<ServerSocket>();
+
+	protected void tearDown() throws Exception {
+		for (ServerSocket server : servers)
+			server.close();
+	}
+
+	/**
+	 * Start a server on the loopback address that reads the request, then
+	 * waits for the given delay and sends the reply, if any. Connections are
+	 * left open so that the probe must rely on the reply.
+	 */
+	private int startServer(final byte[] reply, final int delay) throws IOException {
+		final ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+		servers.add(server);
+		Thread t = new Thread("Test server") {
+			public void run() {
+				try {
+					while (true) {
+						final Socket socket = server.accept();
+						Thread t2 = new Thread("Test server connection") {
+							public void run() {
+								try {
+									socket.getInputStream().read(new byte[1024]);
+									if (delay > 0)
+										Thread.sleep(delay);
+									if (reply != null)
+										socket.getOutputStream().write(reply);
+									Thread.sleep(30000);
+								} catch (Exception e) {
+									// ignore
+								} finally {
+									try {
+										socket.close();
+									} catch (IOException e) {
+										// ignore
+									}
+								}
+							}
+						};
+						t2.setDaemon(true);
+						t2.start();
+					}
+				} catch (IOException e) {
+					// server closed
+				}
+			}
+		};
+		t.setDaemon(true);
+		t.start();
+		return server.getLocalPort();
+	}
+
+	private static ServerStartupProber probe(String url, int timeout, final BlockingQueue<String> result) throws Exception {
+		return probe(url, timeout, null, result);
+	}
+
+	private static ServerStartupProber probe(String url, int timeout, int[] notReadyStatus, final BlockingQueue<String> result) throws Exception {
+		return new ServerStartupProber(url, timeout, notReadyStatus, new ServerStartupProber.IProbeListener() {
+			public void serverStarted() {
+				result.add(STARTED);
+			}
+
+			public void probeTimedOut() {
+				result.add(TIMED_OUT);
+			}
+		});
+	}
+
+	private static String probe(String url, int timeout) throws Exception {
+		return probe(url, timeout, (int[]) null);
+	}
+
+	private static String probe(String url, int timeout, int[] notReadyStatus) throws Exception {
+		BlockingQueue<String> result = new ArrayBlockingQueue<String>(2);
+		probe(url, timeout, notReadyStatus, result);
+		String s = result.poll(timeout + 10000, TimeUnit.MILLISECONDS);
+		// only one notification is sent
+		assertNull(result.poll(500, TimeUnit.MILLISECONDS));
+		return s;
+	}
+
+	public void testHTTPResponse() throws Exception {
+		int port = startServer("HTTP/1.1 200 OK\r\n\r\n".getBytes("ISO-8859-1"), 0);
+		assertEquals(STARTED, probe("http://127.0.0.1:" + port + "/", 10000));
+	}
+
+	public void testErrorResponse() throws Exception {
+		int port = startServer("HTTP/1.0 404 Not Found\r\n\r\n".getBytes("ISO-8859-1"), 0);
+		assertEquals(STARTED, probe("http://127.0.0.1:" + port + "/index.html", 10000));
+	}
+
+	public void testNotReadyResponse() throws Exception {
+		int port = startServer("HTTP/1.1 503 Service Unavailable\r\n\r\n".getBytes("ISO-8859-1"), 0);
+		assertEquals(TIMED_OUT, probe("http://127.0.0.1:" + port + "/app/", 3000, new int[] { 404, 503 }));
+	}
+
+	public void testReadyResponse() throws Exception {
+		int port = startServer("HTTP/1.1 302 Found\r\n\r\n".getBytes("ISO-8859-1"), 0);
+		assertEquals(STARTED, probe("http://127.0.0.1:" + port + "/app/", 10000, new int[] { 404, 503 }));
+	}
+
+	public void testSlowResponse() throws Exception {
+		// slower than the initial response timeout, so the probe must retry
+		int port = startServer("HTTP/1.0 200 OK\r\n\r\n".getBytes("ISO-8859-1"), 3000);
+		assertEquals(STARTED, probe("http://127.0.0.1:" + port + "/", 15000));
+	}
+
+	public void testNoResponse() throws Exception {
+		int port = startServer(null, 0);
+		assertEquals(TIMED_OUT, probe("http://127.0.0.1:" + port + "/", 3000));
+	}
+
+	public void testUnexpectedResponse() throws Exception {
+		int port = startServer("junk!!".getBytes("ISO-8859-1"), 0);
+		assertEquals(TIMED_OUT, probe("http://127.0.0.1:" + port + "/", 3000));
+	}
+
+	public void testConnectionRefused() throws Exception {
+		ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+		int port = server.getLocalPort();
+		server.close();
+		assertEquals(TIMED_OUT, probe("http://127.0.0.1:" + port + "/", 2000));
+	}
+
+	public void testTLSHandshake() throws Exception {
+		// the start of a TLS handshake record
+		int port = startServer(new byte[] { 22, 3, 3, 0, 5 }, 0);
+		assertEquals(STARTED, probe("https://127.0.0.1:" + port + "/", 10000));
+	}
+
+	public void testTLSNoResponse() throws Exception {
+		int port = startServer(null, 0);
+		assertEquals(TIMED_OUT, probe("https://127.0.0.1:" + port + "/", 3000));
+	}
+
+	public void testStop() throws Exception {
+		int port = startServer(null, 0);
+		BlockingQueue<String> result = new ArrayBlockingQueue<String>(2);
+		ServerStartupProber prober = probe("http://127.0.0.1:" + port + "/", 2000, result);
+		Thread.sleep(500);
+		prober.stop();
+		assertNull(result.poll(4000, TimeUnit.MILLISECONDS));
+	}
+
+	public void testMultipleProbes() throws Exception {
+		int port = startServer("HTTP/1.1 200 OK\r\n\r\n".getBytes("ISO-8859-1"), 0);
+		int port2 = startServer(null, 0);
+		BlockingQueue<String> result = new ArrayBlockingQueue<String>(2);
+		BlockingQueue<String> result2 = new ArrayBlockingQueue<String>(2);
+		probe("http://127.0.0.1:" + port2 + "/", 3000, result2);
+		probe("http://127.0.0.1:" + port + "/", 10000, result);
+		assertEquals(STARTED, result.poll(10000, TimeUnit.MILLISECONDS));
+		assertEquals(TIMED_OUT, result2.poll(13000, TimeUnit.MILLISECONDS));
+	}
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.server.core.tests;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.wst.server.core.util.SocketUtil;
+/**
+ * Tests checking whether local ports are in use.
+ */
+public class SocketUtilTestCase extends TestCase {
+	private List<ServerSocket> sockets = new ArrayList<ServerSocket>();
+
+	protected void tearDown() throws Exception {
+		for (ServerSocket socket : sockets)
+			socket.close();
+	}
+
+	private int bind(InetAddress address) throws IOException {
+		ServerSocket socket = new ServerSocket(0, 0, address);
+		sockets.add(socket);
+		return socket.getLocalPort();
+	}
+
+	private static InetAddress getLoopback() throws IOException {
+		return InetAddress.getByName("127.0.0.1");
+	}
+
+	/**
+	 * Returns a port that was free when it was checked.
+	 */
+	private static int getFreePort() throws IOException {
+		ServerSocket socket = new ServerSocket(0, 0, getLoopback());
+		int port = socket.getLocalPort();
+		socket.close();
+		return port;
+	}
+
+	/**
+	 * Returns the IPv4 address of a network interface other than the loopback
+	 * interface, or null if there is none.
+	 */
+	private static InetAddress getInterfaceAddress() throws IOException {
+		Enumeration<NetworkInterface> nis = NetworkInterface.getNetworkInterfaces();
+		while (nis != null && nis.hasMoreElements()) {
+			Enumeration<InetAddress> ias = nis.nextElement().getInetAddresses();
+			while (ias.hasMoreElements()) {
+				InetAddress ia = ias.nextElement();
+				if (ia instanceof Inet4Address && !ia.isLoopbackAddress())
+					return ia;
+			}
+		}
+		return null;
+	}
+
+	public void testPortInUse() throws Exception {
+		int port = bind(getLoopback());
+		assertTrue(SocketUtil.isPortInUse(port));
+		assertTrue(SocketUtil.isPortInUse(getLoopback(), port));
+	}
+
+	public void testPortNotInUse() throws Exception {
+		int port = getFreePort();
+		assertFalse(SocketUtil.isPortInUse(port));
+		assertFalse(SocketUtil.isPortInUse(getLoopback(), port));
+	}
+
+	public void testGetPortsInUse() throws Exception {
+		int used = bind(getLoopback());
+		int used2 = bind(getLoopback());
+		int free = getFreePort();
+		int[] ports = SocketUtil.getPortsInUse(new int[] { used, free, used2 }, 0);
+		assertTrue(Arrays.equals(new int[] { used, used2 }, ports));
+	}
+
+	public void testGetPortsInUseNone() throws Exception {
+		assertEquals(0, SocketUtil.getPortsInUse(new int[] { getFreePort() }, 0).length);
+		assertEquals(0, SocketUtil.getPortsInUse(new int[0], 0).length);
+		assertEquals(0, SocketUtil.getPortsInUse(null, 0).length);
+	}
+
+	public void testGetPortsInUseOnInterface() throws Exception {
+		InetAddress address = getInterfaceAddress();
+		if (address == null)
+			return;
+
+		// a port bound on only one interface is in use for the server
+		int port = bind(address);
+		int[] ports = SocketUtil.getPortsInUse(new int[] { port }, 0);
+		assertTrue(Arrays.equals(new int[] { port }, ports));
+		assertTrue(SocketUtil.isPortInUse(address, port));
+		assertFalse(SocketUtil.isPortInUse(getLoopback(), port));
+	}
+
+	public void testGetPortsInUseTimeout() throws Exception {
+		int[] ports = new int[10];
+		for (int i = 0; i < ports.length; i++)
+			ports[i] = bind(getLoopback());
+
+		// busy ports are retried until the timeout, but not one after another
+		long time = System.currentTimeMillis();
+		assertEquals(ports.length, SocketUtil.getPortsInUse(ports, 1000).length);
+		time = System.currentTimeMillis() - time;
+		assertTrue("Took " + time + "ms", time >= 1000 && time < 5000);
+	}
+
+	public void testGetPortsInUseFreed() throws Exception {
+		final ServerSocket socket = new ServerSocket(0, 0, getLoopback());
+		int port = socket.getLocalPort();
+		Thread t = new Thread() {
+			public void run() {
+				try {
+					Thread.sleep(500);
+					socket.close();
+				} catch (Exception e) {
+					// ignore
+				}
+			}
+		};
+		t.start();
+
+		// the port is freed before the timeout
+		assertEquals(0, SocketUtil.getPortsInUse(new int[] { port }, 5000).length);
+		t.join();
+	}
+
+	public void testFindUnusedPorts() throws Exception {
+		int[] ports = SocketUtil.findUnusedPorts(3, 40000, 50000);
+		assertEquals(3, ports.length);
+		for (int i = 0; i < ports.length; i++) {
+			assertTrue(ports[i] >= 40000 && ports[i] < 50000);
+			assertFalse(SocketUtil.isPortInUse(ports[i]));
+			for (int j = 0; j < i; j++)
+				assertTrue(ports[i] != ports[j]);
+		}
+	}
+}
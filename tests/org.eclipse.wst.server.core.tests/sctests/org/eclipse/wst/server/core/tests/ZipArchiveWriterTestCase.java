@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.server.core.tests;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import junit.framework.TestCase;
+
+import org.eclipse.wst.server.core.internal.zip.Zip64RequiredException;
+import org.eclipse.wst.server.core.internal.zip.ZipArchiveEntry;
+import org.eclipse.wst.server.core.internal.zip.ZipArchiveReader;
+import org.eclipse.wst.server.core.internal.zip.ZipArchiveWriter;
+/**
+ * Tests the zip archive writer and reader used to publish archives.
+ */
+public class ZipArchiveWriterTestCase extends TestCase {
+	private static final long TIME = 1262304000000L; // 2010-01-01
+
+	private File file;
+
+	protected void setUp() throws Exception {
+		file = File.createTempFile("archive", ".zip");
+	}
+
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+
+	private static OutputStream nullOutputStream() {
+		return new OutputStream() {
+			public void write(int b) {
+				// ignore
+			}
+
+			public void write(byte[] b, int off, int len) {
+				// ignore
+			}
+		};
+	}
+
+	private ZipArchiveWriter createWriter(File f) throws IOException {
+		return new ZipArchiveWriter(new BufferedOutputStream(new FileOutputStream(f)));
+	}
+
+	private void writeArchive(byte[] deflated, byte[] stored) throws IOException {
+		ZipArchiveWriter zout = createWriter(file);
+		zout.putDirectory("dir/", TIME);
+		zout.putDeflatedEntry("dir/deflated.txt", TIME, new ByteArrayInputStream(deflated));
+		CRC32 crc = new CRC32();
+		crc.update(stored);
+		zout.putStoredEntry("stored.bin", TIME, crc.getValue(), stored.length, new ByteArrayInputStream(stored));
+		assertTrue(zout.hasEntry("dir/"));
+		assertFalse(zout.hasEntry("missing"));
+		zout.close();
+	}
+
+	private static void assertEntries(File f, String[] names, int[] methods, byte[][] contents) throws IOException {
+		ZipFile zip = new ZipFile(f);
+		try {
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			for (int i = 0; i < names.length; i++) {
+				assertTrue(entries.hasMoreElements());
+				ZipEntry entry = entries.nextElement();
+				assertEquals(names[i], entry.getName());
+				assertEquals(names[i], methods[i], entry.getMethod());
+				assertTrue(names[i], Arrays.equals(contents[i], PublishHelperTestCase.read(zip.getInputStream(entry))));
+			}
+			assertFalse(entries.hasMoreElements());
+		} finally {
+			zip.close();
+		}
+	}
+
+	public void testWrite() throws Exception {
+		byte[] deflated = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa".getBytes("UTF-8");
+		byte[] stored = PublishHelperTestCase.createContents(100000, 1);
+		writeArchive(deflated, stored);
+
+		assertEntries(file, new String[] { "dir/", "dir/deflated.txt", "stored.bin" },
+			new int[] { ZipEntry.STORED, ZipEntry.DEFLATED, ZipEntry.STORED },
+			new byte[][] { new byte[0], deflated, stored });
+	}
+
+	public void testCopyRawEntries() throws Exception {
+		byte[] deflated = PublishHelperTestCase.createContents(50000, 2);
+		byte[] stored = PublishHelperTestCase.createContents(1000, 3);
+		writeArchive(deflated, stored);
+
+		File copy = File.createTempFile("archive", ".zip");
+		try {
+			ZipArchiveReader zin = new ZipArchiveReader(file);
+			ZipArchiveWriter zout = createWriter(copy);
+			try {
+				List<ZipArchiveEntry> entries = zin.getEntries();
+				assertEquals(3, entries.size());
+				for (ZipArchiveEntry entry : entries)
+					zout.putRawEntry(entry, zin.getRawInputStream(entry));
+				zout.close();
+			} finally {
+				zin.close();
+			}
+
+			assertEntries(copy, new String[] { "dir/", "dir/deflated.txt", "stored.bin" },
+				new int[] { ZipEntry.STORED, ZipEntry.DEFLATED, ZipEntry.STORED },
+				new byte[][] { new byte[0], deflated, stored });
+		} finally {
+			copy.delete();
+		}
+	}
+
+	private static void assertStoredEntry(File f, byte[] stored) throws IOException {
+		assertEntries(f, new String[] { "a.bin", "b.bin" },
+			new int[] { ZipEntry.STORED, ZipEntry.STORED },
+			new byte[][] { stored, new byte[0] });
+
+		// the checksum and size are in the local header, not a data descriptor
+		ZipInputStream zin = new ZipInputStream(new FileInputStream(f));
+		try {
+			ZipEntry entry = zin.getNextEntry();
+			assertEquals(stored.length, entry.getSize());
+			assertTrue(Arrays.equals(stored, PublishHelperTestCase.read(zin)));
+		} finally {
+			zin.close();
+		}
+	}
+
+	public void testStoredEntryOnFile() throws Exception {
+		byte[] stored = PublishHelperTestCase.createContents(100000, 4);
+		ZipArchiveWriter zout = new ZipArchiveWriter(file);
+		zout.putStoredEntry("a.bin", TIME, new ByteArrayInputStream(stored));
+		zout.putStoredEntry("b.bin", TIME, new ByteArrayInputStream(new byte[0]));
+		zout.close();
+		assertStoredEntry(file, stored);
+	}
+
+	public void testStoredEntryOnStream() throws Exception {
+		byte[] stored = PublishHelperTestCase.createContents(100000, 5);
+		ZipArchiveWriter zout = createWriter(file);
+		zout.putStoredEntry("a.bin", TIME, new ByteArrayInputStream(stored));
+		zout.putStoredEntry("b.bin", TIME, new ByteArrayInputStream(new byte[0]));
+		zout.close();
+		assertStoredEntry(file, stored);
+	}
+
+	public void testDuplicateEntry() throws Exception {
+		ZipArchiveWriter zout = createWriter(file);
+		zout.putDirectory("dir/", TIME);
+		try {
+			zout.putDirectory("dir/", TIME);
+			fail("Duplicate entry was written");
+		} catch (ZipException e) {
+			assertFalse(e instanceof Zip64RequiredException);
+		}
+		zout.close();
+	}
+
+	public void testEntryLimit() throws Exception {
+		ZipArchiveWriter zout = new ZipArchiveWriter(nullOutputStream());
+		for (int i = 0; i < 0xFFFF; i++)
+			zout.putDirectory("d" + i + "/", TIME);
+		try {
+			zout.putDirectory("last/", TIME);
+			fail("More than 65535 entries were written");
+		} catch (Zip64RequiredException e) {
+			// expected
+		}
+	}
+
+	public void testEntrySizeLimit() throws Exception {
+		ZipArchiveWriter zout = new ZipArchiveWriter(nullOutputStream());
+		InputStream in = new InputStream() {
+			public int read() {
+				throw new IllegalStateException("Contents read for an entry that is too large");
+			}
+		};
+		try {
+			zout.putStoredEntry("large.bin", TIME, 0, 0x100000000L, in);
+			fail("An entry larger than 4GB was written");
+		} catch (Zip64RequiredException e) {
+			// expected
+		}
+	}
+
+	public void testInvalidArchive() throws Exception {
+		FileOutputStream out = new FileOutputStream(file);
+		out.write("not a zip file".getBytes("UTF-8"));
+		out.close();
+		try {
+			new ZipArchiveReader(file).close();
+			fail("Invalid archive was read");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.wst.server.core.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.wst.server.core.model.IModuleFile;
+import org.eclipse.wst.server.core.model.IModuleFolder;
+import org.eclipse.wst.server.core.model.IModuleResource;
+/**
+ * Tests updating the cached members of a project module from resource deltas.
+ */
+public class ProjectModuleTestCase extends TestCase {
+	private Resource project;
+	private Resource folder;
+	private Resource nested;
+	private Resource file;
+	private ProjectModule module;
+
+	/**
+	 * A resource in a fake workspace.
+	 */
+	private static class Resource implements InvocationHandler {
+		protected String name;
+		protected long stamp = 1;
+		protected List<Resource> members = new ArrayList<Resource>();
+		protected IResource proxy;
+
+		Resource(Class<?> c, String name, Resource parent) {
+			this.name = name;
+			proxy = (IResource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { c }, this);
+			if (parent != null)
+				parent.members.add(this);
+		}
+
+		public Object invoke(Object obj, Method method, Object[] args) {
+			String m = method.getName();
+			if ("getName".equals(m))
+				return name;
+			if ("exists".equals(m))
+				return Boolean.TRUE;
+			if ("getModificationStamp".equals(m))
+				return new Long(stamp);
+			if ("getLocalTimeStamp".equals(m))
+				return new Long(0);
+			if ("members".equals(m)) {
+				IResource[] resources = new IResource[members.size()];
+				for (int i = 0; i < resources.length; i++)
+					resources[i] = members.get(i).proxy;
+				return resources;
+			}
+			if ("equals".equals(m))
+				return Boolean.valueOf(obj == args[0]);
+			if ("hashCode".equals(m))
+				return new Integer(System.identityHashCode(obj));
+			if ("toString".equals(m))
+				return name;
+			return null;
+		}
+	}
+
+	/**
+	 * A resource delta in a fake workspace.
+	 */
+	private static class Delta implements InvocationHandler {
+		protected Resource resource;
+		protected int flags;
+		protected List<IResourceDelta> children = new ArrayList<IResourceDelta>();
+		protected IResourceDelta proxy;
+
+		Delta(Resource resource, int flags, Delta parent) {
+			this.resource = resource;
+			this.flags = flags;
+			proxy = (IResourceDelta) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { IResourceDelta.class }, this);
+			if (parent != null)
+				parent.children.add(proxy);
+		}
+
+		public Object invoke(Object obj, Method method, Object[] args) {
+			String m = method.getName();
+			if ("getKind".equals(m))
+				return new Integer(IResourceDelta.CHANGED);
+			if ("getFlags".equals(m))
+				return new Integer(flags);
+			if ("getResource".equals(m))
+				return resource.proxy;
+			if ("getAffectedChildren".equals(m))
+				return children.toArray(new IResourceDelta[children.size()]);
+			if ("equals".equals(m))
+				return Boolean.valueOf(obj == args[0]);
+			if ("hashCode".equals(m))
+				return new Integer(System.identityHashCode(obj));
+			return null;
+		}
+	}
+
+	protected void setUp() throws Exception {
+		// project/folder/nested/file.txt, with other files at each level
+		project = new Resource(IProject.class, "project", null);
+		new Resource(IFile.class, "a.txt", project);
+		folder = new Resource(IFolder.class, "folder", project);
+		new Resource(IFile.class, "b.txt", folder);
+		nested = new Resource(IFolder.class, "nested", folder);
+		file = new Resource(IFile.class, "file.txt", nested);
+		module = new ProjectModule((IProject) project.proxy) {
+			// use the default implementation
+		};
+	}
+
+	private static IModuleResource getMember(IModuleResource[] resources, String name) {
+		for (int i = 0; i < resources.length; i++) {
+			if (resources[i].getName().equals(name))
+				return resources[i];
+		}
+		fail("Missing module resource " + name);
+		return null;
+	}
+
+	private static IModuleFile getFile(IModuleResource[] members) {
+		IModuleFolder mf = (IModuleFolder) getMember(members, "folder");
+		IModuleFolder mf2 = (IModuleFolder) getMember(mf.members(), "nested");
+		return (IModuleFile) getMember(mf2.members(), "file.txt");
+	}
+
+	public void testNestedFileChanged() throws Exception {
+		IModuleResource[] members = module.members();
+		assertEquals(1, getFile(members).getModificationStamp());
+
+		// folders that only contain changes are reported without flags
+		file.stamp = 2;
+		Delta delta = new Delta(project, 0, null);
+		Delta delta2 = new Delta(folder, 0, delta);
+		Delta delta3 = new Delta(nested, 0, delta2);
+		new Delta(file, IResourceDelta.CONTENT, delta3);
+		ProjectModule.handleProjectChange((IProject) project.proxy, delta.proxy);
+
+		IModuleResource[] members2 = module.members();
+		assertEquals(2, getFile(members2).getModificationStamp());
+
+		// resources that did not change are kept
+		assertSame(getMember(members, "a.txt"), getMember(members2, "a.txt"));
+		IModuleFolder mf = (IModuleFolder) getMember(members, "folder");
+		IModuleFolder mf2 = (IModuleFolder) getMember(members2, "folder");
+		assertSame(getMember(mf.members(), "b.txt"), getMember(mf2.members(), "b.txt"));
+	}
+
+	public void testMarkersChanged() throws Exception {
+		IModuleResource[] members = module.members();
+
+		Delta delta = new Delta(project, 0, null);
+		Delta delta2 = new Delta(folder, 0, delta);
+		new Delta(nested, IResourceDelta.MARKERS, delta2);
+		ProjectModule.handleProjectChange((IProject) project.proxy, delta.proxy);
+
+		// marker changes do not change the members
+		assertSame(members, module.members());
+	}
+}